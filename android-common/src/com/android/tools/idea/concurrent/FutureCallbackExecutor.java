@@ -23,6 +23,7 @@ import java.lang.reflect.UndeclaredThrowableException;
 import java.util.Iterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
@@ -227,6 +228,50 @@ public class FutureCallbackExecutor implements Executor {
     }
   }
 
+  /**
+   * Similar to {@link #executeFuturesInSequence(Iterator, Function)}, but waits for the {@link ListenableFuture}
+   * returned by a task only when {@code maxConcurrency} tasks are already running, so that at most {@code maxConcurrency}
+   * tasks execute in parallel.
+   *
+   * <p>Returns a {@link ListenableFuture} that completes when all tasks have completed.
+   *
+   * @param iterator       The source of elements to process
+   * @param maxConcurrency The maximum number of tasks running at the same time
+   * @param taskFactory    A factory {@link Function} that returns a {@link ListenableFuture} for a given element
+   * @param <T>            The type of the elements to process
+   */
+  @NotNull
+  public <T> ListenableFuture<Void> executeFuturesInParallel(@NotNull Iterator<T> iterator,
+                                                             int maxConcurrency,
+                                                             @NotNull Function<T, ListenableFuture<Void>> taskFactory) {
+    SettableFuture<Void> finalResult = SettableFuture.create();
+    int workerCount = Math.max(1, maxConcurrency);
+    AtomicInteger runningWorkers = new AtomicInteger(workerCount);
+    for (int i = 0; i < workerCount; i++) {
+      executeFuturesInParallelWorker(iterator, taskFactory, runningWorkers, finalResult);
+    }
+    return finalResult;
+  }
+
+  private <T> void executeFuturesInParallelWorker(@NotNull Iterator<T> iterator,
+                                                  @NotNull Function<T, ListenableFuture<Void>> taskFactory,
+                                                  @NotNull AtomicInteger runningWorkers,
+                                                  @NotNull SettableFuture<Void> finalResult) {
+    // Workers may be resumed concurrently if this executor uses more than one thread
+    T element;
+    synchronized (iterator) {
+      if (!iterator.hasNext()) {
+        if (runningWorkers.decrementAndGet() == 0) {
+          finalResult.set(null);
+        }
+        return;
+      }
+      element = iterator.next();
+    }
+    ListenableFuture<Void> future = taskFactory.apply(element);
+    addConsumer(future, (aVoid, throwable) -> executeFuturesInParallelWorker(iterator, taskFactory, runningWorkers, finalResult));
+  }
+
   /**
    * Wrap a {@link ThrowableFunction} into a {@link Function} using a {@link UndeclaredThrowableException}.
    *
@@ -287,6 +287,13 @@ public final class StudioFlags {
     "Show the Select Device/Snapshot combo box next to the Select Run/Debug Configuration one in the toolbar",
     false);
 
+  public static final Flag<Boolean> RUNDEBUG_PARALLEL_DEVICE_LAUNCH_ENABLED = Flag.create(
+    RUNDEBUG,
+    "parallel.device.launch.enabled",
+    "Launch on several devices in parallel",
+    "When running on several devices, deploy and launch on up to 4 of them at the same time instead of one after the other",
+    false);
+
   public static final Flag<Boolean> JVMTI_REFRESH = Flag.create(
     RUNDEBUG,
     "jvmti.refresh",
@@ -317,6 +324,9 @@ public final class StudioFlags {
   public static final Flag<Boolean> COMPOUND_SYNC_ENABLED = Flag.create(
     GRADLE_IDE, "compound.sync", "Enable new \"Compound Sync\"",
     "Turns on Compound Sync.", false);
+  public static final Flag<Boolean> PARALLEL_SYNC_SETUP_ENABLED = Flag.create(
+    GRADLE_IDE, "parallel.sync.setup", "Enable parallel module setup in \"New Sync\"",
+    "Creates the models of all modules concurrently before setting them up, instead of one module after another.", true);
   public static final Flag<Boolean> SHIPPED_SYNC_ENABLED = Flag.create(
     GRADLE_IDE, "shipped.sync", "Enable \"Shipped Sync\"",
     "Use shipped Gradle Sync when possible e.g. in freshly created projects. Allows to avoid running an actual Gradle Sync.",
@@ -407,6 +417,12 @@ public final class StudioFlags {
     "Use ResourceRepository to resolve references, not ResourceManager.",
     false);
 
+  private static final FlagGroup LINT = new FlagGroup(FLAGS, "lint", "Lint");
+  public static final Flag<Boolean> LINT_BATCH_ANALYSIS_ENABLED = Flag.create(
+    LINT, "batch.analysis", "Run lint on independent modules concurrently in batch inspections",
+    "If enabled, \"Inspect Code\" runs lint concurrently on the groups of modules that do not depend on each other, and reuses the " +
+    "results of the groups whose files did not change since the previous run.", true);
+
   private static final FlagGroup ANALYZER = new FlagGroup(FLAGS, "analyzer", "Apk/Bundle Analyzer");
   public static final Flag<Boolean> ENABLE_APP_SIZE_OPTIMIZER = Flag.create(
     ANALYZER, "enable.app.size.optimizer", "Enable size optimization suggestions in apk analyzer",
@@ -17,20 +17,30 @@ package com.android.tools.idea.lang.roomSql.resolution
 
 import com.android.support.AndroidxName
 import com.android.tools.idea.lang.roomSql.RoomAnnotations
+import com.intellij.lang.injection.InjectedLanguageManager
 import com.intellij.openapi.components.ServiceManager
 import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.module.ModuleUtilCore
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ModuleRootManager
+import com.intellij.openapi.util.Key
 import com.intellij.psi.*
 import com.intellij.psi.impl.ResolveScopeManager
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.psi.search.searches.AnnotatedElementsSearch.searchPsiClasses
+import com.intellij.psi.util.CachedValue
 import com.intellij.psi.util.CachedValueProvider
 import com.intellij.psi.util.CachedValuesManager
 import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.psi.util.InheritanceUtil
 import com.intellij.psi.util.PsiUtil
 
 private val LOG = Logger.getInstance(RoomSchemaManager::class.java)
 
+private val MAIN_SCHEMA_KEY = Key.create<CachedValue<RoomSchema?>>("RoomSchemaManager.MAIN_SCHEMA")
+private val TEST_SCHEMA_KEY = Key.create<CachedValue<RoomSchema?>>("RoomSchemaManager.TEST_SCHEMA")
+
 /** Utility for constructing a [RoomSchema] using IDE indices. */
 class RoomSchemaManager(val project: Project) {
   companion object {
@@ -40,25 +50,50 @@ class RoomSchemaManager(val project: Project) {
   /**
    * Returns the [RoomSchema] visible from the given [PsiFile] or null if Room is not used in the project.
    *
-   * The schema is cached in the file and recomputed after a change to java structure.
+   * The schema is cached in the file and shared by all the source files (or all the test files) of its module. It is recomputed after a
+   * change to java structure, but the entities are cached in their classes and only recomputed when the files they depend on change.
    *
    * @see PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT
    */
-  fun getSchema(psiFile: PsiFile): RoomSchema? = CachedValuesManager.getManager(project).getCachedValue(
-    psiFile, { CachedValueProvider.Result(buildSchema(psiFile), PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT) })
+  fun getSchema(psiFile: PsiFile): RoomSchema? = CachedValuesManager.getManager(project).getCachedValue(psiFile) {
+    CachedValueProvider.Result(getSharedSchema(psiFile), PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT)
+  }
 
   private val constantEvaluationHelper = JavaPsiFacade.getInstance(project).constantEvaluationHelper
   private val pointerManager = SmartPointerManager.getInstance(project)
 
+  private fun getSharedSchema(psiFile: PsiFile): RoomSchema? {
+    // SQL is injected in Java strings, the module and the tests flag come from the Java file.
+    val topLevelFile = InjectedLanguageManager.getInstance(project).getTopLevelFile(psiFile) ?: psiFile
+    val module = ModuleUtilCore.findModuleForPsiElement(topLevelFile)
+    val virtualFile = topLevelFile.originalFile.virtualFile
+    if (module == null || virtualFile == null) {
+      return buildSchema(ResolveScopeManager.getInstance(project).getResolveScope(psiFile))
+    }
+    val includeTests = ModuleRootManager.getInstance(module).fileIndex.isInTestSourceContent(virtualFile)
+    return getModuleSchema(module, includeTests)
+  }
+
+  /**
+   * Returns the schema of the given module, cached in the module. The scope is derived from the module inside the computation, so that
+   * nothing but the module itself is kept by the cached value.
+   */
+  private fun getModuleSchema(module: Module, includeTests: Boolean): RoomSchema? {
+    val key = if (includeTests) TEST_SCHEMA_KEY else MAIN_SCHEMA_KEY
+    return CachedValuesManager.getManager(project).getCachedValue(module, key, {
+      val scope = module.getModuleWithDependenciesAndLibrariesScope(includeTests)
+      CachedValueProvider.Result(buildSchema(scope), PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT)
+    }, false)
+  }
+
   /** Builds the schema using IJ indexes. */
-  private fun buildSchema(psiFile: PsiFile): RoomSchema? {
-    LOG.debug("Recalculating Room schema for file ", psiFile)
-    val scope = ResolveScopeManager.getInstance(project).getResolveScope(psiFile)
+  private fun buildSchema(scope: GlobalSearchScope): RoomSchema? {
+    LOG.debug("Recalculating Room schema for scope ", scope)
     val psiFacade = JavaPsiFacade.getInstance(project) ?: return null
 
     if (!isRoomPresent(psiFacade, scope)) return null
 
-    val entities = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.ENTITY, this::createEntity)
+    val entities = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.ENTITY, this::getEntity)
     val databases = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.DATABASE) { this.createDatabase(it, pointerManager) }
     val daos = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.DAO) { Dao(pointerManager.createSmartPsiElementPointer(it)) }
 
@@ -91,22 +126,53 @@ class RoomSchemaManager(val project: Project) {
     return result
   }
 
-  private fun createEntity(psiClass: PsiClass): Entity? {
+  /**
+   * Returns the [Entity] defined by the given class, cached in the class until one of the files it was computed from changes, so that
+   * a change to one class does not make all the entities of the project be computed again.
+   */
+  private fun getEntity(psiClass: PsiClass): Entity? = CachedValuesManager.getCachedValue(psiClass) {
+    val dependencies = HashSet<Any>()
+    val entity = createEntity(psiClass, dependencies)
+    CachedValueProvider.Result(entity, *dependencies.toTypedArray())
+  }
+
+  /**
+   * Computes the [Entity] defined by the given class, adding to [dependencies] the files it depends on, or
+   * [PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT] if it also depends on elements that could not be resolved or on constants
+   * defined elsewhere.
+   */
+  private fun createEntity(psiClass: PsiClass, dependencies: MutableSet<Any>): Entity? {
+    addClassDependencies(psiClass, dependencies)
+
     val (tableName, tableNameElement) = getNameAndNameElement(
       psiClass,
       annotationName = RoomAnnotations.ENTITY,
-      annotationAttributeName = "tableName"
+      annotationAttributeName = "tableName",
+      dependencies = dependencies
     ) ?: return null
 
     return Entity(
       pointerManager.createSmartPsiElementPointer(psiClass),
       tableName,
       pointerManager.createSmartPsiElementPointer(tableNameElement),
-      findColumns(psiClass).toSet()
+      findColumns(psiClass, dependencies).toSet()
     )
   }
 
-  private fun findColumns(psiClass: PsiClass, namePrefix: String = ""): Sequence<EntityColumn> {
+  /** Adds the files of the given class and of its super classes, which define the fields of the class. */
+  private fun addClassDependencies(psiClass: PsiClass, dependencies: MutableSet<Any>) {
+    val classes = HashSet<PsiClass>()
+    classes.add(psiClass)
+    InheritanceUtil.getSuperClasses(psiClass, classes, true)
+    for (aClass in classes) {
+      dependencies.add(aClass.containingFile ?: PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT)
+      if (aClass.extendsListTypes.any { it.resolve() == null }) {
+        dependencies.add(PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT)
+      }
+    }
+  }
+
+  private fun findColumns(psiClass: PsiClass, dependencies: MutableSet<Any>, namePrefix: String = ""): Sequence<EntityColumn> {
     return psiClass.allFields
       .asSequence()
       .filterNot { it.modifierList?.hasModifierProperty(PsiModifier.STATIC) == true }
@@ -114,12 +180,13 @@ class RoomSchemaManager(val project: Project) {
       .flatMap { psiField ->
         val embeddedAnnotation = psiField.modifierList?.findAnnotation(RoomAnnotations.EMBEDDED)
         if (embeddedAnnotation != null) {
-          findEmbeddedFields(psiField, embeddedAnnotation, namePrefix)
+          findEmbeddedFields(psiField, embeddedAnnotation, namePrefix, dependencies)
         } else {
           val thisField = getNameAndNameElement(
             psiField,
             annotationName = RoomAnnotations.COLUMN_INFO,
-            annotationAttributeName = "name"
+            annotationAttributeName = "name",
+            dependencies = dependencies
           )
             ?.let { (columnName, columnNameElement) ->
               EntityColumn(
@@ -137,16 +204,30 @@ class RoomSchemaManager(val project: Project) {
   private fun findEmbeddedFields(
     embeddedField: PsiField,
     embeddedAnnotation: PsiAnnotation,
-    currentPrefix: String
+    currentPrefix: String,
+    dependencies: MutableSet<Any>
   ): Sequence<EntityColumn> {
     val newPrefix = embeddedAnnotation.findAttributeValue("prefix")
+      ?.also { addValueDependencies(it, dependencies) }
       ?.let { constantEvaluationHelper.computeConstantExpression(it) }
       ?.toString()
         ?: ""
 
-    val embeddedClass = PsiUtil.resolveClassInClassTypeOnly(embeddedField.type) ?: return emptySequence()
+    val embeddedClass = PsiUtil.resolveClassInClassTypeOnly(embeddedField.type)
+    if (embeddedClass == null) {
+      dependencies.add(PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT)
+      return emptySequence()
+    }
+    addClassDependencies(embeddedClass, dependencies)
+
+    return findColumns(embeddedClass, dependencies, currentPrefix + newPrefix)
+  }
 
-    return findColumns(embeddedClass, currentPrefix + newPrefix)
+  /** Annotation values other than literals may refer to constants defined in other classes. */
+  private fun addValueDependencies(value: PsiAnnotationMemberValue, dependencies: MutableSet<Any>) {
+    if (value !is PsiLiteralExpression) {
+      dependencies.add(PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT)
+    }
   }
 
   private fun createDatabase(psiClass: PsiClass, pointerManager: SmartPointerManager): RoomDatabase? {
@@ -168,7 +249,8 @@ class RoomSchemaManager(val project: Project) {
   private fun <T> getNameAndNameElement(
     element: T,
     annotationName: AndroidxName,
-    annotationAttributeName: String
+    annotationAttributeName: String,
+    dependencies: MutableSet<Any>
   ): Pair<String, PsiElement>?
       where T : PsiModifierListOwner,
             T : PsiNamedElement {
@@ -176,6 +258,8 @@ class RoomSchemaManager(val project: Project) {
       ?.findAnnotation(annotationName)
       ?.findDeclaredAttributeValue(annotationAttributeName)
 
+    if (nameAttribute != null) addValueDependencies(nameAttribute, dependencies)
+
     val name = nameAttribute
       ?.let { constantEvaluationHelper.computeConstantExpression(it) }
       ?.toString()
@@ -133,6 +133,98 @@ class RoomSchemaManagerTest : RoomLightTestCase() {
     assertThat(entity.nameElement).isNotSameAs(entity.psiClass)
   }
 
+  fun testEntities_onlyChangedEntitiesAreRecomputed() {
+    val user = myFixture.addRoomEntity("com.example.User", "name" ofType "String")
+    val address = myFixture.addRoomEntity("com.example.Address", "street" ofType "String")
+
+    val schema = getSchema(user)
+    assertThat(getSchema(address)).isSameAs(schema)
+    val userEntity = schema.entities.single { it.name == "User" }
+    val addressEntity = schema.entities.single { it.name == "Address" }
+
+    myFixture.openFileInEditor(address.containingFile.virtualFile)
+    myFixture.editor.caretModel.moveToOffset(myFixture.editor.document.text.lastIndexOf('}'))
+    myFixture.type("int number; ")
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+
+    val newSchema = getSchema(user)
+    assertThat(newSchema).isNotSameAs(schema)
+    assertThat(newSchema.entities.single { it.name == "User" }).isSameAs(userEntity)
+    val newAddressEntity = newSchema.entities.single { it.name == "Address" }
+    assertThat(newAddressEntity).isNotSameAs(addressEntity)
+    assertThat(newAddressEntity.columns.map { it.name }).containsExactly("street", "number")
+  }
+
+  fun testEntities_superClassChangeRecomputesEntity() {
+    val base = myFixture.addClass(
+        """
+        package com.example;
+
+        public abstract class NamedBase {
+          private String name;
+        }
+        """.trimIndent())
+
+    val user = myFixture.addClass(
+        """
+        package com.example;
+
+        import androidx.room.Entity;
+
+        @Entity
+        public class User extends NamedBase {
+          private int age;
+        }
+        """.trimIndent())
+
+    val userEntity = getSchema(user).entities.single()
+    addFieldAtEnd(base, "String nickname; ")
+
+    val newUserEntity = getSchema(user).entities.single()
+    assertThat(newUserEntity).isNotSameAs(userEntity)
+    assertThat(newUserEntity.columns.map { it.name }).containsExactly("name", "nickname", "age")
+  }
+
+  fun testEntities_embeddedClassChangeRecomputesEntity() {
+    val address = myFixture.addClass(
+        """
+        package com.example;
+
+        public class Address {
+          private String street;
+        }
+        """.trimIndent())
+
+    val user = myFixture.addClass(
+        """
+        package com.example;
+
+        import androidx.room.Embedded;
+        import androidx.room.Entity;
+
+        @Entity
+        public class User {
+          private String name;
+          @Embedded(prefix = "home_") Address home;
+        }
+        """.trimIndent())
+
+    val userEntity = getSchema(user).entities.single()
+    assertThat(userEntity.columns.map { it.name }).containsExactly("name", "home_street")
+    addFieldAtEnd(address, "String city; ")
+
+    val newUserEntity = getSchema(user).entities.single()
+    assertThat(newUserEntity).isNotSameAs(userEntity)
+    assertThat(newUserEntity.columns.map { it.name }).containsExactly("name", "home_street", "home_city")
+  }
+
+  private fun addFieldAtEnd(psiClass: PsiElement, field: String) {
+    myFixture.openFileInEditor(psiClass.containingFile.virtualFile)
+    myFixture.editor.caretModel.moveToOffset(myFixture.editor.document.text.lastIndexOf('}'))
+    myFixture.type(field)
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+  }
+
   fun testDatabases_single() {
     myFixture.addRoomEntity("com.example.User")
     myFixture.addRoomEntity("com.example.Address")
@@ -56,6 +56,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -74,6 +75,8 @@ public class DeviceExplorerController {
   private static final String DEVICE_EXPLORER_BUSY_MESSAGE = "Device Explorer is busy, please retry later or cancel current operation";
   private static final long FILE_ENTRY_CREATION_TIMEOUT_MILLIS = 10_000;
   private static final long FILE_ENTRY_DELETION_TIMEOUT_MILLIS = 10_000;
+  /** Maximum number of files of a directory downloaded at the same time, each one using its own connection to the device */
+  private static final int MAX_PARALLEL_DOWNLOADS = 4;
 
   private int myShowLoadingNodeDelayMillis = 200;
   private int myTransferringNodeRepaintMillis = 100;
@@ -566,9 +569,8 @@ public class DeviceExplorerController {
      * shows various UI elements related to progress (and resets them when the operation
      * is over).
      *
-     * @param prepareTransfer An operation to run before the transfer, typically
+     * @param prepareTransfer An operation to run concurrently with the transfer, typically
      *                        to estimate the amount of work, used for tracking progress
-     *                        later on
      * @param performTransfer The transfer operation itself
      * @return A {@link ListenableFuture}&lt;{@link FileTransferSummary}&gt; that completes
      * when the whole transfer operation finishes. In case of cancellation, the future
@@ -593,11 +595,15 @@ public class DeviceExplorerController {
       Disposer.register(myProject, tracker);
 
       myView.startTreeBusyIndicator();
+      // Estimate the amount of work while transferring, instead of waiting for the estimate to start the transfer.
+      // The progress bar becomes determinate when the estimate is complete.
       ListenableFuture<Void> futurePrepare = prepareTransfer.apply(tracker);
-      ListenableFuture<Void> futureTransfer = myEdtExecutor.transformAsync(futurePrepare, aVoid -> {
+      myEdtExecutor.addListener(futurePrepare, () -> {
         tracker.setIndeterminate(false);
-        return performTransfer.apply(tracker);
+        tracker.showProgress();
       });
+      ListenableFuture<Void> futurePerform = performTransfer.apply(tracker);
+      ListenableFuture<Void> futureTransfer = myEdtExecutor.finallyAsync(futurePerform, () -> futurePrepare);
       myEdtExecutor.addListener(futureTransfer, myView::stopTreeBusyIndicator);
       myEdtExecutor.addListener(futureTransfer, () -> Disposer.dispose(tracker));
       return myEdtExecutor.transform(futureTransfer, aVoid -> tracker.getSummary());
@@ -713,16 +719,105 @@ public class DeviceExplorerController {
       }
       tracker.getSummary().addDirectoryCount(1);
 
+      // Download the whole directory in a single transfer if the file system supports it,
+      // otherwise download its entries one by one.
+      SettableFuture<Void> futureResult = SettableFuture.create();
+      ListenableFuture<Void> futureArchive = downloadDirectoryArchive(treeNode, localDirectoryPath, tracker);
+      myEdtExecutor.addCallback(futureArchive, new FutureCallback<Void>() {
+        @Override
+        public void onSuccess(@Nullable Void result) {
+          futureResult.set(null);
+        }
+
+        @Override
+        public void onFailure(@NotNull Throwable t) {
+          if (tracker.isCancelled()) {
+            futureResult.set(null);
+            return;
+          }
+          if (!(ExceptionUtil.getRootCause(t) instanceof UnsupportedOperationException)) {
+            LOGGER.info(String.format("Error downloading directory %s in a single transfer, downloading its entries one by one",
+                                      getUserFacingNodeName(treeNode)), t);
+          }
+          ListenableFuture<Void> futureEntries = downloadDirectoryEntries(treeNode, localDirectoryPath, tracker);
+          myEdtExecutor.addListener(futureEntries, () -> futureResult.set(null));
+        }
+      });
+      return futureResult;
+    }
+
+    @NotNull
+    private ListenableFuture<Void> downloadDirectoryArchive(@NotNull DeviceFileEntryNode treeNode,
+                                                            @NotNull Path localDirectoryPath,
+                                                            @NotNull FileTransferOperationTracker tracker) {
+      DeviceFileEntry entry = treeNode.getEntry();
+      startNodeDownload(treeNode);
+      AtomicLong archiveBytes = new AtomicLong();
+      ListenableFuture<DirectoryDownloadResult> futureDownload = entry.downloadDirectory(localDirectoryPath, new FileTransferProgress() {
+        @Override
+        public void progress(long currentBytes, long totalBytes) {
+          // Update progress UI
+          tracker.processFileBytes(currentBytes - archiveBytes.getAndSet(currentBytes));
+          tracker.setDownloadDirectoryText(entry, currentBytes);
+
+          // Update Tree UI
+          treeNode.setTransferProgress(currentBytes, totalBytes);
+        }
+
+        @Override
+        public boolean isCancelled() {
+          return tracker.isCancelled();
+        }
+      });
+      myEdtExecutor.addListener(futureDownload, () -> stopNodeDownload(treeNode));
+      logFuture(futureDownload, millis -> String.format("Downloaded directory in %,d msec: %s", millis, entry.getFullPath()));
+      ListenableFuture<DirectoryDownloadResult> futureResult = myEdtExecutor.catchingAsync(futureDownload, Throwable.class, t -> {
+        // The entries are downloaded again one by one, so the progress of the archive must not be counted twice
+        tracker.processFileBytes(-archiveBytes.getAndSet(0));
+        return Futures.immediateFailedFuture(t);
+      });
+      return myEdtExecutor.transform(futureResult, result -> {
+        assert result != null;
+        for (String skippedEntry : result.getSkippedEntries()) {
+          tracker.addProblem(new Exception(String.format("Entry \"%s\" of directory %s was not downloaded: " +
+                                                         "symbolic links and special files are not supported",
+                                                         skippedEntry, getUserFacingNodeName(treeNode))));
+        }
+
+        // Account for the extracted files and directories as if they had been downloaded one by one
+        tracker.processDirectories(result.getDirectoryCount());
+        tracker.getSummary().addDirectoryCount(result.getDirectoryCount());
+        tracker.processFiles(result.getFileCount());
+        tracker.getSummary().addFileCount(result.getFileCount());
+        tracker.getSummary().addByteCount(result.getByteCount());
+        return null;
+      });
+    }
+
+    @NotNull
+    private ListenableFuture<Void> downloadDirectoryEntries(@NotNull DeviceFileEntryNode treeNode,
+                                                            @NotNull Path localDirectoryPath,
+                                                            @NotNull FileTransferOperationTracker tracker) {
       SettableFuture<Void> futureResult = SettableFuture.create();
 
       ListenableFuture<Void> futureLoadChildren = loadNodeChildren(treeNode);
       myEdtExecutor.addCallback(futureLoadChildren, new FutureCallback<Void>() {
         @Override
         public void onSuccess(@Nullable Void result) {
-          ListenableFuture<Void> futureDownloadChildren = executeFuturesInSequence(treeNode.getChildEntryNodes().iterator(), node -> {
-            Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
-            return downloadSingleNode(node, nodePath, tracker);
-          });
+          // Download the files using several transfers in parallel, then the subdirectories one at a time
+          // so that the number of parallel transfers stays bounded.
+          Map<Boolean, List<DeviceFileEntryNode>> nodes = treeNode.getChildEntryNodes().stream()
+            .collect(Collectors.partitioningBy(x -> x.getEntry().isDirectory()));
+          ListenableFuture<Void> futureDownloadFiles = myEdtExecutor.executeFuturesInParallel(nodes.get(false).iterator(),
+                                                                                              MAX_PARALLEL_DOWNLOADS, node -> {
+              Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
+              return downloadSingleFile(node, nodePath, tracker);
+            });
+          ListenableFuture<Void> futureDownloadChildren = myEdtExecutor.transformAsync(futureDownloadFiles, aVoid ->
+            executeFuturesInSequence(nodes.get(true).iterator(), node -> {
+              Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
+              return downloadSingleDirectory(node, nodePath, tracker);
+            }));
           myEdtExecutor.addConsumer(futureDownloadChildren, (aVoid, throwable) -> {
             if (throwable != null) {
               tracker.addProblem(throwable);
@@ -796,6 +891,7 @@ public class DeviceExplorerController {
       myView.startTreeBusyIndicator();
       ListenableFuture<Void> futuresRefresh = executeFuturesInSequence(directoryNodes.iterator(), treeNode -> {
         treeNode.setLoaded(false);
+        treeNode.getEntry().invalidateEntries();
         return loadNodeChildren(treeNode);
       });
       myEdtExecutor.addListener(futuresRefresh, myView::stopTreeBusyIndicator);
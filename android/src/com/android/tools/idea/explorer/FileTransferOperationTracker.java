@@ -41,6 +41,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
   private int myTotalFileCount;
   @SuppressWarnings("unused") private int myCurrentDirectoryCount;
   @SuppressWarnings("unused") private int myTotalDirectoryCount;
+  private boolean myTransferStarted;
 
   public FileTransferOperationTracker(@NotNull DeviceExplorerView view) {
     super(view);
@@ -71,29 +72,41 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
       return;
     }
 
-    setProgress((double)myFinishedWorkUnits / (double)myTotalWorkUnits);
+    // The transfer starts before the work estimate is complete, so the finished work can exceed the total known so far
+    setProgress(Math.min(1.0, (double)myFinishedWorkUnits / (double)myTotalWorkUnits));
   }
 
   public void processDirectory() {
-    myFinishedWorkUnits += FileTransferWorkEstimator.getDirectoryWorkUnits();
-    myCurrentDirectoryCount++;
+    processDirectories(1);
+  }
+
+  public void processDirectories(int count) {
+    myFinishedWorkUnits += count * FileTransferWorkEstimator.getDirectoryWorkUnits();
+    myCurrentDirectoryCount += count;
+    myTransferStarted = true;
     showProgress();
   }
 
   public void processFile() {
-    myFinishedWorkUnits += FileTransferWorkEstimator.getFileWorkUnits();
-    myCurrentFileCount++;
+    processFiles(1);
+  }
+
+  public void processFiles(int count) {
+    myFinishedWorkUnits += count * FileTransferWorkEstimator.getFileWorkUnits();
+    myCurrentFileCount += count;
+    myTransferStarted = true;
     showProgress();
   }
 
   public void processFileBytes(long byteCount) {
     myFinishedWorkUnits += FileTransferWorkEstimator.getFileContentsWorkUnits(byteCount);
+    myTransferStarted = true;
     showProgress();
   }
 
   public void setUploadFileText(@NotNull VirtualFile file, long currentBytes, long totalBytes) {
     String text;
-    if (myTotalFileCount > 1) {
+    if (myTotalFileCount > 1 && myCurrentFileCount <= myTotalFileCount) {
       text = String.format("Uploading file %,d of %,d: \"%s\"",
                            myCurrentFileCount,
                            myTotalFileCount,
@@ -114,7 +127,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
 
   public void setDownloadFileText(@NotNull DeviceFileEntry entry, long currentBytes, long totalBytes) {
     String text;
-    if (myTotalFileCount > 1) {
+    if (myTotalFileCount > 1 && myCurrentFileCount <= myTotalFileCount) {
       text = String.format("Downloading file %,d of %,d: \"%s\"",
                            myCurrentFileCount,
                            myTotalFileCount,
@@ -132,6 +145,12 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
     setStatusText(text);
   }
 
+  public void setDownloadDirectoryText(@NotNull DeviceFileEntry entry, long currentBytes) {
+    setStatusText(String.format("Downloading directory \"%s\" (%s)",
+                                StringUtil.shortenPathWithEllipsis(entry.getFullPath(), MAX_PATH_DISPLAY_LENGTH),
+                                ApkViewPanel.getHumanizedSize(currentBytes)));
+  }
+
   public void addWorkEstimate(FileTransferWorkEstimate estimate) {
     myTotalFileCount += estimate.getFileCount();
     myTotalDirectoryCount += estimate.getDirectoryCount();
@@ -139,6 +158,11 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
   }
 
   public void setCalculatingText(int fileCount, int directoryCount) {
+    if (myTransferStarted) {
+      // The work estimate runs concurrently with the transfer, whose progress is more useful to show
+      return;
+    }
+
     // Note: We may be called for multiple directories or files, so we need
     // to add what we already know to the parameter value.
     fileCount += myTotalFileCount;
@@ -16,6 +16,7 @@
 package com.android.tools.idea.explorer.adbimpl;
 
 import com.android.tools.idea.explorer.fs.DeviceFileEntry;
+import com.android.tools.idea.explorer.fs.DirectoryDownloadResult;
 import com.android.tools.idea.explorer.fs.FileTransferProgress;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.jetbrains.annotations.NotNull;
@@ -241,6 +242,14 @@ public class AdbDeviceDataDirectoryEntry extends AdbDeviceForwardingFileEntry {
       return myDevice.getAdbFileTransfer().downloadFileViaTempLocation(getFullPath(), getSize(), localPath, progress, myPackageName);
     }
 
+    @NotNull
+    @Override
+    public ListenableFuture<DirectoryDownloadResult> downloadDirectory(@NotNull Path localPath, @NotNull FileTransferProgress progress) {
+      // Copying each file to a temp. location before pulling it takes several round-trips per file,
+      // so pack the whole directory in a single archive instead.
+      return myDevice.getAdbFileTransfer().downloadDirectoryViaTempArchive(getFullPath(), localPath, progress, myPackageName);
+    }
+
     @NotNull
     @Override
     public ListenableFuture<Void> uploadFile(@NotNull Path localPath, @NotNull String fileName, @NotNull FileTransferProgress progress) {
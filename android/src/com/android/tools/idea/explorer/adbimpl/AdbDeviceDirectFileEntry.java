@@ -51,7 +51,8 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
   @NotNull
   @Override
   public ListenableFuture<List<DeviceFileEntry>> getEntries() {
-    ListenableFuture<List<AdbFileListingEntry>> children = myDevice.getAdbFileListing().getChildrenRunAs(myEntry, myRunAs);
+    // The children are about to be shown, so get ready for them to be expanded and for their symbolic links to be resolved
+    ListenableFuture<List<AdbFileListingEntry>> children = myDevice.getAdbFileListing().getChildrenAndPrefetchRunAs(myEntry, myRunAs);
     return myDevice.getTaskExecutor().transform(children, result -> {
       assert result != null;
       return result.stream()
@@ -64,23 +65,25 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
   @Override
   public ListenableFuture<Void> delete() {
     if (isDirectory()) {
-      return myDevice.getAdbFileOperations().deleteRecursiveRunAs(getFullPath(), myRunAs);
+      return invalidateListing(myDevice.getAdbFileOperations().deleteRecursiveRunAs(getFullPath(), myRunAs), getFullPath());
     }
     else {
-      return myDevice.getAdbFileOperations().deleteFileRunAs(getFullPath(), myRunAs);
+      return invalidateListing(myDevice.getAdbFileOperations().deleteFileRunAs(getFullPath(), myRunAs), getFullPath());
     }
   }
 
   @NotNull
   @Override
   public ListenableFuture<Void> createNewFile(@NotNull String fileName) {
-    return myDevice.getAdbFileOperations().createNewFileRunAs(getFullPath(), fileName, myRunAs);
+    return invalidateListing(myDevice.getAdbFileOperations().createNewFileRunAs(getFullPath(), fileName, myRunAs),
+                             AdbPathUtil.resolve(getFullPath(), fileName));
   }
 
   @NotNull
   @Override
   public ListenableFuture<Void> createNewDirectory(@NotNull String directoryName) {
-    return myDevice.getAdbFileOperations().createNewDirectoryRunAs(getFullPath(), directoryName, myRunAs);
+    return invalidateListing(myDevice.getAdbFileOperations().createNewDirectoryRunAs(getFullPath(), directoryName, myRunAs),
+                             AdbPathUtil.resolve(getFullPath(), directoryName));
   }
 
   @NotNull
@@ -124,7 +127,7 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
 
     ListenableFuture<Boolean> futureShouldCreateRemote = myDevice.getTaskExecutor().executeAsync(this::isDeviceSuAndNotRoot);
 
-    return myDevice.getTaskExecutor().transformAsync(futureShouldCreateRemote, shouldCreateRemote -> {
+    return invalidateListing(myDevice.getTaskExecutor().transformAsync(futureShouldCreateRemote, shouldCreateRemote -> {
       assert shouldCreateRemote != null;
       if (shouldCreateRemote) {
         ListenableFuture<Void> futureTouchFile = myDevice.getAdbFileOperations().touchFileAsDefaultUser(remotePath);
@@ -141,7 +144,16 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
         // Regular upload if root or su not supported (i.e. user devices)
         return myDevice.getAdbFileTransfer().uploadFile(localPath, remotePath, progress);
       }
-    });
+    }), remotePath);
+  }
+
+  /**
+   * Discards the listings prefetched by {@link AdbFileListing#prefetchRunAs} that {@code future} makes obsolete
+   */
+  @NotNull
+  private <V> ListenableFuture<V> invalidateListing(@NotNull ListenableFuture<V> future, @NotNull String path) {
+    myDevice.getTaskExecutor().addListener(future, () -> myDevice.getAdbFileListing().invalidate(path));
+    return future;
   }
 
   private static boolean isSyncPermissionError(@NotNull SyncException pullError) {
@@ -81,6 +81,11 @@ public abstract class AdbDeviceFileEntry implements DeviceFileEntry {
     return new AdbDateTime(myEntry.getDate(), myEntry.getTime());
   }
 
+  @Override
+  public void invalidateEntries() {
+    myDevice.getAdbFileListing().invalidate(getFullPath());
+  }
+
   @Override
   public long getSize() {
     return myEntry.getSize();
@@ -20,21 +20,29 @@ import com.android.ddmlib.IDevice;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
 import com.android.tools.idea.concurrent.FutureCallbackExecutor;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import static com.android.ddmlib.FileListingService.FILE_SEPARATOR;
 import static com.android.ddmlib.FileListingService.LS_LD_PATTERN;
 import static com.android.ddmlib.FileListingService.LS_L_PATTERN;
 
@@ -42,10 +50,26 @@ public class AdbFileListing {
   @NotNull public static final Logger LOGGER = Logger.getInstance(AdbFileListing.class);
   @NotNull private static final Pattern BACKSLASH = Pattern.compile("\\", Pattern.LITERAL);
 
+  /**
+   * How long the results of a {@link #prefetchRunAs prefetch} can be used. They are also used only once, so
+   * listing a directory again always goes to the device.
+   */
+  private static final long PREFETCH_TTL_NANOS = TimeUnit.SECONDS.toNanos(10);
+  /** Older devices reject long shell commands, so a prefetch only includes the paths that fit in this length */
+  private static final int MAX_PREFETCH_PATHS_LENGTH = 2000;
+  private static final int MAX_PREFETCH_DIRECTORIES = 32;
+  @NotNull private static final String BATCH_DIRECTORY_MARKER = "--ls-batch-directory--";
+  @NotNull private static final String BATCH_ERROR_MARKER = "--ls-batch-error--";
+  @NotNull private static final String BATCH_LINK_MARKER = "--ls-batch-link--";
+
   @NotNull private final IDevice myDevice;
   @NotNull private AdbDeviceCapabilities myDeviceCapabilities;
   @NotNull private final FutureCallbackExecutor myExecutor;
   @NotNull private final AdbFileListingEntry myRoot;
+  /** Prefetched children, by run-as package name and directory path */
+  @NotNull private final Map<Pair<String, String>, Prefetched<List<AdbFileListingEntry>>> myPrefetchedChildren = new ConcurrentHashMap<>();
+  /** Prefetched results of {@link #isDirectoryLinkRunAs}, by run-as package name and link path */
+  @NotNull private final Map<Pair<String, String>, Prefetched<Boolean>> myPrefetchedLinks = new ConcurrentHashMap<>();
 
   public AdbFileListing(@NotNull IDevice device, @NotNull AdbDeviceCapabilities deviceCapabilities, @NotNull Executor taskExecutor) {
     myDevice = device;
@@ -67,6 +91,42 @@ public class AdbFileListing {
   @NotNull
   public ListenableFuture<List<AdbFileListingEntry>> getChildrenRunAs(@NotNull AdbFileListingEntry parentEntry,
                                                                       @Nullable String runAs) {
+    ListenableFuture<List<AdbFileListingEntry>> prefetched = takePrefetched(myPrefetchedChildren, parentEntry.getFullPath(), runAs);
+    if (prefetched != null) {
+      // If the directory could not be listed in the batch, list it on its own to report the actual error
+      return myExecutor.catchingAsync(prefetched, Throwable.class, t -> listChildrenRunAs(parentEntry, runAs));
+    }
+    return listChildrenRunAs(parentEntry, runAs);
+  }
+
+  /**
+   * Same as {@link #getChildrenRunAs}, and also {@link #prefetchRunAs prefetches} what is needed for the children when they were
+   * listed from the device. Children that were themselves prefetched do not start another prefetch, so prefetching never goes more
+   * than one level below the directories that were actually listed.
+   */
+  @NotNull
+  public ListenableFuture<List<AdbFileListingEntry>> getChildrenAndPrefetchRunAs(@NotNull AdbFileListingEntry parentEntry,
+                                                                                 @Nullable String runAs) {
+    ListenableFuture<List<AdbFileListingEntry>> prefetched = takePrefetched(myPrefetchedChildren, parentEntry.getFullPath(), runAs);
+    if (prefetched != null) {
+      return myExecutor.catchingAsync(prefetched, Throwable.class, t -> listChildrenAndPrefetchRunAs(parentEntry, runAs));
+    }
+    return listChildrenAndPrefetchRunAs(parentEntry, runAs);
+  }
+
+  @NotNull
+  private ListenableFuture<List<AdbFileListingEntry>> listChildrenAndPrefetchRunAs(@NotNull AdbFileListingEntry parentEntry,
+                                                                                   @Nullable String runAs) {
+    return myExecutor.transform(listChildrenRunAs(parentEntry, runAs), children -> {
+      assert children != null;
+      prefetchRunAs(children, runAs);
+      return children;
+    });
+  }
+
+  @NotNull
+  private ListenableFuture<List<AdbFileListingEntry>> listChildrenRunAs(@NotNull AdbFileListingEntry parentEntry,
+                                                                        @Nullable String runAs) {
     return myExecutor.executeAsync(() -> {
       // Run "ls -l" command and process matching output lines
       String command = getCommand(runAs, "ls -l ").withDirectoryEscapedPath(parentEntry.getFullPath()).build(); //$NON-NLS-1$
@@ -104,6 +164,15 @@ public class AdbFileListing {
       return Futures.immediateFuture(false);
     }
 
+    ListenableFuture<Boolean> prefetched = takePrefetched(myPrefetchedLinks, entry.getFullPath(), runAs);
+    if (prefetched != null) {
+      return myExecutor.catchingAsync(prefetched, Throwable.class, t -> isDirectoryLinkImpl(entry, runAs));
+    }
+    return isDirectoryLinkImpl(entry, runAs);
+  }
+
+  @NotNull
+  private ListenableFuture<Boolean> isDirectoryLinkImpl(@NotNull AdbFileListingEntry entry, @Nullable String runAs) {
     return myExecutor.executeAsync(() -> {
       // We simply need to determine whether the referent is a directory or not.
       // We do this by running `ls -ld ${link}/`.  If the referent exists and is a
@@ -130,6 +199,179 @@ public class AdbFileListing {
     });
   }
 
+  /**
+   * Lists the subdirectories of {@code entries} and determines which symbolic links of {@code entries} point to a
+   * directory, all with a single shell command, so that the next calls to {@link #getChildrenRunAs} and
+   * {@link #isDirectoryLinkRunAs} for these entries do not need a round-trip to the device each. This is typically
+   * called with the children of a directory that was just listed, i.e. the entries that are now visible.
+   * <p>
+   * The results are only used once, within a few seconds, and the future completes when they are available. Entries
+   * that could not be processed in the batch are processed on their own when they are requested.
+   */
+  @NotNull
+  public ListenableFuture<Void> prefetchRunAs(@NotNull List<AdbFileListingEntry> entries, @Nullable String runAs) {
+    long now = System.nanoTime();
+    myPrefetchedChildren.values().removeIf(x -> x.isExpired(now));
+    myPrefetchedLinks.values().removeIf(x -> x.isExpired(now));
+
+    List<AdbFileListingEntry> directories = new ArrayList<>();
+    List<AdbFileListingEntry> links = new ArrayList<>();
+    int pathsLength = 0;
+    for (AdbFileListingEntry entry : entries) {
+      boolean isDirectory = entry.isDirectory() && directories.size() < MAX_PREFETCH_DIRECTORIES;
+      if (!isDirectory && !entry.isSymbolicLink()) {
+        continue;
+      }
+      pathsLength += AdbPathUtil.getEscapedPath(entry.getFullPath()).length() + 2;
+      if (pathsLength > MAX_PREFETCH_PATHS_LENGTH) {
+        break;
+      }
+      (isDirectory ? directories : links).add(entry);
+    }
+    if (directories.isEmpty() && links.isEmpty()) {
+      return Futures.immediateFuture(null);
+    }
+
+    // Register the results before running the command, so that requests made in the meantime wait for it
+    List<SettableFuture<List<AdbFileListingEntry>>> children = new ArrayList<>();
+    for (AdbFileListingEntry directory : directories) {
+      SettableFuture<List<AdbFileListingEntry>> future = SettableFuture.create();
+      myPrefetchedChildren.put(Pair.create(runAs, directory.getFullPath()), new Prefetched<>(future, now));
+      children.add(future);
+    }
+    List<SettableFuture<Boolean>> isDirectoryLinks = new ArrayList<>();
+    for (AdbFileListingEntry link : links) {
+      SettableFuture<Boolean> future = SettableFuture.create();
+      myPrefetchedLinks.put(Pair.create(runAs, link.getFullPath()), new Prefetched<>(future, now));
+      isDirectoryLinks.add(future);
+    }
+
+    ListenableFuture<Void> futureResult = myExecutor.executeAsync(() -> {
+      try {
+        runBatchCommand(directories, children, links, isDirectoryLinks, runAs);
+      }
+      finally {
+        AdbShellCommandException error = new AdbShellCommandException("Entry not found in the output of the batch listing command");
+        children.forEach(x -> x.setException(error));
+        isDirectoryLinks.forEach(x -> x.setException(error));
+      }
+      return null;
+    });
+    myExecutor.addCallback(futureResult, new FutureCallback<Void>() {
+      @Override
+      public void onSuccess(@Nullable Void result) {
+      }
+
+      @Override
+      public void onFailure(@NotNull Throwable t) {
+        LOGGER.info("Error prefetching directory entries", t);
+      }
+    });
+    return futureResult;
+  }
+
+  /**
+   * Discards the prefetched results for {@code path}, its parent directory and all the entries below it,
+   * when the contents of the device file system changed.
+   */
+  public void invalidate(@NotNull String path) {
+    String parentPath = AdbPathUtil.getParentPath(path);
+    String prefix = path.endsWith(FILE_SEPARATOR) ? path : path + FILE_SEPARATOR;
+    myPrefetchedChildren.keySet().removeIf(x -> x.second.equals(path) || x.second.equals(parentPath) || x.second.startsWith(prefix));
+    myPrefetchedLinks.keySet().removeIf(x -> x.second.equals(path) || x.second.startsWith(prefix));
+  }
+
+  /**
+   * Runs a command like
+   * <pre>
+   *   for p in /dir1/ /dir2/; do echo MARKER; ls -l "$p" || echo ERROR; done;
+   *   for p in /link1/ /link2/; do ls -l -d "$p" >/dev/null 2>&1 && echo LINK1 || echo LINK0; done
+   * </pre>
+   * and completes the futures with the matching sections of its output.
+   */
+  private void runBatchCommand(@NotNull List<AdbFileListingEntry> directories,
+                               @NotNull List<SettableFuture<List<AdbFileListingEntry>>> children,
+                               @NotNull List<AdbFileListingEntry> links,
+                               @NotNull List<SettableFuture<Boolean>> isDirectoryLinks,
+                               @Nullable String runAs)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    AdbShellCommandBuilder command = getCommand(runAs, "");
+    if (!directories.isEmpty()) {
+      command.withText("for p in");
+      directories.forEach(x -> command.withText(" ").withDirectoryEscapedPath(x.getFullPath()));
+      command.withText("; do echo " + BATCH_DIRECTORY_MARKER + "; ls -l \"$p\" || echo " + BATCH_ERROR_MARKER + "; done");
+    }
+    if (!links.isEmpty()) {
+      if (!directories.isEmpty()) {
+        command.withText("; ");
+      }
+      command.withText("for p in");
+      links.forEach(x -> command.withText(" ").withDirectoryEscapedPath(x.getFullPath()));
+      command.withText("; do ls -l -d \"$p\" >/dev/null 2>&1 && echo " + BATCH_LINK_MARKER + "1 || echo " + BATCH_LINK_MARKER + "0; done");
+    }
+
+    AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommandNoErrorCheck(myDevice, command.build());
+    boolean escaping = myDeviceCapabilities.hasEscapingLs();
+
+    int directoryIndex = -1;
+    int linkIndex = 0;
+    List<AdbFileListingEntry> entries = new ArrayList<>();
+    boolean isError = false;
+    for (String line : commandResult.getOutput()) {
+      boolean isDirectoryMarker = line.equals(BATCH_DIRECTORY_MARKER);
+      boolean isLinkMarker = line.startsWith(BATCH_LINK_MARKER);
+      if (isDirectoryMarker || isLinkMarker) {
+        if (directoryIndex >= 0 && directoryIndex < directories.size()) {
+          setChildren(children.get(directoryIndex), entries, isError, directories.get(directoryIndex));
+        }
+        entries = new ArrayList<>();
+        isError = false;
+        directoryIndex = isDirectoryMarker ? directoryIndex + 1 : directories.size();
+        if (isLinkMarker && linkIndex < links.size()) {
+          isDirectoryLinks.get(linkIndex++).set(line.endsWith("1"));
+        }
+      }
+      else if (directoryIndex >= 0 && directoryIndex < directories.size()) {
+        if (line.equals(BATCH_ERROR_MARKER)) {
+          isError = true;
+        }
+        else {
+          AdbFileListingEntry entry = processLsOutputLine(line, escaping, directories.get(directoryIndex));
+          if (entry != null) {
+            entries.add(entry);
+          }
+        }
+      }
+    }
+    if (directoryIndex >= 0 && directoryIndex < directories.size()) {
+      setChildren(children.get(directoryIndex), entries, isError, directories.get(directoryIndex));
+    }
+  }
+
+  private static void setChildren(@NotNull SettableFuture<List<AdbFileListingEntry>> future,
+                                  @NotNull List<AdbFileListingEntry> entries,
+                                  boolean isError,
+                                  @NotNull AdbFileListingEntry directory) {
+    // Same as listing the directory on its own: errors only matter if nothing was listed
+    if (entries.isEmpty() && isError) {
+      future.setException(new AdbShellCommandException(String.format("Error listing directory \"%s\"", directory.getFullPath())));
+    }
+    else {
+      future.set(entries);
+    }
+  }
+
+  @Nullable
+  private static <V> ListenableFuture<V> takePrefetched(@NotNull Map<Pair<String, String>, Prefetched<V>> prefetched,
+                                                        @NotNull String path,
+                                                        @Nullable String runAs) {
+    Prefetched<V> result = prefetched.remove(Pair.create(runAs, path));
+    if (result == null || result.isExpired(System.nanoTime())) {
+      return null;
+    }
+    return result.myFuture;
+  }
+
   @Nullable
   private static AdbFileListingEntry processLsOutputLine(@NotNull String line, boolean escaping, @NotNull AdbFileListingEntry parentEntry) {
     // no need to handle empty lines.
@@ -229,4 +471,18 @@ public class AdbFileListing {
     }
     return command.withText(text);
   }
-}
\ No newline at end of file
+
+  private static final class Prefetched<V> {
+    @NotNull private final ListenableFuture<V> myFuture;
+    private final long myStartNanos;
+
+    Prefetched(@NotNull ListenableFuture<V> future, long startNanos) {
+      myFuture = future;
+      myStartNanos = startNanos;
+    }
+
+    boolean isExpired(long nowNanos) {
+      return nowNanos - myStartNanos > PREFETCH_TTL_NANOS;
+    }
+  }
+}
@@ -237,6 +237,24 @@ public class AdbFileOperations {
     });
   }
 
+  /**
+   * Packs the contents of the {@code directory} (but not the directory itself) in the tar archive file {@code archive}.
+   * The future fails with an {@link AdbShellCommandException} if the device does not have a "tar" command.
+   */
+  @NotNull
+  public ListenableFuture<Void> createArchiveRunAs(@NotNull String directory, @NotNull String archive, @Nullable String runAs) {
+    return myExecutor.executeAsync(() -> {
+      if (!myDeviceCapabilities.supportsTarCommand()) {
+        throw new AdbShellCommandException("Device does not support the \"tar\" command");
+      }
+      String command = getCommand(runAs, "tar -cf ").withEscapedPath(archive).withText(" -C ").withDirectoryEscapedPath(directory)
+        .withText(" .").build();
+      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command);
+      commandResult.throwIfError();
+      return null;
+    });
+  }
+
   @NotNull
   public ListenableFuture<String> createTempFile(@NotNull String tempPath) {
     return createTempFileRunAs(tempPath, null);
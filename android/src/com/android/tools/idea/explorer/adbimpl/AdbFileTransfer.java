@@ -20,6 +20,7 @@ import com.android.ddmlib.SyncException;
 import com.android.ddmlib.SyncService;
 import com.android.tools.idea.concurrent.EdtExecutor;
 import com.android.tools.idea.concurrent.FutureCallbackExecutor;
+import com.android.tools.idea.explorer.fs.DirectoryDownloadResult;
 import com.android.tools.idea.explorer.fs.FileTransferProgress;
 import com.android.tools.idea.explorer.fs.ThrottledProgress;
 import com.google.common.util.concurrent.Futures;
@@ -29,6 +30,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.concurrent.Executor;
 
@@ -94,6 +96,43 @@ public class AdbFileTransfer {
   }
 
 
+  /**
+   * Downloads the contents of the remote directory {@code remotePath}, and of all its subdirectories,
+   * to the local directory {@code localPath} by packing them in a single archive in a temp. location
+   * of the device, then pulling and extracting the archive. This requires a single sync transfer
+   * instead of one per file, which makes a big difference for directories containing many small
+   * files. The future fails with an {@link AdbShellCommandException} if the device does not support
+   * creating archives.
+   */
+  @NotNull
+  public ListenableFuture<DirectoryDownloadResult> downloadDirectoryViaTempArchive(@NotNull String remotePath,
+                                                                                  @NotNull Path localPath,
+                                                                                  @NotNull FileTransferProgress progress,
+                                                                                  @Nullable String runAs) {
+    ListenableFuture<String> futureTempFile = myFileOperations.createTempFile(DEVICE_TEMP_DIRECTORY);
+    return myTaskExecutor.transformAsync(futureTempFile, tempFile -> {
+      assert tempFile != null;
+
+      // Pack the remote directory into the temporary remote location
+      ListenableFuture<Void> futureArchive = myFileOperations.createArchiveRunAs(remotePath, tempFile, runAs);
+      ListenableFuture<DirectoryDownloadResult> futureDownload = myTaskExecutor.transformAsync(futureArchive, aVoid -> {
+        // Download the archive to a local temporary file (the size of the archive is not known), then extract it
+        Path localArchive = Files.createTempFile("device-explorer", ".tar");
+        ListenableFuture<Void> futurePull = downloadFile(tempFile, 0, localArchive, progress);
+        ListenableFuture<DirectoryDownloadResult> futureExtract =
+          myTaskExecutor.transform(futurePull, aVoid2 -> TarArchiveExtractor.extract(localArchive, localPath));
+        return myTaskExecutor.finallyAsync(futureExtract, () -> {
+          Files.deleteIfExists(localArchive);
+          return Futures.immediateFuture(null);
+        });
+      });
+
+      // Ensure temporary remote file is deleted in all cases (after download success *or* error)
+      return myTaskExecutor.finallyAsync(futureDownload,
+                                         () -> myFileOperations.deleteFile(tempFile));
+    });
+  }
+
   @NotNull
   public ListenableFuture<Void> uploadFile(@NotNull Path localPath,
                                            @NotNull String remotePath,
@@ -238,7 +277,9 @@ public class AdbFileTransfer {
 
     @Override
     public void stop() {
-      myCallbackExecutor.execute(() -> myProgress.progress(myTotalBytes, myTotalBytes));
+      // If the size was not known in advance, the total is what was transferred
+      long totalBytes = myTotalBytes > 0 ? myTotalBytes : myCurrentBytes;
+      myCallbackExecutor.execute(() -> myProgress.progress(totalBytes, totalBytes));
     }
 
     @Override
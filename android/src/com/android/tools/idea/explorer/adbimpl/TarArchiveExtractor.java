@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import com.android.tools.idea.explorer.fs.DirectoryDownloadResult;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the tar archives created by the "tar" command of the device (toybox) to a local directory.
+ *
+ * <p>Only directories and regular files are extracted, other entries (e.g. symbolic links) are skipped and
+ * returned so that they can be reported, along with the number of directories, files and bytes that were written.
+ * Long names are supported in both the GNU ("L" entries) and the POSIX ("x" entries with a "path" record)
+ * formats.
+ */
+final class TarArchiveExtractor {
+  @NotNull private static final Logger LOGGER = Logger.getInstance(TarArchiveExtractor.class);
+  private static final int BLOCK_SIZE = 512;
+
+  @NotNull private final InputStream myInput;
+  @NotNull private final Path myDirectory;
+  @NotNull private final byte[] myHeader = new byte[BLOCK_SIZE];
+  @NotNull private final byte[] myBuffer = new byte[64 * 1024];
+  @NotNull private final List<String> mySkippedEntries = new ArrayList<>();
+  private int myDirectoryCount;
+  private int myFileCount;
+  private long myByteCount;
+
+  private TarArchiveExtractor(@NotNull InputStream input, @NotNull Path directory) {
+    myInput = input;
+    myDirectory = directory.toAbsolutePath().normalize();
+  }
+
+  /**
+   * Extracts the contents of the {@code archive} file into {@code directory}, creating it if needed, and returns what was
+   * extracted and the names of the entries that were skipped
+   */
+  @NotNull
+  static DirectoryDownloadResult extract(@NotNull Path archive, @NotNull Path directory) throws IOException {
+    try (InputStream input = new BufferedInputStream(Files.newInputStream(archive))) {
+      TarArchiveExtractor extractor = new TarArchiveExtractor(input, directory);
+      extractor.extractAll();
+      return new DirectoryDownloadResult(extractor.mySkippedEntries, extractor.myDirectoryCount, extractor.myFileCount,
+                                         extractor.myByteCount);
+    }
+  }
+
+  private void extractAll() throws IOException {
+    Files.createDirectories(myDirectory);
+
+    String longName = null;
+    while (readBlock(myHeader)) {
+      if (isZeroBlock(myHeader)) {
+        // End of archive
+        return;
+      }
+      verifyChecksum();
+
+      String name = longName != null ? longName : getName();
+      longName = null;
+      long size = parseNumber(124, 12);
+      char type = (char)myHeader[156];
+      switch (type) {
+        case 'L':
+          longName = trimName(new String(readData(size), StandardCharsets.UTF_8));
+          break;
+        case 'x':
+          longName = getPaxPath(readData(size));
+          break;
+        case '5':
+          skipData(size);
+          Path directory = resolve(name);
+          Files.createDirectories(directory);
+          if (!directory.equals(myDirectory)) {
+            myDirectoryCount++;
+          }
+          break;
+        case '0':
+        case '\0':
+        case '7':
+          extractFile(resolve(name), size);
+          break;
+        default:
+          LOGGER.info(String.format("Skipping entry \"%s\" of type '%c' from archive", name, type));
+          mySkippedEntries.add(trimName(name));
+          skipData(size);
+          break;
+      }
+    }
+  }
+
+  @NotNull
+  private String getName() {
+    String name = getString(0, 100);
+    if (getString(257, 5).equals("ustar")) {
+      String prefix = getString(345, 155);
+      if (!prefix.isEmpty()) {
+        name = prefix + "/" + name;
+      }
+    }
+    return name;
+  }
+
+  /**
+   * Returns the "path" record of a POSIX extended header, made of records like "30 path=some/long/file/name\n"
+   */
+  @Nullable
+  private static String getPaxPath(@NotNull byte[] data) throws IOException {
+    String path = null;
+    int offset = 0;
+    while (offset < data.length) {
+      int space = offset;
+      while (space < data.length && data[space] != ' ') {
+        space++;
+      }
+      int length;
+      try {
+        length = Integer.parseInt(new String(data, offset, space - offset, StandardCharsets.UTF_8));
+      }
+      catch (NumberFormatException e) {
+        throw new IOException("Invalid extended header in archive", e);
+      }
+      if (length <= space - offset || offset + length > data.length) {
+        throw new IOException("Invalid extended header in archive");
+      }
+      String record = new String(data, space + 1, offset + length - space - 2, StandardCharsets.UTF_8);
+      if (record.startsWith("path=")) {
+        path = record.substring("path=".length());
+      }
+      offset += length;
+    }
+    return path;
+  }
+
+  private void extractFile(@NotNull Path path, long size) throws IOException {
+    Files.createDirectories(path.getParent());
+    try (OutputStream output = Files.newOutputStream(path)) {
+      long remaining = size;
+      while (remaining > 0) {
+        int count = (int)Math.min(remaining, myBuffer.length);
+        readFully(myBuffer, count);
+        output.write(myBuffer, 0, count);
+        remaining -= count;
+      }
+    }
+    skipPadding(size);
+    myFileCount++;
+    myByteCount += size;
+  }
+
+  @NotNull
+  private byte[] readData(long size) throws IOException {
+    if (size > Integer.MAX_VALUE - BLOCK_SIZE) {
+      throw new IOException("Invalid header size in archive");
+    }
+    byte[] data = new byte[(int)size];
+    readFully(data, data.length);
+    skipPadding(size);
+    return data;
+  }
+
+  private void skipData(long size) throws IOException {
+    long remaining = size + getPadding(size);
+    while (remaining > 0) {
+      int count = (int)Math.min(remaining, myBuffer.length);
+      readFully(myBuffer, count);
+      remaining -= count;
+    }
+  }
+
+  private void skipPadding(long size) throws IOException {
+    readFully(myBuffer, getPadding(size));
+  }
+
+  private static int getPadding(long size) {
+    return (int)((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+  }
+
+  /**
+   * Resolves an entry name against the destination directory, rejecting names that would go outside of it
+   */
+  @NotNull
+  private Path resolve(@NotNull String name) throws IOException {
+    Path path = myDirectory.resolve(trimName(name)).normalize();
+    if (!path.startsWith(myDirectory)) {
+      throw new IOException(String.format("Invalid entry \"%s\" in archive", name));
+    }
+    return path;
+  }
+
+  @NotNull
+  private static String trimName(@NotNull String name) {
+    while (name.startsWith("./")) {
+      name = name.substring(2);
+    }
+    while (name.startsWith("/")) {
+      name = name.substring(1);
+    }
+    int end = name.indexOf('\0');
+    return end < 0 ? name : name.substring(0, end);
+  }
+
+  private void verifyChecksum() throws IOException {
+    long expected = parseNumber(148, 8);
+    long actual = 0;
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      // The checksum field itself counts as spaces
+      actual += i >= 148 && i < 156 ? ' ' : (myHeader[i] & 0xFF);
+    }
+    if (actual != expected) {
+      throw new IOException("Invalid header checksum in archive");
+    }
+  }
+
+  /**
+   * Parses a numeric header field, either in octal or in the base-256 encoding used for large values
+   */
+  private long parseNumber(int offset, int length) throws IOException {
+    if ((myHeader[offset] & 0x80) != 0) {
+      long value = myHeader[offset] & 0x7F;
+      for (int i = offset + 1; i < offset + length; i++) {
+        value = (value << 8) | (myHeader[i] & 0xFF);
+      }
+      return value;
+    }
+
+    long value = 0;
+    for (int i = offset; i < offset + length; i++) {
+      byte b = myHeader[i];
+      if (b == 0 || b == ' ') {
+        if (value != 0 || i > offset && myHeader[i - 1] >= '0') {
+          break;
+        }
+        continue;
+      }
+      if (b < '0' || b > '7') {
+        throw new IOException("Invalid numeric field in archive header");
+      }
+      value = value * 8 + (b - '0');
+    }
+    return value;
+  }
+
+  @NotNull
+  private String getString(int offset, int length) {
+    int end = offset;
+    while (end < offset + length && myHeader[end] != 0) {
+      end++;
+    }
+    return new String(myHeader, offset, end - offset, StandardCharsets.UTF_8);
+  }
+
+  private static boolean isZeroBlock(@NotNull byte[] block) {
+    for (byte b : block) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads a whole block, returning false if the end of the archive was reached
+   */
+  private boolean readBlock(@NotNull byte[] block) throws IOException {
+    int count = 0;
+    while (count < block.length) {
+      int read = myInput.read(block, count, block.length - count);
+      if (read < 0) {
+        if (count == 0) {
+          return false;
+        }
+        throw new EOFException("Unexpected end of archive");
+      }
+      count += read;
+    }
+    return true;
+  }
+
+  private void readFully(@NotNull byte[] buffer, int length) throws IOException {
+    int count = 0;
+    while (count < length) {
+      int read = myInput.read(buffer, count, length - count);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of archive");
+      }
+      count += read;
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.explorer.fs;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -56,6 +57,13 @@ public interface DeviceFileEntry {
   @NotNull
   ListenableFuture<List<DeviceFileEntry>> getEntries();
 
+  /**
+   * Discards what the file system may have fetched ahead of time about this entry and the entries below it, so that the next
+   * {@link #getEntries()} reflects the current contents of the device. This is called when the user explicitly asks for a refresh.
+   */
+  default void invalidateEntries() {
+  }
+
   /**
    * Deletes the entry from the device file system.
    */
@@ -93,6 +101,18 @@ public interface DeviceFileEntry {
   ListenableFuture<Void> downloadFile(@NotNull Path localPath,
                                       @NotNull FileTransferProgress progress);
 
+  /**
+   * Downloads the contents of this directory, including all its subdirectories, to a local directory
+   * in a single transfer. The future fails with an {@link UnsupportedOperationException} if the file system
+   * cannot do this for this entry, in which case the entries should be downloaded one by one. Otherwise it completes
+   * with what was written to {@code localPath} and the entries that could not be downloaded (e.g. symbolic links).
+   */
+  @NotNull
+  default ListenableFuture<DirectoryDownloadResult> downloadDirectory(@NotNull Path localPath,
+                                                                      @NotNull FileTransferProgress progress) {
+    return Futures.immediateFailedFuture(new UnsupportedOperationException("Directory cannot be downloaded in a single transfer"));
+  }
+
   /**
    * Uploads the contents of a local file to a remote {@link DeviceFileEntry} directory.
    */
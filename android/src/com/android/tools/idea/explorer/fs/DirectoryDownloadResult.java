@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.fs;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * The outcome of a {@link DeviceFileEntry#downloadDirectory} call: what was written to the local directory
+ * and the entries that could not be downloaded.
+ */
+public final class DirectoryDownloadResult {
+  @NotNull private final List<String> mySkippedEntries;
+  private final int myDirectoryCount;
+  private final int myFileCount;
+  private final long myByteCount;
+
+  public DirectoryDownloadResult(@NotNull List<String> skippedEntries, int directoryCount, int fileCount, long byteCount) {
+    mySkippedEntries = ImmutableList.copyOf(skippedEntries);
+    myDirectoryCount = directoryCount;
+    myFileCount = fileCount;
+    myByteCount = byteCount;
+  }
+
+  /**
+   * The paths, relative to the local directory, of the entries that were not downloaded (e.g. symbolic links)
+   */
+  @NotNull
+  public List<String> getSkippedEntries() {
+    return mySkippedEntries;
+  }
+
+  /**
+   * The number of subdirectories written to the local directory
+   */
+  public int getDirectoryCount() {
+    return myDirectoryCount;
+  }
+
+  /**
+   * The number of files written to the local directory
+   */
+  public int getFileCount() {
+    return myFileCount;
+  }
+
+  /**
+   * The total size of the files written to the local directory
+   */
+  public long getByteCount() {
+    return myByteCount;
+  }
+}
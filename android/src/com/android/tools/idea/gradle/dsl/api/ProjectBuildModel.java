@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * A model representing a whole project. Multiple {@link GradleBuildModel}s that are obtained via a {@link ProjectBuildModel} will present
@@ -57,6 +58,12 @@ public interface ProjectBuildModel {
   @NotNull
   GradleBuildModel getModuleBuildModel(@NotNull VirtualFile file);
 
+  /**
+   * Parses the build files of all the modules included in the settings file, so the {@link GradleBuildModel}s obtained afterwards for
+   * these modules do not need to be parsed one at a time. This should be used when the models of all the modules are needed.
+   */
+  void parseAllModuleBuildFiles();
+
   /**
    * @return the settings model for this project, or null if no settings file could be found.
    */
@@ -77,4 +84,14 @@ public interface ProjectBuildModel {
    * Reparses all {@link GradleBuildModel}s and the {@link GradleSettingsModel}  that have been created by this model.
    */
   void reparse();
+
+  /**
+   * Reparses only the build files that have been created by this model and changed since they were parsed, together with the files
+   * depending on them (e.g. the build files of the child modules of a changed build file, or the files applying a changed file).
+   * All the files are reparsed if the settings file changed. Models obtained before this call keep referring to the previous state.
+   *
+   * @return the files that were reparsed
+   */
+  @NotNull
+  List<VirtualFile> reparseChangedFiles();
 }
@@ -22,27 +22,36 @@ import com.android.tools.idea.gradle.dsl.parser.BuildModelContext;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleBuildFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleDslFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleSettingsFile;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.function.Consumer;
 
 import static com.android.tools.idea.Projects.getBaseDirPath;
 import static com.android.tools.idea.gradle.dsl.model.GradleBuildModelImpl.populateSiblingDslFileWithGradlePropertiesFile;
 import static com.android.tools.idea.gradle.dsl.model.GradleBuildModelImpl.populateWithParentModuleSubProjectsProperties;
 import static com.android.tools.idea.gradle.util.GradleUtil.getGradleBuildFile;
+import static com.intellij.openapi.vfs.VfsUtil.findFileByIoFile;
 
 public class ProjectBuildModelImpl implements ProjectBuildModel {
   @NotNull private final BuildModelContext myBuildModelContext;
   @NotNull private final Project myProject;
-  @Nullable private final GradleBuildFile myProjectBuildFile;
+  @Nullable private GradleBuildFile myProjectBuildFile;
 
   @NotNull
   public static ProjectBuildModel get(@NotNull Project project) {
@@ -59,18 +68,21 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
     myProject = project;
 
     // First parse the main project build file.
-    myProjectBuildFile = file != null ?   new GradleBuildFile(file, myProject, project.getName(), myBuildModelContext) : null;
-    if (myProjectBuildFile != null) {
-      myBuildModelContext.setRootProjectFile(myProjectBuildFile);
-      ApplicationManager.getApplication().runReadAction(() -> {
-        populateWithParentModuleSubProjectsProperties(myProjectBuildFile, myBuildModelContext);
-        populateSiblingDslFileWithGradlePropertiesFile(myProjectBuildFile, myBuildModelContext);
-        myProjectBuildFile.parse();
-      });
-      myBuildModelContext.putBuildFile(file.getUrl(), myProjectBuildFile);
-    }
+    myProjectBuildFile = file != null ? parseProjectBuildFile(file) : null;
   }
 
+  @NotNull
+  private GradleBuildFile parseProjectBuildFile(@NotNull VirtualFile file) {
+    GradleBuildFile buildFile = new GradleBuildFile(file, myProject, myProject.getName(), myBuildModelContext);
+    myBuildModelContext.setRootProjectFile(buildFile);
+    ApplicationManager.getApplication().runReadAction(() -> {
+      populateWithParentModuleSubProjectsProperties(buildFile, myBuildModelContext);
+      populateSiblingDslFileWithGradlePropertiesFile(buildFile, myBuildModelContext);
+      buildFile.parse();
+    });
+    myBuildModelContext.putBuildFile(file.getUrl(), buildFile);
+    return buildFile;
+  }
 
   @Override
   @Nullable
@@ -99,6 +111,56 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
     return new GradleBuildModelImpl(dslFile);
   }
 
+  /**
+   * The Groovy files of the modules are read and parsed into PSI concurrently, since they do not depend on each other. The DSL files
+   * are then created from the PSI sequentially, parents before children, because they share state (e.g. the file cache and the
+   * {@link com.android.tools.idea.gradle.dsl.parser.DependencyManager}) and resolve the references to the properties of their parent
+   * module and of the files they apply as they are created.
+   */
+  @Override
+  public void parseAllModuleBuildFiles() {
+    GradleSettingsModel settingsModel = getProjectSettingsModel();
+    if (settingsModel == null) {
+      return;
+    }
+
+    // Parents first, the paths of the modules are like ":parent:child".
+    List<String> modulePaths = new ArrayList<>(settingsModel.modulePaths());
+    modulePaths.sort(Comparator.comparingInt((String path) -> StringUtil.countChars(path, ':')).thenComparing(Comparator.naturalOrder()));
+
+    List<VirtualFile> files = new ArrayList<>();
+    for (String modulePath : modulePaths) {
+      File buildFilePath = settingsModel.buildFile(modulePath);
+      VirtualFile file = buildFilePath == null ? null : findFileByIoFile(buildFilePath, false);
+      if (file != null && (myProjectBuildFile == null || !file.equals(myProjectBuildFile.getFile()))) {
+        files.add(file);
+      }
+    }
+
+    Application application = ApplicationManager.getApplication();
+    // Waiting for other threads to get read access while holding it could dead-lock with a pending write action, and they cannot get it
+    // at all while this thread holds write access.
+    if (files.size() > 1 && !application.isWriteAccessAllowed() && (application.isDispatchThread() || !application.isReadAccessAllowed())) {
+      PsiManager psiManager = PsiManager.getInstance(myProject);
+      //noinspection deprecation
+      JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files, ProgressManager.getInstance().getProgressIndicator(),
+                                                                true /* fail fast */, file -> {
+          application.runReadAction(() -> {
+            PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+            if (psiFile != null) {
+              // Visiting all the elements also parses the lazily parsed ones, like closures.
+              psiFile.accept(new PsiRecursiveElementWalkingVisitor() {});
+            }
+          });
+          return true;
+        });
+    }
+
+    for (VirtualFile file : files) {
+      myBuildModelContext.getOrCreateBuildFile(file);
+    }
+  }
+
   @Override
   @Nullable
   public GradleSettingsModel getProjectSettingsModel() {
@@ -129,6 +191,21 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
     runOverProjectTree(GradleDslFile::reparse);
   }
 
+  @Override
+  @NotNull
+  public List<VirtualFile> reparseChangedFiles() {
+    List<GradleDslFile> removedFiles = myBuildModelContext.removeChangedFiles();
+    List<VirtualFile> files = new ArrayList<>(removedFiles.size());
+    for (GradleDslFile dslFile : removedFiles) {
+      files.add(dslFile.getFile());
+    }
+    // The other files are parsed again when they are requested, but the project build file is always kept parsed.
+    if (myProjectBuildFile != null && removedFiles.contains(myProjectBuildFile)) {
+      myProjectBuildFile = parseProjectBuildFile(myProjectBuildFile.getFile());
+    }
+    return files;
+  }
+
   private void runOverProjectTree(@NotNull Consumer<GradleDslFile> func) {
     myBuildModelContext.getAllRequestedFiles().forEach(func);
   }
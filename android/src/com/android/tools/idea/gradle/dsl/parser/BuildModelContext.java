@@ -101,6 +101,16 @@ public final class BuildModelContext {
     myFileCache.clearAllFiles();
   }
 
+  /**
+   * Removes the files that changed since they were parsed, and the files depending on them, from the state of the build context.
+   *
+   * @return the removed files
+   */
+  @NotNull
+  public List<GradleDslFile> removeChangedFiles() {
+    return myFileCache.removeChangedFiles();
+  }
+
   /* The following methods are just wrappers around the same methods in GradleDslFileCache but pass this build
    * context along as well. */
   @NotNull
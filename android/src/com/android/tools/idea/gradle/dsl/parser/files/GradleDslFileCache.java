@@ -17,22 +17,35 @@ package com.android.tools.idea.gradle.dsl.parser.files;
 
 import com.android.tools.idea.gradle.dsl.model.GradleBuildModelImpl;
 import com.android.tools.idea.gradle.dsl.parser.BuildModelContext;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static com.android.tools.idea.Projects.getBaseDirPath;
 import static com.android.tools.idea.gradle.util.GradleUtil.getGradleSettingsFile;
 
+/**
+ * Cache of the {@link GradleDslFile}s parsed for a {@link BuildModelContext}, keyed by the URL of their file.
+ *
+ * <p>The hash of the contents of each file, including the contents of its sibling gradle.properties file, is recorded when the file
+ * is added to the cache. {@link #removeChangedFiles()} uses these hashes to drop only the files that changed since they were parsed,
+ * so the other files do not need to be parsed again.
+ */
 public class GradleDslFileCache {
   @NotNull private Project myProject;
   @NotNull private Map<String, GradleDslFile> myParsedBuildFiles = new HashMap<>();
+  @NotNull private Map<String, HashCode> myContentHashes = new HashMap<>();
 
   public GradleDslFileCache(@NotNull Project project) {
     myProject = project;
@@ -40,6 +53,7 @@ public class GradleDslFileCache {
 
   public void clearAllFiles() {
     myParsedBuildFiles.clear();
+    myContentHashes.clear();
   }
 
   @NotNull
@@ -47,7 +61,7 @@ public class GradleDslFileCache {
     GradleDslFile dslFile = myParsedBuildFiles.get(file.getUrl());
     if (dslFile == null) {
       dslFile = GradleBuildModelImpl.parseBuildFile(file, myProject, name, context);
-      myParsedBuildFiles.put(file.getUrl(), dslFile);
+      addFile(file.getUrl(), dslFile);
     } else if (!(dslFile instanceof GradleBuildFile)) {
       throw new IllegalStateException("Found wrong type for build file in cache!");
     }
@@ -56,7 +70,7 @@ public class GradleDslFileCache {
   }
 
   public void putBuildFile(@NotNull String name, @NotNull GradleDslFile buildFile) {
-    myParsedBuildFiles.put(name, buildFile);
+    addFile(name, buildFile);
   }
 
   @Nullable
@@ -84,7 +98,7 @@ public class GradleDslFileCache {
     if (dslFile == null) {
       dslFile = new GradleSettingsFile(file, myProject, "settings", context);
       dslFile.parse();
-      myParsedBuildFiles.put(file.getUrl(), dslFile);
+      addFile(file.getUrl(), dslFile);
     } else if (!(dslFile instanceof GradleSettingsFile)) {
       throw new IllegalStateException("Found wrong type for settings file in cache!");
     }
@@ -95,4 +109,97 @@ public class GradleDslFileCache {
   public List<GradleDslFile> getAllFiles() {
     return new ArrayList<>(myParsedBuildFiles.values());
   }
+
+  /**
+   * Removes from the cache the files whose contents, or the contents of their sibling gradle.properties file, changed since they were
+   * parsed, together with the files that depend on them: the child modules of a changed file and the files applying a changed file.
+   * All the files are removed if the settings file changed. The removed files are parsed again the next time they are requested.
+   *
+   * @return the files that were removed from the cache
+   */
+  @NotNull
+  public List<GradleDslFile> removeChangedFiles() {
+    Set<GradleDslFile> removedFiles = new LinkedHashSet<>();
+    for (Map.Entry<String, GradleDslFile> entry : myParsedBuildFiles.entrySet()) {
+      GradleDslFile dslFile = entry.getValue();
+      if (!computeContentHash(dslFile).equals(myContentHashes.get(entry.getKey()))) {
+        if (dslFile instanceof GradleSettingsFile) {
+          List<GradleDslFile> allFiles = getAllFiles();
+          clearAllFiles();
+          return allFiles;
+        }
+        removedFiles.add(dslFile);
+      }
+    }
+    if (removedFiles.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    // Files may depend on each other in chains (e.g. a file applying a file applying a changed file), so go on until nothing is added.
+    boolean added = true;
+    while (added) {
+      added = false;
+      for (GradleDslFile dslFile : myParsedBuildFiles.values()) {
+        if (!removedFiles.contains(dslFile) && dependsOnAny(dslFile, removedFiles)) {
+          removedFiles.add(dslFile);
+          added = true;
+        }
+      }
+    }
+
+    myParsedBuildFiles.entrySet().removeIf(entry -> {
+      if (removedFiles.contains(entry.getValue())) {
+        myContentHashes.remove(entry.getKey());
+        return true;
+      }
+      return false;
+    });
+    return new ArrayList<>(removedFiles);
+  }
+
+  private void addFile(@NotNull String url, @NotNull GradleDslFile dslFile) {
+    myParsedBuildFiles.put(url, dslFile);
+    myContentHashes.put(url, computeContentHash(dslFile));
+  }
+
+  private static boolean dependsOnAny(@NotNull GradleDslFile dslFile, @NotNull Set<GradleDslFile> files) {
+    GradleDslFile parent = dslFile.getParentModuleDslFile();
+    if (parent != null && files.contains(parent)) {
+      return true;
+    }
+    GradleDslFile sibling = dslFile.getSiblingDslFile();
+    if (sibling != null && files.contains(sibling)) {
+      return true;
+    }
+    for (GradleDslFile appliedFile : dslFile.getApplyDslElement()) {
+      if (files.contains(appliedFile)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @NotNull
+  private static HashCode computeContentHash(@NotNull GradleDslFile dslFile) {
+    return ApplicationManager.getApplication().runReadAction((Computable<HashCode>)() -> {
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      putContent(hasher, dslFile.getFile());
+      GradleDslFile sibling = dslFile.getSiblingDslFile();
+      if (sibling != null) {
+        putContent(hasher, sibling.getFile());
+      }
+      return hasher.hash();
+    });
+  }
+
+  private static void putContent(@NotNull Hasher hasher, @NotNull VirtualFile file) {
+    // Unsaved changes are in the document, if there is one
+    Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    CharSequence text = document != null ? document.getImmutableCharSequence() : file.isValid() ? LoadTextUtil.loadText(file) : null;
+    hasher.putBoolean(text != null);
+    if (text != null) {
+      hasher.putInt(text.length());
+      hasher.putUnencodedChars(text);
+    }
+  }
 }
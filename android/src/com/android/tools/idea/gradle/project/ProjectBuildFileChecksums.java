@@ -33,9 +33,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 import static com.android.SdkConstants.*;
 import static com.android.tools.idea.Projects.getBaseDirPath;
@@ -51,9 +49,22 @@ import static com.intellij.util.ArrayUtilRt.EMPTY_BYTE_ARRAY;
  * The Project data that needs to be persisted to check whether it is possible to reload the Project without the need of calling Gradle.
  */
 public class ProjectBuildFileChecksums implements Serializable {
+  /**
+   * The coarsest modification time granularity of the supported file systems (FAT). A file modified within this time before its stamp
+   * was read could be modified again without changing its length or modification time, so its stamp cannot be trusted.
+   */
+  private static final long MODIFICATION_TIME_GRANULARITY_MS = 2000;
+
   // Key: build file path (relative if inside project). Value: MD5 hash of file.
   private Map<String, byte[]> myFileChecksums = new HashMap<>();
 
+  // Key: build file path (relative if inside project). Value: length and last modification time of the file, and the time they were
+  // read, right before its hash was computed.
+  private Map<String, long[]> myFileStamps = new HashMap<>();
+
+  // Key: build file path (relative if inside project). Value: names of the modules whose models depend on the file.
+  private Map<String, Set<String>> myModuleNamesByFile = new HashMap<>();
+
   /**
    * The last time a sync was done.
    */
@@ -157,8 +168,16 @@ public class ProjectBuildFileChecksums implements Serializable {
   static ProjectBuildFileChecksums createFrom(@NotNull Project project) throws IOException {
     ProjectBuildFileChecksums buildFileChecksums = new ProjectBuildFileChecksums();
     File rootFolderPath = getBaseDirPath(project);
+    buildFileChecksums.myRootFolderPath = rootFolderPath;
 
-    for (Module module : ModuleManager.getInstance(project).getModules()) {
+    Module[] modules = ModuleManager.getInstance(project).getModules();
+    Set<String> allModuleNames = new HashSet<>();
+    for (Module module : modules) {
+      allModuleNames.add(module.getName());
+    }
+
+    for (Module module : modules) {
+      Set<String> moduleNames = Collections.singleton(module.getName());
       GradleFacet gradleFacet = GradleFacet.getInstance(module);
       if (gradleFacet != null) {
         GradleModuleModel gradleModel = gradleFacet.getGradleModuleModel();
@@ -166,21 +185,22 @@ public class ProjectBuildFileChecksums implements Serializable {
           getLog().warn(String.format("Trying to create project data from a not initialized project '%1$s'. Abort.", project.getName()));
           return null;
         }
-        buildFileChecksums.addFileChecksum(rootFolderPath, gradleModel.getBuildFile());
+        buildFileChecksums.addFileChecksum(rootFolderPath, gradleModel.getBuildFile(), moduleNames);
       }
 
       if (isGradleProjectModule(module)) {
-        buildFileChecksums.addFileChecksum(rootFolderPath, getGradleBuildFile(module));
-        buildFileChecksums.addFileChecksum(rootFolderPath, getGradleSettingsFile(rootFolderPath));
-        buildFileChecksums.addFileChecksum(rootFolderPath, new File(rootFolderPath, FN_GRADLE_PROPERTIES));
-        buildFileChecksums.addFileChecksum(rootFolderPath, new File(rootFolderPath, FN_LOCAL_PROPERTIES));
-        buildFileChecksums.addFileChecksum(rootFolderPath, getGradleUserSettingsFile());
+        // The files of the root project (e.g. settings.gradle) can change the models of all the modules.
+        buildFileChecksums.addFileChecksum(rootFolderPath, getGradleBuildFile(module), allModuleNames);
+        buildFileChecksums.addFileChecksum(rootFolderPath, getGradleSettingsFile(rootFolderPath), allModuleNames);
+        buildFileChecksums.addFileChecksum(rootFolderPath, new File(rootFolderPath, FN_GRADLE_PROPERTIES), allModuleNames);
+        buildFileChecksums.addFileChecksum(rootFolderPath, new File(rootFolderPath, FN_LOCAL_PROPERTIES), allModuleNames);
+        buildFileChecksums.addFileChecksum(rootFolderPath, getGradleUserSettingsFile(), allModuleNames);
       }
 
       NdkModuleModel ndkModel = NdkModuleModel.get(module);
       if (ndkModel != null) {
         for (File externalBuildFile : ndkModel.getAndroidProject().getBuildFiles()) {
-          buildFileChecksums.addFileChecksum(rootFolderPath, externalBuildFile);
+          buildFileChecksums.addFileChecksum(rootFolderPath, externalBuildFile, moduleNames);
         }
       }
     }
@@ -195,14 +215,15 @@ public class ProjectBuildFileChecksums implements Serializable {
     return new File(getCacheFolderRootPath(project), "build_file_checksums.ser");
   }
 
-  private void addFileChecksum(@NotNull File rootFolderPath, @Nullable VirtualFile file) throws IOException {
+  private void addFileChecksum(@NotNull File rootFolderPath, @Nullable VirtualFile file, @NotNull Set<String> moduleNames)
+    throws IOException {
     if (file == null) {
       return;
     }
-    addFileChecksum(rootFolderPath, virtualToIoFile(file));
+    addFileChecksum(rootFolderPath, virtualToIoFile(file), moduleNames);
   }
 
-  private void addFileChecksum(@NotNull File rootFolderPath, @Nullable File file) throws IOException {
+  private void addFileChecksum(@NotNull File rootFolderPath, @Nullable File file, @NotNull Set<String> moduleNames) throws IOException {
     if (file == null) {
       return;
     }
@@ -213,7 +234,10 @@ public class ProjectBuildFileChecksums implements Serializable {
     else {
       key = file.getAbsolutePath();
     }
+    // The stamp is read first, so changes made while hashing are seen as a different stamp.
+    myFileStamps.put(key, createStamp(file));
     myFileChecksums.put(key, createChecksum(file));
+    myModuleNamesByFile.computeIfAbsent(key, k -> new HashSet<>()).addAll(moduleNames);
   }
 
   /**
@@ -249,27 +273,92 @@ public class ProjectBuildFileChecksums implements Serializable {
   /**
    * Verifies that whether the persisted external project data can be used to create the project or not.
    * <p/>
-   * This validates that all the files that the external project data depends on, still have the same content checksum.
+   * This validates that all the files that the external project data depends on, still have the same content checksum. Otherwise the
+   * changed files and the modules whose models they affect are logged, to tell why the project needs to be synced.
    *
    * @return whether the data is still valid.
    * @throws IOException if there is a problem accessing these files.
    */
   public boolean canUseCachedData() {
-    for (Map.Entry<String, byte[]> entry : myFileChecksums.entrySet()) {
-      File file = new File(entry.getKey());
-      if (!file.isAbsolute()) {
-        file = new File(myRootFolderPath, file.getPath());
+    List<String> changedFiles = getChangedFiles();
+    if (changedFiles.isEmpty()) {
+      return true;
+    }
+    getLog().info(String.format("Build files changed since the last sync: %1$s. Affected modules: %2$s.", changedFiles,
+                                getAffectedModuleNames(changedFiles)));
+    return false;
+  }
+
+  /**
+   * Returns the paths (relative if inside the project) of the build files whose contents changed since the data was created.
+   */
+  @NotNull
+  public List<String> getChangedFiles() {
+    List<String> changedFiles = new ArrayList<>();
+    for (String path : myFileChecksums.keySet()) {
+      if (hasChanged(path)) {
+        changedFiles.add(path);
       }
-      try {
-        if (!Arrays.equals(entry.getValue(), createChecksum(file))) {
-          return false;
-        }
+    }
+    return changedFiles;
+  }
+
+  /**
+   * Returns the names of the modules whose models may be different because their build files, or the build files of the whole project
+   * (e.g. settings.gradle), changed since the data was created.
+   */
+  @NotNull
+  public Set<String> getAffectedModuleNames() {
+    return getAffectedModuleNames(getChangedFiles());
+  }
+
+  @NotNull
+  private Set<String> getAffectedModuleNames(@NotNull Collection<String> changedFiles) {
+    Set<String> moduleNames = new HashSet<>();
+    for (String path : changedFiles) {
+      Set<String> fileModuleNames = myModuleNamesByFile.get(path);
+      if (fileModuleNames != null) {
+        moduleNames.addAll(fileModuleNames);
       }
-      catch (Throwable e) {
+    }
+    return moduleNames;
+  }
+
+  private boolean hasChanged(@NotNull String path) {
+    File file = new File(path);
+    if (!file.isAbsolute()) {
+      file = new File(myRootFolderPath, file.getPath());
+    }
+    try {
+      // Only hash the files that may have changed.
+      if (isStampUnchanged(myFileStamps.get(path), file)) {
         return false;
       }
+      return !Arrays.equals(myFileChecksums.get(path), createChecksum(file));
+    }
+    catch (Throwable e) {
+      return true;
+    }
+  }
+
+  @NotNull
+  private static long[] createStamp(@NotNull File file) {
+    return new long[]{file.length(), file.lastModified(), System.currentTimeMillis()};
+  }
+
+  /**
+   * Returns whether the file still has the given stamp, and the stamp was read long enough after the last modification of the file for
+   * an unchanged length and modification time to mean unchanged contents. Otherwise the contents of the file need to be hashed.
+   */
+  private static boolean isStampUnchanged(@Nullable long[] stamp, @NotNull File file) {
+    if (stamp == null || stamp.length != 3 || !file.exists()) {
+      return false;
     }
-    return true;
+    long lastModified = stamp[1];
+    long stampTime = stamp[2];
+    return stampTime - lastModified > MODIFICATION_TIME_GRANULARITY_MS &&
+           stamp[0] == file.length() &&
+           lastModified == file.lastModified();
   }
 
   @NotNull
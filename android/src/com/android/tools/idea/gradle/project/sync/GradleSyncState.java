@@ -58,6 +58,9 @@ import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static com.android.tools.idea.gradle.project.sync.setup.post.EnableDisableSingleVariantSyncStep.PATH_IN_SETTINGS;
 import static com.google.wireless.android.sdk.stats.AndroidStudioEvent.EventCategory.GRADLE_SYNC;
 import static com.google.wireless.android.sdk.stats.AndroidStudioEvent.EventKind.*;
@@ -104,6 +107,10 @@ public class GradleSyncState {
   private long mySyncFailedTimeStamp = -1L;
   private GradleSyncStats.Trigger myTrigger = TRIGGER_UNKNOWN;
 
+  // Duration of each phase of the project setup, in the order they finished
+  @GuardedBy("myLock")
+  @NotNull private final Map<String, Long> mySetupPhaseDurationsMs = new LinkedHashMap<>();
+
   @GuardedBy("myLock")
   @Nullable private ExternalSystemTaskId myExternalSystemTaskId;
 
@@ -471,6 +478,9 @@ public class GradleSyncState {
   public void setupStarted() {
     long syncSetupTimestamp = System.currentTimeMillis();
     setSyncSetupStartedTimeStamp(syncSetupTimestamp);
+    synchronized (myLock) {
+      mySetupPhaseDurationsMs.clear();
+    }
     addInfoToEventLog("Project setup started");
     LOG.info(String.format("Started setup of project '%1$s'.", myProject.getName()));
     syncPublisher(() -> myMessageBus.syncPublisher(GRADLE_SYNC_TOPIC).setupStarted(myProject));
@@ -478,6 +488,27 @@ public class GradleSyncState {
     UsageTracker.log(event);
   }
 
+  /**
+   * Records the duration of a phase of the project setup (e.g. "Create module models"). Phases reported more than once during the same
+   * setup have their durations added.
+   */
+  public void setupPhaseFinished(@NotNull String phase, long durationMs) {
+    synchronized (myLock) {
+      mySetupPhaseDurationsMs.merge(phase, durationMs, Long::sum);
+    }
+    LOG.info(String.format("Setup phase '%1$s' of project '%2$s' finished in %3$s", phase, myProject.getName(), formatDuration(durationMs)));
+  }
+
+  /**
+   * Returns the duration of the phases of the last project setup, in the order they finished.
+   */
+  @NotNull
+  public Map<String, Long> getSetupPhaseDurationsMs() {
+    synchronized (myLock) {
+      return new LinkedHashMap<>(mySetupPhaseDurationsMs);
+    }
+  }
+
   public void setExternalSystemTaskId(@Nullable ExternalSystemTaskId externalSystemTaskId) {
     synchronized (myLock) {
       myExternalSystemTaskId = externalSystemTaskId;
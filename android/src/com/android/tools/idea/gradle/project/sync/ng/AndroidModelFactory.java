@@ -45,11 +45,24 @@ class AndroidModelFactory {
   AndroidModuleModel createAndroidModel(@NotNull Module module,
                                         @NotNull AndroidProject androidProject,
                                         @NotNull GradleModuleModels moduleModels) {
+    return createAndroidModel(module, androidProject, moduleModels, myDependenciesFactory);
+  }
+
+  /**
+   * Creates the model of the given module, resolving its dependencies with {@code dependenciesFactory} instead of the factory
+   * passed to the constructor. {@link IdeDependenciesFactory} is not thread safe, so the models of different modules can only be
+   * created concurrently if each thread uses its own factory.
+   */
+  @Nullable
+  AndroidModuleModel createAndroidModel(@NotNull Module module,
+                                        @NotNull AndroidProject androidProject,
+                                        @NotNull GradleModuleModels moduleModels,
+                                        @NotNull IdeDependenciesFactory dependenciesFactory) {
     if (NewGradleSync.isSingleVariantSync(module.getProject())) {
       if (androidProject.getVariants().isEmpty()) {
         List<Variant> variants = moduleModels.findModels(Variant.class);
         if (variants != null) {
-          AndroidModuleModel androidModel = createAndroidModel(module, androidProject, variants,
+          AndroidModuleModel androidModel = createAndroidModel(module, androidProject, variants, dependenciesFactory,
                                                                true /* Add variant to AndroidProject. */);
           if (androidModel != null) {
             return androidModel;
@@ -59,7 +72,7 @@ class AndroidModelFactory {
     }
     Variant variantToSelect = myVariantSelector.findVariantToSelect(androidProject);
     if (variantToSelect != null) {
-      AndroidModuleModel androidModel = createAndroidModel(module, androidProject, singletonList(variantToSelect),
+      AndroidModuleModel androidModel = createAndroidModel(module, androidProject, singletonList(variantToSelect), dependenciesFactory,
                                                            false /* Do not add Variant to AndroidProject. */);
       if (androidModel != null) {
         return androidModel;
@@ -77,13 +90,14 @@ class AndroidModelFactory {
   private AndroidModuleModel createAndroidModel(@NotNull Module module,
                                                 @NotNull AndroidProject androidProject,
                                                 @NotNull List<Variant> variants,
+                                                @NotNull IdeDependenciesFactory dependenciesFactory,
                                                 boolean addVariantToAndroidProject) {
     File moduleRootFolderPath = findModuleRootFolderPath(module);
     if (moduleRootFolderPath != null) {
       String selectedVariant = variants.get(variants.size() - 1).getName();
       // With single-variant sync, the variants are not part of AndroidProject. We need to manually add it.
       List<Variant> variantsToAdd = addVariantToAndroidProject ? variants : null;
-      return new AndroidModuleModel(module.getName(), moduleRootFolderPath, androidProject, selectedVariant, myDependenciesFactory,
+      return new AndroidModuleModel(module.getName(), moduleRootFolderPath, androidProject, selectedVariant, dependenciesFactory,
                                     variantsToAdd);
     }
     return null;
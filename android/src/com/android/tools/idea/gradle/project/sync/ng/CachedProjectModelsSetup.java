@@ -39,9 +39,7 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 
@@ -87,7 +85,8 @@ class CachedProjectModelsSetup extends ModuleSetup<CachedProjectModels> {
 
     myCompositeBuildDataSetup.setupCompositeBuildData(projectModels, myProject);
     List<Module> modules = Arrays.asList(ModuleManager.getInstance(myProject).getModules());
-    List<GradleFacet> gradleFacets = new ArrayList<>();
+    // Modules are added from several threads below.
+    List<GradleFacet> gradleFacets = Collections.synchronizedList(new ArrayList<>());
 
     ModuleFinder moduleFinder = myModuleFinderFactory.create(myProject);
 
@@ -104,15 +103,27 @@ class CachedProjectModelsSetup extends ModuleSetup<CachedProjectModels> {
       return true;
     });
 
-    SetupContextByModuleModel setupContextByModuleModel = new SetupContextByModuleModel();
-
+    Map<GradleFacet, CachedModuleModels> moduleModelsCaches = new LinkedHashMap<>();
     for (GradleFacet gradleFacet : gradleFacets) {
       String moduleName = gradleFacet.getModule().getName();
       CachedModuleModels moduleModelsCache = projectModels.findCacheForModule(moduleName);
       if (moduleModelsCache != null) {
-        getModuleModelFromCache(gradleFacet, moduleModelsCache, moduleFinder, setupContextByModuleModel);
+        moduleModelsCaches.put(gradleFacet, moduleModelsCache);
       }
     }
+
+    // The models of each module are deserialized from the disk cache the first time they are needed, do it for all modules at once.
+    //noinspection deprecation
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(new ArrayList<>(moduleModelsCaches.values()), indicator, true /* fail fast */,
+                                                              moduleModelsCache -> {
+                                                                moduleModelsCache.loadModels();
+                                                                return true;
+                                                              });
+
+    SetupContextByModuleModel setupContextByModuleModel = new SetupContextByModuleModel();
+    for (Map.Entry<GradleFacet, CachedModuleModels> entry : moduleModelsCaches.entrySet()) {
+      getModuleModelFromCache(entry.getKey(), entry.getValue(), moduleFinder, setupContextByModuleModel);
+    }
     setupModuleModels(setupContextByModuleModel, myGradleModuleSetup, myNdkModuleSetup, myAndroidModuleSetup, myJavaModuleSetup,
                       myExtraModelsManager, true /* sync skipped*/);
   }
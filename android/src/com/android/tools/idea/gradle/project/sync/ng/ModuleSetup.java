@@ -23,6 +23,7 @@ import com.android.tools.idea.gradle.project.model.JavaModuleModel;
 import com.android.tools.idea.gradle.project.model.JavaModuleModelFactory;
 import com.android.tools.idea.gradle.project.model.NdkModuleModel;
 import com.android.tools.idea.gradle.project.sync.GradleModuleModels;
+import com.android.tools.idea.gradle.project.sync.GradleSyncState;
 import com.android.tools.idea.gradle.project.sync.ModuleSetupContext;
 import com.android.tools.idea.gradle.project.sync.common.VariantSelector;
 import com.android.tools.idea.gradle.project.sync.ng.caching.CachedProjectModels;
@@ -119,6 +120,17 @@ public abstract class ModuleSetup<T> {
     notifyProgress(indicator, "Configuring modules");
   }
 
+  // Runs a phase of the project setup, reporting its duration to GradleSyncState.
+  protected void runSetupPhase(@NotNull String phase, @NotNull Runnable task) {
+    long startTimeMs = System.currentTimeMillis();
+    try {
+      task.run();
+    }
+    finally {
+      GradleSyncState.getInstance(myProject).setupPhaseFinished(phase, System.currentTimeMillis() - startTimeMs);
+    }
+  }
+
   // Setup all modules in this order: GradleModuleModules, NdkModuleModel, AndroidModuleModel, JavaModuleModel.
   // The later setup steps may require information that are setup previously. For example, Java modules get language level from AndroidModuleModel.
   protected void setupModuleModels(@NotNull SetupContextByModuleModel setupContextByModuleModel,
@@ -128,27 +140,37 @@ public abstract class ModuleSetup<T> {
                                    @NotNull JavaModuleSetup javaModuleSetup,
                                    @NotNull ExtraGradleSyncModelsManager extraModelsManager,
                                    boolean syncSkipped) {
+    // The setup steps below modify the models of IdeModifiableModelsProvider, which are shared by all modules and are not thread safe,
+    // so the modules are set up one after another. All the changes are committed at once by ProjectSetup#commit.
     // Setup GradleModuleModels.
-    for (Map.Entry<GradleModuleModel, ModuleSetupContext> entry : setupContextByModuleModel.gradleSetupContexts.entrySet()) {
-      gradleModuleSetup.setUpModule(entry.getValue().getModule(), entry.getValue().getIdeModelsProvider(), entry.getKey());
-    }
+    runSetupPhase("Set up Gradle modules", () -> {
+      for (Map.Entry<GradleModuleModel, ModuleSetupContext> entry : setupContextByModuleModel.gradleSetupContexts.entrySet()) {
+        gradleModuleSetup.setUpModule(entry.getValue().getModule(), entry.getValue().getIdeModelsProvider(), entry.getKey());
+      }
+    });
     // Setup NdkModuleModels.
-    for (Map.Entry<NdkModuleModel, ModuleSetupContext> entry : setupContextByModuleModel.ndkSetupContexts.entrySet()) {
-      ndkModuleSetup.setUpModule(entry.getValue(), entry.getKey(), syncSkipped);
-    }
+    runSetupPhase("Set up NDK modules", () -> {
+      for (Map.Entry<NdkModuleModel, ModuleSetupContext> entry : setupContextByModuleModel.ndkSetupContexts.entrySet()) {
+        ndkModuleSetup.setUpModule(entry.getValue(), entry.getKey(), syncSkipped);
+      }
+    });
     // Setup AndroidModuleModels.
-    for (Map.Entry<AndroidModuleModel, ModuleSetupContext> entry : setupContextByModuleModel.androidSetupContexts.entrySet()) {
-      androidModuleSetup.setUpModule(entry.getValue(), entry.getKey(), syncSkipped);
-    }
+    runSetupPhase("Set up Android modules", () -> {
+      for (Map.Entry<AndroidModuleModel, ModuleSetupContext> entry : setupContextByModuleModel.androidSetupContexts.entrySet()) {
+        androidModuleSetup.setUpModule(entry.getValue(), entry.getKey(), syncSkipped);
+      }
+    });
     // Setup JavaModuleModels.
-    for (Map.Entry<JavaModuleModel, ModuleSetupContext> entry : setupContextByModuleModel.javaSetupContexts.entrySet()) {
-      ModuleSetupContext setupContext = entry.getValue();
-      javaModuleSetup.setUpModule(setupContext, entry.getKey(), syncSkipped);
-      GradleModuleModels gradleModels = setupContext.getGradleModels();
-      if (gradleModels != null) {
-        extraModelsManager.applyModelsToModule(gradleModels, setupContext.getModule(), myModelsProvider);
+    runSetupPhase("Set up Java modules", () -> {
+      for (Map.Entry<JavaModuleModel, ModuleSetupContext> entry : setupContextByModuleModel.javaSetupContexts.entrySet()) {
+        ModuleSetupContext setupContext = entry.getValue();
+        javaModuleSetup.setUpModule(setupContext, entry.getKey(), syncSkipped);
+        GradleModuleModels gradleModels = setupContext.getGradleModels();
+        if (gradleModels != null) {
+          extraModelsManager.applyModelsToModule(gradleModels, setupContext.getModule(), myModelsProvider);
+        }
       }
-    }
+    });
   }
 
   protected static class SetupContextByModuleModel {
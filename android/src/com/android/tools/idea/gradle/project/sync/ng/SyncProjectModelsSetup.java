@@ -23,6 +23,7 @@ import com.android.ide.common.gradle.model.IdeNativeVariantAbi;
 import com.android.ide.common.gradle.model.level2.IdeDependenciesFactory;
 import com.android.java.model.ArtifactModel;
 import com.android.java.model.JavaProject;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.gradle.project.facet.gradle.GradleFacet;
 import com.android.tools.idea.gradle.project.facet.ndk.NdkFacet;
 import com.android.tools.idea.gradle.project.model.*;
@@ -36,6 +37,7 @@ import com.android.tools.idea.gradle.project.sync.setup.module.ModuleFinder;
 import com.android.tools.idea.gradle.project.sync.setup.module.NdkModuleSetup;
 import com.android.tools.idea.gradle.project.sync.setup.module.idea.JavaModuleSetup;
 import com.android.tools.idea.gradle.project.sync.setup.post.ProjectCleanup;
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProvider;
 import com.intellij.openapi.externalSystem.util.DisposeAwareProjectChange;
 import com.intellij.openapi.externalSystem.util.ExternalSystemApiUtil;
@@ -47,11 +49,12 @@ import com.intellij.openapi.util.text.StringUtil;
 import org.gradle.tooling.model.GradleProject;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 import org.jetbrains.plugins.gradle.util.GradleConstants;
 
@@ -127,7 +130,7 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
     notifyModuleConfigurationStarted(indicator);
     CachedProjectModels cache = myCachedProjectModelsFactory.createNew();
     myCompositeBuildDataSetup.setupCompositeBuildData(projectModels, cache, myProject);
-    myDependenciesFactory.setUpGlobalLibraryMap(projectModels.getGlobalLibraryMap());
+    setUpDependenciesFactory(myDependenciesFactory, projectModels);
 
     // By default, project name is the string entered in Name box when creating new project from wizard.
     // This can be different from the name used by Gradle. For example, entered name is "My Application", Gradle name is "MyApplication10".
@@ -135,11 +138,13 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
     renameProject(projectModels, myProject);
     // Ensure unique module names.
     deduplicateModuleNames(projectModels, myProject);
-    createAndSetUpModules(projectModels, cache);
+    createAndSetUpModules(projectModels, cache, indicator);
     myProjectDataNodeSetup.setupProjectDataNode(projectModels, myProject);
-    myAndroidModuleProcessor.processAndroidModels(myAndroidModules);
-    myProjectCleanup.cleanUpProject(myProject, myModelsProvider, indicator);
-    myModuleDisposer.disposeObsoleteModules(indicator);
+    runSetupPhase("Process Android modules", () -> myAndroidModuleProcessor.processAndroidModels(myAndroidModules));
+    runSetupPhase("Clean up project", () -> {
+      myProjectCleanup.cleanUpProject(myProject, myModelsProvider, indicator);
+      myModuleDisposer.disposeObsoleteModules(indicator);
+    });
 
     cache.saveToDisk(myProject);
   }
@@ -163,13 +168,30 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
   // TODO(alruiz): reconcile with https://github.com/JetBrains/intellij-community/commit/6d425f7
   private static final String ROOT_PROJECT_PATH_KEY = "external.root.project.path";
 
-  private void createAndSetUpModules(@NotNull SyncProjectModels projectModels, @NotNull CachedProjectModels cache) {
-    populateModuleBuildFolders(projectModels);
+  private void createAndSetUpModules(@NotNull SyncProjectModels projectModels,
+                                     @NotNull CachedProjectModels cache,
+                                     @NotNull ProgressIndicator indicator) {
     List<ModuleSetupInfo> moduleSetupInfos = new ArrayList<>();
+    ModuleFinder moduleFinder = myModuleFinderFactory.create(myProject);
+    runSetupPhase("Create modules", () -> createModules(projectModels, cache, moduleFinder, moduleSetupInfos));
 
-    String projectRootFolderPath = nullToEmpty(myProject.getBasePath());
+    SetupContextByModuleModel setupContextByModuleModel = new SetupContextByModuleModel();
+    // First, create all ModuleModels based on GradleModuleModels.
+    List<CreatedModuleModels> createdModels = new ArrayList<>();
+    runSetupPhase("Create module models", () -> createdModels.addAll(createModuleModels(projectModels, moduleSetupInfos, moduleFinder, indicator)));
+    for (CreatedModuleModels moduleModels : createdModels) {
+      addModuleModels(moduleModels, setupContextByModuleModel);
+    }
+    // Then, setup the ModuleModels based on the module types.
+    setupModuleModels(setupContextByModuleModel, myGradleModuleSetup, myNdkModuleSetup, myAndroidModuleSetup, myJavaModuleSetup,
+                      myExtraModelsManager, false /* not skipped */);
+  }
 
-    ModuleFinder moduleFinder = myModuleFinderFactory.create(myProject);
+  private void createModules(@NotNull SyncProjectModels projectModels,
+                             @NotNull CachedProjectModels cache,
+                             @NotNull ModuleFinder moduleFinder,
+                             @NotNull List<ModuleSetupInfo> moduleSetupInfos) {
+    String projectRootFolderPath = nullToEmpty(myProject.getBasePath());
     for (GradleModuleModels moduleModels : projectModels.getModuleModels()) {
       Module module = myModuleFactory.createModule(moduleModels);
 
@@ -192,15 +214,6 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
       moduleFinder.addModule(module, gradleProject.getPath());
       moduleSetupInfos.add(new ModuleSetupInfo(module, moduleModels, cachedModels));
     }
-
-    SetupContextByModuleModel setupContextByModuleModel = new SetupContextByModuleModel();
-    // First, create all ModuleModels based on GradleModuleModels.
-    for (ModuleSetupInfo moduleSetupInfo : moduleSetupInfos) {
-      createModuleModel(moduleSetupInfo, moduleFinder, setupContextByModuleModel);
-    }
-    // Then, setup the ModuleModels based on the module types.
-    setupModuleModels(setupContextByModuleModel, myGradleModuleSetup, myNdkModuleSetup, myAndroidModuleSetup, myJavaModuleSetup,
-                      myExtraModelsManager, false /* not skipped */);
   }
 
   // Returns true if the moduleModel is the one represents root project.
@@ -210,17 +223,19 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
   }
 
   /**
-   * Populate the map from project path to build folder for all modules.
-   * It will be used to check if a {@link AndroidLibrary} is sub-module that wraps local aar.
+   * Sets up the given factory with the global library map of the project and the map from project path to build folder of all
+   * modules. The latter is used to check if a {@link AndroidLibrary} is sub-module that wraps local aar.
    */
-  private void populateModuleBuildFolders(@NotNull SyncProjectModels projectModels) {
-    myDependenciesFactory.setRootBuildId(projectModels.getRootBuildId().getRootDir().getAbsolutePath());
+  private static void setUpDependenciesFactory(@NotNull IdeDependenciesFactory dependenciesFactory,
+                                               @NotNull SyncProjectModels projectModels) {
+    dependenciesFactory.setUpGlobalLibraryMap(projectModels.getGlobalLibraryMap());
+    dependenciesFactory.setRootBuildId(projectModels.getRootBuildId().getRootDir().getAbsolutePath());
     for (GradleModuleModels moduleModels : projectModels.getModuleModels()) {
       GradleProject gradleProject = moduleModels.findModel(GradleProject.class);
       if (gradleProject != null) {
         try {
           String buildId = gradleProject.getProjectIdentifier().getBuildIdentifier().getRootDir().getPath();
-          myDependenciesFactory.findAndAddBuildFolderPath(buildId, gradleProject.getPath(), gradleProject.getBuildDirectory());
+          dependenciesFactory.findAndAddBuildFolderPath(buildId, gradleProject.getPath(), gradleProject.getBuildDirectory());
         }
         catch (UnsupportedOperationException exception) {
           // getBuildDirectory is not available for Gradle older than 2.0.
@@ -230,25 +245,70 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
     }
   }
 
-  private void createModuleModel(@NotNull ModuleSetupInfo setupInfo,
-                                 @NotNull ModuleFinder moduleFinder,
-                                 @NotNull SetupContextByModuleModel setupContextByModuleModel) {
+  /**
+   * Creates the models of all the modules. Creating the models of a module (e.g. copying the AndroidProject and resolving its
+   * dependencies) does not change the project, and does not depend on the models of other modules, so the modules are processed
+   * concurrently when {@link StudioFlags#PARALLEL_SYNC_SETUP_ENABLED} is enabled. {@link IdeDependenciesFactory} is not thread safe,
+   * so each concurrent task takes its own factory, set up like the shared one, from a pool. The {@link ModuleSetupContext}s are always
+   * created sequentially, before the models.
+   *
+   * @return the models created for each module, in the same order as {@code moduleSetupInfos}.
+   */
+  @NotNull
+  private List<CreatedModuleModels> createModuleModels(@NotNull SyncProjectModels projectModels,
+                                                       @NotNull List<ModuleSetupInfo> moduleSetupInfos,
+                                                       @NotNull ModuleFinder moduleFinder,
+                                                       @NotNull ProgressIndicator indicator) {
+    Map<ModuleSetupInfo, ModuleSetupContext> contexts = new HashMap<>();
+    for (ModuleSetupInfo setupInfo : moduleSetupInfos) {
+      contexts.put(setupInfo, myModuleSetupFactory.create(setupInfo.module, myModelsProvider, moduleFinder, setupInfo.moduleModels));
+    }
+
+    if (!StudioFlags.PARALLEL_SYNC_SETUP_ENABLED.get() || moduleSetupInfos.size() < 2) {
+      return moduleSetupInfos.stream().map(setupInfo -> createModuleModels(setupInfo, contexts.get(setupInfo), myDependenciesFactory))
+                             .collect(Collectors.toList());
+    }
+
+    // There are at most as many factories as tasks running at the same time
+    Queue<IdeDependenciesFactory> dependenciesFactories = new ConcurrentLinkedQueue<>();
+    Map<ModuleSetupInfo, CreatedModuleModels> createdModels = new ConcurrentHashMap<>();
+    //noinspection deprecation
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(moduleSetupInfos, indicator, true /* fail fast */, setupInfo -> {
+      IdeDependenciesFactory dependenciesFactory = dependenciesFactories.poll();
+      if (dependenciesFactory == null) {
+        dependenciesFactory = new IdeDependenciesFactory();
+        setUpDependenciesFactory(dependenciesFactory, projectModels);
+      }
+      try {
+        createdModels.put(setupInfo, createModuleModels(setupInfo, contexts.get(setupInfo), dependenciesFactory));
+      }
+      finally {
+        dependenciesFactories.add(dependenciesFactory);
+      }
+      return true;
+    });
+    return moduleSetupInfos.stream().map(createdModels::get).filter(Objects::nonNull).collect(Collectors.toList());
+  }
+
+  @NotNull
+  private CreatedModuleModels createModuleModels(@NotNull ModuleSetupInfo setupInfo,
+                                                 @NotNull ModuleSetupContext context,
+                                                 @NotNull IdeDependenciesFactory dependenciesFactory) {
     Module module = setupInfo.module;
     GradleModuleModels moduleModels = setupInfo.moduleModels;
-    CachedModuleModels cachedModels = setupInfo.cachedModels;
 
     module.putUserData(MODULE_GRADLE_MODELS_KEY, moduleModels);
 
     File moduleRootFolderPath = findModuleRootFolderPath(module);
     assert moduleRootFolderPath != null;
 
-    ModuleSetupContext context = myModuleSetupFactory.create(module, myModelsProvider, moduleFinder, moduleModels);
+    CreatedModuleModels createdModels = new CreatedModuleModels(setupInfo, context);
 
     AndroidProject androidProject = moduleModels.findModel(AndroidProject.class);
     if (androidProject != null) {
-      AndroidModuleModel androidModel = myAndroidModelFactory.createAndroidModel(module, androidProject, moduleModels);
-      setupContextByModuleModel.androidSetupContexts.put(androidModel, context);
-      if (androidModel != null) {
+      createdModels.isAndroidProject = true;
+      createdModels.androidModel = myAndroidModelFactory.createAndroidModel(module, androidProject, moduleModels, dependenciesFactory);
+      if (createdModels.androidModel != null) {
         // "Native" projects also both AndroidProject and AndroidNativeProject
         NativeAndroidProject nativeAndroidProject = moduleModels.findModel(NativeAndroidProject.class);
         if (nativeAndroidProject != null) {
@@ -258,7 +318,50 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
           if (nativeVariantAbi != null) {
             ideNativeVariantAbi.addAll(nativeVariantAbi.stream().map(IdeNativeVariantAbi::new).collect(Collectors.toList()));
           }
-          NdkModuleModel ndkModel = new NdkModuleModel(module.getName(), moduleRootFolderPath, copy, ideNativeVariantAbi);
+          createdModels.ndkModel = new NdkModuleModel(module.getName(), moduleRootFolderPath, copy, ideNativeVariantAbi);
+        }
+      }
+      else {
+        // This is an Android module without variants. Treat as a non-buildable Java module.
+        GradleProject gradleProject = moduleModels.findModel(GradleProject.class);
+        assert gradleProject != null;
+
+        Collection<SyncIssue> issues = androidProject.getSyncIssues();
+        createdModels.javaModel = myJavaModuleModelFactory.create(gradleProject, androidProject, issues);
+      }
+      return createdModels;
+    }
+
+    // This is a Java module.
+    JavaProject javaProject = moduleModels.findModel(JavaProject.class);
+    GradleProject gradleProject = moduleModels.findModel(GradleProject.class);
+    if (gradleProject != null && javaProject != null) {
+      createdModels.javaModel = myJavaModuleModelFactory.create(moduleRootFolderPath, gradleProject,
+                                                                javaProject /* regular Java module */);
+      createdModels.isJavaProject = true;
+      return createdModels;
+    }
+
+    // This is a Jar/Aar module or root module.
+    ArtifactModel jarAarProject = moduleModels.findModel(ArtifactModel.class);
+    if (gradleProject != null && jarAarProject != null) {
+      createdModels.javaModel = myJavaModuleModelFactory.create(moduleRootFolderPath, gradleProject, jarAarProject);
+    }
+    return createdModels;
+  }
+
+  private void addModuleModels(@NotNull CreatedModuleModels createdModels,
+                               @NotNull SetupContextByModuleModel setupContextByModuleModel) {
+    Module module = createdModels.setupInfo.module;
+    CachedModuleModels cachedModels = createdModels.setupInfo.cachedModels;
+    ModuleSetupContext context = createdModels.context;
+
+    if (createdModels.isAndroidProject) {
+      AndroidModuleModel androidModel = createdModels.androidModel;
+      setupContextByModuleModel.androidSetupContexts.put(androidModel, context);
+      if (androidModel != null) {
+        NdkModuleModel ndkModel = createdModels.ndkModel;
+        if (ndkModel != null) {
           setupContextByModuleModel.ndkSetupContexts.put(ndkModel, context);
           cachedModels.addModel(ndkModel);
         }
@@ -272,11 +375,8 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
       else {
         // This is an Android module without variants. Treat as a non-buildable Java module.
         removeAndroidFacetFrom(module);
-        GradleProject gradleProject = moduleModels.findModel(GradleProject.class);
-        assert gradleProject != null;
-
-        Collection<SyncIssue> issues = androidProject.getSyncIssues();
-        JavaModuleModel javaModel = myJavaModuleModelFactory.create(gradleProject, androidProject, issues);
+        JavaModuleModel javaModel = createdModels.javaModel;
+        assert javaModel != null;
         setupContextByModuleModel.javaSetupContexts.put(javaModel, context);
         cachedModels.addModel(javaModel);
       }
@@ -287,24 +387,13 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
     // This is not an Android module. Remove any AndroidFacet set in a previous sync operation.
     removeAllFacets(myModelsProvider.getModifiableFacetModel(module), NdkFacet.getFacetTypeId());
 
-    // This is a Java module.
-    JavaProject javaProject = moduleModels.findModel(JavaProject.class);
-    GradleProject gradleProject = moduleModels.findModel(GradleProject.class);
-    if (gradleProject != null && javaProject != null) {
-      JavaModuleModel javaModel = myJavaModuleModelFactory.create(moduleRootFolderPath, gradleProject,
-                                                                  javaProject /* regular Java module */);
-      setupContextByModuleModel.javaSetupContexts.put(javaModel, context);
-      cachedModels.addModel(javaModel);
-      myExtraModelsManager.addJavaModelsToCache(module, cachedModels);
-      return;
-    }
-
-    // This is a Jar/Aar module or root module.
-    ArtifactModel jarAarProject = moduleModels.findModel(ArtifactModel.class);
-    if (gradleProject != null && jarAarProject != null) {
-      JavaModuleModel javaModel = myJavaModuleModelFactory.create(moduleRootFolderPath, gradleProject, jarAarProject);
+    JavaModuleModel javaModel = createdModels.javaModel;
+    if (javaModel != null) {
       setupContextByModuleModel.javaSetupContexts.put(javaModel, context);
       cachedModels.addModel(javaModel);
+      if (createdModels.isJavaProject) {
+        myExtraModelsManager.addJavaModelsToCache(module, cachedModels);
+      }
     }
   }
 
@@ -316,4 +405,20 @@ class SyncProjectModelsSetup extends ModuleSetup<SyncProjectModels> {
   private void removeNdkFacetFrom(@NotNull Module module) {
     removeAllFacets(myModelsProvider.getModifiableFacetModel(module), NdkFacet.getFacetTypeId());
   }
+
+  // The models created for a module, before they are added to the project.
+  private static class CreatedModuleModels {
+    @NotNull final ModuleSetupInfo setupInfo;
+    @NotNull final ModuleSetupContext context;
+    boolean isAndroidProject;
+    boolean isJavaProject;
+    @Nullable AndroidModuleModel androidModel;
+    @Nullable NdkModuleModel ndkModel;
+    @Nullable JavaModuleModel javaModel;
+
+    CreatedModuleModels(@NotNull ModuleSetupInfo setupInfo, @NotNull ModuleSetupContext context) {
+      this.setupInfo = setupInfo;
+      this.context = context;
+    }
+  }
 }
@@ -17,35 +17,43 @@ package com.android.tools.idea.gradle.project.sync.ng.caching;
 
 import com.android.tools.idea.gradle.project.sync.GradleModuleModels;
 import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.Serializable;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
 
 public class CachedModuleModels implements GradleModuleModels {
   // Increase the value when adding/removing fields or when changing the serialization/deserialization mechanism.
-  private static final long serialVersionUID = 4L;
+  private static final long serialVersionUID = 5L;
 
   @NotNull private final String myModuleName;
   @NotNull private final Map<Class<?>, Serializable> myGradleModelsByType = new HashMap<>();
 
+  // The serialized models of a module read from the disk cache, deserialized the first time they are needed.
+  @Nullable private transient ByteBuffer mySerializedModels;
+
   CachedModuleModels(@NotNull Module module) {
     myModuleName = module.getName();
   }
 
-  public void addModel(@NotNull Serializable model) {
+  CachedModuleModels(@NotNull String moduleName, @NotNull ByteBuffer serializedModels) {
+    myModuleName = moduleName;
+    mySerializedModels = serializedModels;
+  }
+
+  public synchronized void addModel(@NotNull Serializable model) {
+    loadModels();
     myGradleModelsByType.put(model.getClass(), model);
   }
 
   @Override
   @Nullable
   public <T> T findModel(@NotNull Class<T> modelType) {
-    Serializable model = myGradleModelsByType.get(modelType);
+    Serializable model = getModels().get(modelType);
     if (modelType.isInstance(model)) {
       return modelType.cast(model);
     }
@@ -60,6 +68,63 @@ public class CachedModuleModels implements GradleModuleModels {
     return model == null ? null : ImmutableList.of(model);
   }
 
+  /**
+   * Deserializes the models read from the disk cache, if they were not deserialized yet. The models of different modules can be
+   * loaded concurrently.
+   */
+  public synchronized void loadModels() {
+    ByteBuffer serializedModels = mySerializedModels;
+    if (serializedModels == null) {
+      return;
+    }
+    mySerializedModels = null;
+    byte[] bytes = new byte[serializedModels.remaining()];
+    serializedModels.duplicate().get(bytes);
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      int count = ois.readInt();
+      for (int i = 0; i < count; i++) {
+        Serializable model = (Serializable)ois.readObject();
+        myGradleModelsByType.put(model.getClass(), model);
+      }
+    }
+    catch (Throwable e) {
+      // The setup of the module fails with ModelNotFoundInCacheException, which triggers a Gradle sync.
+      Logger.getInstance(CachedModuleModels.class).warn(String.format("Failed to load Gradle models of module '%1$s'", myModuleName), e);
+      myGradleModelsByType.clear();
+    }
+  }
+
+  /**
+   * Writes the models in the format read by {@link #CachedModuleModels(String, ByteBuffer)}. Models that were never deserialized are
+   * written back as they were read.
+   */
+  synchronized void writeModels(@NotNull OutputStream out) throws IOException {
+    ByteBuffer serializedModels = mySerializedModels;
+    if (serializedModels != null) {
+      byte[] bytes = new byte[serializedModels.remaining()];
+      serializedModels.duplicate().get(bytes);
+      out.write(bytes);
+      return;
+    }
+    ObjectOutputStream oos = new ObjectOutputStream(out);
+    oos.writeInt(myGradleModelsByType.size());
+    for (Serializable model : myGradleModelsByType.values()) {
+      oos.writeObject(model);
+    }
+    oos.flush();
+  }
+
+  @NotNull
+  private synchronized Map<Class<?>, Serializable> getModels() {
+    loadModels();
+    return myGradleModelsByType;
+  }
+
+  private void writeObject(@NotNull ObjectOutputStream out) throws IOException {
+    loadModels();
+    out.defaultWriteObject();
+  }
+
   @Override
   @NotNull
   public String getModuleName() {
@@ -76,19 +141,19 @@ public class CachedModuleModels implements GradleModuleModels {
     }
     CachedModuleModels that = (CachedModuleModels)o;
     return Objects.equals(myModuleName, that.myModuleName) &&
-           Objects.equals(myGradleModelsByType, that.myGradleModelsByType);
+           Objects.equals(getModels(), that.getModels());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(myModuleName, myGradleModelsByType);
+    return Objects.hash(myModuleName, getModels());
   }
 
   @Override
   public String toString() {
     return "GradleModuleModelsCache{" +
            "myModuleName='" + myModuleName + '\'' +
-           ", myGradleModelsByType=" + myGradleModelsByType +
+           ", myGradleModelsByType=" + getModels() +
            '}';
   }
 }
\ No newline at end of file
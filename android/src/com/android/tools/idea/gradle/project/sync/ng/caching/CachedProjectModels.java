@@ -20,20 +20,37 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfo;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.gradle.model.data.BuildParticipant;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.Future;
 
 import static com.android.tools.idea.gradle.util.GradleUtil.getCacheFolderRootPath;
 import static com.intellij.openapi.util.io.FileUtil.ensureExists;
 
+/**
+ * The models of the last Gradle sync, saved to disk so that the project can be set up without syncing when it is reopened.
+ *
+ * <p>The disk cache is made of the serialized models of each module, followed by an offset table. The file is memory mapped when it is
+ * loaded and the models of a module are only deserialized when they are first needed (see {@link CachedModuleModels#loadModels()}), so
+ * that the modules can be set up in parallel instead of waiting for the whole project to be deserialized.
+ */
 public class CachedProjectModels implements Serializable {
   // Increase the value when adding/removing fields or when changing the serialization/deserialization mechanism.
-  private static final long serialVersionUID = 2L;
+  private static final long serialVersionUID = 3L;
+
+  // Increase the value when changing the format of the disk cache.
+  private static final int CACHE_FORMAT_VERSION = 1;
+  private static final int CACHE_MAGIC = 0x4D4F444C; // "MODL"
 
   public static class Factory {
     @NotNull
@@ -47,20 +64,88 @@ public class CachedProjectModels implements Serializable {
     public CachedProjectModels loadFromDisk(@NotNull Project project) {
       File cacheFilePath = getCacheFilePath(project);
       if (cacheFilePath.isFile()) {
-        try (FileInputStream fis = new FileInputStream(cacheFilePath)) {
-          try (ObjectInputStream ois = new ObjectInputStream(fis)) {
-            return (CachedProjectModels)ois.readObject();
-          }
-          catch (Throwable e) {
-            getLog().warn(String.format("Failed to load Gradle models from '%1$s'", cacheFilePath.getPath()), e);
-          }
+        ByteBuffer buffer;
+        try {
+          buffer = mapFile(cacheFilePath);
         }
         catch (Throwable e) {
           getLog().warn(String.format("Failed to access '%1$s' while loading Gradle models", cacheFilePath.getPath()), e);
+          return null;
+        }
+        try {
+          return readFrom(buffer);
+        }
+        catch (Throwable e) {
+          getLog().warn(String.format("Failed to load Gradle models from '%1$s'", cacheFilePath.getPath()), e);
         }
       }
       return null;
     }
+
+    @NotNull
+    private static ByteBuffer mapFile(@NotNull File path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path.toPath(), StandardOpenOption.READ)) {
+        if (SystemInfo.isWindows) {
+          // A mapped file cannot be replaced on Windows until the mapping is garbage collected, which would prevent saving the cache.
+          ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+          while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+              throw new EOFException();
+            }
+          }
+          buffer.flip();
+          return buffer;
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    }
+
+    @NotNull
+    private static CachedProjectModels readFrom(@NotNull ByteBuffer buffer) throws IOException, ClassNotFoundException {
+      if (buffer.limit() < 16 || buffer.getInt(0) != CACHE_MAGIC || buffer.getInt(4) != CACHE_FORMAT_VERSION) {
+        throw new IOException("Unsupported Gradle models cache format");
+      }
+      int tableOffset = (int)buffer.getLong(buffer.limit() - 8);
+      if (tableOffset < 8 || tableOffset > buffer.limit() - 8) {
+        throw new IOException("Invalid Gradle models cache offset table");
+      }
+
+      CachedProjectModels cache = new CachedProjectModels();
+      DataInputStream table = new DataInputStream(new ByteArrayInputStream(getBytes(buffer, tableOffset, buffer.limit() - 8 - tableOffset)));
+      int moduleCount = table.readInt();
+      for (int i = 0; i < moduleCount; i++) {
+        String moduleName = table.readUTF();
+        ByteBuffer serializedModels = slice(buffer, table.readInt(), table.readInt());
+        cache.myModelsByModuleName.put(moduleName, new CachedModuleModels(moduleName, serializedModels));
+      }
+
+      byte[] buildParticipants = getBytes(buffer, table.readInt(), table.readInt());
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(buildParticipants))) {
+        int count = ois.readInt();
+        for (int i = 0; i < count; i++) {
+          cache.myBuildParticipants.add((BuildParticipant)ois.readObject());
+        }
+      }
+      return cache;
+    }
+
+    @NotNull
+    private static ByteBuffer slice(@NotNull ByteBuffer buffer, int offset, int length) throws IOException {
+      if (offset < 8 || length < 0 || offset + length > buffer.limit() - 8) {
+        throw new IOException("Invalid Gradle models cache offset table");
+      }
+      ByteBuffer slice = buffer.duplicate();
+      slice.position(offset);
+      slice.limit(offset + length);
+      return slice.slice();
+    }
+
+    @NotNull
+    private static byte[] getBytes(@NotNull ByteBuffer buffer, int offset, int length) throws IOException {
+      byte[] bytes = new byte[length];
+      slice(buffer, offset, length).get(bytes);
+      return bytes;
+    }
   }
 
   // Key: module name.
@@ -112,20 +197,66 @@ public class CachedProjectModels implements Serializable {
       catch (IOException e) {
         getLog().warn(String.format("Failed to create folders for path '%1$s'", path.getPath()), e);
       }
-      try (FileOutputStream fos = new FileOutputStream(path)) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-          oos.writeObject(this);
+      // Write to a temporary file first: the current cache file may be mapped by the cache that was loaded from it.
+      File tempPath = new File(path.getPath() + ".tmp");
+      try (FileOutputStream fos = new FileOutputStream(tempPath)) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+          writeTo(out);
         }
         catch (Throwable e) {
           getLog().warn(String.format("Failed to save Gradle models to path '%1$s'", path.getPath()), e);
+          return;
         }
       }
       catch (Throwable e) {
-        getLog().warn(String.format("Failed to open path '%1$s'", path.getPath()), e);
+        getLog().warn(String.format("Failed to open path '%1$s'", tempPath.getPath()), e);
+        return;
+      }
+      try {
+        Files.move(tempPath.toPath(), path.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (Throwable e) {
+        getLog().warn(String.format("Failed to save Gradle models to path '%1$s'", path.getPath()), e);
       }
     });
   }
 
+  private void writeTo(@NotNull DataOutputStream out) throws IOException {
+    out.writeInt(CACHE_MAGIC);
+    out.writeInt(CACHE_FORMAT_VERSION);
+
+    Map<String, int[]> moduleOffsets = new LinkedHashMap<>();
+    for (Map.Entry<String, CachedModuleModels> entry : myModelsByModuleName.entrySet()) {
+      int offset = out.size();
+      entry.getValue().writeModels(out);
+      moduleOffsets.put(entry.getKey(), new int[]{offset, out.size() - offset});
+    }
+
+    int buildParticipantsOffset = out.size();
+    ObjectOutputStream oos = new ObjectOutputStream(out);
+    oos.writeInt(myBuildParticipants.size());
+    for (BuildParticipant participant : myBuildParticipants) {
+      oos.writeObject(participant);
+    }
+    oos.flush();
+    int buildParticipantsLength = out.size() - buildParticipantsOffset;
+
+    long tableOffset = out.size();
+    out.writeInt(moduleOffsets.size());
+    for (Map.Entry<String, int[]> entry : moduleOffsets.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue()[0]);
+      out.writeInt(entry.getValue()[1]);
+    }
+    out.writeInt(buildParticipantsOffset);
+    out.writeInt(buildParticipantsLength);
+    out.writeLong(tableOffset);
+    if (out.size() == Integer.MAX_VALUE) {
+      // DataOutputStream stops counting at Integer.MAX_VALUE, so the offsets would be wrong.
+      throw new IOException("Gradle models are too large to be cached");
+    }
+  }
+
   public static void eraseDiskCache(@NotNull Project project) {
     File cache = getCacheFilePath(project);
     if (cache.exists()) {
@@ -32,7 +32,7 @@ class PsProjectImpl(
   override val repositorySearchFactory: RepositorySearchFactory = CachingRepositorySearchFactory()
 ) : PsChildModel(), PsProject {
   override val descriptor by ProjectDescriptors
-  override var parsedModel: ProjectBuildModel = GradleModelProvider.get().getProjectModel(ideProject); private set
+  override val parsedModel: ProjectBuildModel = parseProjectModel(ideProject)
   @Suppress("RedundantModalityModifier")  // Kotlin compiler bug (KT-24833)?
   final override val variables: PsVariables
   override val pomDependencyCache: PsPomDependencyCache = PsPomDependencies()
@@ -78,7 +78,7 @@ class PsProjectImpl(
           isModified = false
         }
       }.execute()
-      parsedModel = GradleModelProvider.get().getProjectModel(ideProject)
+      reparseChangedFiles()
       variables.refresh()
       internalResolvedModuleModels = null
       moduleCollection.refresh()
@@ -103,7 +103,7 @@ class PsProjectImpl(
       }.execute()
     }
     if (runnable()) {
-      parsedModel = GradleModelProvider.get().getProjectModel(ideProject)
+      reparseChangedFiles()
       variables.refresh()
       internalResolvedModuleModels = null
       moduleCollection.refresh()
@@ -111,6 +111,15 @@ class PsProjectImpl(
     }
   }
 
+  /**
+   * Parses again only the build files that changed, e.g. by applying the changes, and the files depending on them. The modules and
+   * variables are refreshed by the callers, since the models obtained before refer to the previous state.
+   */
+  private fun reparseChangedFiles() {
+    parsedModel.reparseChangedFiles()
+    parsedModel.parseAllModuleBuildFiles()
+  }
+
   object ProjectDescriptors: ModelDescriptor<PsProject, Nothing, Nothing> {
     override fun getResolved(model: PsProject): Nothing? = null
     override fun getParsed(model: PsProject): Nothing? = null
@@ -118,3 +127,7 @@ class PsProjectImpl(
     override fun enumerateModels(model: PsProject): Collection<PsModel> = model.modules
   }
 }
+
+// The models of all the modules are needed, parse their build files at once.
+private fun parseProjectModel(ideProject: Project): ProjectBuildModel =
+  GradleModelProvider.get().getProjectModel(ideProject).also { it.parseAllModuleBuildFiles() }
@@ -25,6 +25,10 @@ import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.*;
 import com.intellij.util.containers.HashMap;
 import org.jetbrains.annotations.NotNull;
@@ -34,6 +38,7 @@ import org.w3c.dom.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Converter which takes a PSI hierarchy for an XML file or document, and
@@ -46,6 +51,11 @@ import java.util.Map;
  * converter only attempts to make the DOM correct as far as Lint cares (meaning that it
  * only worries about the details Lint cares about; currently this means it only wraps elements,
  * text and comment nodes.)
+ * <p>
+ * The DOM nodes are created lazily, the first time they are reached, and each document keeps
+ * the node created for each PSI element so the same node is always returned for it. The
+ * document of an {@link XmlFile} is cached until the file changes, so the editor annotator
+ * and batch inspections share it instead of wrapping the file again on every pass.
  */
 class DomPsiConverter {
   private DomPsiConverter() {
@@ -60,12 +70,10 @@ class DomPsiConverter {
   @Nullable
   public static Document convert(@NotNull XmlFile xmlFile) {
     try {
-      XmlDocument xmlDocument = xmlFile.getDocument();
-      if (xmlDocument == null) {
-        return null;
-      }
-
-      return convert(xmlDocument);
+      return CachedValuesManager.getCachedValue(xmlFile, () -> {
+        XmlDocument xmlDocument = xmlFile.getDocument();
+        return CachedValueProvider.Result.create(xmlDocument != null ? convert(xmlDocument) : null, xmlFile);
+      });
     }
     catch (ProcessCanceledException e) {
       // Ignore: common occurrence, e.g. we're running lint as part of an editor background
@@ -98,7 +106,14 @@ class DomPsiConverter {
   @Nullable
   public static DomNode findNodeAt(Document document, int offset) {
     assert document instanceof DomDocument;
-    return findElementAt((DomDocument)document, offset);
+    DomDocument domDocument = (DomDocument)document;
+
+    // Look up the element in the PSI, so only the nodes of its ancestors need to be created
+    PsiFile file = domDocument.myPsiDocument.getContainingFile();
+    PsiElement leaf = file != null ? file.findElementAt(offset) : null;
+    XmlElement element = PsiTreeUtil.getParentOfType(leaf, XmlTag.class, XmlText.class, XmlComment.class);
+    DomNode node = element != null ? domDocument.getNode(element) : null;
+    return node != null ? node : findElementAt(domDocument, offset);
   }
 
   @Nullable
@@ -400,31 +415,43 @@ class DomPsiConverter {
     @NotNull
     @Override
     public DomNodeList getChildNodes() {
-      if (myChildren == null) {
-        PsiElement[] children = myElement.getChildren();
-        if (children.length > 0) {
-          DomNodeList list = new DomNodeList();
-          myChildren = list;
-          // True except for in DomDocument, which has custom getChildNodes
-          assert myOwner != null;
-
-          for (PsiElement child : children) {
-            if (child instanceof XmlTag) {
-              list.add(new DomElement(myOwner, this, (XmlTag) child));
-            } else if (child instanceof XmlText) {
-              list.add(new DomText(myOwner, this, (XmlText) child));
-            } else if (child instanceof XmlComment) {
-              list.add(new DomComment(myOwner, this, (XmlComment) child));
-            } else {
-              // Skipping other types for now; lint doesn't care about them.
-              // TODO: Consider whether we need CDATA.
-            }
+      // The document may be used by several threads at once, the nodes of the children must only be created once
+      synchronized (this) {
+        if (myChildren == null) {
+          DomNodeList children = createChildNodes();
+          if (myOwner instanceof DomDocument) {
+            ((DomDocument)myOwner).addNodes(children.myChildren);
           }
-        } else {
-          myChildren = EMPTY;
+          myChildren = children;
         }
+        return myChildren;
+      }
+    }
+
+    @NotNull
+    private DomNodeList createChildNodes() {
+      PsiElement[] children = myElement.getChildren();
+      if (children.length > 0) {
+        DomNodeList list = new DomNodeList();
+        // True except for in DomDocument, which has custom getChildNodes
+        assert myOwner != null;
+
+        for (PsiElement child : children) {
+          if (child instanceof XmlTag) {
+            list.add(new DomElement(myOwner, this, (XmlTag) child));
+          } else if (child instanceof XmlText) {
+            list.add(new DomText(myOwner, this, (XmlText) child));
+          } else if (child instanceof XmlComment) {
+            list.add(new DomComment(myOwner, this, (XmlComment) child));
+          } else {
+            // Skipping other types for now; lint doesn't care about them.
+            // TODO: Consider whether we need CDATA.
+          }
+        }
+        return list;
+      } else {
+        return EMPTY;
       }
-      return myChildren;
     }
 
     @Nullable
@@ -442,7 +469,7 @@ class DomPsiConverter {
     public DomNode getLastChild() {
       DomNodeList childNodes = getChildNodes();
       if (childNodes.getLength() > 0) {
-        return childNodes.item(0);
+        return childNodes.item(childNodes.getLength() - 1);
       }
       return null;
     }
@@ -657,6 +684,8 @@ class DomPsiConverter {
 
   private static class DomDocument extends DomNode implements Document {
     @NotNull private final XmlDocument myPsiDocument;
+    /** The nodes created so far for the elements of the document, to always return the same node for an element */
+    @NotNull private final Map<XmlElement, DomNode> myNodes = new ConcurrentHashMap<>();
     @Nullable private DomElement myRoot;
 
     private DomDocument(@NotNull XmlDocument document) {
@@ -664,6 +693,36 @@ class DomPsiConverter {
       myPsiDocument = document;
     }
 
+    private void addNodes(@NotNull List<DomNode> nodes) {
+      for (DomNode node : nodes) {
+        myNodes.put(node.myElement, node);
+      }
+    }
+
+    /**
+     * Returns the node of the given tag, text or comment, creating the nodes of its ancestors and their siblings if needed
+     */
+    @Nullable
+    private DomNode getNode(@NotNull XmlElement element) {
+      DomNode node = myNodes.get(element);
+      if (node != null) {
+        return node;
+      }
+      if (element instanceof XmlTag && element.equals(myPsiDocument.getRootTag())) {
+        return (DomNode)getDocumentElement();
+      }
+      PsiElement parent = element.getParent();
+      if (!(parent instanceof XmlTag)) {
+        return null;
+      }
+      DomNode parentNode = getNode((XmlTag)parent);
+      if (parentNode == null) {
+        return null;
+      }
+      parentNode.getChildNodes();
+      return myNodes.get(element);
+    }
+
     // From org.w3c.dom.Node:
 
     @Nullable
@@ -686,16 +745,17 @@ class DomPsiConverter {
     @NotNull
     @Override
     public DomNodeList getChildNodes() {
-      if (myChildren == null) {
-        DomNodeList list = new DomNodeList();
-        myChildren = list;
-        DomNode documentElement = (DomNode)getDocumentElement();
-        if (documentElement != null) {
-          list.add(documentElement);
+      DomNode documentElement = (DomNode)getDocumentElement();
+      synchronized (this) {
+        if (myChildren == null) {
+          DomNodeList list = new DomNodeList();
+          if (documentElement != null) {
+            list.add(documentElement);
+          }
+          myChildren = list;
         }
+        return myChildren;
       }
-
-      return myChildren;
     }
 
     @Nullable
@@ -721,15 +781,18 @@ class DomPsiConverter {
     @Nullable
     @Override
     public Element getDocumentElement() {
-      if (myRoot == null) {
-        XmlTag rootTag = myPsiDocument.getRootTag();
-        if (rootTag == null) {
-          return null;
+      synchronized (this) {
+        if (myRoot == null) {
+          XmlTag rootTag = myPsiDocument.getRootTag();
+          if (rootTag == null) {
+            return null;
+          }
+          myRoot = new DomElement(this, this, rootTag);
+          myNodes.put(rootTag, myRoot);
         }
-        myRoot = new DomElement(this, this, rootTag);
-      }
 
-      return myRoot;
+        return myRoot;
+      }
     }
 
     @NotNull
@@ -943,16 +1006,21 @@ class DomPsiConverter {
         return application.runReadAction((Computable<NamedNodeMap>)this::getAttributes);
       }
 
-      if (myAttributes == null) {
-        XmlAttribute[] attributes = myTag.getAttributes();
-        if (attributes.length == 0) {
-         myAttributes = EMPTY_ATTRIBUTES;
-        } else {
-          myAttributes = new DomNamedNodeMap(this, attributes);
+      synchronized (this) {
+        if (myAttributes == null) {
+          XmlAttribute[] attributes = myTag.getAttributes();
+          if (attributes.length == 0) {
+           myAttributes = EMPTY_ATTRIBUTES;
+          } else {
+            DomNamedNodeMap attributeMap = new DomNamedNodeMap(this, attributes);
+            assert myOwner != null;
+            ((DomDocument)myOwner).addNodes(attributeMap.mItems);
+            myAttributes = attributeMap;
+          }
         }
-      }
 
-      return myAttributes;
+        return myAttributes;
+      }
     }
 
     // From org.w3c.dom.Element:
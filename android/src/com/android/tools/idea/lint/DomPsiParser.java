@@ -222,8 +222,8 @@ class DomPsiParser extends XmlParser {
       ApplicationManager.getApplication().assertReadAccessAllowed();
       PsiFile file = element.getContainingFile();
       if (file != null && file.isValid()) {
-        String contents = file.getText();
-        initializeFromText(contents);
+        // The contents of the view provider are not copied, unlike the text of the file
+        initializeFromText(file.getViewProvider().getContents());
       }
     }
   }
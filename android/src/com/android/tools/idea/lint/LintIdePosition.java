@@ -70,7 +70,7 @@ public abstract class LintIdePosition extends Position {
   /** Computes the line and column given the offset and updates the {@link #myLine} and {@link #myColumn} protected members */
   protected abstract void initializeLineColumn();
 
-  protected void initializeFromText(@NonNull String contents) {
+  protected void initializeFromText(@NonNull CharSequence contents) {
     int offset = myOffset;
     myLine = 0;
     offset = Math.min(offset, contents.length());
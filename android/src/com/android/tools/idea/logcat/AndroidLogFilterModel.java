@@ -16,6 +16,7 @@
 
 package com.android.tools.idea.logcat;
 
+import com.android.annotations.VisibleForTesting;
 import com.android.ddmlib.Log;
 import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatMessage;
@@ -24,6 +25,7 @@ import com.intellij.diagnostic.logging.LogConsoleBase;
 import com.intellij.diagnostic.logging.LogFilter;
 import com.intellij.diagnostic.logging.LogFilterListener;
 import com.intellij.diagnostic.logging.LogFilterModel;
+import com.intellij.execution.impl.ConsoleBuffer;
 import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Key;
@@ -68,6 +70,8 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
 
   private final ImmutableList<AndroidLogLevelFilter> myLogLevelFilters;
   private final AndroidLogcatFormatter myFormatter;
+  private final LogcatLineIndex myLineIndex =
+    new LogcatLineIndex(ConsoleBuffer.useCycleBuffer() ? ConsoleBuffer.getCycleBufferSize() : Long.MAX_VALUE);
 
   AndroidLogFilterModel(@NotNull AndroidLogcatFormatter formatter) {
     ImmutableList.Builder<AndroidLogLevelFilter> builder = ImmutableList.builder();
@@ -135,6 +139,12 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   }
 
 
+  @VisibleForTesting
+  @NotNull
+  LogcatLineIndex getLineIndex() {
+    return myLineIndex;
+  }
+
   private void fireTextFilterChange() {
     for (LogFilterListener listener : myListeners) {
       listener.onTextFilterChange();
@@ -150,23 +160,12 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   @Override
   public final boolean isApplicable(String line) {
     // Not calling the super class version, it does not do what we want with regular expression matching
-    if (myCustomPattern != null && !myCustomPattern.matcher(line).find()) return false;
-    final LogFilter selectedLogLevelFilter = getSelectedLogLevelFilter();
-    return selectedLogLevelFilter == null || selectedLogLevelFilter.isAcceptable(line);
+    return LogcatLineIndex.matches(myCustomPattern, line) && isApplicableByLogLevel(line);
   }
 
-
-  // Checks if the log message (with header stripped) matches the active filter, if set. Note that
-  // this should ONLY be called if myPrevHeader was already set (which is how the filter will test
-  // against header information).
-  private boolean isApplicableByConfiguredFilter(@NotNull String message) {
-    if (myConfiguredFilter == null) {
-      return true;
-    }
-
-    assert myPrevHeader != null; // We never call this method unless we already parsed a header
-    return myConfiguredFilter
-      .isApplicable(message, myPrevHeader.getTag(), myPrevHeader.getAppName(), myPrevHeader.getPid(), myPrevHeader.getLogLevel());
+  private boolean isApplicableByLogLevel(String line) {
+    final LogFilter selectedLogLevelFilter = getSelectedLogLevelFilter();
+    return selectedLogLevelFilter == null || selectedLogLevelFilter.isAcceptable(line);
   }
 
   @Override
@@ -227,28 +226,50 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
     myCustomApplicable = false;
     myConfiguredApplicable = false;
     myMessageSoFar.setLength(0);
+    myLineIndex.startReplay();
   }
 
   @Override
   @NotNull
   public final MyProcessingResult processLine(String line) {
-    LogCatMessage message = myFormatter.tryParseMessage(line);
-    String continuation = (message == null) ? AndroidLogcatFormatter.tryParseContinuation(line) : null;
+    LogCatHeader header;
+    boolean isContinuation;
+    boolean customMatch;
+    boolean configuredMatch;
+
+    int position = myLineIndex.find(line);
+    if (position != -1) {
+      // The line was already parsed, and the filters are evaluated for all the lines being replayed at once
+      myLineIndex.evaluate(myCustomPattern, myConfiguredFilter);
+      header = myLineIndex.getHeader(position);
+      isContinuation = myLineIndex.isContinuation(position);
+      customMatch = myLineIndex.matchesCustomPattern(position);
+      configuredMatch = myLineIndex.matchesConfiguredFilter(position);
+    }
+    else {
+      LogCatMessage message = myFormatter.tryParseMessage(line);
+      String text = (message == null) ? AndroidLogcatFormatter.tryParseContinuation(line) : message.getMessage();
+      isContinuation = message == null;
+      header = message != null ? message.getHeader() : text != null ? myPrevHeader : null;
+      customMatch = header != null && LogcatLineIndex.matches(myCustomPattern, isContinuation ? text : line);
+      configuredMatch = header != null && LogcatLineIndex.matches(myConfiguredFilter, text, header);
+      myLineIndex.add(line, header, text, isContinuation, customMatch, configuredMatch, myCustomPattern, myConfiguredFilter);
+    }
 
-    boolean validContinuation = continuation != null && myPrevHeader != null;
-    if (message == null && !validContinuation) {
+    boolean validContinuation = isContinuation && myPrevHeader != null;
+    if (header == null || isContinuation && !validContinuation) {
       return new MyProcessingResult(ProcessOutputTypes.STDOUT, false, null);
     }
 
-    if (message != null) {
-      myPrevHeader = message.getHeader();
-      myCustomApplicable = isApplicable(line);
-      myConfiguredApplicable = isApplicableByConfiguredFilter(message.getMessage());
+    if (!isContinuation) {
+      myPrevHeader = header;
+      myCustomApplicable = customMatch && isApplicableByLogLevel(line);
+      myConfiguredApplicable = configuredMatch;
       myMessageSoFar.setLength(0);
     }
     else {
-      myCustomApplicable = myCustomApplicable || isApplicable(continuation);
-      myConfiguredApplicable = myConfiguredApplicable || isApplicableByConfiguredFilter(continuation);
+      myCustomApplicable = myCustomApplicable || (customMatch && isApplicableByLogLevel(line));
+      myConfiguredApplicable = myConfiguredApplicable || configuredMatch;
     }
 
     boolean isApplicable = myCustomApplicable && myConfiguredApplicable;
@@ -32,6 +32,7 @@ public interface AndroidLogcatFilter {
 
   /**
    * Returns {@code true} if the current logcat message should be accepted, {@code false} otherwise.
+   * This may be called from several threads at the same time when the logcat console is filtered again.
    */
   boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel);
 }
@@ -19,9 +19,7 @@ package com.android.tools.idea.logcat;
 import com.android.annotations.VisibleForTesting;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.logcat.LogCatHeader;
-import com.android.ddmlib.logcat.LogCatLongEpochMessageParser;
 import com.android.ddmlib.logcat.LogCatMessage;
-import com.android.ddmlib.logcat.LogCatMessageParser;
 import com.android.tools.idea.logcat.AndroidLogcatService.LogcatListener;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.text.StringUtil;
@@ -52,8 +50,7 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
 
   private static final Pattern CARRIAGE_RETURN = Pattern.compile("\r", Pattern.LITERAL);
 
-  private final LogCatMessageParser myLongEpochParser;
-  private final LogCatMessageParser myLongParser;
+  private final LogcatHeaderParser myHeaderParser;
   private final IDevice myDevice;
   private final StackTraceExpander myStackTraceExpander;
   private final LogcatListener myLogcatListener;
@@ -70,8 +67,7 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
   private volatile boolean myCanceled;
 
   AndroidLogcatReceiver(@NotNull IDevice device, @NotNull LogcatListener listener) {
-    myLongEpochParser = new LogCatLongEpochMessageParser();
-    myLongParser = new LogCatMessageParser();
+    myHeaderParser = new LogcatHeaderParser();
     myDevice = device;
     myStackTraceExpander = new StackTraceExpander(STACK_TRACE_LINE_PREFIX, STACK_TRACE_CAUSE_LINE_PREFIX);
     myLogcatListener = listener;
@@ -90,18 +86,16 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
     // both external to Android Studio. In fact, the latest adb/logcat versions have already fixed
     // this issue! But we still need to run properly with older versions. Also, putting this fix in
     // MultiLineReceiver isn't right either because it is used for more than just receiving logcat.
-    line = CARRIAGE_RETURN.matcher(line).replaceAll("");
+    if (line.indexOf('\r') != -1) {
+      line = CARRIAGE_RETURN.matcher(line).replaceAll("");
+    }
 
     if (line.isEmpty()) {
       myDelayedNewlineCount++;
       return;
     }
 
-    LogCatHeader header = myLongEpochParser.processLogHeader(line, myDevice);
-
-    if (header == null) {
-      header = myLongParser.processLogHeader(line, myDevice);
-    }
+    LogCatHeader header = myHeaderParser.parse(line, myDevice);
 
     if (header != null) {
       myStackTraceExpander.reset();
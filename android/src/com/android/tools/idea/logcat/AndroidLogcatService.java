@@ -21,8 +21,6 @@ import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.tools.idea.IdeInfo;
 import com.android.tools.idea.run.LoggingReceiver;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.intellij.execution.impl.ConsoleBuffer;
 import com.intellij.openapi.Disposable;
@@ -37,12 +35,15 @@ import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.android.util.AndroidBundle;
 import org.jetbrains.android.util.AndroidOutputReceiver;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -59,26 +60,6 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     return Logger.getInstance(AndroidLogcatService.class);
   }
 
-  private static class LogcatBuffer {
-    private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
-
-    public void addMessage(@NotNull LogCatMessage message) {
-      myMessages.add(message);
-      myBufferSize += message.getMessage().length();
-      if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
-        }
-      }
-    }
-
-    @NotNull
-    public List<LogCatMessage> getMessages() {
-      return myMessages;
-    }
-  }
-
   public interface LogcatListener {
     default void onLogLineReceived(@NotNull LogCatMessage line) {
     }
@@ -94,8 +75,11 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   @GuardedBy("myLock")
   private final Map<IDevice, AndroidLogcatReceiver> myLogReceivers;
 
-  @GuardedBy("myLock")
-  private final Map<IDevice, LogcatBuffer> myLogBuffers;
+  /**
+   * Modified while holding {@link #myLock}, but read without it when a line is received. Each buffer is its own lock, so the devices
+   * do not contend with each other when logging.
+   */
+  private final Map<IDevice, LogcatRingBuffer> myLogBuffers;
 
   /**
    * This is a list of commands to execute per device. We use a newSingleThreadExecutor
@@ -105,8 +89,11 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   @GuardedBy("myLock")
   private final Map<IDevice, ExecutorService> myExecutors;
 
-  @GuardedBy("myLock")
-  private final Multimap<IDevice, LogcatListener> myDeviceToListenerMultimap;
+  /**
+   * Modified while holding {@link #myLock}, and also the lock of the device buffer when the listener needs to receive the old logs.
+   * The lists are copy on write so they can be iterated when a line is received without holding any lock.
+   */
+  private final Map<IDevice, List<LogcatListener>> myDeviceToListeners;
 
   @NotNull
   public static AndroidLogcatService getInstance() {
@@ -117,9 +104,9 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   AndroidLogcatService() {
     myLock = new Object();
     myLogReceivers = new HashMap<>();
-    myLogBuffers = new HashMap<>();
+    myLogBuffers = new ConcurrentHashMap<>();
     myExecutors = new HashMap<>();
-    myDeviceToListenerMultimap = ArrayListMultimap.create();
+    myDeviceToListeners = new ConcurrentHashMap<>();
 
     AndroidDebugBridge.addDeviceChangeListener(this);
   }
@@ -134,24 +121,35 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
 
       AndroidLogcatReceiver receiver = newAndroidLogcatReceiver(device);
       myLogReceivers.put(device, receiver);
-      myLogBuffers.put(device, new LogcatBuffer());
+      myLogBuffers.put(device, new LogcatRingBuffer(getBufferSize()));
       myExecutors.get(device).submit(() -> executeLogcat(device, receiver));
     }
   }
 
+  private static int getBufferSize() {
+    return ConsoleBuffer.useCycleBuffer() ? ConsoleBuffer.getCycleBufferSize() : LogcatRingBuffer.MAX_BYTES;
+  }
+
   @NotNull
   private AndroidLogcatReceiver newAndroidLogcatReceiver(@NotNull IDevice device) {
     return new AndroidLogcatReceiver(device, new LogcatListener() {
       @Override
       public void onLogLineReceived(@NotNull LogCatMessage line) {
-        synchronized (myLock) {
-          myDeviceToListenerMultimap.get(device).forEach(listener -> listener.onLogLineReceived(line));
-          LogcatBuffer buffer = myLogBuffers.get(device);
+        LogcatRingBuffer buffer = myLogBuffers.get(device);
 
-          if (buffer != null) {
-            buffer.addMessage(line);
-          }
+        if (buffer == null) {
+          getListeners(device).forEach(listener -> listener.onLogLineReceived(line));
+          return;
+        }
+
+        // The listeners are read with the line added to the buffer, so a listener added with the old logs receives it exactly once.
+        // They are notified outside of the buffer lock, the lines of a device are received by a single thread.
+        List<LogcatListener> listeners;
+        synchronized (buffer) {
+          buffer.add(line);
+          listeners = getListeners(device);
         }
+        listeners.forEach(listener -> listener.onLogLineReceived(line));
       }
     });
   }
@@ -266,8 +264,62 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
 
   private void notifyThatLogcatWasCleared(@NotNull IDevice device) {
     synchronized (myLock) {
-      myDeviceToListenerMultimap.get(device).forEach(LogcatListener::onCleared);
+      getListeners(device).forEach(LogcatListener::onCleared);
+    }
+  }
+
+  /**
+   * Wraps a listener added with the old logs. The lines received while the old logs are being replayed (without holding any lock)
+   * are queued and delivered after them, so the listener receives every line once and in order.
+   */
+  private static final class ReplayingListener implements LogcatListener {
+    @NotNull private final LogcatListener myDelegate;
+
+    @GuardedBy("this")
+    @Nullable private List<LogCatMessage> myPendingLines = new ArrayList<>();
+
+    private ReplayingListener(@NotNull LogcatListener delegate) {
+      myDelegate = delegate;
+    }
+
+    private void replay(@NotNull List<LogCatMessage> oldLines) {
+      oldLines.forEach(myDelegate::onLogLineReceived);
+
+      while (true) {
+        List<LogCatMessage> lines;
+        synchronized (this) {
+          lines = myPendingLines;
+          assert lines != null;
+          if (lines.isEmpty()) {
+            myPendingLines = null;
+            return;
+          }
+          myPendingLines = new ArrayList<>();
+        }
+        lines.forEach(myDelegate::onLogLineReceived);
+      }
+    }
+
+    @Override
+    public void onLogLineReceived(@NotNull LogCatMessage line) {
+      synchronized (this) {
+        if (myPendingLines != null) {
+          myPendingLines.add(line);
+          return;
+        }
+      }
+      myDelegate.onLogLineReceived(line);
     }
+
+    @Override
+    public void onCleared() {
+      myDelegate.onCleared();
+    }
+  }
+
+  @NotNull
+  private List<LogcatListener> getListeners(@NotNull IDevice device) {
+    return myDeviceToListeners.getOrDefault(device, Collections.emptyList());
   }
 
   /**
@@ -280,19 +332,35 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
    * to a UI thread. For example, don't directly invoke a runnable on the UI thread per line, but consider batching many log lines first.
    */
   public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, boolean addOldLogs) {
+    List<LogCatMessage> oldLines = null;
+    ReplayingListener replayingListener = null;
+
     synchronized (myLock) {
-      if (addOldLogs && myLogBuffers.containsKey(device)) {
-        for (LogCatMessage line : myLogBuffers.get(device).getMessages()) {
-          listener.onLogLineReceived(line);
+      List<LogcatListener> listeners = myDeviceToListeners.computeIfAbsent(device, d -> new CopyOnWriteArrayList<>());
+      LogcatRingBuffer buffer = myLogBuffers.get(device);
+
+      if (addOldLogs && buffer != null) {
+        // The buffer lock is only taken while holding myLock, never the other way around. The old logs are copied and the listener
+        // added atomically with respect to the received lines, the lines received while replaying are queued by the listener.
+        oldLines = new ArrayList<>(buffer.size());
+        replayingListener = new ReplayingListener(listener);
+        synchronized (buffer) {
+          buffer.forEach(oldLines::add);
+          listeners.add(replayingListener);
         }
       }
-
-      myDeviceToListenerMultimap.put(device, listener);
+      else {
+        listeners.add(listener);
+      }
 
       if (device.isOnline()) {
         startReceiving(device);
       }
     }
+
+    if (replayingListener != null) {
+      replayingListener.replay(oldLines);
+    }
   }
 
   /**
@@ -304,15 +372,16 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
 
   public void removeListener(@NotNull IDevice device, @NotNull LogcatListener listener) {
     synchronized (myLock) {
-      Collection<LogcatListener> listeners = myDeviceToListenerMultimap.get(device);
+      List<LogcatListener> listeners = myDeviceToListeners.get(device);
 
-      if (listeners.isEmpty()) {
+      if (listeners == null) {
         return;
       }
 
-      listeners.remove(listener);
+      listeners.removeIf(l -> l == listener || l instanceof ReplayingListener && ((ReplayingListener)l).myDelegate == listener);
 
       if (listeners.isEmpty()) {
+        myDeviceToListeners.remove(device);
         stopReceiving(device);
       }
     }
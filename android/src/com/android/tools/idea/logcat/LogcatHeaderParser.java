@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatLongEpochMessageParser;
+import com.android.ddmlib.logcat.LogCatMessageParser;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+
+/**
+ * Parses the header lines printed by {@code logcat -v long -v epoch}, like {@code [ 1534635551.439 1493:1595 W/DummyFirst ]},
+ * and by {@code logcat -v long}, like {@code [ 08-18 16:39:11.760  1493: 1595 W/DummyFirst ]}.
+ * <p>
+ * {@link AndroidLogcatReceiver} calls this for every line of output and most lines are not headers, so they are rejected by looking
+ * at their first and last characters only. Headers are parsed by hand instead of with the regular expressions of the ddmlib parsers,
+ * the tags are interned so all the headers with the same tag share the same string, and the previous header is returned again when
+ * nothing changed. Lines that look like headers but are not in the expected format are still given to the ddmlib parsers.
+ * <p>
+ * This class is not thread safe, each receiver has its own parser.
+ */
+final class LogcatHeaderParser {
+  private static final int TAG_CACHE_SIZE = 256;
+
+  private final LogCatMessageParser myLongEpochParser = new LogCatLongEpochMessageParser();
+  private final LogCatMessageParser myLongParser = new LogCatMessageParser();
+
+  /** Direct mapped cache of the tags seen so far, indexed by their hash code */
+  private final String[] myTags = new String[TAG_CACHE_SIZE];
+
+  @Nullable private LogCatHeader myPreviousHeader;
+  private long myPreviousEpochSecond;
+  private int myPreviousMillis;
+
+  // Position of the next character to parse in myLine
+  private String myLine;
+  private int myOffset;
+
+  /**
+   * Returns the header in the given line, or null if the line is not a header
+   */
+  @Nullable
+  LogCatHeader parse(@NotNull String line, @Nullable IDevice device) {
+    int length = line.length();
+    if (length < 2 || line.charAt(0) != '[' || line.charAt(1) != ' ' || line.charAt(length - 1) != ']') {
+      return null;
+    }
+
+    myLine = line;
+    myOffset = 1;
+    LogCatHeader header;
+    try {
+      header = parseHeader(device);
+    }
+    finally {
+      myLine = null;
+    }
+    if (header != null) {
+      return header;
+    }
+
+    header = myLongEpochParser.processLogHeader(line, device);
+    return header != null ? header : myLongParser.processLogHeader(line, device);
+  }
+
+  @Nullable
+  private LogCatHeader parseHeader(@Nullable IDevice device) {
+    if (skipSpaces() == 0) {
+      return null;
+    }
+
+    int timestampStart = myOffset;
+    boolean isEpoch = myOffset + 2 < myLine.length() && myLine.charAt(myOffset + 2) != '-';
+    long epochSecond = 0;
+    int millis = 0;
+    if (isEpoch) {
+      epochSecond = parseNumber(18);
+      if (epochSecond < 0 || !skip('.')) {
+        return null;
+      }
+      int millisStart = myOffset;
+      millis = (int)parseNumber(3);
+      if (millis < 0 || myOffset - millisStart != 3) {
+        return null;
+      }
+    }
+    else if (!skipLongTimestamp()) {
+      return null;
+    }
+    int timestampEnd = myOffset;
+
+    if (skipSpaces() == 0) {
+      return null;
+    }
+    int pid = (int)parseNumber(9);
+    if (pid < 0 || !skip(':')) {
+      return null;
+    }
+    skipSpaces();
+    int tid = (int)parseNumber(9);
+    if (tid < 0 || !skip(' ')) {
+      return null;
+    }
+
+    LogLevel level = getLogLevel();
+    if (level == null || !skip('/')) {
+      return null;
+    }
+
+    // The tag goes until the last character that is not a space, which must be followed by at least one space and the closing bracket
+    int tagStart = myOffset;
+    int tagEnd = myLine.length() - 1;
+    if (tagEnd <= tagStart || myLine.charAt(tagEnd - 1) != ' ') {
+      return null;
+    }
+    while (tagEnd > tagStart && myLine.charAt(tagEnd - 1) == ' ') {
+      tagEnd--;
+    }
+    if (tagEnd == tagStart) {
+      return null;
+    }
+    String tag = internTag(tagStart, tagEnd);
+
+    String appName = device != null ? device.getClientName(pid) : null;
+    if (appName == null) {
+      appName = "?";
+    }
+
+    if (!isEpoch) {
+      @SuppressWarnings("deprecation")
+      LogCatTimestamp timestamp = LogCatTimestamp.fromString(myLine.substring(timestampStart, timestampEnd));
+      //noinspection deprecation
+      return new LogCatHeader(level, pid, tid, appName, tag, timestamp);
+    }
+
+    LogCatHeader previous = myPreviousHeader;
+    if (previous != null &&
+        myPreviousEpochSecond == epochSecond &&
+        myPreviousMillis == millis &&
+        previous.getPid() == pid &&
+        previous.getTid() == tid &&
+        previous.getLogLevel() == level &&
+        previous.getTag() == tag &&
+        previous.getAppName().equals(appName)) {
+      return previous;
+    }
+
+    LogCatHeader header = new LogCatHeader(level, pid, tid, appName, tag, Instant.ofEpochSecond(epochSecond, millis * 1_000_000L));
+    myPreviousHeader = header;
+    myPreviousEpochSecond = epochSecond;
+    myPreviousMillis = millis;
+    return header;
+  }
+
+  /**
+   * Skips a timestamp like 08-18 16:39:11.760, the format used by {@link LogCatTimestamp}
+   */
+  private boolean skipLongTimestamp() {
+    return skipDigits(2) && skip('-') && skipDigits(2) && skip(' ') &&
+           skipDigits(2) && skip(':') && skipDigits(2) && skip(':') && skipDigits(2) && skip('.') && skipDigits(3);
+  }
+
+  private boolean skipDigits(int count) {
+    for (int i = 0; i < count; i++) {
+      if (myOffset >= myLine.length() || !isDigit(myLine.charAt(myOffset))) {
+        return false;
+      }
+      myOffset++;
+    }
+    return true;
+  }
+
+  /**
+   * Parses a decimal number of up to the given number of digits, returning -1 if there are no digits or too many of them
+   */
+  private long parseNumber(int maxDigits) {
+    int start = myOffset;
+    long value = 0;
+    while (myOffset < myLine.length() && isDigit(myLine.charAt(myOffset))) {
+      value = value * 10 + (myLine.charAt(myOffset) - '0');
+      myOffset++;
+    }
+    int digits = myOffset - start;
+    return digits == 0 || digits > maxDigits ? -1 : value;
+  }
+
+  private int skipSpaces() {
+    int start = myOffset;
+    while (myOffset < myLine.length() && myLine.charAt(myOffset) == ' ') {
+      myOffset++;
+    }
+    return myOffset - start;
+  }
+
+  private boolean skip(char c) {
+    if (myOffset < myLine.length() && myLine.charAt(myOffset) == c) {
+      myOffset++;
+      return true;
+    }
+    return false;
+  }
+
+  @Nullable
+  private LogLevel getLogLevel() {
+    if (myOffset >= myLine.length()) {
+      return null;
+    }
+    LogLevel level;
+    switch (myLine.charAt(myOffset)) {
+      case 'V':
+        level = LogLevel.VERBOSE;
+        break;
+      case 'D':
+        level = LogLevel.DEBUG;
+        break;
+      case 'I':
+        level = LogLevel.INFO;
+        break;
+      case 'W':
+        level = LogLevel.WARN;
+        break;
+      case 'E':
+        level = LogLevel.ERROR;
+        break;
+      case 'A':
+      case 'F':
+        level = LogLevel.ASSERT;
+        break;
+      default:
+        return null;
+    }
+    myOffset++;
+    return level;
+  }
+
+  @NotNull
+  private String internTag(int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + myLine.charAt(i);
+    }
+    int index = (hash ^ (hash >>> 16)) & (TAG_CACHE_SIZE - 1);
+    String tag = myTags[index];
+    int length = end - start;
+    if (tag == null || tag.length() != length || !tag.regionMatches(0, myLine, start, length)) {
+      tag = myLine.substring(start, end);
+      myTags[index] = tag;
+    }
+    return tag;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.logcat.LogCatHeader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * The lines processed by an {@link AndroidLogFilterModel}, in order, together with the result of parsing them.
+ * <p>
+ * Every time a filter changes, {@link com.intellij.diagnostic.logging.LogConsoleBase} feeds all the lines of the console to the model
+ * again. When a replay starts with {@link #startReplay()}, the lines are looked up in this index so they do not need to be parsed again,
+ * and the custom pattern and the configured filter are evaluated for all the lines at once, in parallel over chunks of lines, instead of
+ * one line at a time. As soon as a replayed line does not match the index, the rest of the index is discarded and the lines are parsed
+ * and added again.
+ * <p>
+ * Each line gets a sequence number when it is added, and the replay is tracked by the sequence number of the next line expected so it
+ * is not affected by the lines removed from the beginning. The console keeps about as many characters as the index, so the first
+ * replayed line is looked up from the sequence number where the console is expected to start, comparing the hashes of the lines.
+ * The text of a message is usually the end of its line, so only its offset in the line is stored.
+ * <p>
+ * Like {@link AndroidLogFilterModel}, this class is not thread safe.
+ */
+final class LogcatLineIndex {
+  private static final int CHUNK_SIZE = 4096;
+  private static final int NO_TEXT = -1;
+  private static final int OTHER_TEXT = -2;
+
+  private static final class Chunk {
+    private final String[] myLines = new String[CHUNK_SIZE];
+    private final int[] myHashes = new int[CHUNK_SIZE];
+    /** Header of the message the line belongs to, or null if the line is not part of a logcat message */
+    private final LogCatHeader[] myHeaders = new LogCatHeader[CHUNK_SIZE];
+    /**
+     * Offset in the line of the text of the message, or of the continuation for the following lines of a multi-line message.
+     * {@link #NO_TEXT} if there is no text, and {@link #OTHER_TEXT} if the text is not the end of the line.
+     */
+    private final int[] myTextOffsets = new int[CHUNK_SIZE];
+    /** The texts that are not the end of their line, by index in the chunk */
+    @Nullable private Map<Integer, String> myOtherTexts;
+    private final BitSet myContinuations = new BitSet();
+    private final BitSet myCustomMatches = new BitSet();
+    private final BitSet myConfiguredMatches = new BitSet();
+    private int mySize;
+    private long myChars;
+
+    private void evaluate(@Nullable Pattern customPattern, @Nullable AndroidLogcatFilter configuredFilter) {
+      for (int i = 0; i < mySize; i++) {
+        LogCatHeader header = myHeaders[i];
+        if (header == null) {
+          continue;
+        }
+        String text = getText(i);
+        assert text != null;
+        myCustomMatches.set(i, matches(customPattern, myContinuations.get(i) ? text : myLines[i]));
+        myConfiguredMatches.set(i, matches(configuredFilter, text, header));
+      }
+    }
+
+    private void setText(int index, @NotNull String line, @Nullable String text) {
+      if (text == null) {
+        myTextOffsets[index] = NO_TEXT;
+      }
+      else if (line.endsWith(text)) {
+        myTextOffsets[index] = line.length() - text.length();
+      }
+      else {
+        myTextOffsets[index] = OTHER_TEXT;
+        if (myOtherTexts == null) {
+          myOtherTexts = new HashMap<>();
+        }
+        myOtherTexts.put(index, text);
+      }
+    }
+
+    @Nullable
+    private String getText(int index) {
+      int offset = myTextOffsets[index];
+      if (offset == NO_TEXT) {
+        return null;
+      }
+      if (offset == OTHER_TEXT) {
+        assert myOtherTexts != null;
+        return myOtherTexts.get(index);
+      }
+      return myLines[index].substring(offset);
+    }
+
+    private void clear(int index) {
+      myChars -= myLines[index].length();
+      myLines[index] = null;
+      myHeaders[index] = null;
+      if (myOtherTexts != null) {
+        myOtherTexts.remove(index);
+      }
+    }
+  }
+
+  private final long myMaxChars;
+  private final List<Chunk> myChunks = new ArrayList<>();
+  /** Number of lines already removed from the beginning of the first chunk */
+  private int myStart;
+  private int mySize;
+  private long myChars;
+  /** Sequence number of the line at position 0 */
+  private long myFirstSequence;
+
+  private boolean myReplayStarting;
+  /** Sequence number of the next line expected while replaying, or -1 if the lines are not being replayed */
+  private long myReplaySequence = -1;
+
+  @Nullable private Pattern myEvaluatedPattern;
+  @Nullable private AndroidLogcatFilter myEvaluatedFilter;
+  private boolean myEvaluated;
+
+  /**
+   * @param maxChars the maximum number of characters of the lines kept in the index, the oldest lines are removed when exceeded
+   */
+  LogcatLineIndex(long maxChars) {
+    myMaxChars = maxChars;
+  }
+
+  static boolean matches(@Nullable Pattern pattern, @NotNull String text) {
+    return pattern == null || pattern.matcher(text).find();
+  }
+
+  static boolean matches(@Nullable AndroidLogcatFilter filter, @NotNull String text, @NotNull LogCatHeader header) {
+    return filter == null || filter.isApplicable(text, header.getTag(), header.getAppName(), header.getPid(), header.getLogLevel());
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  /**
+   * Indicates that the lines of the console are going to be processed again from the beginning
+   */
+  void startReplay() {
+    myReplayStarting = true;
+    myReplaySequence = -1;
+  }
+
+  /**
+   * Returns the position of the given line in the index if it is the next line expected while replaying, or -1 if the line needs to
+   * be parsed and added to the index.
+   */
+  int find(@NotNull String line) {
+    if (myReplayStarting) {
+      myReplayStarting = false;
+      // The console may have dropped its oldest lines, so the replay can start anywhere in the index
+      int position = findReplayStart(line);
+      if (position == -1) {
+        clear();
+        return -1;
+      }
+      removeFirst(position);
+      myReplaySequence = myFirstSequence;
+    }
+
+    if (myReplaySequence == -1) {
+      return -1;
+    }
+    int position = (int)(myReplaySequence - myFirstSequence);
+    if (position < 0 || position >= mySize || !isLine(position, line, line.hashCode())) {
+      removeFrom(Math.max(position, 0));
+      myReplaySequence = -1;
+      return -1;
+    }
+    myReplaySequence = position + 1 < mySize ? myReplaySequence + 1 : -1;
+    return position;
+  }
+
+  void add(@NotNull String line,
+           @Nullable LogCatHeader header,
+           @Nullable String text,
+           boolean isContinuation,
+           boolean customMatch,
+           boolean configuredMatch,
+           @Nullable Pattern customPattern,
+           @Nullable AndroidLogcatFilter configuredFilter) {
+    if (mySize == 0) {
+      myEvaluatedPattern = customPattern;
+      myEvaluatedFilter = configuredFilter;
+      myEvaluated = true;
+    }
+    else if (customPattern != myEvaluatedPattern || configuredFilter != myEvaluatedFilter) {
+      myEvaluated = false;
+    }
+
+    Chunk chunk = myChunks.isEmpty() ? null : myChunks.get(myChunks.size() - 1);
+    if (chunk == null || chunk.mySize == CHUNK_SIZE) {
+      chunk = new Chunk();
+      myChunks.add(chunk);
+    }
+    int index = chunk.mySize++;
+    chunk.myLines[index] = line;
+    chunk.myHashes[index] = line.hashCode();
+    chunk.myHeaders[index] = header;
+    chunk.setText(index, line, text);
+    chunk.myContinuations.set(index, isContinuation);
+    chunk.myCustomMatches.set(index, customMatch);
+    chunk.myConfiguredMatches.set(index, configuredMatch);
+    chunk.myChars += line.length();
+    myChars += line.length();
+    mySize++;
+
+    while (myChars > myMaxChars && myChunks.size() > 1) {
+      Chunk first = myChunks.remove(0);
+      mySize -= first.mySize - myStart;
+      myChars -= first.myChars;
+      myFirstSequence += first.mySize - myStart;
+      myStart = 0;
+    }
+  }
+
+  /**
+   * Evaluates the given filters for all the lines of the index, unless they were already evaluated for the same filters
+   */
+  void evaluate(@Nullable Pattern customPattern, @Nullable AndroidLogcatFilter configuredFilter) {
+    if (myEvaluated && customPattern == myEvaluatedPattern && configuredFilter == myEvaluatedFilter) {
+      return;
+    }
+    myChunks.parallelStream().forEach(chunk -> chunk.evaluate(customPattern, configuredFilter));
+    myEvaluatedPattern = customPattern;
+    myEvaluatedFilter = configuredFilter;
+    myEvaluated = true;
+  }
+
+  @Nullable
+  LogCatHeader getHeader(int position) {
+    int index = myStart + position;
+    return myChunks.get(index / CHUNK_SIZE).myHeaders[index % CHUNK_SIZE];
+  }
+
+  @Nullable
+  String getText(int position) {
+    int index = myStart + position;
+    return myChunks.get(index / CHUNK_SIZE).getText(index % CHUNK_SIZE);
+  }
+
+  boolean isContinuation(int position) {
+    int index = myStart + position;
+    return myChunks.get(index / CHUNK_SIZE).myContinuations.get(index % CHUNK_SIZE);
+  }
+
+  /**
+   * Returns true if the custom pattern last {@link #evaluate evaluated} matches the line, or its continuation text
+   */
+  boolean matchesCustomPattern(int position) {
+    int index = myStart + position;
+    return myChunks.get(index / CHUNK_SIZE).myCustomMatches.get(index % CHUNK_SIZE);
+  }
+
+  /**
+   * Returns true if the configured filter last {@link #evaluate evaluated} accepts the text of the line
+   */
+  boolean matchesConfiguredFilter(int position) {
+    int index = myStart + position;
+    return myChunks.get(index / CHUNK_SIZE).myConfiguredMatches.get(index % CHUNK_SIZE);
+  }
+
+  private boolean isLine(int position, @NotNull String line, int hash) {
+    int index = myStart + position;
+    Chunk chunk = myChunks.get(index / CHUNK_SIZE);
+    return chunk.myHashes[index % CHUNK_SIZE] == hash && line.equals(chunk.myLines[index % CHUNK_SIZE]);
+  }
+
+  /**
+   * Returns the position of the first line of a replay, looking first from the position where the console is expected to start since
+   * the same line can appear more than once, or -1 if the line is not in the index
+   */
+  private int findReplayStart(@NotNull String line) {
+    int hash = line.hashCode();
+    int expected = getExpectedReplayStart();
+    for (int position = expected; position < mySize; position++) {
+      if (isLine(position, line, hash)) {
+        return position;
+      }
+    }
+    for (int position = expected - 1; position >= 0; position--) {
+      if (isLine(position, line, hash)) {
+        return position;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the position of the oldest line the console can still have, given that it keeps at most as many characters as the index
+   */
+  private int getExpectedReplayStart() {
+    int position = 0;
+    long chars = myChars;
+    for (int i = 0; i < myChunks.size() && chars > myMaxChars; i++) {
+      Chunk chunk = myChunks.get(i);
+      int start = i == 0 ? myStart : 0;
+      if (chars - chunk.myChars > myMaxChars) {
+        chars -= chunk.myChars;
+        position += chunk.mySize - start;
+        continue;
+      }
+      for (int j = start; j < chunk.mySize && chars > myMaxChars; j++) {
+        chars -= chunk.myLines[j].length();
+        position++;
+      }
+    }
+    return position;
+  }
+
+  private void clear() {
+    myFirstSequence += mySize;
+    myChunks.clear();
+    myStart = 0;
+    mySize = 0;
+    myChars = 0;
+  }
+
+  private void removeFirst(int count) {
+    for (int i = 0; i < count; i++) {
+      Chunk first = myChunks.get(0);
+      myChars -= first.myLines[myStart].length();
+      first.clear(myStart);
+      myStart++;
+      myFirstSequence++;
+      if (myStart == CHUNK_SIZE) {
+        myChunks.remove(0);
+        myStart = 0;
+      }
+    }
+    mySize -= count;
+  }
+
+  private void removeFrom(int position) {
+    if (position >= mySize) {
+      return;
+    }
+    int index = myStart + position;
+    int chunkIndex = index / CHUNK_SIZE;
+    Chunk chunk = myChunks.get(chunkIndex);
+    for (int i = index % CHUNK_SIZE; i < chunk.mySize; i++) {
+      myChars -= chunk.myLines[i].length();
+      chunk.clear(i);
+    }
+    chunk.mySize = index % CHUNK_SIZE;
+    while (myChunks.size() > chunkIndex + 1) {
+      myChars -= myChunks.remove(myChunks.size() - 1).myChars;
+    }
+    mySize = position;
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Stores the most recent log messages of a device without keeping a {@link LogCatMessage} object per line.
+ * <p>
+ * The text of the messages is encoded as UTF-8 into a circular byte array, and the headers are kept in a compact index made of
+ * primitive arrays (timestamp, pid, tid, level and the ids of the interned tag and app name). When the total size of the text goes
+ * over the maximum, the oldest messages are dropped. The maximum is capped at {@link #MAX_BYTES} so the buffer does not grow without
+ * limit when the console cycle buffer is disabled. The {@link LogCatMessage}s are only created again when the messages are
+ * replayed with {@link #forEach(Consumer)}, and the consecutive lines of a multi-line message share the same header like they
+ * do when they are received.
+ * <p>
+ * This class is not thread safe. {@link AndroidLogcatService} keeps one buffer per device and synchronizes on it.
+ */
+final class LogcatRingBuffer {
+  private static final int INITIAL_CAPACITY = 256;
+  private static final int INITIAL_DATA_CAPACITY = 16 * 1024;
+  private static final LogLevel[] LOG_LEVELS = LogLevel.values();
+  static final int MAX_BYTES = 64 * 1024 * 1024;
+  /** Number of interned strings above which the ones not used by any message anymore are dropped */
+  static final int MAX_STRINGS = 1024;
+
+  private final int myMaxBytes;
+
+  /** UTF-8 text of the messages, in order, starting at {@link #myDataStart} and wrapping around the end of the array */
+  private byte[] myData = new byte[INITIAL_DATA_CAPACITY];
+  private int myDataStart;
+  private int myDataSize;
+
+  // Index of the messages, one slot per message starting at myFirst and wrapping around the end of the arrays
+  private long[] myEpochSeconds = new long[INITIAL_CAPACITY];
+  /** Nanoseconds of the timestamp, or -1 if the message has a {@link LogCatTimestamp} instead of an {@link Instant} */
+  private int[] myNanos = new int[INITIAL_CAPACITY];
+  private int[] myPids = new int[INITIAL_CAPACITY];
+  private int[] myTids = new int[INITIAL_CAPACITY];
+  private byte[] myLevels = new byte[INITIAL_CAPACITY];
+  private int[] myTagIds = new int[INITIAL_CAPACITY];
+  private int[] myAppNameIds = new int[INITIAL_CAPACITY];
+  private int[] myLengths = new int[INITIAL_CAPACITY];
+  /** Only created for devices that do not support the epoch format */
+  @Nullable private LogCatTimestamp[] myTimestamps;
+  private int myFirst;
+  private int mySize;
+
+  /** Tags and app names are repeated in most of the messages so they are only stored once */
+  private final Map<String, Integer> myStringIds = new HashMap<>();
+  private List<String> myStrings = new ArrayList<>();
+  private int myStringLimit = MAX_STRINGS;
+
+  /**
+   * @param maxBytes the maximum size of the encoded text of all the messages, the oldest messages are dropped when it is exceeded.
+   *                 Values above {@link #MAX_BYTES} are capped.
+   */
+  LogcatRingBuffer(int maxBytes) {
+    myMaxBytes = Math.min(maxBytes, MAX_BYTES);
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  void add(@NotNull LogCatMessage message) {
+    LogCatHeader header = message.getHeader();
+    String text = message.getMessage();
+    int length = getEncodedLength(text);
+
+    while (mySize > 0 && (long)myDataSize + length > myMaxBytes) {
+      removeFirst();
+    }
+    ensureDataCapacity(myDataSize + length);
+    if (mySize == myPids.length) {
+      growIndex();
+    }
+
+    writeText(text, (myDataStart + myDataSize) % myData.length);
+    myDataSize += length;
+
+    int slot = (myFirst + mySize) % myPids.length;
+    Instant instant = header.getTimestampInstant();
+    if (instant != null) {
+      myEpochSeconds[slot] = instant.getEpochSecond();
+      myNanos[slot] = instant.getNano();
+    }
+    else {
+      if (myTimestamps == null) {
+        myTimestamps = new LogCatTimestamp[myPids.length];
+      }
+      //noinspection deprecation
+      myTimestamps[slot] = header.getTimestamp();
+      myEpochSeconds[slot] = 0;
+      myNanos[slot] = -1;
+    }
+    myPids[slot] = header.getPid();
+    myTids[slot] = header.getTid();
+    myLevels[slot] = (byte)header.getLogLevel().ordinal();
+    myTagIds[slot] = getStringId(header.getTag());
+    myAppNameIds[slot] = getStringId(header.getAppName());
+    myLengths[slot] = length;
+    mySize++;
+  }
+
+  /**
+   * Calls the consumer for each one of the messages in the buffer, from the oldest to the newest
+   */
+  void forEach(@NotNull Consumer<LogCatMessage> consumer) {
+    byte[] scratch = null;
+    LogCatHeader header = null;
+    int previousSlot = -1;
+    int offset = myDataStart;
+
+    for (int i = 0; i < mySize; i++) {
+      int slot = (myFirst + i) % myPids.length;
+      if (previousSlot == -1 || !isSameHeader(previousSlot, slot)) {
+        header = createHeader(slot);
+      }
+      previousSlot = slot;
+
+      int length = myLengths[slot];
+      String text;
+      if (offset + length <= myData.length) {
+        text = new String(myData, offset, length, StandardCharsets.UTF_8);
+      }
+      else {
+        // The message wraps around the end of the buffer
+        if (scratch == null || scratch.length < length) {
+          scratch = new byte[length];
+        }
+        int firstPart = myData.length - offset;
+        System.arraycopy(myData, offset, scratch, 0, firstPart);
+        System.arraycopy(myData, 0, scratch, firstPart, length - firstPart);
+        text = new String(scratch, 0, length, StandardCharsets.UTF_8);
+      }
+      offset = (offset + length) % myData.length;
+
+      consumer.accept(new LogCatMessage(header, text));
+    }
+  }
+
+  private boolean isSameHeader(int slot1, int slot2) {
+    return myEpochSeconds[slot1] == myEpochSeconds[slot2] &&
+           myNanos[slot1] == myNanos[slot2] &&
+           (myNanos[slot1] != -1 || myTimestamps[slot1] == myTimestamps[slot2]) &&
+           myPids[slot1] == myPids[slot2] &&
+           myTids[slot1] == myTids[slot2] &&
+           myLevels[slot1] == myLevels[slot2] &&
+           myTagIds[slot1] == myTagIds[slot2] &&
+           myAppNameIds[slot1] == myAppNameIds[slot2];
+  }
+
+  @NotNull
+  private LogCatHeader createHeader(int slot) {
+    LogLevel level = LOG_LEVELS[myLevels[slot]];
+    String appName = myStrings.get(myAppNameIds[slot]);
+    String tag = myStrings.get(myTagIds[slot]);
+
+    if (myNanos[slot] == -1) {
+      assert myTimestamps != null;
+      //noinspection deprecation
+      return new LogCatHeader(level, myPids[slot], myTids[slot], appName, tag, myTimestamps[slot]);
+    }
+    Instant instant = Instant.ofEpochSecond(myEpochSeconds[slot], myNanos[slot]);
+    return new LogCatHeader(level, myPids[slot], myTids[slot], appName, tag, instant);
+  }
+
+  private void removeFirst() {
+    int length = myLengths[myFirst];
+    myDataStart = (myDataStart + length) % myData.length;
+    myDataSize -= length;
+    if (myTimestamps != null) {
+      myTimestamps[myFirst] = null;
+    }
+    myFirst = (myFirst + 1) % myPids.length;
+    mySize--;
+  }
+
+  int getStringCount() {
+    return myStrings.size();
+  }
+
+  private int getStringId(@NotNull String string) {
+    Integer id = myStringIds.get(string);
+    if (id == null) {
+      if (myStrings.size() >= myStringLimit) {
+        compactStrings();
+      }
+      id = myStrings.size();
+      myStrings.add(string);
+      myStringIds.put(string, id);
+    }
+    return id;
+  }
+
+  /**
+   * Drops the interned strings that are not used by the messages still in the buffer. The limit is raised if most of them are still
+   * in use, so the table is not compacted again on every new string.
+   */
+  private void compactStrings() {
+    Map<String, Integer> ids = new HashMap<>();
+    List<String> strings = new ArrayList<>();
+    for (int i = 0; i < mySize; i++) {
+      int slot = (myFirst + i) % myPids.length;
+      myTagIds[slot] = remapStringId(myTagIds[slot], ids, strings);
+      myAppNameIds[slot] = remapStringId(myAppNameIds[slot], ids, strings);
+    }
+    myStringIds.clear();
+    myStringIds.putAll(ids);
+    myStrings = strings;
+    myStringLimit = Math.max(MAX_STRINGS, strings.size() * 2);
+  }
+
+  private int remapStringId(int id, @NotNull Map<String, Integer> ids, @NotNull List<String> strings) {
+    String string = myStrings.get(id);
+    return ids.computeIfAbsent(string, s -> {
+      strings.add(s);
+      return strings.size() - 1;
+    });
+  }
+
+  private void ensureDataCapacity(int capacity) {
+    if (capacity <= myData.length) {
+      return;
+    }
+    // Grow geometrically but never past the maximum size, unless a single message is bigger than that
+    int newCapacity = myData.length;
+    while (newCapacity < capacity) {
+      newCapacity = newCapacity > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : newCapacity * 2;
+    }
+    newCapacity = Math.min(newCapacity, Math.max(capacity, myMaxBytes));
+    byte[] data = new byte[newCapacity];
+    int firstPart = Math.min(myDataSize, myData.length - myDataStart);
+    System.arraycopy(myData, myDataStart, data, 0, firstPart);
+    System.arraycopy(myData, 0, data, firstPart, myDataSize - firstPart);
+    myData = data;
+    myDataStart = 0;
+  }
+
+  private void growIndex() {
+    int capacity = myPids.length * 2;
+    myEpochSeconds = copyIndex(myEpochSeconds, new long[capacity]);
+    myNanos = copyIndex(myNanos, new int[capacity]);
+    myPids = copyIndex(myPids, new int[capacity]);
+    myTids = copyIndex(myTids, new int[capacity]);
+    myLevels = copyIndex(myLevels, new byte[capacity]);
+    myTagIds = copyIndex(myTagIds, new int[capacity]);
+    myAppNameIds = copyIndex(myAppNameIds, new int[capacity]);
+    myLengths = copyIndex(myLengths, new int[capacity]);
+    if (myTimestamps != null) {
+      myTimestamps = copyIndex(myTimestamps, new LogCatTimestamp[capacity]);
+    }
+    myFirst = 0;
+  }
+
+  /**
+   * Copies the slots in use of the circular index array {@code from} to the beginning of {@code to}
+   */
+  @NotNull
+  private <T> T copyIndex(@NotNull T from, @NotNull T to) {
+    int firstPart = Math.min(mySize, Array.getLength(from) - myFirst);
+    System.arraycopy(from, myFirst, to, 0, firstPart);
+    System.arraycopy(from, 0, to, firstPart, mySize - firstPart);
+    return to;
+  }
+
+  private static int getEncodedLength(@NotNull String text) {
+    int length = 0;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        length++;
+      }
+      else if (c < 0x800) {
+        length += 2;
+      }
+      else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += 4;
+        i++;
+      }
+      else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Encodes the text as UTF-8 directly into the circular buffer, starting at the given offset. Unpaired surrogates are encoded as
+   * three bytes, and replaced with '?' when decoded.
+   */
+  private void writeText(@NotNull String text, int offset) {
+    for (int i = 0, n = text.length(); i < n; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        offset = put(offset, c);
+      }
+      else if (c < 0x800) {
+        offset = put(offset, 0xC0 | (c >> 6));
+        offset = put(offset, 0x80 | (c & 0x3F));
+      }
+      else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        offset = put(offset, 0xF0 | (codePoint >> 18));
+        offset = put(offset, 0x80 | ((codePoint >> 12) & 0x3F));
+        offset = put(offset, 0x80 | ((codePoint >> 6) & 0x3F));
+        offset = put(offset, 0x80 | (codePoint & 0x3F));
+      }
+      else {
+        offset = put(offset, 0xE0 | (c >> 12));
+        offset = put(offset, 0x80 | ((c >> 6) & 0x3F));
+        offset = put(offset, 0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private int put(int offset, int value) {
+    myData[offset] = (byte)value;
+    offset++;
+    return offset == myData.length ? 0 : offset;
+  }
+}
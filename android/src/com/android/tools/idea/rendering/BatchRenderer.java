@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.rendering.parsers.LayoutPullParsers;
+import com.google.common.base.MoreObjects;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Renders a set of layout files in a set of configurations without a layout editor.
+ * <p>
+ * The renders are pipelined: while one {@link RenderTask} is being rendered in the layoutlib render thread and its image written, the
+ * next tasks are created and their files parsed on a pooled thread. All the tasks share the project {@link RenderService}, so the module
+ * class loader and the resource resolvers are reused across the whole batch. The requests are processed grouped by configuration
+ * to maximize the reuse of the resource resolvers. Since the shared resource resolvers are not thread safe, the preparation of a task
+ * never runs at the same time as an inflate, which is the only render phase that reads them.
+ * <p>
+ * Optionally, the rendered images are written as PNG files to an output directory together with a {@code metrics.csv} file
+ * containing the timing of every render.
+ */
+public class BatchRenderer {
+  private static final Logger LOG = Logger.getInstance(BatchRenderer.class);
+  /** Number of tasks that can be prepared ahead of the one being rendered */
+  private static final int PIPELINE_DEPTH = 2;
+  /** Time the producer waits for room in the pipeline before checking whether the batch has been stopped */
+  private static final long OFFER_TIMEOUT_MS = 100;
+  static final String METRICS_FILE_NAME = "metrics.csv";
+
+  @NotNull private final AndroidFacet myFacet;
+  /** Guards the use of the shared resource resolvers between the task preparation and the inflate */
+  private final Object myResolverLock = new Object();
+  private boolean myShowDecorations = true;
+  private boolean myIsSecurityManagerEnabled = true;
+
+  public BatchRenderer(@NotNull AndroidFacet facet) {
+    myFacet = facet;
+  }
+
+  /**
+   * Disables the decorations (status and navigation bars) in the rendered images.
+   */
+  @NotNull
+  public BatchRenderer disableDecorations() {
+    myShowDecorations = false;
+    return this;
+  }
+
+  /**
+   * Disables the security manager for the created {@link RenderTask}s. See {@link RenderService.RenderTaskBuilder#disableSecurityManager()}.
+   */
+  @TestOnly
+  @NotNull
+  BatchRenderer disableSecurityManager() {
+    myIsSecurityManagerEnabled = false;
+    return this;
+  }
+
+  /**
+   * Renders all the combinations of the given layouts and configurations.
+   * <p>
+   * <b>Do not call this method from the dispatch thread.</b>
+   *
+   * @param layouts        the layout files to render
+   * @param configurations the configurations, indexed by a name that is used for the output file names. Every configuration is adapted
+   *                       to each file the same way the layout editor does.
+   * @param outputDir      if not null, the directory where the images and the metrics file will be written to
+   * @param indicator      the progress indicator used to report progress and check for cancellation
+   * @return the {@link Metrics} of every render
+   */
+  @NotNull
+  public List<Metrics> render(@NotNull Collection<VirtualFile> layouts,
+                              @NotNull Map<String, Configuration> configurations,
+                              @Nullable File outputDir,
+                              @NotNull ProgressIndicator indicator) throws IOException {
+    assert !ApplicationManager.getApplication().isDispatchThread() : "Batch rendering must not run on the UI thread";
+
+    List<Request> requests = new ArrayList<>(layouts.size() * configurations.size());
+    for (Map.Entry<String, Configuration> configuration : configurations.entrySet()) {
+      for (VirtualFile layout : layouts) {
+        requests.add(new Request(layout, configuration.getKey(), configuration.getValue()));
+      }
+    }
+
+    if (outputDir != null) {
+      FileUtil.ensureExists(outputDir);
+    }
+
+    BlockingQueue<PreparedTask> queue = new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+    AtomicBoolean stopped = new AtomicBoolean();
+    Future<?> producer = AppExecutorUtil.getAppExecutorService().submit(() -> prepareTasks(requests, queue, stopped, indicator));
+
+    List<Metrics> metrics = new ArrayList<>(requests.size());
+    try {
+      for (int i = 0; i < requests.size(); i++) {
+        indicator.checkCanceled();
+        indicator.setFraction((double)i / requests.size());
+
+        PreparedTask prepared = queue.poll(RenderService.ourRenderThreadTimeoutMs, TimeUnit.MILLISECONDS);
+        while (prepared == null) {
+          indicator.checkCanceled();
+          if (producer.isDone()) {
+            // The producer failed, get() will propagate the exception
+            producer.get();
+            throw new IllegalStateException("Batch render pipeline stopped unexpectedly");
+          }
+          prepared = queue.poll(RenderService.ourRenderThreadTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        indicator.setText2(prepared.request.toString());
+        metrics.add(renderTask(prepared, outputDir, myResolverLock));
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+    catch (Exception e) {
+      if (e instanceof ProcessCanceledException) {
+        throw (ProcessCanceledException)e;
+      }
+      throw new IOException("Batch render failed", e);
+    }
+    finally {
+      stopped.set(true);
+      // Wait for the producer to notice, so it does not add more tasks once the queue has been drained
+      try {
+        producer.get(RenderService.ourRenderThreadTimeoutMs, TimeUnit.MILLISECONDS);
+      }
+      catch (Exception ignored) {
+        // Failures have already been reported above
+      }
+      // Dispose any task that was prepared but not rendered
+      List<PreparedTask> pending = new ArrayList<>();
+      queue.drainTo(pending);
+      pending.stream()
+        .filter(prepared -> prepared.task != null)
+        .forEach(prepared -> prepared.task.dispose());
+    }
+
+    if (outputDir != null) {
+      writeMetrics(metrics, new File(outputDir, METRICS_FILE_NAME));
+    }
+    return metrics;
+  }
+
+  /**
+   * Creates the {@link RenderTask}s for the given requests and adds them to the queue. This runs ahead of the rendering so the PSI
+   * parsing and the task setup are done in parallel with the render of the previous request. The producer stops, disposing the task
+   * it was holding, as soon as {@code stopped} is set or the indicator is cancelled.
+   */
+  private void prepareTasks(@NotNull List<Request> requests,
+                            @NotNull BlockingQueue<PreparedTask> queue,
+                            @NotNull AtomicBoolean stopped,
+                            @NotNull ProgressIndicator indicator) {
+    RenderService renderService = RenderService.getInstance(myFacet.getModule().getProject());
+    PsiManager psiManager = PsiManager.getInstance(myFacet.getModule().getProject());
+    try {
+      for (Request request : requests) {
+        if (stopped.get() || indicator.isCanceled()) {
+          return;
+        }
+
+        long startNanos = System.nanoTime();
+        PsiFile psiFile = ApplicationManager.getApplication().runReadAction(
+          (Computable<PsiFile>)() -> request.file.isValid() ? psiManager.findFile(request.file) : null);
+        RenderTask task = null;
+        if (psiFile != null) {
+          LayoutPullParsers.saveFileIfNecessary(psiFile);
+          Configuration configuration = Configuration.create(request.configuration, request.file);
+          RenderService.RenderTaskBuilder builder = renderService.taskBuilder(myFacet, configuration)
+            .withPsiFile(psiFile)
+            .disableImagePool();
+          if (!myShowDecorations) {
+            builder.disableDecorations();
+          }
+          if (!myIsSecurityManagerEnabled) {
+            builder.disableSecurityManager();
+          }
+          synchronized (myResolverLock) {
+            task = builder.build();
+            if (task != null) {
+              task.preloadLayoutParser();
+            }
+          }
+        }
+
+        PreparedTask prepared = new PreparedTask(request, task, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        while (!queue.offer(prepared, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          if (stopped.get() || indicator.isCanceled()) {
+            if (task != null) {
+              task.dispose();
+            }
+            return;
+          }
+        }
+      }
+    }
+    catch (InterruptedException ignored) {
+      // The batch was cancelled
+    }
+  }
+
+  @NotNull
+  private static Metrics renderTask(@NotNull PreparedTask prepared, @Nullable File outputDir, @NotNull Object resolverLock)
+    throws Exception {
+    Request request = prepared.request;
+    RenderTask task = prepared.task;
+    if (task == null) {
+      return new Metrics(request.file, request.configurationName, prepared.prepareMs, -1, -1, false, null);
+    }
+
+    try {
+      long startNanos = System.nanoTime();
+      RenderResult inflateResult;
+      synchronized (resolverLock) {
+        inflateResult = task.inflate();
+      }
+      long inflateMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      if (inflateResult == null || !inflateResult.getRenderResult().isSuccess()) {
+        return new Metrics(request.file, request.configurationName, prepared.prepareMs, inflateMs, -1, false, null);
+      }
+
+      startNanos = System.nanoTime();
+      RenderResult result = task.render().get();
+      long renderMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      boolean success = result != null && result.getRenderResult().isSuccess();
+
+      File imageFile = null;
+      if (success && outputDir != null && result.hasImage()) {
+        BufferedImage image = result.getRenderedImage().getCopy();
+        if (image != null) {
+          imageFile = new File(outputDir, request.getOutputFileName());
+          ImageIO.write(image, "PNG", imageFile);
+        }
+      }
+      if (result != null) {
+        result.dispose();
+      }
+      return new Metrics(request.file, request.configurationName, prepared.prepareMs, inflateMs, renderMs, success, imageFile);
+    }
+    finally {
+      task.dispose();
+    }
+  }
+
+  /**
+   * Writes the given metrics as a CSV file.
+   */
+  static void writeMetrics(@NotNull List<Metrics> metrics, @NotNull File file) throws IOException {
+    try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+      writer.println("layout,configuration,prepareMs,inflateMs,renderMs,success,image");
+      for (Metrics metric : metrics) {
+        writer.println(String.join(",",
+                                   metric.file.getPath(),
+                                   metric.configurationName,
+                                   String.valueOf(metric.prepareMs),
+                                   String.valueOf(metric.inflateMs),
+                                   String.valueOf(metric.renderMs),
+                                   String.valueOf(metric.success),
+                                   metric.imageFile != null ? metric.imageFile.getName() : ""));
+      }
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to write render metrics to " + file, e);
+      throw e;
+    }
+  }
+
+  /**
+   * A single render of a layout file in a given configuration.
+   */
+  private static class Request {
+    @NotNull final VirtualFile file;
+    @NotNull final String configurationName;
+    @NotNull final Configuration configuration;
+
+    private Request(@NotNull VirtualFile file, @NotNull String configurationName, @NotNull Configuration configuration) {
+      this.file = file;
+      this.configurationName = configurationName;
+      this.configuration = configuration;
+    }
+
+    @NotNull
+    String getOutputFileName() {
+      String folderName = file.getParent() != null ? file.getParent().getName() + "_" : "";
+      return FileUtil.sanitizeFileName(folderName + file.getNameWithoutExtension() + "_" + configurationName, false) + ".png";
+    }
+
+    @Override
+    public String toString() {
+      return file.getName() + " (" + configurationName + ")";
+    }
+  }
+
+  private static class PreparedTask {
+    @NotNull final Request request;
+    @Nullable final RenderTask task;
+    final long prepareMs;
+
+    private PreparedTask(@NotNull Request request, @Nullable RenderTask task, long prepareMs) {
+      this.request = request;
+      this.task = task;
+      this.prepareMs = prepareMs;
+    }
+  }
+
+  /**
+   * Result and timing of a single render. Times are -1 when the phase did not run.
+   */
+  public static class Metrics {
+    @NotNull public final VirtualFile file;
+    @NotNull public final String configurationName;
+    public final long prepareMs;
+    public final long inflateMs;
+    public final long renderMs;
+    public final boolean success;
+    @Nullable public final File imageFile;
+
+    Metrics(@NotNull VirtualFile file,
+            @NotNull String configurationName,
+            long prepareMs,
+            long inflateMs,
+            long renderMs,
+            boolean success,
+            @Nullable File imageFile) {
+      this.file = file;
+      this.configurationName = configurationName;
+      this.prepareMs = prepareMs;
+      this.inflateMs = inflateMs;
+      this.renderMs = renderMs;
+      this.success = success;
+      this.imageFile = imageFile;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+        .add("file", file.getName())
+        .add("configuration", configurationName)
+        .add("prepareMs", prepareMs)
+        .add("inflateMs", inflateMs)
+        .add("renderMs", renderMs)
+        .add("success", success)
+        .toString();
+    }
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.ApplicationInfo;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Cache of class files already rewritten by {@link ClassConverter}, shared by all the {@link RenderClassLoader}s.
+ * <p>
+ * Every time a class loader is discarded (for example after a build or a change in the dependencies), all the classes used by the
+ * preview need to be loaded and converted again. Most of them, specially the ones coming from libraries, do not change between loaders
+ * so the result of the conversion is stored indexed by a hash of the original class contents. The converted classes are kept in memory
+ * up to a maximum size and are also saved to disk so they can be reused after restarting the IDE.
+ * <p>
+ * For the class files in the module output directories, the cache also remembers the timestamp and length of the file so the file
+ * does not need to be read again while it has not changed.
+ * <p>
+ * The disk cache is stored in a directory specific to the IDE build, since the {@link ClassConverter} and the embedded layoutlib
+ * ship with it; directories of other builds are deleted. The directory is bounded in size and the least recently used classes are
+ * deleted first.
+ */
+public class ConvertedClassCache {
+  private static final Logger LOG = Logger.getInstance(ConvertedClassCache.class);
+
+  /** Increase when the format of the cache or the {@link ClassConverter} transformations change */
+  private static final int CACHE_VERSION = 1;
+  private static final String CACHE_DIRECTORY = "render_class_cache";
+  private static final long DEFAULT_MAX_BYTES = Long.getLong("render.class.cache.bytes", 32 * 1024 * 1024);
+  private static final long DEFAULT_MAX_DISK_BYTES = Long.getLong("render.class.cache.disk.bytes", 256 * 1024 * 1024);
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private static final Object ourInstanceLock = new Object();
+  private static ConvertedClassCache ourInstance;
+
+  /** Converted classes indexed by the hash of the original class contents, in access order */
+  private final LinkedHashMap<String, byte[]> myClasses = new LinkedHashMap<>(256, 0.75f, true);
+  /** Class files from the output directories indexed by their path */
+  private final Map<String, FileStamp> myFileStamps = new ConcurrentHashMap<>();
+  /** Converted classes that have not been saved to disk yet */
+  private final Map<String, byte[]> myPendingWrites = new ConcurrentHashMap<>();
+  /** Classes read from disk since the last save. Their files are touched on save so they are the last ones to be evicted */
+  private final Set<String> myReadFromDisk = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean mySaveScheduled = new AtomicBoolean();
+  private final AtomicBoolean myStaleDirectoriesDeleted = new AtomicBoolean();
+  @Nullable private final File myCacheRootDir;
+  @Nullable private final File myCacheDir;
+  private final long myMaxBytes;
+  private final long myMaxDiskBytes;
+  private long myBytesInUse;
+
+  private static class FileStamp {
+    final long timestamp;
+    final long length;
+    @NotNull final String hash;
+
+    FileStamp(long timestamp, long length, @NotNull String hash) {
+      this.timestamp = timestamp;
+      this.length = length;
+      this.hash = hash;
+    }
+  }
+
+  /**
+   * @param cacheRootDir     directory where the converted classes are saved or null to only keep them in memory
+   * @param converterVersion version of the {@link ClassConverter} and layoutlib; classes converted by other versions are discarded
+   * @param maxBytes         maximum size of the classes kept in memory
+   * @param maxDiskBytes     maximum size of the classes saved to disk
+   */
+  @VisibleForTesting
+  ConvertedClassCache(@Nullable File cacheRootDir, @NotNull String converterVersion, long maxBytes, long maxDiskBytes) {
+    myCacheRootDir = cacheRootDir;
+    myCacheDir = cacheRootDir != null
+                 ? new File(cacheRootDir, FileUtil.sanitizeFileName(
+                   "v" + CACHE_VERSION + "_" + ClassConverter.getCurrentClassVersion() + "_" + converterVersion, false))
+                 : null;
+    myMaxBytes = maxBytes;
+    myMaxDiskBytes = maxDiskBytes;
+  }
+
+  @NotNull
+  public static ConvertedClassCache getInstance() {
+    synchronized (ourInstanceLock) {
+      if (ourInstance == null) {
+        ourInstance = new ConvertedClassCache(new File(PathManager.getSystemPath(), CACHE_DIRECTORY),
+                                              ApplicationInfo.getInstance().getBuild().asString(),
+                                              DEFAULT_MAX_BYTES,
+                                              DEFAULT_MAX_DISK_BYTES);
+      }
+      return ourInstance;
+    }
+  }
+
+  @NotNull
+  static String hash(@NotNull byte[] data) {
+    return HASH_FUNCTION.hashBytes(data).toString();
+  }
+
+  /**
+   * Returns the converted version of the given class. If the class has not been converted before, the given converter is invoked and
+   * the result stored in the cache.
+   */
+  @NotNull
+  public byte[] getConvertedClass(@NotNull byte[] data, @NotNull Function<byte[], byte[]> converter) {
+    return getConvertedClass(hash(data), data, converter);
+  }
+
+  @NotNull
+  private byte[] getConvertedClass(@NotNull String hash, @NotNull byte[] data, @NotNull Function<byte[], byte[]> converter) {
+    byte[] converted = get(hash);
+    if (converted == null) {
+      converted = converter.apply(data);
+      put(hash, converted);
+    }
+    return converted;
+  }
+
+  /**
+   * Returns the converted version of the class file at the given path if the file has been converted before and it has not changed
+   * since, or null otherwise. This allows to skip reading class files that have not been modified.
+   */
+  @Nullable
+  public byte[] getConvertedClassFile(@NotNull String path, long timestamp, long length) {
+    FileStamp stamp = myFileStamps.get(path);
+    if (stamp == null) {
+      return null;
+    }
+    if (stamp.timestamp != timestamp || stamp.length != length) {
+      myFileStamps.remove(path);
+      return null;
+    }
+    return get(stamp.hash);
+  }
+
+  /**
+   * Same as {@link #getConvertedClass(byte[], Function)} but also records the timestamp and length of the class file so the result can
+   * later be retrieved with {@link #getConvertedClassFile(String, long, long)}.
+   */
+  @NotNull
+  public byte[] getConvertedClassFile(@NotNull String path,
+                                      long timestamp,
+                                      long length,
+                                      @NotNull byte[] data,
+                                      @NotNull Function<byte[], byte[]> converter) {
+    String hash = hash(data);
+    byte[] converted = getConvertedClass(hash, data, converter);
+    myFileStamps.put(path, new FileStamp(timestamp, length, hash));
+    return converted;
+  }
+
+  /**
+   * Forgets the timestamps of all the class files. The converted classes are not removed since they are indexed by their contents and
+   * will be reused if the same class is produced again.
+   */
+  public void invalidateFiles() {
+    myFileStamps.clear();
+  }
+
+  @Nullable
+  private byte[] get(@NotNull String hash) {
+    synchronized (myClasses) {
+      byte[] converted = myClasses.get(hash);
+      if (converted != null) {
+        return converted;
+      }
+    }
+
+    byte[] converted = myPendingWrites.get(hash);
+    if (converted == null) {
+      converted = readFromDisk(hash);
+      if (converted != null) {
+        myReadFromDisk.add(hash);
+      }
+    }
+    if (converted != null) {
+      addToMemory(hash, converted);
+    }
+    return converted;
+  }
+
+  private void put(@NotNull String hash, @NotNull byte[] converted) {
+    addToMemory(hash, converted);
+    if (myCacheDir != null) {
+      myPendingWrites.put(hash, converted);
+    }
+  }
+
+  private void addToMemory(@NotNull String hash, @NotNull byte[] converted) {
+    synchronized (myClasses) {
+      byte[] previous = myClasses.put(hash, converted);
+      if (previous != null) {
+        myBytesInUse -= previous.length;
+      }
+      myBytesInUse += converted.length;
+
+      Iterator<byte[]> iterator = myClasses.values().iterator();
+      while (myBytesInUse > myMaxBytes && iterator.hasNext()) {
+        myBytesInUse -= iterator.next().length;
+        iterator.remove();
+      }
+    }
+  }
+
+  @Nullable
+  private byte[] readFromDisk(@NotNull String hash) {
+    if (myCacheDir == null) {
+      return null;
+    }
+    File file = new File(myCacheDir, hash);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      return Files.readAllBytes(file.toPath());
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+      return null;
+    }
+  }
+
+  /**
+   * Schedules saving the classes converted since the last save to disk. The files are written from a pooled thread since the render
+   * thread is not allowed to write to disk.
+   * <p>
+   * This must not be called from the render thread since new threads created from it would inherit the render sandbox.
+   */
+  public void saveAsync() {
+    if ((myPendingWrites.isEmpty() && myReadFromDisk.isEmpty()) || !mySaveScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    AppExecutorUtil.getAppExecutorService().execute(() -> {
+      mySaveScheduled.set(false);
+      save();
+    });
+  }
+
+  @VisibleForTesting
+  void save() {
+    if (myCacheDir == null || (!myCacheDir.isDirectory() && !myCacheDir.mkdirs())) {
+      myPendingWrites.clear();
+      myReadFromDisk.clear();
+      return;
+    }
+
+    if (myStaleDirectoriesDeleted.compareAndSet(false, true)) {
+      deleteStaleDirectories();
+    }
+
+    for (Iterator<Map.Entry<String, byte[]>> iterator = myPendingWrites.entrySet().iterator(); iterator.hasNext(); ) {
+      Map.Entry<String, byte[]> entry = iterator.next();
+      File file = new File(myCacheDir, entry.getKey());
+      try {
+        if (!file.exists()) {
+          // Write to a temporary file first so other IDE instances never read a partially written class
+          File tmp = FileUtil.createTempFile(myCacheDir, entry.getKey(), TEMP_FILE_SUFFIX, true, false);
+          Files.write(tmp.toPath(), entry.getValue());
+          Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+      }
+      catch (IOException | SecurityException e) {
+        LOG.debug("Unable to save converted class", e);
+      }
+      iterator.remove();
+    }
+
+    long now = System.currentTimeMillis();
+    for (Iterator<String> iterator = myReadFromDisk.iterator(); iterator.hasNext(); ) {
+      //noinspection ResultOfMethodCallIgnored
+      new File(myCacheDir, iterator.next()).setLastModified(now);
+      iterator.remove();
+    }
+
+    evictFromDisk();
+  }
+
+  /**
+   * Deletes the directories with classes converted by other versions of the cache, the {@link ClassConverter} or layoutlib.
+   */
+  private void deleteStaleDirectories() {
+    File[] directories = myCacheRootDir != null ? myCacheRootDir.listFiles() : null;
+    if (directories == null) {
+      return;
+    }
+    for (File directory : directories) {
+      if (!FileUtil.filesEqual(directory, myCacheDir)) {
+        FileUtil.delete(directory);
+      }
+    }
+  }
+
+  /**
+   * When the disk cache is larger than the maximum size, deletes the least recently used classes until it is back to 75% of it.
+   */
+  private void evictFromDisk() {
+    File[] files = myCacheDir != null ? myCacheDir.listFiles() : null;
+    if (files == null) {
+      return;
+    }
+
+    long diskBytes = 0;
+    for (File file : files) {
+      diskBytes += file.length();
+    }
+    if (diskBytes <= myMaxDiskBytes) {
+      return;
+    }
+
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    long target = myMaxDiskBytes * 3 / 4;
+    for (File file : files) {
+      if (diskBytes <= target) {
+        break;
+      }
+      if (file.getName().endsWith(TEMP_FILE_SUFFIX)) {
+        // Might be in the middle of being written by another IDE instance
+        continue;
+      }
+      long length = file.length();
+      if (FileUtil.delete(file)) {
+        diskBytes -= length;
+      }
+    }
+  }
+
+  @VisibleForTesting
+  long getBytesInUse() {
+    synchronized (myClasses) {
+      return myBytesInUse;
+    }
+  }
+}
@@ -62,6 +62,8 @@ public class RefreshRenderAction extends AnAction {
       IAndroidTarget target = configuration.getTarget();
       Module module = configuration.getModule();
       if (module != null) {
+        // Cached images might have been rendered with the classes or resources being reset
+        RenderService.getInstance(module.getProject()).getRenderResultCache().clear();
         ResourceIdManager.get(module).resetDynamicIds();
         if (target != null) {
           AndroidTargetData targetData = AndroidTargetData.getTargetData(target, module);
@@ -89,7 +89,7 @@ public abstract class RenderClassLoader extends ClassLoader {
           throw new ClassFormatError(name);
         }
 
-        byte[] rewritten = convertClass(data);
+        byte[] rewritten = ConvertedClassCache.getInstance().getConvertedClass(data, this::convertClass);
         try {
           if (LOG.isDebugEnabled()) {
             LOG.debug(String.format("Defining class '%s' from .jar file", anonymizeClassName(name)));
@@ -144,9 +144,30 @@ public abstract class RenderClassLoader extends ClassLoader {
 
   @Nullable
   protected Class<?> loadClassFile(String fqcn, @NotNull VirtualFile classFile) {
+    ConvertedClassCache cache = ConvertedClassCache.getInstance();
+    String path = classFile.getPath();
+    long timestamp = classFile.getTimeStamp();
+    long length = classFile.getLength();
+    byte[] rewritten = cache.getConvertedClassFile(path, timestamp, length);
+    if (rewritten != null) {
+      try {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(String.format("Defining class '%s' from converted class cache", anonymizeClassName(fqcn)));
+        }
+        return defineClassAndPackage(fqcn, rewritten, 0, rewritten.length);
+      }
+      catch (UnsupportedClassVersionError inner) {
+        // Read the file again below so the error contains the original class contents
+        LOG.debug(inner);
+      }
+    }
+
     try {
       byte[] data = classFile.contentsToByteArray();
-      return loadClass(fqcn, data);
+      if (!isValidClassFile(data)) {
+        throw new ClassFormatError(fqcn);
+      }
+      return defineConvertedClass(fqcn, data, cache.getConvertedClassFile(path, timestamp, length, data, this::convertClass));
     }
     catch (IOException e) {
       LOG.warn(e);
@@ -165,7 +186,11 @@ public abstract class RenderClassLoader extends ClassLoader {
       throw new ClassFormatError(fqcn);
     }
 
-    byte[] rewritten = convertClass(data);
+    return defineConvertedClass(fqcn, data, ConvertedClassCache.getInstance().getConvertedClass(data, this::convertClass));
+  }
+
+  @NotNull
+  private Class<?> defineConvertedClass(@NotNull String fqcn, @NotNull byte[] data, @NotNull byte[] rewritten) {
     try {
       if (LOG.isDebugEnabled()) {
         LOG.debug(String.format("Defining class '%s' from disk file", anonymizeClassName(fqcn)));
@@ -179,6 +204,10 @@ public abstract class RenderClassLoader extends ClassLoader {
     }
   }
 
+  /**
+   * Converts the given class so it can be loaded for rendering. The results are shared between all the loaders through the
+   * {@link ConvertedClassCache} so the conversion must only depend on the contents of the class.
+   */
   @NotNull
   protected byte[] convertClass(@NotNull byte[] data) {
     return ClassConverter.rewriteClass(data);
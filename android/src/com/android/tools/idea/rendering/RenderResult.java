@@ -141,6 +141,58 @@ public class RenderResult {
       ImmutableMap.of());
   }
 
+  /**
+   * Creates a {@link RenderResult} with the given image and a detached copy of the {@link ViewInfo} hierarchy of this result.
+   * The copy is not associated to any {@link RenderTask} and its {@link ViewInfo}s only keep the class names, cookies, bounds and
+   * margins, since the view objects belong to a session that might be disposed while the copy is still in use.
+   */
+  @NotNull
+  RenderResult createDetachedCopy(@NotNull ImagePool.Image image) {
+    return new RenderResult(
+      myFile,
+      myModule,
+      myLogger,
+      null,
+      myRenderResult,
+      detachViewInfos(myRootViews),
+      detachViewInfos(mySystemRootViews),
+      image,
+      ImmutableMap.copyOf(myDefaultProperties),
+      ImmutableMap.copyOf(myDefaultStyles));
+  }
+
+  /**
+   * Creates a {@link RenderResult} that shares everything with this result but the image. This result must not be associated
+   * to a {@link RenderTask}.
+   */
+  @NotNull
+  RenderResult copyWithImage(@NotNull ImagePool.Image image) {
+    assert myRenderTask == null;
+    return new RenderResult(
+      myFile,
+      myModule,
+      myLogger,
+      null,
+      myRenderResult,
+      myRootViews,
+      mySystemRootViews,
+      image,
+      myDefaultProperties,
+      myDefaultStyles);
+  }
+
+  @NotNull
+  private static ImmutableList<ViewInfo> detachViewInfos(@NotNull List<ViewInfo> views) {
+    ImmutableList.Builder<ViewInfo> builder = ImmutableList.builder();
+    for (ViewInfo view : views) {
+      ViewInfo copy = new ViewInfo(view.getClassName(), view.getCookie(), view.getLeft(), view.getTop(), view.getRight(), view.getBottom());
+      copy.setExtendedInfo(view.getBaseLine(), view.getLeftMargin(), view.getTopMargin(), view.getRightMargin(), view.getBottomMargin());
+      copy.setChildren(detachViewInfos(view.getChildren()));
+      builder.add(copy);
+    }
+    return builder.build();
+  }
+
   @NotNull
   public Result getRenderResult() {
     return myRenderResult;
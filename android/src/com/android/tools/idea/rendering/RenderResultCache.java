@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.rendering.imagepool.ImagePool;
+import com.android.tools.idea.rendering.parsers.TagSnapshot;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.intellij.openapi.Disposable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.concurrent.GuardedBy;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Memory bounded LRU cache of successful {@link RenderResult}s.
+ * <p>
+ * The cache allows the layout editor to skip the inflate and render of a layout when it goes back to a state that has
+ * already been rendered, for example when the editor is re-activated on an unchanged file or when switching back
+ * and forth between two devices. Entries are indexed by a {@link Key} that captures everything that can affect the
+ * rendered result: the {@link TagSnapshot} tree, the {@link Configuration} values used to render and the resource
+ * modification counts.
+ * <p>
+ * The cached results keep the image and a detached copy of the {@link com.android.ide.common.rendering.api.ViewInfo}
+ * hierarchy (class names, cookies and bounds, without the view objects of the disposed render session). The cached images
+ * are allocated from an {@link ImagePool} and every call to {@link #get(Key)} returns a {@link RenderResult} holding its
+ * own copy of the image so callers can dispose it as they would do with any other result.
+ */
+public class RenderResultCache implements Disposable {
+  /** Default maximum number of bytes used by the cached images */
+  private static final long DEFAULT_MAX_BYTES = Long.getLong("layoutlib.render.cache.bytes", 64L * 1024 * 1024);
+
+  @NotNull private final ImagePool myImagePool;
+  private final long myMaxBytes;
+
+  @GuardedBy("this")
+  private final LinkedHashMap<Key, RenderResult> myCache = new LinkedHashMap<>(16, 0.75f, true);
+  @GuardedBy("this")
+  private long myBytesInUse;
+
+  public RenderResultCache(@NotNull ImagePool imagePool) {
+    this(imagePool, DEFAULT_MAX_BYTES);
+  }
+
+  @VisibleForTesting
+  RenderResultCache(@NotNull ImagePool imagePool, long maxBytes) {
+    myImagePool = imagePool;
+    myMaxBytes = maxBytes;
+  }
+
+  private static long getImageSizeInBytes(@NotNull ImagePool.Image image) {
+    return (long)image.getWidth() * image.getHeight() * 4;
+  }
+
+  @NotNull
+  private ImagePool.Image copyImage(@NotNull ImagePool.Image image) {
+    if (image == ImagePool.NULL_POOLED_IMAGE || image.getWidth() == 0 || image.getHeight() == 0) {
+      return ImagePool.NULL_POOLED_IMAGE;
+    }
+
+    ImagePool.Image copy = myImagePool.create(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    copy.paint(g -> image.drawImageTo(g, 0, 0, image.getWidth(), image.getHeight()));
+    return copy;
+  }
+
+  /**
+   * Returns a new {@link RenderResult} with the image and view hierarchy cached for the given key or null if the key is not
+   * in the cache. The returned result is owned by the caller and must be disposed by it.
+   */
+  @Nullable
+  public synchronized RenderResult get(@NotNull Key key) {
+    RenderResult cached = myCache.get(key);
+    if (cached == null) {
+      return null;
+    }
+
+    return cached.copyWithImage(copyImage(cached.getRenderedImage()));
+  }
+
+  /**
+   * Adds a detached copy of the given result to the cache. Only successful results are cached. The passed result is not
+   * retained by the cache so the caller can continue using it (and disposing it) normally.
+   */
+  public synchronized void put(@NotNull Key key, @NotNull RenderResult result) {
+    if (!result.getRenderResult().isSuccess() || !result.hasImage()) {
+      return;
+    }
+
+    ImagePool.Image image = result.getRenderedImage();
+    long size = getImageSizeInBytes(image);
+    if (size > myMaxBytes) {
+      return;
+    }
+
+    RenderResult previous = myCache.put(key, result.createDetachedCopy(copyImage(image)));
+    if (previous != null) {
+      myBytesInUse -= getImageSizeInBytes(previous.getRenderedImage());
+      previous.dispose();
+    }
+    myBytesInUse += size;
+
+    Iterator<Map.Entry<Key, RenderResult>> iterator = myCache.entrySet().iterator();
+    while (myBytesInUse > myMaxBytes && iterator.hasNext()) {
+      RenderResult evicted = iterator.next().getValue();
+      myBytesInUse -= getImageSizeInBytes(evicted.getRenderedImage());
+      evicted.dispose();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Removes all the entries from the cache
+   */
+  public synchronized void clear() {
+    myCache.values().forEach(RenderResult::dispose);
+    myCache.clear();
+    myBytesInUse = 0;
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return myCache.size();
+  }
+
+  @VisibleForTesting
+  synchronized long getBytesInUse() {
+    return myBytesInUse;
+  }
+
+  @Override
+  public void dispose() {
+    clear();
+  }
+
+  /**
+   * Key of a {@link RenderResultCache} entry.
+   */
+  public static final class Key {
+    @NotNull private final String myFilePath;
+    private final long myTagSignature;
+    @Nullable private final String myDeviceId;
+    @Nullable private final String myDeviceState;
+    @NotNull private final String myQualifiers;
+    @Nullable private final String myTheme;
+    @Nullable private final String myTarget;
+    private final long myResourceModificationCount;
+    private final long myProjectModificationCount;
+    @NotNull private final String myRenderOptions;
+
+    @VisibleForTesting
+    Key(@NotNull String filePath,
+        long tagSignature,
+        @Nullable String deviceId,
+        @Nullable String deviceState,
+        @NotNull String qualifiers,
+        @Nullable String theme,
+        @Nullable String target,
+        long resourceModificationCount,
+        long projectModificationCount,
+        @NotNull String renderOptions) {
+      myFilePath = filePath;
+      myTagSignature = tagSignature;
+      myDeviceId = deviceId;
+      myDeviceState = deviceState;
+      myQualifiers = qualifiers;
+      myTheme = theme;
+      myTarget = target;
+      myResourceModificationCount = resourceModificationCount;
+      myProjectModificationCount = projectModificationCount;
+      myRenderOptions = renderOptions;
+    }
+
+    /**
+     * Creates a new {@link Key}.
+     *
+     * @param filePath                  path of the file being rendered
+     * @param rootSnapshot              snapshot of the root tag of the file
+     * @param configuration             the configuration used to render
+     * @param resourceModificationCount modification count of the resource repositories used to render
+     * @param projectModificationCount  modification count of the project outputs (builds, resource folder changes)
+     * @param renderOptions             any other option that affects the rendered image (like the image quality)
+     */
+    @NotNull
+    public static Key create(@NotNull String filePath,
+                             @NotNull TagSnapshot rootSnapshot,
+                             @NotNull Configuration configuration,
+                             long resourceModificationCount,
+                             long projectModificationCount,
+                             @NotNull String renderOptions) {
+      Device device = configuration.getDevice();
+      IAndroidTarget target = configuration.getTarget();
+      return new Key(filePath,
+                     rootSnapshot.getTreeSignature(),
+                     device != null ? device.getId() : null,
+                     configuration.getDeviceState() != null ? configuration.getDeviceState().getName() : null,
+                     configuration.getFullConfig().getQualifierString(),
+                     configuration.getTheme(),
+                     target != null ? target.hashString() : null,
+                     resourceModificationCount,
+                     projectModificationCount,
+                     renderOptions);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Key key = (Key)o;
+      return myTagSignature == key.myTagSignature &&
+             myResourceModificationCount == key.myResourceModificationCount &&
+             myProjectModificationCount == key.myProjectModificationCount &&
+             myFilePath.equals(key.myFilePath) &&
+             Objects.equals(myDeviceId, key.myDeviceId) &&
+             Objects.equals(myDeviceState, key.myDeviceState) &&
+             myQualifiers.equals(key.myQualifiers) &&
+             Objects.equals(myTheme, key.myTheme) &&
+             Objects.equals(myTarget, key.myTarget) &&
+             myRenderOptions.equals(key.myRenderOptions);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myFilePath, myTagSignature, myDeviceId, myDeviceState, myQualifiers, myTheme, myTarget,
+                          myResourceModificationCount, myProjectModificationCount, myRenderOptions);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+        .add("file", myFilePath)
+        .add("signature", myTagSignature)
+        .add("device", myDeviceId)
+        .add("state", myDeviceState)
+        .add("qualifiers", myQualifiers)
+        .add("theme", myTheme)
+        .add("target", myTarget)
+        .add("resources", myResourceModificationCount)
+        .add("project", myProjectModificationCount)
+        .add("options", myRenderOptions)
+        .toString();
+    }
+  }
+}
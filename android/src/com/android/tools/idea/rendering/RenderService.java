@@ -153,6 +153,8 @@ public class RenderService implements Disposable {
 
   private final ImagePool myImagePool = ImagePoolFactory.createImagePool();
 
+  private final RenderResultCache myRenderResultCache = new RenderResultCache(myImagePool);
+
   /**
    * @return the {@linkplain RenderService} for the given facet.
    */
@@ -236,6 +238,7 @@ public class RenderService implements Disposable {
   @Override
   public void dispose() {
     myProject.putUserData(KEY, null);
+    myRenderResultCache.dispose();
     myImagePool.dispose();
   }
 
@@ -413,6 +416,14 @@ public class RenderService implements Disposable {
     return myImagePool;
   }
 
+  /**
+   * Returns the {@link RenderResultCache} shared by all the editors in the project.
+   */
+  @NotNull
+  public RenderResultCache getRenderResultCache() {
+    return myRenderResultCache;
+  }
+
   /** This is the View.MeasureSpec mode shift */
   private static final int MEASURE_SPEC_MODE_SHIFT = 30;
 
@@ -128,6 +128,7 @@ public class RenderTask {
   private final List<ListenableFuture<?>> myRunningFutures = new LinkedList<>();
   @NotNull private final AtomicBoolean isDisposed = new AtomicBoolean(false);
   @Nullable private XmlFile myXmlFile;
+  @Nullable private ILayoutPullParser myPreloadedParser;
 
   /**
    * Don't create this task directly; obtain via {@link RenderService}
@@ -394,7 +395,9 @@ public class RenderTask {
       return null;
     }
 
-    ILayoutPullParser modelParser = LayoutPullParsers.create(this);
+    ILayoutPullParser modelParser = myPreloadedParser != null ? myPreloadedParser : LayoutPullParsers.create(this);
+    // Parsers can only be used once
+    myPreloadedParser = null;
     if (modelParser == null) {
       return null;
     }
@@ -619,6 +622,18 @@ public class RenderTask {
     }
   }
 
+  /**
+   * Creates the parser for the current file ahead of time so the PSI file is not parsed in the render thread when {@link #inflate()}
+   * is called. This allows callers rendering multiple files to parse the next file while the current one is being rendered.
+   * The preloaded parser is only used by the next inflate call.
+   */
+  public void preloadLayoutParser() {
+    if (getXmlFile() == null || isDisposed.get()) {
+      return;
+    }
+    myPreloadedParser = LayoutPullParsers.create(this);
+  }
+
   /**
    * Inflates the layout but does not render it.
    * @return A {@link RenderResult} with the result of inflating the inflate call. The result might not contain a result bitmap.
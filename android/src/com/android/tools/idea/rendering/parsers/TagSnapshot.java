@@ -237,4 +237,19 @@ public class TagSnapshot {
     }
     return hasher.hash().asLong();
   }
+
+  /**
+   * Creates a signature/fingerprint of this tag snapshot and all its descendants. Two trees with the same tag names, attributes
+   * and structure will have the same signature.
+   */
+  public long getTreeSignature() {
+    HashFunction hashFunction = Hashing.goodFastHash(64);
+    Hasher hasher = hashFunction.newHasher();
+    hasher.putLong(getSignature());
+    hasher.putInt(children.size());
+    for (TagSnapshot child : children) {
+      hasher.putLong(child.getTreeSignature());
+    }
+    return hasher.hash().asLong();
+  }
 }
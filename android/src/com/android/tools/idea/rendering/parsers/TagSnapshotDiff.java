@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.parsers;
+
+import com.google.common.base.MoreObjects;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Computes the differences between two {@link TagSnapshot} trees.
+ * <p>
+ * The diff is only computed when both trees have the same structure (same tag names and same children in the same order). In that
+ * case, the result is the list of attributes that have been added, modified or removed. This allows the layout editor to decide
+ * whether a change can be applied to an existing render session instead of inflating the whole layout again.
+ */
+public class TagSnapshotDiff {
+  private TagSnapshotDiff() {
+  }
+
+  /**
+   * Returns the list of {@link AttributeChange}s needed to go from the {@code before} tree to the {@code after} tree or null if the trees
+   * do not have the same structure. An empty list means that both trees are equivalent.
+   */
+  @Nullable
+  public static List<AttributeChange> diffAttributes(@NotNull TagSnapshot before, @NotNull TagSnapshot after) {
+    List<AttributeChange> changes = new ArrayList<>();
+    return diffAttributes(before, after, changes) ? changes : null;
+  }
+
+  private static boolean diffAttributes(@NotNull TagSnapshot before, @NotNull TagSnapshot after, @NotNull List<AttributeChange> changes) {
+    if (!before.tagName.equals(after.tagName) ||
+        before.tag != after.tag ||
+        before.children.size() != after.children.size() ||
+        before.hasDeclaredAaptAttrs ||
+        after.hasDeclaredAaptAttrs) {
+      // aapt:attr attributes are inlined resources that need a full inflate to be processed
+      return false;
+    }
+
+    if (before.getSignature() != after.getSignature()) {
+      // Attributes removed or modified
+      for (AttributeSnapshot attribute : before.attributes) {
+        String newValue = after.getAttribute(attribute.name, attribute.namespace);
+        if (!StringUtil.equals(attribute.value, newValue)) {
+          changes.add(new AttributeChange(before, after, attribute.namespace, attribute.prefix, attribute.name, newValue));
+        }
+      }
+      // Attributes added
+      for (AttributeSnapshot attribute : after.attributes) {
+        if (before.getAttribute(attribute.name, attribute.namespace) == null && attribute.value != null) {
+          changes.add(new AttributeChange(before, after, attribute.namespace, attribute.prefix, attribute.name, attribute.value));
+        }
+      }
+    }
+
+    for (int i = 0, n = before.children.size(); i < n; i++) {
+      if (!diffAttributes(before.children.get(i), after.children.get(i), changes)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * A single attribute modification. A null value means that the attribute has been removed.
+   */
+  public static class AttributeChange {
+    @NotNull public final TagSnapshot before;
+    @NotNull public final TagSnapshot after;
+    @Nullable public final String namespace;
+    @Nullable public final String prefix;
+    @NotNull public final String name;
+    @Nullable public final String value;
+
+    AttributeChange(@NotNull TagSnapshot before,
+                    @NotNull TagSnapshot after,
+                    @Nullable String namespace,
+                    @Nullable String prefix,
+                    @NotNull String name,
+                    @Nullable String value) {
+      this.before = before;
+      this.after = after;
+      this.namespace = namespace;
+      this.prefix = prefix;
+      this.name = name;
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      AttributeChange change = (AttributeChange)o;
+      return before == change.before &&
+             after == change.after &&
+             Objects.equals(namespace, change.namespace) &&
+             name.equals(change.name) &&
+             Objects.equals(value, change.value);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(before), System.identityHashCode(after), namespace, name, value);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+        .add("tag", after.tagName)
+        .add("namespace", namespace)
+        .add("name", name)
+        .add("value", value)
+        .toString();
+    }
+  }
+}
@@ -151,6 +151,14 @@ public class ResourceNotificationManager {
     }
   }
 
+  /**
+   * Returns a counter that is incremented every time the project is built or the resource folders change. Unlike
+   * {@link #getCurrentVersion}, this does not depend on any file or configuration.
+   */
+  public long getModificationCount() {
+    return myModificationCount;
+  }
+
     /**
      * Registers an interest in resources accessible from the given module
      *
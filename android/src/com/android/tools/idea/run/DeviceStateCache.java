@@ -27,9 +27,10 @@ import org.jetbrains.annotations.Nullable;
 /**
  * {@link DeviceStateCache} is a simple cache of package and device specific data.
  * Entries corresponding to a device are automatically cleared if the device is disconnected.
+ * The cache is thread safe, since devices are deployed to concurrently and disconnected devices are reported on the adb thread.
  */
 public class DeviceStateCache<T> implements AndroidDebugBridge.IDeviceChangeListener, Disposable {
-  /** Maps from device serial -> package name -> cached data */
+  /** Maps from device serial -> package name -> cached data. Guarded by this. */
   private final Table<String, String, T> myCache = HashBasedTable.create();
 
   public DeviceStateCache(@NotNull Disposable parent) {
@@ -43,12 +44,12 @@ public class DeviceStateCache<T> implements AndroidDebugBridge.IDeviceChangeList
   }
 
   @Nullable
-  public T get(@NotNull IDevice device, @NotNull String pkgName) {
+  public synchronized T get(@NotNull IDevice device, @NotNull String pkgName) {
     return myCache.get(device.getSerialNumber(), pkgName);
   }
 
   @Nullable
-  public T put(@NotNull IDevice device, @NotNull String pkgName, @NotNull T data) {
+  public synchronized T put(@NotNull IDevice device, @NotNull String pkgName, @NotNull T data) {
     return myCache.put(device.getSerialNumber(), pkgName, data);
   }
 
@@ -57,7 +58,7 @@ public class DeviceStateCache<T> implements AndroidDebugBridge.IDeviceChangeList
   }
 
   @Override
-  public void deviceDisconnected(IDevice device) {
+  public synchronized void deviceDisconnected(IDevice device) {
     myCache.row(device.getSerialNumber()).clear();
   }
 
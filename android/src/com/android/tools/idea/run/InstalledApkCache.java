@@ -24,6 +24,7 @@ import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -35,11 +36,9 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 public class InstalledApkCache implements Disposable {
+  // Thread safe, the apks are installed on several devices concurrently
   private final DeviceStateCache<CacheData> myCache;
 
-  /** Diagnostic output set by {@link #getLastUpdateTime(com.android.ddmlib.IDevice, String)} */
-  private String myDiagnosticOutput;
-
   public InstalledApkCache() {
     myCache = new DeviceStateCache<CacheData>(this);
   }
@@ -66,12 +65,13 @@ public class InstalledApkCache implements Disposable {
   }
 
   public void setInstalled(@NotNull IDevice device, @NotNull File apk, @NotNull String pkgName) throws IOException {
-    InstallState installState = getInstallState(device, pkgName);
+    Ref<String> diagnosticOutput = new Ref<>();
+    InstallState installState = getInstallState(device, pkgName, diagnosticOutput);
     if (installState == null) {
       // set installed should be called only after the package has been installed
       // If this error happens, look at the output of "dumpsys package <name>", and see why the parser did not identify the install state.
       String msg = String.format("Unexpected error: package manager reports that package %1$s has not been installed: %2$s", pkgName,
-                                 StringUtil.notNullize(myDiagnosticOutput));
+                                 StringUtil.notNullize(diagnosticOutput.get()));
 
       // We used to log an error, but see https://code.google.com/p/android/issues/detail?id=79778 for a case where this doesn't work
       // on custom Android systems. So we just log a warning: the impact is that these users won't have any benefits of caching - the apk
@@ -99,15 +99,23 @@ public class InstalledApkCache implements Disposable {
    */
   @Nullable
   public InstallState getInstallState(@NotNull IDevice device, @NotNull String pkgName) {
+    return getInstallState(device, pkgName, new Ref<>());
+  }
+
+  /**
+   * Same as {@link #getInstallState(IDevice, String)}, and sets {@code diagnosticOutput} to explain why the package was not found.
+   * The diagnostic output is returned to the caller rather than kept, since several devices can be queried concurrently.
+   */
+  @Nullable
+  private InstallState getInstallState(@NotNull IDevice device, @NotNull String pkgName, @NotNull Ref<String> diagnosticOutput) {
     boolean deviceHasPackage = false;
-    myDiagnosticOutput = null;
 
     String output;
     try {
       output = executeShellCommand(device, "dumpsys package " + pkgName, 500, TimeUnit.MILLISECONDS);
     }
     catch (Exception e) {
-      myDiagnosticOutput = String.format("Error executing 'dumpsys package %1$s:\n%2$s'", pkgName, e.getMessage());
+      diagnosticOutput.set(String.format("Error executing 'dumpsys package %1$s:\n%2$s'", pkgName, e.getMessage()));
       return null;
     }
 
@@ -130,7 +138,7 @@ public class InstalledApkCache implements Disposable {
     }
 
     if (!deviceHasPackage) {
-      myDiagnosticOutput = String.format("Expected string 'Package [%1$s]' not found in output: %2$s", pkgName, output);
+      diagnosticOutput.set(String.format("Expected string 'Package [%1$s]' not found in output: %2$s", pkgName, output));
       return null;
     }
 
@@ -17,6 +17,7 @@ package com.android.tools.idea.run;
 
 import com.android.ddmlib.IDevice;
 import com.android.sdklib.AndroidVersion;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.run.tasks.DebugConnectorTask;
 import com.android.tools.idea.run.tasks.LaunchTask;
 import com.android.tools.idea.run.tasks.LaunchTasksProvider;
@@ -30,20 +31,26 @@ import com.intellij.execution.process.ProcessHandler;
 import com.intellij.notification.NotificationType;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ConcurrencyUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LaunchTaskRunner extends Task.Backgroundable {
+  /** Maximum number of devices launched on at the same time when launching on several devices in parallel */
+  private static final int MAX_PARALLEL_DEVICES = 4;
+
   @NotNull private final String myConfigName;
   @NotNull private final LaunchInfo myLaunchInfo;
   @NotNull private final ProcessHandler myProcessHandler;
@@ -51,7 +58,7 @@ public class LaunchTaskRunner extends Task.Backgroundable {
   @NotNull private final LaunchTasksProvider myLaunchTasksProvider;
   @NotNull private final RunStats myStats;
 
-  @Nullable private String myError;
+  @Nullable private volatile String myError;
 
   public LaunchTaskRunner(@NotNull Project project,
                           @NotNull String configName,
@@ -96,79 +103,153 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     DateFormat dateFormat = new SimpleDateFormat("MM/dd HH:mm:ss");
     consolePrinter.stdout("\n" + dateFormat.format(new Date()) + ": Launching " + myConfigName);
 
-    for (ListenableFuture<IDevice> deviceFuture : listenableDeviceFutures) {
-      indicator.setText("Waiting for target device to come online");
-      myStats.beginWaitForDevice();
-      IDevice device = waitForDevice(deviceFuture, indicator, launchStatus);
-      myStats.endWaitForDevice(device);
-      if (device == null) {
-        break;
+    if (debugSessionTask == null && listenableDeviceFutures.size() > 1 && StudioFlags.RUNDEBUG_PARALLEL_DEVICE_LAUNCH_ENABLED.get()) {
+      launchOnDevicesInParallel(listenableDeviceFutures, indicator, launchStatus, consolePrinter);
+    }
+    else {
+      for (ListenableFuture<IDevice> deviceFuture : listenableDeviceFutures) {
+        if (!launchOnDevice(deviceFuture, listenableDeviceFutures.size(), indicator, launchStatus, consolePrinter, debugSessionTask,
+                            new AtomicInteger(), false)) {
+          break;
+        }
       }
+    }
+    myStats.endLaunchTasks();
+  }
 
-      List<LaunchTask> launchTasks = null;
-      try {
-        launchTasks = myLaunchTasksProvider.getTasks(device, launchStatus, consolePrinter);
+  /**
+   * Runs the task chains of the devices at the same time, on at most {@link #MAX_PARALLEL_DEVICES} devices at once, so that e.g. the
+   * APKs are pushed to all the devices at the same time. The progress is the sum of the durations of the tasks completed on all the
+   * devices, and the output of the tasks is prefixed with the serial number of their device.
+   */
+  private void launchOnDevicesInParallel(@NotNull List<ListenableFuture<IDevice>> deviceFutures,
+                                         @NotNull ProgressIndicator indicator,
+                                         @NotNull LaunchStatus launchStatus,
+                                         @NotNull ConsolePrinter consolePrinter) {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_DEVICES, deviceFutures.size()),
+                                                            ConcurrencyUtil.newNamedThreadFactory("LaunchTaskRunner"));
+    AtomicInteger elapsed = new AtomicInteger();
+    List<Future<?>> launches = new ArrayList<>(deviceFutures.size());
+
+    try {
+      for (ListenableFuture<IDevice> deviceFuture : deviceFutures) {
+        launches.add(executor.submit(() -> ProgressManager.getInstance().executeProcessUnderProgress(
+          () -> launchOnDevice(deviceFuture, deviceFutures.size(), indicator, launchStatus, consolePrinter, null, elapsed, true),
+          indicator)));
       }
-      catch (com.intellij.execution.ExecutionException e) {
-        launchStatus.terminateLaunch(e.getMessage());
-        break;
+
+      for (Future<?> launch : launches) {
+        try {
+          launch.get();
+        }
+        catch (ExecutionException e) {
+          launchStatus.terminateLaunch("Error while launching: " + e.getCause().getMessage());
+          Logger.getInstance(LaunchTaskRunner.class).error(e.getCause());
+        }
       }
-      catch (IllegalStateException e) {
-        launchStatus.terminateLaunch(e.getMessage());
-        Logger.getInstance(LaunchTaskRunner.class).error(e);
-        break;
+    }
+    catch (InterruptedException e) {
+      launchStatus.terminateLaunch("Interrupted while launching");
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      // Once the launch is terminated, the devices which are still waiting to be launched on are skipped
+      for (Future<?> launch : launches) {
+        launch.cancel(true);
       }
+      executor.shutdownNow();
+    }
+  }
 
-      int totalDuration = listenableDeviceFutures.size() * getTotalDuration(launchTasks, debugSessionTask);
-      int elapsed = 0;
-
-      boolean success = true;
-      for (LaunchTask task : launchTasks) {
-        // perform each task
-        LaunchTaskDetail.Builder details = myStats.beginLaunchTask(task);
-        indicator.setText(task.getDescription());
-        success = task.perform(device, launchStatus, consolePrinter);
-        myStats.endLaunchTask(details, success);
-        if (!success) {
-          myError = "Error " + task.getDescription();
-          launchStatus.terminateLaunch("Error while " + task.getDescription());
-          break;
-        }
+  /**
+   * Waits for the device and runs its launch tasks, returning false if the launch was terminated.
+   *
+   * @param elapsed the sum of the durations of the tasks completed so far, which is shared by all the devices in parallel launch mode
+   * @param parallel if the other devices are launched at the same time, in which case the output of the tasks is prefixed with the
+   *                 serial number of the device and the time taken by each task is printed at the end
+   */
+  private boolean launchOnDevice(@NotNull ListenableFuture<IDevice> deviceFuture,
+                                 int deviceCount,
+                                 @NotNull ProgressIndicator indicator,
+                                 @NotNull LaunchStatus launchStatus,
+                                 @NotNull ConsolePrinter consolePrinter,
+                                 @Nullable DebugConnectorTask debugSessionTask,
+                                 @NotNull AtomicInteger elapsed,
+                                 boolean parallel) {
+    indicator.setText("Waiting for target device to come online");
+    myStats.beginWaitForDevice();
+    IDevice device = waitForDevice(deviceFuture, indicator, launchStatus);
+    myStats.endWaitForDevice(device);
+    if (device == null) {
+      return false;
+    }
 
-        // update progress
-        elapsed += task.getDuration();
-        indicator.setFraction((double)elapsed / totalDuration);
+    ConsolePrinter printer = parallel ? new DeviceConsolePrinter(consolePrinter, device) : consolePrinter;
+    List<LaunchTask> launchTasks;
+    try {
+      launchTasks = myLaunchTasksProvider.getTasks(device, launchStatus, printer);
+    }
+    catch (com.intellij.execution.ExecutionException e) {
+      launchStatus.terminateLaunch(e.getMessage());
+      return false;
+    }
+    catch (IllegalStateException e) {
+      launchStatus.terminateLaunch(e.getMessage());
+      Logger.getInstance(LaunchTaskRunner.class).error(e);
+      return false;
+    }
 
-        // check for cancellation via progress bar
-        if (indicator.isCanceled()) {
-          launchStatus.terminateLaunch("User cancelled launch");
-          success = false;
-          break;
-        }
+    int totalDuration = deviceCount * getTotalDuration(launchTasks, debugSessionTask);
+    StringBuilder taskTimes = new StringBuilder();
+    long launchStart = System.currentTimeMillis();
 
-        // check for cancellation via stop button
-        if (launchStatus.isLaunchTerminated()) {
-          success = false;
-          break;
-        }
-      }
+    for (LaunchTask task : launchTasks) {
+      // perform each task
+      LaunchTaskDetail.Builder details = myStats.beginLaunchTask(task);
+      indicator.setText(task.getDescription());
+      long taskStart = System.currentTimeMillis();
+      boolean success = task.perform(device, launchStatus, printer);
+      myStats.endLaunchTask(details, success);
       if (!success) {
-        break;
+        myError = "Error " + task.getDescription();
+        launchStatus.terminateLaunch("Error while " + task.getDescription());
+        return false;
       }
+      taskTimes.append(taskTimes.length() == 0 ? "" : ", ")
+               .append(task.getDescription()).append(": ").append(StringUtil.formatDuration(System.currentTimeMillis() - taskStart));
+
+      // update progress
+      indicator.setFraction((double)elapsed.addAndGet(task.getDuration()) / totalDuration);
 
-      if (debugSessionTask != null) {
-        debugSessionTask
-          .perform(myLaunchInfo, device, (ProcessHandlerLaunchStatus)launchStatus, (ProcessHandlerConsolePrinter)consolePrinter);
+      // check for cancellation via progress bar
+      if (indicator.isCanceled()) {
+        launchStatus.terminateLaunch("User cancelled launch");
+        return false;
       }
-      else { // we only need to inform the process handler if certain scenarios
-        if (myLaunchTasksProvider.createsNewProcess() // we are not doing a hot swap (in which case we are creating a new process)
-            && myProcessHandler instanceof AndroidProcessHandler) { // we aren't debugging (in which case its a DebugProcessHandler)
-          AndroidProcessHandler procHandler = (AndroidProcessHandler) myProcessHandler;
-          procHandler.addTargetDevice(device);
-        }
+
+      // check for cancellation via stop button
+      if (launchStatus.isLaunchTerminated()) {
+        return false;
       }
     }
-    myStats.endLaunchTasks();
+
+    if (parallel) {
+      printer.stdout("Launch tasks completed in " + StringUtil.formatDuration(System.currentTimeMillis() - launchStart) +
+                     (taskTimes.length() == 0 ? "" : " (" + taskTimes + ")"));
+    }
+
+    if (debugSessionTask != null) {
+      debugSessionTask
+        .perform(myLaunchInfo, device, (ProcessHandlerLaunchStatus)launchStatus, (ProcessHandlerConsolePrinter)consolePrinter);
+    }
+    else { // we only need to inform the process handler if certain scenarios
+      if (myLaunchTasksProvider.createsNewProcess() // we are not doing a hot swap (in which case we are creating a new process)
+          && myProcessHandler instanceof AndroidProcessHandler) { // we aren't debugging (in which case its a DebugProcessHandler)
+        AndroidProcessHandler procHandler = (AndroidProcessHandler) myProcessHandler;
+        procHandler.addTargetDevice(device);
+      }
+    }
+    return true;
   }
 
   @Override
@@ -211,6 +292,30 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     }
   }
 
+  /**
+   * Prefixes the output of the tasks of a device with its serial number, so that the output of devices launched in parallel can be told
+   * apart.
+   */
+  private static final class DeviceConsolePrinter implements ConsolePrinter {
+    @NotNull private final ConsolePrinter myDelegate;
+    @NotNull private final String myPrefix;
+
+    private DeviceConsolePrinter(@NotNull ConsolePrinter delegate, @NotNull IDevice device) {
+      myDelegate = delegate;
+      myPrefix = "[" + device.getSerialNumber() + "] ";
+    }
+
+    @Override
+    public void stdout(@NotNull String message) {
+      myDelegate.stdout(myPrefix + message);
+    }
+
+    @Override
+    public void stderr(@NotNull String message) {
+      myDelegate.stderr(myPrefix + message);
+    }
+  }
+
   private static int getTotalDuration(@NotNull List<LaunchTask> launchTasks, @Nullable DebugConnectorTask debugSessionTask) {
     int total = 0;
 
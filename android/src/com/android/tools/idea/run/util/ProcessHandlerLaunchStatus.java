@@ -28,7 +28,7 @@ public class ProcessHandlerLaunchStatus implements LaunchStatus {
    * Ideally, we'd rely solely on the Process Handler's termination status, but it turns out that calls to terminate a non-started
    * process to terminate never have any effect until after the process is started.
    */
-  private boolean myTerminated;
+  private volatile boolean myTerminated;
 
   public ProcessHandlerLaunchStatus(@NotNull ProcessHandler handler) {
     myHandler = handler;
@@ -38,6 +38,12 @@ public class RunStats {
   private boolean myLogged;
   private Project myProject;
 
+  /**
+   * Whether the info of a device is already in the event. When launching on several devices in parallel, the stats of the devices are
+   * recorded from several threads, and the event keeps the first device to come online instead of whichever device was seen last.
+   */
+  private boolean myDeviceInfoRecorded;
+
   public RunStats(Project project) {
     myProject = project;
     myEvent = AndroidStudioEvent.newBuilder().setKind(AndroidStudioEvent.EventKind.RUN_EVENT);
@@ -84,7 +90,7 @@ public class RunStats {
     return details;
   }
 
-  public void endLaunchTask(LaunchTaskDetail.Builder detail, boolean success) {
+  public synchronized void endLaunchTask(LaunchTaskDetail.Builder detail, boolean success) {
     detail.setEndTimestampMs(System.currentTimeMillis());
     myEvent.getRunEventBuilder().addLaunchTaskDetail(detail);
   }
@@ -97,16 +103,28 @@ public class RunStats {
     myEvent.getRunEventBuilder().setEndBeforeRunTasksTimestampMs(System.currentTimeMillis());
   }
 
-  public void beginWaitForDevice() {
-    myEvent.getRunEventBuilder().setBeginWaitForDeviceTimestampMs(System.currentTimeMillis());
+  /**
+   * Called before waiting for each device of the launch. The wait starts when the first device is waited for.
+   */
+  public synchronized void beginWaitForDevice() {
+    if (myEvent.getRunEventBuilder().getBeginWaitForDeviceTimestampMs() == 0) {
+      myEvent.getRunEventBuilder().setBeginWaitForDeviceTimestampMs(System.currentTimeMillis());
+    }
   }
 
-  public void endWaitForDevice(@Nullable IDevice device) {
+  /**
+   * Called once each device of the launch is online, or with null if waiting failed. The wait ends when the last device is online, and
+   * every device is counted.
+   */
+  public synchronized void endWaitForDevice(@Nullable IDevice device) {
     myEvent.getRunEventBuilder().setEndWaitForDeviceTimestampMs(System.currentTimeMillis());
     if (device == null) {
       return;
     }
-    myEvent.setDeviceInfo(AndroidStudioUsageTracker.deviceToDeviceInfo(device));
+    if (!myDeviceInfoRecorded) {
+      myEvent.setDeviceInfo(AndroidStudioUsageTracker.deviceToDeviceInfo(device));
+      myDeviceInfoRecorded = true;
+    }
     myEvent.getRunEventBuilder().setDeviceCount(myEvent.getRunEventBuilder().getDeviceCount() + 1);
   }
 
@@ -3,6 +3,7 @@ package org.jetbrains.android.inspections.lint;
 import com.android.builder.model.LintOptions;
 import com.android.ide.common.repository.GradleVersion;
 import com.android.tools.idea.editors.strings.StringsVirtualFile;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.lint.*;
 import com.android.tools.lint.client.api.LintBaseline;
@@ -280,7 +281,16 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    lint.analyze();
+    // The baseline applies to the whole run and may be rewritten when it is closed, so it is only supported by the single driver
+    boolean batchAnalysis = StudioFlags.LINT_BATCH_ANALYSIS_ENABLED.get() && files == null && myBaseline == null && !modules.isEmpty() &&
+                            LintBatchAnalyzer.supportsScope(scope);
+    if (batchAnalysis) {
+      // Logs a session for each module it runs lint on
+      new LintBatchAnalyzer(project, scope, issues, lintScope).analyze(modules, problemMap, severityModule);
+    }
+    else {
+      lint.analyze();
+    }
 
     List<Tools> tools = AndroidLintInspectionBase.getDynamicTools();
     AndroidLintInspectionBase.resetDynamicTools();
@@ -304,9 +314,11 @@ class AndroidLintGlobalInspectionContext implements GlobalInspectionContextExten
 
     AndroidLintLintBaselineInspection.clearNextRunState();
 
-    lint.setAnalysisStartTime(startTime);
-    LintIdeAnalytics analytics = new LintIdeAnalytics(project);
-    analytics.logSession(AnalysisType.IDE_BATCH, lint, severityModule, null, problemMap);
+    if (!batchAnalysis) {
+      lint.setAnalysisStartTime(startTime);
+      LintIdeAnalytics analytics = new LintIdeAnalytics(project);
+      analytics.logSession(AnalysisType.IDE_BATCH, lint, severityModule, null, problemMap);
+    }
 
     myResults = problemMap;
   }
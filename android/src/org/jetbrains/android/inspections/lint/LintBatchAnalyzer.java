@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.idea.gradle.project.sync.GradleSyncState;
+import com.android.tools.idea.lint.LintIdeAnalytics;
+import com.android.tools.idea.lint.LintIdeClient;
+import com.android.tools.idea.lint.LintIdeIssueRegistry;
+import com.android.tools.idea.lint.LintIdeRequest;
+import com.android.tools.lint.client.api.LintDriver;
+import com.android.tools.lint.client.api.LintRequest;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.Scope;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.wireless.android.sdk.stats.LintSession.AnalysisType;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Runs lint on whole modules for batch inspections, and reuses the results of the modules whose inputs did not change since they were
+ * last analyzed.
+ * <p>
+ * The modules are split into groups of modules depending on each other, and each group is analyzed by its own {@link LintDriver} and
+ * {@link LintIdeClient}. Lint sees the libraries of a group together with the modules using them, like when all the modules are analyzed
+ * at once, so the problems of a library are reported once and the resources of a library used by other modules are not reported as
+ * unused. The groups do not share any module, so their drivers run concurrently.
+ * <p>
+ * The problems found in a group are kept on its modules, together with a hash of the contents of the files of the modules of the group
+ * and of the modules they depend on, and they are reused instead of running lint again on the group as long as the hash does not change.
+ */
+final class LintBatchAnalyzer {
+  private static final Key<ModuleResults> RESULTS_KEY = Key.create("LintBatchAnalyzer.results");
+
+  @NotNull private final Project myProject;
+  @NotNull private final AnalysisScope myScope;
+  @NotNull private final Set<Issue> myIssues;
+  @Nullable private final EnumSet<Scope> myLintScope;
+
+  // The hashes of the contents of the modules, computed at most once per analysis even if several modules depend on the same module
+  @NotNull private final Map<Module, HashCode> myContentHashes = new HashMap<>();
+
+  private static final class ModuleResults {
+    @NotNull private final HashCode myInputsHash;
+    @NotNull private final Map<Issue, Map<File, List<ProblemData>>> myProblems;
+
+    private ModuleResults(@NotNull HashCode inputsHash, @NotNull Map<Issue, Map<File, List<ProblemData>>> problems) {
+      myInputsHash = inputsHash;
+      myProblems = problems;
+    }
+  }
+
+  LintBatchAnalyzer(@NotNull Project project,
+                    @NotNull AnalysisScope scope,
+                    @NotNull Set<Issue> issues,
+                    @Nullable EnumSet<Scope> lintScope) {
+    myProject = project;
+    myScope = scope;
+    myIssues = issues;
+    myLintScope = lintScope;
+  }
+
+  /**
+   * Returns true if the results of the given scope can be computed one module at a time, i.e. the scope is made of whole modules
+   */
+  static boolean supportsScope(@NotNull AnalysisScope scope) {
+    return scope.getScopeType() == AnalysisScope.PROJECT || scope.getScopeType() == AnalysisScope.MODULE;
+  }
+
+  /**
+   * Analyzes the given modules and adds the problems found to {@code problemMap}. A lint session is logged for each group of modules lint
+   * actually runs on, and none for the groups whose previous results are reused.
+   *
+   * @return the modules lint ran on, i.e. the modules whose previous results could not be reused
+   */
+  @NotNull
+  List<Module> analyze(@NotNull List<Module> modules,
+                       @NotNull Map<Issue, Map<File, List<ProblemData>>> problemMap,
+                       @Nullable Module severityModule) {
+    HashCode configurationHash = computeConfigurationHash();
+    List<ModuleResults> results = new ArrayList<>();
+    Map<List<Module>, HashCode> staleGroups = new LinkedHashMap<>();
+    for (List<Module> group : groupDependentModules(modules)) {
+      ProgressManager.checkCanceled();
+      HashCode inputsHash = computeInputsHash(group, configurationHash);
+      ModuleResults groupResults = group.get(0).getUserData(RESULTS_KEY);
+      if (groupResults != null && groupResults.myInputsHash.equals(inputsHash)) {
+        results.add(groupResults);
+      }
+      else {
+        staleGroups.put(group, inputsHash);
+      }
+    }
+
+    List<ModuleResults> newResults = Collections.synchronizedList(new ArrayList<>());
+    List<List<Module>> groups = new ArrayList<>(staleGroups.keySet());
+    Application application = ApplicationManager.getApplication();
+    // Waiting for other threads to get read access while holding it could dead-lock with a pending write action, and they cannot get it
+    // at all while this thread holds write access.
+    if (groups.size() > 1 && !application.isWriteAccessAllowed() && (application.isDispatchThread() || !application.isReadAccessAllowed())) {
+      //noinspection deprecation
+      JobLauncher.getInstance().invokeConcurrentlyUnderProgress(groups, ProgressManager.getInstance().getProgressIndicator(),
+                                                                true /* fail fast */, group -> {
+          newResults.add(runLint(group, staleGroups.get(group), severityModule));
+          return true;
+        });
+    }
+    else {
+      for (List<Module> group : groups) {
+        ProgressManager.checkCanceled();
+        newResults.add(runLint(group, staleGroups.get(group), severityModule));
+      }
+    }
+    results.addAll(newResults);
+
+    for (ModuleResults groupResults : results) {
+      for (Map.Entry<Issue, Map<File, List<ProblemData>>> entry : groupResults.myProblems.entrySet()) {
+        Map<File, List<ProblemData>> fileProblems = problemMap.computeIfAbsent(entry.getKey(), issue -> new HashMap<>());
+        for (Map.Entry<File, List<ProblemData>> fileEntry : entry.getValue().entrySet()) {
+          fileProblems.computeIfAbsent(fileEntry.getKey(), file -> new ArrayList<>()).addAll(fileEntry.getValue());
+        }
+      }
+    }
+
+    List<Module> analyzedModules = new ArrayList<>();
+    groups.forEach(analyzedModules::addAll);
+    return analyzedModules;
+  }
+
+  /**
+   * Runs lint on the given group of modules with its own client and driver, and keeps the results on the modules of the group.
+   */
+  @NotNull
+  private ModuleResults runLint(@NotNull List<Module> group, @NotNull HashCode inputsHash, @Nullable Module severityModule) {
+    long startTime = System.currentTimeMillis();
+    Map<Issue, Map<File, List<ProblemData>>> problems = new HashMap<>();
+    LintIdeClient client = LintIdeClient.forBatch(myProject, problems, myScope, myIssues);
+    LintRequest request = new LintIdeRequest(client, myProject, null, group, false);
+    request.setScope(myLintScope);
+    LintDriver driver = new LintDriver(new LintIdeIssueRegistry(), client, request);
+    driver.analyze();
+    driver.setAnalysisStartTime(startTime);
+    new LintIdeAnalytics(myProject).logSession(AnalysisType.IDE_BATCH, driver, severityModule, null, problems);
+
+    // The results are kept on the modules, so they are released with them. They are looked up on the first module of the group.
+    ModuleResults results = new ModuleResults(inputsHash, problems);
+    for (Module module : group) {
+      module.putUserData(RESULTS_KEY, results);
+    }
+    return results;
+  }
+
+  /**
+   * Splits the given modules into the smallest groups such that a module and the modules it depends on are in the same group. The
+   * modules of each group, and the groups, are sorted by name.
+   */
+  @NotNull
+  private static List<List<Module>> groupDependentModules(@NotNull List<Module> modules) {
+    Map<Module, Set<Module>> groupsByModule = new HashMap<>();
+    for (Module module : modules) {
+      groupsByModule.put(module, new HashSet<>(Collections.singleton(module)));
+    }
+    for (Module module : modules) {
+      Set<Module> dependencies = new HashSet<>();
+      ReadAction.run(() -> ModuleUtilCore.getDependencies(module, dependencies));
+      for (Module dependency : dependencies) {
+        Set<Module> group = groupsByModule.get(module);
+        Set<Module> dependencyGroup = groupsByModule.get(dependency);
+        if (dependencyGroup != null && dependencyGroup != group) {
+          // Merge the group of the dependency into the group of the module
+          group.addAll(dependencyGroup);
+          for (Module member : dependencyGroup) {
+            groupsByModule.put(member, group);
+          }
+        }
+      }
+    }
+
+    List<List<Module>> groups = new ArrayList<>();
+    for (Set<Module> group : new LinkedHashSet<>(groupsByModule.values())) {
+      List<Module> sortedGroup = new ArrayList<>(group);
+      sortedGroup.sort(Comparator.comparing(Module::getName));
+      groups.add(sortedGroup);
+    }
+    groups.sort(Comparator.comparing(group -> group.get(0).getName()));
+    return groups;
+  }
+
+  /**
+   * Computes a hash of the settings the results of lint depend on for all the modules: the scope, the enabled issues, and the last
+   * Gradle sync, which provides the lint options.
+   */
+  @NotNull
+  private HashCode computeConfigurationHash() {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putInt(myScope.getScopeType());
+    hasher.putUnencodedChars(String.valueOf(myLintScope)).putChar('\n');
+    hasher.putLong(GradleSyncState.getInstance(myProject).getSummary().getSyncTimestamp());
+    myIssues.stream().map(Issue::getId).sorted().forEach(id -> hasher.putUnencodedChars(id).putChar('\n'));
+    return hasher.hash();
+  }
+
+  /**
+   * Computes a hash of everything the results of lint for the given group of modules depend on: the configuration, the modules of the
+   * group, and the files of the modules of the group and of the modules they depend on.
+   */
+  @NotNull
+  private HashCode computeInputsHash(@NotNull List<Module> group, @NotNull HashCode configurationHash) {
+    Set<Module> dependencies = new HashSet<>();
+    ReadAction.run(() -> group.forEach(module -> ModuleUtilCore.getDependencies(module, dependencies)));
+    List<Module> sortedDependencies = new ArrayList<>(dependencies);
+    sortedDependencies.sort(Comparator.comparing(Module::getName));
+
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putBytes(configurationHash.asBytes());
+    group.forEach(module -> hasher.putUnencodedChars(module.getName()).putChar('\n'));
+    hasher.putChar('\n');
+    for (Module dependency : sortedDependencies) {
+      hasher.putUnencodedChars(dependency.getName()).putChar('\n');
+      hasher.putBytes(myContentHashes.computeIfAbsent(dependency, LintBatchAnalyzer::computeContentHash).asBytes());
+    }
+    return hasher.hash();
+  }
+
+  /**
+   * Computes a hash of the files of the given module. Each file is read in its own read action, so write actions are not blocked while
+   * the whole module is read.
+   */
+  @NotNull
+  private static HashCode computeContentHash(@NotNull Module module) {
+    List<VirtualFile> files = new ArrayList<>();
+    ReadAction.run(() -> ModuleRootManager.getInstance(module).getFileIndex().iterateContent(file -> {
+      if (!file.isDirectory()) {
+        files.add(file);
+      }
+      return true;
+    }));
+    files.sort(Comparator.comparing(VirtualFile::getPath));
+
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    for (VirtualFile file : files) {
+      ProgressManager.checkCanceled();
+      ReadAction.run(() -> putFile(hasher, file));
+    }
+    return hasher.hash();
+  }
+
+  private static void putFile(@NotNull Hasher hasher, @NotNull VirtualFile file) {
+    hasher.putUnencodedChars(file.getPath()).putChar('\n');
+    if (!file.isValid()) {
+      return;
+    }
+    // Unsaved changes are in the document, if there is one
+    Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    if (document != null) {
+      hasher.putUnencodedChars(document.getImmutableCharSequence());
+      return;
+    }
+    if (!file.getFileType().isBinary()) {
+      try {
+        hasher.putBytes(file.contentsToByteArray());
+        return;
+      }
+      catch (IOException ignored) {
+        // Fall back to the time stamp below
+      }
+    }
+    // Images and other binary files can be large and only their presence and size matter to most detectors
+    hasher.putLong(file.getLength()).putLong(file.getTimeStamp());
+  }
+}
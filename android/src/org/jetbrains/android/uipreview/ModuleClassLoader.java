@@ -14,6 +14,7 @@ import com.android.tools.idea.layoutlib.LayoutLibrary;
 import com.android.tools.idea.model.AndroidModel;
 import com.android.tools.idea.projectsystem.AndroidModuleSystem;
 import com.android.tools.idea.projectsystem.ProjectSystemUtil;
+import com.android.tools.idea.rendering.ConvertedClassCache;
 import com.android.tools.idea.rendering.RenderClassLoader;
 import com.android.tools.idea.rendering.RenderSecurityManager;
 import com.android.tools.idea.res.LocalResourceRepository;
@@ -513,6 +514,10 @@ public final class ModuleClassLoader extends RenderClassLoader {
       LOG.debug("  Re-used class loader");
     }
 
+    // Save the classes converted by the previous renders. This can not be done while loading the classes since the render thread is
+    // not allowed to write to disk.
+    ConvertedClassCache.getInstance().saveAsync();
+
     return loader;
   }
 
@@ -521,6 +526,7 @@ public final class ModuleClassLoader extends RenderClassLoader {
     synchronized (ourCache) {
       ourCache.clear();
     }
+    ConvertedClassCache.getInstance().invalidateFiles();
   }
 
   /** Remove the cached class loader for the module. */
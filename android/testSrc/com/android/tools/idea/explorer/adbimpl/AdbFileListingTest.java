@@ -27,11 +27,14 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.awt.*;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static com.android.tools.idea.explorer.adbimpl.TestDevices.COMMAND_ERROR_CHECK_SUFFIX;
 import static com.google.common.truth.Truth.assertThat;
@@ -354,6 +357,112 @@ public class AdbFileListingTest {
     assertDirectoryLink(fileListing, rootEntries, "vendor", true);
   }
 
+  @Test
+  public void test_EmulatorApi25_PrefetchListsDirectoriesAndLinksInOneCommand() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addEmulatorApi25Commands(commands);
+    commands.add("su 0 sh -c 'for p in /dir1/ /dir2/; do echo --ls-batch-directory--; ls -l \"$p\" || echo --ls-batch-error--; done; " +
+                 "for p in /link1/ /link2/; do ls -l -d \"$p\" >/dev/null 2>&1 && echo --ls-batch-link--1 || echo --ls-batch-link--0; done'",
+                 "--ls-batch-directory--\n" +
+                 "total 8\n" +
+                 "-rw-rw---- 1 root sdcard_rw 123 2017-03-06 21:15 file1.txt\n" +
+                 "drwxrwx--x 2 root sdcard_rw 4096 2017-03-06 21:15 subdir\n" +
+                 "--ls-batch-directory--\n" +
+                 "ls: /dir2/: Permission denied\n" +
+                 "--ls-batch-error--\n" +
+                 "--ls-batch-link--1\n" +
+                 "--ls-batch-link--0\n");
+    commands.add("su 0 sh -c 'ls -l /dir1/'" + COMMAND_ERROR_CHECK_SUFFIX,
+                 "total 4\n" +
+                 "-rw-rw---- 1 root sdcard_rw 456 2017-03-06 21:16 file2.txt\n");
+    commands.add("su 0 sh -c 'ls -l /dir2/'" + COMMAND_ERROR_CHECK_SUFFIX, "ls: /dir2/: Permission denied\nERR-ERR-ERR-ERR\n");
+    IDevice device = commands.createMockDevice();
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), PooledThreadExecutor.INSTANCE);
+    AdbFileListingEntry dir1 = new AdbFileListingEntryBuilder().setPath("/dir1").setKind(EntryKind.DIRECTORY).build();
+    AdbFileListingEntry dir2 = new AdbFileListingEntryBuilder().setPath("/dir2").setKind(EntryKind.DIRECTORY).build();
+    AdbFileListingEntry file = new AdbFileListingEntryBuilder().setPath("/file").setKind(EntryKind.FILE).build();
+    AdbFileListingEntry link1 = new AdbFileListingEntryBuilder().setPath("/link1").setKind(EntryKind.SYMBOLIC_LINK).build();
+    AdbFileListingEntry link2 = new AdbFileListingEntryBuilder().setPath("/link2").setKind(EntryKind.SYMBOLIC_LINK).build();
+
+    // Act
+    waitForFuture(fileListing.prefetchRunAs(Arrays.asList(dir1, file, link1, dir2, link2), null));
+
+    // Assert
+    List<AdbFileListingEntry> entries = waitForFuture(fileListing.getChildren(dir1));
+    assertThat(entries.stream().map(AdbFileListingEntry::getFullPath).collect(Collectors.toList()))
+      .containsExactly("/dir1/file1.txt", "/dir1/subdir").inOrder();
+    assertThat(entries.get(1).isDirectory()).isTrue();
+    assertThat(waitForFuture(fileListing.isDirectoryLink(link1))).isTrue();
+    assertThat(waitForFuture(fileListing.isDirectoryLink(link2))).isFalse();
+
+    // Prefetched entries are only used once
+    entries = waitForFuture(fileListing.getChildren(dir1));
+    assertThat(entries.stream().map(AdbFileListingEntry::getFullPath).collect(Collectors.toList())).containsExactly("/dir1/file2.txt");
+
+    // Directories that could not be listed in the batch are listed again to report the error
+    thrown.expect(ExecutionException.class);
+    thrown.expectCause(IsInstanceOf.instanceOf(AdbShellCommandException.class));
+    waitForFuture(fileListing.getChildren(dir2));
+  }
+
+  @Test
+  public void test_EmulatorApi25_InvalidateDiscardsPrefetchedEntries() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addEmulatorApi25Commands(commands);
+    commands.add("su 0 sh -c 'for p in /dir1/; do echo --ls-batch-directory--; ls -l \"$p\" || echo --ls-batch-error--; done'",
+                 "--ls-batch-directory--\n" +
+                 "total 0\n");
+    commands.add("su 0 sh -c 'ls -l /dir1/'" + COMMAND_ERROR_CHECK_SUFFIX,
+                 "total 4\n" +
+                 "-rw-rw---- 1 root sdcard_rw 0 2017-03-06 21:16 new.txt\n");
+    IDevice device = commands.createMockDevice();
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), PooledThreadExecutor.INSTANCE);
+    AdbFileListingEntry dir1 = new AdbFileListingEntryBuilder().setPath("/dir1").setKind(EntryKind.DIRECTORY).build();
+
+    // Act
+    waitForFuture(fileListing.prefetchRunAs(Collections.singletonList(dir1), null));
+    fileListing.invalidate("/dir1/new.txt");
+
+    // Assert
+    List<AdbFileListingEntry> entries = waitForFuture(fileListing.getChildren(dir1));
+    assertThat(entries.stream().map(AdbFileListingEntry::getName).collect(Collectors.toList())).containsExactly("new.txt");
+  }
+
+  @Test
+  public void test_EmulatorApi25_PrefetchedChildrenDoNotPrefetchAgain() throws Exception {
+    // Prepare
+    TestShellCommands commands = new TestShellCommands();
+    TestDevices.addEmulatorApi25Commands(commands);
+    commands.add("su 0 sh -c 'ls -l /dir1/'" + COMMAND_ERROR_CHECK_SUFFIX,
+                 "total 4\n" +
+                 "drwxrwx--x 2 root sdcard_rw 4096 2017-03-06 21:15 dir2\n");
+    commands.add("su 0 sh -c 'for p in /dir1/dir2/; do echo --ls-batch-directory--; ls -l \"$p\" || echo --ls-batch-error--; done'",
+                 "--ls-batch-directory--\n" +
+                 "total 4\n" +
+                 "drwxrwx--x 2 root sdcard_rw 4096 2017-03-06 21:15 dir3\n");
+    commands.add("su 0 sh -c 'for p in /dir1/dir2/dir3/; do echo --ls-batch-directory--; ls -l \"$p\" || echo --ls-batch-error--; done'",
+                 "--ls-batch-directory--\n" +
+                 "total 4\n" +
+                 "-rw-rw---- 1 root sdcard_rw 123 2017-03-06 21:15 prefetched.txt\n");
+    commands.add("su 0 sh -c 'ls -l /dir1/dir2/dir3/'" + COMMAND_ERROR_CHECK_SUFFIX,
+                 "total 4\n" +
+                 "-rw-rw---- 1 root sdcard_rw 123 2017-03-06 21:15 listed.txt\n");
+    IDevice device = commands.createMockDevice();
+    AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), PooledThreadExecutor.INSTANCE);
+    AdbFileListingEntry dir1 = new AdbFileListingEntryBuilder().setPath("/dir1").setKind(EntryKind.DIRECTORY).build();
+
+    // Act: dir1 is listed from the device and prefetches dir2, dir2 comes from the prefetch and does not prefetch dir3
+    List<AdbFileListingEntry> dir1Entries = waitForFuture(fileListing.getChildrenAndPrefetchRunAs(dir1, null));
+    List<AdbFileListingEntry> dir2Entries = waitForFuture(fileListing.getChildrenAndPrefetchRunAs(dir1Entries.get(0), null));
+    List<AdbFileListingEntry> dir3Entries = waitForFuture(fileListing.getChildren(dir2Entries.get(0)));
+
+    // Assert
+    assertThat(dir2Entries.stream().map(AdbFileListingEntry::getName).collect(Collectors.toList())).containsExactly("dir3");
+    assertThat(dir3Entries.stream().map(AdbFileListingEntry::getName).collect(Collectors.toList())).containsExactly("listed.txt");
+  }
+
   private static void assertDirectoryLink(@NotNull AdbFileListing fileListing,
                                           @NotNull List<AdbFileListingEntry> entries,
                                           @NotNull String name,
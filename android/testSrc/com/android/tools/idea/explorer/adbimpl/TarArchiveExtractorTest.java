@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import com.android.tools.idea.explorer.fs.DirectoryDownloadResult;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class TarArchiveExtractorTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void filesAndDirectoriesAreExtracted() throws Exception {
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    addEntry(archive, "./", '5', new byte[0]);
+    addEntry(archive, "./dir1/", '5', new byte[0]);
+    addEntry(archive, "./dir1/file1.txt", '0', "Hello".getBytes(StandardCharsets.UTF_8));
+    addEntry(archive, "./file2.txt", '0', new byte[1000]);
+    addEntry(archive, "./link", '2', new byte[0]);
+    archive.write(new byte[1024]);
+
+    Path directory = myTemporaryFolder.getRoot().toPath().resolve("out");
+    // Files that already exist in the destination are not counted
+    Files.createDirectories(directory.resolve("existing"));
+    Files.write(directory.resolve("existing").resolve("file.txt"), new byte[100]);
+    DirectoryDownloadResult result = TarArchiveExtractor.extract(writeArchive(archive), directory);
+
+    assertThat(result.getSkippedEntries()).containsExactly("link");
+    assertThat(result.getDirectoryCount()).isEqualTo(1);
+    assertThat(result.getFileCount()).isEqualTo(2);
+    assertThat(result.getByteCount()).isEqualTo(1005);
+    assertThat(Files.isDirectory(directory.resolve("dir1"))).isTrue();
+    assertThat(new String(Files.readAllBytes(directory.resolve("dir1").resolve("file1.txt")), StandardCharsets.UTF_8)).isEqualTo("Hello");
+    assertThat(Files.size(directory.resolve("file2.txt"))).isEqualTo(1000);
+    assertThat(Files.exists(directory.resolve("link"))).isFalse();
+  }
+
+  @Test
+  public void longNamesAreExtracted() throws Exception {
+    StringBuilder builder = new StringBuilder("./");
+    for (int i = 0; i < 20; i++) {
+      builder.append("directory").append(i).append('/');
+    }
+    String name = builder.append("file.txt").toString();
+
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    addEntry(archive, "././@LongLink", 'L', (name + "\0").getBytes(StandardCharsets.UTF_8));
+    addEntry(archive, name.substring(0, 99), '0', "Long".getBytes(StandardCharsets.UTF_8));
+    archive.write(new byte[1024]);
+
+    Path directory = extract(archive);
+
+    assertThat(new String(Files.readAllBytes(directory.resolve(name.substring(2))), StandardCharsets.UTF_8)).isEqualTo("Long");
+  }
+
+  @Test
+  public void entriesOutsideOfDirectoryAreRejected() throws Exception {
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    addEntry(archive, "../file.txt", '0', "Hello".getBytes(StandardCharsets.UTF_8));
+    archive.write(new byte[1024]);
+
+    try {
+      extract(archive);
+      fail("Entry outside of the directory should not be extracted");
+    }
+    catch (IOException expected) {
+      assertThat(Files.exists(myTemporaryFolder.getRoot().toPath().resolve("file.txt"))).isFalse();
+    }
+  }
+
+  @Test
+  public void invalidChecksumIsRejected() throws Exception {
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    addEntry(archive, "./file.txt", '0', "Hello".getBytes(StandardCharsets.UTF_8));
+    byte[] bytes = archive.toByteArray();
+    bytes[0] = 'F';
+    archive.reset();
+    archive.write(bytes);
+    archive.write(new byte[1024]);
+
+    try {
+      extract(archive);
+      fail("Entry with an invalid checksum should not be extracted");
+    }
+    catch (IOException expected) {
+      assertThat(expected.getMessage()).contains("checksum");
+    }
+  }
+
+  @NotNull
+  private Path extract(@NotNull ByteArrayOutputStream archive) throws IOException {
+    Path directory = myTemporaryFolder.getRoot().toPath().resolve("out");
+    TarArchiveExtractor.extract(writeArchive(archive), directory);
+    return directory;
+  }
+
+  @NotNull
+  private Path writeArchive(@NotNull ByteArrayOutputStream archive) throws IOException {
+    Path archivePath = myTemporaryFolder.newFile("archive.tar").toPath();
+    Files.write(archivePath, archive.toByteArray());
+    return archivePath;
+  }
+
+  private static void addEntry(@NotNull ByteArrayOutputStream archive, @NotNull String name, char type, @NotNull byte[] data)
+    throws IOException {
+    byte[] header = new byte[512];
+    putString(header, 0, name);
+    putString(header, 100, "0000644");
+    putString(header, 108, "0000000");
+    putString(header, 116, "0000000");
+    putString(header, 124, String.format("%011o", data.length));
+    putString(header, 136, String.format("%011o", 0));
+    header[156] = (byte)type;
+    putString(header, 257, "ustar");
+    putString(header, 263, "00");
+
+    long checksum = 0;
+    for (int i = 0; i < header.length; i++) {
+      checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+    }
+    putString(header, 148, String.format("%06o", checksum));
+    header[155] = ' ';
+
+    archive.write(header);
+    archive.write(data);
+    archive.write(new byte[(512 - data.length % 512) % 512]);
+  }
+
+  private static void putString(@NotNull byte[] header, int offset, @NotNull String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    System.arraycopy(bytes, 0, header, offset, bytes.length);
+  }
+}
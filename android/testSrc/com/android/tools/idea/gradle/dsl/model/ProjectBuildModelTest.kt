@@ -288,4 +288,71 @@ class ProjectBuildModelTest : GradleFileModelTestCase() {
     assertNotNull(buildModel)
     verifyPropertyModel(buildModel.android().compileSdkVersion(), STRING_TYPE, "28", STRING, REGULAR, 0)
   }
-}
\ No newline at end of file
+
+  @Test
+  fun testReparseChangedFilesOnlyReparsesChangedFiles() {
+    writeToBuildFile("""ext {
+                          parentProperty = "parent"
+                        }""".trimIndent())
+    writeToSubModuleBuildFile("""ext {
+                                   childProperty = "child"
+                                 }""".trimIndent())
+    writeToSettingsFile("include ':${SUB_MODULE_NAME}'")
+
+    val pbm = ProjectBuildModel.get(myProject)
+    pbm.projectBuildModel!!
+    val childBuildModel = pbm.getModuleBuildModel(mySubModule)!!
+    childBuildModel.ext().findProperty("childProperty").setValue("changed")
+    pbm.applyChanges()
+
+    val childFile = LocalFileSystem.getInstance().findFileByIoFile(mySubModuleBuildFile)!!
+    assertEquals(listOf(childFile), pbm.reparseChangedFiles())
+    assertEmpty(pbm.reparseChangedFiles())
+
+    verifyPropertyModel(pbm.projectBuildModel!!.ext().findProperty("parentProperty"), STRING_TYPE, "parent", STRING, REGULAR, 0)
+    verifyPropertyModel(pbm.getModuleBuildModel(mySubModule)!!.ext().findProperty("childProperty"), STRING_TYPE, "changed", STRING,
+                        REGULAR, 0)
+  }
+
+  @Test
+  fun testReparseChangedFilesIncludesChildModules() {
+    writeToBuildFile("""ext {
+                          parentProperty = "parent"
+                        }""".trimIndent())
+    writeToSubModuleBuildFile("""ext {
+                                   childProperty = parentProperty
+                                 }""".trimIndent())
+    writeToSettingsFile("include ':${SUB_MODULE_NAME}'")
+
+    val pbm = ProjectBuildModel.get(myProject)
+    pbm.getModuleBuildModel(mySubModule)!!
+    pbm.projectBuildModel!!.ext().findProperty("parentProperty").setValue("changed")
+    pbm.applyChanges()
+
+    val parentFile = LocalFileSystem.getInstance().findFileByIoFile(myBuildFile)!!
+    val childFile = LocalFileSystem.getInstance().findFileByIoFile(mySubModuleBuildFile)!!
+    assertSameElements(pbm.reparseChangedFiles(), parentFile, childFile)
+
+    val childProperty = pbm.getModuleBuildModel(mySubModule)!!.ext().findProperty("childProperty")
+    verifyPropertyModel(childProperty.resolve(), STRING_TYPE, "changed", STRING, REGULAR, 1)
+  }
+
+  @Test
+  fun testParseAllModuleBuildFiles() {
+    writeToBuildFile("""ext {
+                          parentProperty = "parent"
+                        }""".trimIndent())
+    writeToSubModuleBuildFile("""ext {
+                                   childProperty = parentProperty
+                                 }""".trimIndent())
+    writeToSettingsFile("include ':${SUB_MODULE_NAME}'")
+
+    val pbm = ProjectBuildModel.get(myProject)
+    pbm.parseAllModuleBuildFiles()
+
+    val childProperty = pbm.getModuleBuildModel(mySubModule)!!.ext().findProperty("childProperty")
+    verifyPropertyModel(childProperty.resolve(), STRING_TYPE, "parent", STRING, REGULAR, 1)
+    // The files were already parsed
+    assertEmpty(pbm.reparseChangedFiles())
+  }
+}
@@ -23,8 +23,10 @@ import org.jetbrains.annotations.NotNull;
 import java.io.*;
 import java.util.Map;
 
+import static com.android.tools.idea.Projects.getBaseDirPath;
 import static com.android.tools.idea.testing.TestProjectPaths.PROJECT_WITH_APPAND_LIB;
 import static com.google.common.truth.Truth.assertThat;
+import static com.intellij.openapi.util.io.FileUtil.appendToFile;
 import static com.intellij.openapi.util.io.FileUtil.toSystemDependentName;
 
 public class ProjectBuildFileChecksumsTest extends AndroidGradleTestCase {
@@ -52,6 +54,24 @@ public class ProjectBuildFileChecksumsTest extends AndroidGradleTestCase {
     verifyGradleProjectSyncData(newData, previousSyncTime);
   }
 
+  public void testChangedFilesAndAffectedModules() throws Exception {
+    loadProject(PROJECT_WITH_APPAND_LIB);
+
+    Project project = myAndroidFacet.getModule().getProject();
+    ProjectBuildFileChecksums data = ProjectBuildFileChecksums.createFrom(project);
+    assertNotNull(data);
+    assertThat(data.getChangedFiles()).isEmpty();
+    assertTrue(data.canUseCachedData());
+
+    String libBuildFilePath = toSystemDependentName("lib/build.gradle");
+    appendToFile(new File(getBaseDirPath(project), libBuildFilePath), "\n// Changed\n");
+
+    assertThat(data.getChangedFiles()).containsExactly(libBuildFilePath);
+    assertThat(data.getAffectedModuleNames()).contains("lib");
+    assertThat(data.getAffectedModuleNames()).doesNotContain("app");
+    assertFalse(data.canUseCachedData());
+  }
+
   private static void verifyGradleProjectSyncData(@NotNull ProjectBuildFileChecksums data, long previousSyncTime) {
     assertNotNull(data);
 
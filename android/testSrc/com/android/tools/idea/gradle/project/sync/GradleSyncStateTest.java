@@ -24,6 +24,8 @@ import com.intellij.util.ThreeState;
 import com.intellij.util.messages.MessageBus;
 import org.mockito.Mock;
 
+import java.util.Map;
+
 import static com.android.tools.idea.gradle.project.sync.GradleSyncState.GRADLE_SYNC_TOPIC;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.wireless.android.sdk.stats.GradleSyncStats.Trigger.TRIGGER_PROJECT_MODIFIED;
@@ -295,4 +297,20 @@ public class GradleSyncStateTest extends IdeaTestCase {
 
     verify(myGradleSyncListener, times(1)).sourceGenerationFinished(myProject);
   }
+
+  public void testSetupPhaseFinished() {
+    mySyncState.setupStarted();
+    mySyncState.setupPhaseFinished("Create modules", 10);
+    mySyncState.setupPhaseFinished("Create module models", 20);
+    mySyncState.setupPhaseFinished("Create modules", 5);
+
+    Map<String, Long> durations = mySyncState.getSetupPhaseDurationsMs();
+    assertThat(durations.keySet()).containsExactly("Create modules", "Create module models").inOrder();
+    assertThat(durations.get("Create modules")).isEqualTo(15L);
+    assertThat(durations.get("Create module models")).isEqualTo(20L);
+
+    // Durations are reset when a new setup starts.
+    mySyncState.setupStarted();
+    assertThat(mySyncState.getSetupPhaseDurationsMs()).isEmpty();
+  }
 }
@@ -133,4 +133,21 @@ public class AndroidModelFactoryTest extends IdeaTestCase {
     assertSame(variants.get(1), androidModel.getSelectedVariant());
     verify(myVariantSelector, never()).findVariantToSelect(androidProject);
   }
+
+  public void testCreateAndroidModelWithGivenDependenciesFactory() {
+    StudioFlags.SINGLE_VARIANT_SYNC_ENABLED.override(false);
+
+    AndroidProjectStub androidProject = new AndroidProjectStub("test");
+    VariantStub variant = androidProject.addVariant("debug");
+    IdeDependenciesFactory otherDependenciesFactory = mock(IdeDependenciesFactory.class);
+
+    when(myVariantSelector.findVariantToSelect(androidProject)).thenReturn(variant);
+    AndroidModuleModel androidModel =
+      myAndroidModelFactory.createAndroidModel(getModule(), androidProject, myModuleModels, otherDependenciesFactory);
+    assertNotNull(androidModel);
+    assertEquals("debug", androidModel.getSelectedVariant().getName());
+
+    // The shared factory is not used, so the models of several modules can be created concurrently with their own factories
+    verifyZeroInteractions(myDependenciesFactory);
+  }
 }
\ No newline at end of file
@@ -17,15 +17,19 @@ package com.android.tools.idea.gradle.project.sync.ng;
 
 import static com.android.tools.idea.gradle.project.sync.ng.SyncProjectModelsSetup.renameProject;
 import static com.android.tools.idea.io.FilePaths.pathToIdeaUrl;
+import static com.android.tools.idea.testing.TestProjectPaths.DEPENDENT_MODULES;
 import static com.android.tools.idea.testing.TestProjectPaths.HELLO_JNI;
 import static com.google.common.truth.Truth.assertThat;
 import static com.intellij.openapi.command.WriteCommandAction.runWriteCommandAction;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.android.builder.model.level2.Library;
+import com.android.ide.common.gradle.model.level2.IdeDependencies;
 import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.gradle.dsl.api.ProjectBuildModel;
 import com.android.tools.idea.gradle.project.facet.ndk.NdkFacet;
+import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.testing.AndroidGradleTestCase;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProvider;
@@ -102,6 +106,26 @@ public class SyncProjectModelsSetupTest extends AndroidGradleTestCase {
     assertEquals("newName", project.getName());
   }
 
+  public void testParallelModuleModelCreation() throws Exception {
+    StudioFlags.PARALLEL_SYNC_SETUP_ENABLED.override(true);
+    try {
+      loadProject(DEPENDENT_MODULES);
+
+      AndroidModuleModel appModel = AndroidModuleModel.get(myModules.getAppModule());
+      AndroidModuleModel libModel = AndroidModuleModel.get(myModules.getModule("lib"));
+      assertNotNull(appModel);
+      assertNotNull(libModel);
+
+      // The dependencies of each module are resolved while the models are created concurrently
+      IdeDependencies dependencies = appModel.getSelectedVariant().getMainArtifact().getLevel2Dependencies();
+      assertThat(dependencies.getModuleDependencies().stream().map(Library::getProjectPath).collect(Collectors.toList()))
+        .contains(":lib");
+    }
+    finally {
+      StudioFlags.PARALLEL_SYNC_SETUP_ENABLED.clearOverride();
+    }
+  }
+
   private static boolean cppFolderFoundInModule(@NotNull Module module) {
     ModuleRootManager rootManager = ModuleRootManager.getInstance(module);
     VirtualFile[] roots = rootManager.getSourceRoots(false /* do not include tests */);
@@ -20,9 +20,8 @@ import com.intellij.testFramework.IdeaTestCase;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.util.Objects;
 import java.util.concurrent.Future;
 
@@ -59,7 +58,8 @@ public class CachedProjectModelsTest extends IdeaTestCase {
     File cacheFilePath = CachedProjectModels.getCacheFilePath(project);
     assertAbout(file()).that(cacheFilePath).isFile();
 
-    CachedProjectModels deserialized = deserialize(cacheFilePath);
+    CachedProjectModels deserialized = new CachedProjectModels.Loader().loadFromDisk(project);
+    assertNotNull(deserialized);
     assertEquals(myCache, deserialized);
     assertThat(deserialized).isNotSameAs(myCache);
 
@@ -72,13 +72,34 @@ public class CachedProjectModelsTest extends IdeaTestCase {
     assertEquals(p2, deserializedP2);
   }
 
-  @NotNull
-  private static CachedProjectModels deserialize(@NotNull File path) throws Exception {
-    try (FileInputStream fis = new FileInputStream(path)) {
-      try (ObjectInputStream ois = new ObjectInputStream(fis)) {
-        return (CachedProjectModels)ois.readObject();
-      }
-    }
+  public void testModelsAreLoadedOnDemand() throws Exception {
+    CachedModuleModels module1 = myCache.addModule(createModule("module1"));
+    module1.addModel(new Person("Luke"));
+    myCache.saveToDisk(getProject()).get(10, SECONDS);
+
+    CachedProjectModels loaded = new CachedProjectModels.Loader().loadFromDisk(getProject());
+    assertNotNull(loaded);
+    CachedModuleModels loadedModule1 = loaded.findCacheForModule("module1");
+    assertNotNull(loadedModule1);
+
+    // Saving again writes the models that were never deserialized as they were read.
+    CachedModuleModels module2 = loaded.addModule(createModule("module2"));
+    module2.addModel(new Person("Leia"));
+    loaded.saveToDisk(getProject()).get(10, SECONDS);
+
+    CachedProjectModels reloaded = new CachedProjectModels.Loader().loadFromDisk(getProject());
+    assertNotNull(reloaded);
+    assertEquals(new Person("Luke"), reloaded.findCacheForModule("module1").findModel(Person.class));
+    assertEquals(new Person("Leia"), reloaded.findCacheForModule("module2").findModel(Person.class));
+    assertEquals(new Person("Luke"), loadedModule1.findModel(Person.class));
+  }
+
+  public void testCorruptedCacheIsIgnored() throws Exception {
+    File cacheFilePath = CachedProjectModels.getCacheFilePath(getProject());
+    cacheFilePath.getParentFile().mkdirs();
+    Files.write(cacheFilePath.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+
+    assertNull(new CachedProjectModels.Loader().loadFromDisk(getProject()));
   }
 
   public static class Person implements Serializable {
@@ -26,6 +26,7 @@ import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
 import org.jetbrains.android.AndroidTestCase;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import java.util.concurrent.atomic.AtomicReference;
@@ -107,4 +108,31 @@ public class DomPsiConverterTest extends AndroidTestCase {
     assertEquals(1, elementsByTagName.getLength());
     assertEquals("@drawable/icon", elementsByTagName.item(0).getAttributes().getNamedItemNS(ANDROID_URI, "icon").getNodeValue());
   }
+
+  public void testDocumentIsShared() {
+    VirtualFile file = myFixture.copyFileToProject("AndroidManifest.xml", "AndroidManifest.xml");
+    PsiFile psiFile = PsiManager.getInstance(getProject()).findFile(file);
+    assertTrue(psiFile instanceof XmlFile);
+    XmlFile xmlFile = (XmlFile)psiFile;
+
+    Document domDocument = DomPsiConverter.convert(xmlFile);
+    assertNotNull(domDocument);
+    assertSame(domDocument, DomPsiConverter.convert(xmlFile));
+    assertSame(domDocument.getElementsByTagName("application").item(0), domDocument.getElementsByTagName("application").item(0));
+  }
+
+  public void testFindNodeAt() {
+    VirtualFile file = myFixture.copyFileToProject("AndroidManifest.xml", "AndroidManifest.xml");
+    PsiFile psiFile = PsiManager.getInstance(getProject()).findFile(file);
+    assertTrue(psiFile instanceof XmlFile);
+    XmlFile xmlFile = (XmlFile)psiFile;
+    Document domDocument = DomPsiConverter.convert(xmlFile);
+    assertNotNull(domDocument);
+
+    int offset = xmlFile.getText().indexOf("android:icon");
+    assertTrue(offset > 0);
+    Node node = DomPsiConverter.findNodeAt(domDocument, offset);
+    assertSame(domDocument.getElementsByTagName("application").item(0), node);
+    assertSame(domDocument.getDocumentElement(), DomPsiConverter.findNodeAt(domDocument, xmlFile.getText().indexOf("<manifest") + 1));
+  }
 }
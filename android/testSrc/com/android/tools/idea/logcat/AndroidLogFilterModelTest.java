@@ -19,10 +19,13 @@ package com.android.tools.idea.logcat;
 import com.android.ddmlib.Log.LogLevel;
 import com.intellij.diagnostic.logging.LogFilterModel;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -176,6 +179,82 @@ public class AndroidLogFilterModelTest {
     assertThat(result.isApplicable()).isFalse();
   }
 
+  @Test
+  public void replayedLinesAreFilteredLikeNewLines() {
+    List<String> lines = createLines(10_000);
+    lines.forEach(myFilterModel::processLine);
+
+    PersistentAndroidLogFilters.FilterData filterData = new PersistentAndroidLogFilters.FilterData();
+    filterData.setLogTagPattern("Tag[13]");
+    AndroidLogcatFilter configuredFilter = DefaultAndroidLogcatFilter.compile(filterData, "(Unused Name)");
+
+    Pattern pattern = Pattern.compile("message [0-9]*7|line 2");
+    assertReplayedLikeNewLines(lines, pattern, null, LogLevel.VERBOSE);
+    assertReplayedLikeNewLines(lines, pattern, configuredFilter, LogLevel.VERBOSE);
+    assertReplayedLikeNewLines(lines, null, configuredFilter, LogLevel.VERBOSE);
+    assertReplayedLikeNewLines(lines, null, configuredFilter, LogLevel.ERROR);
+    assertThat(myFilterModel.getLineIndex().size()).isEqualTo(lines.size());
+  }
+
+  @Test
+  public void replayCanStartAfterTheOldestLines() {
+    List<String> lines = createLines(10_000);
+    lines.forEach(myFilterModel::processLine);
+
+    // The console dropped its oldest lines
+    int start = 5_000;
+    while (!lines.get(start).startsWith("2018")) {
+      start++;
+    }
+    List<String> remainingLines = lines.subList(start, lines.size());
+    assertReplayedLikeNewLines(remainingLines, Pattern.compile("line 1"), null, LogLevel.VERBOSE);
+    assertThat(myFilterModel.getLineIndex().size()).isEqualTo(remainingLines.size());
+
+    // The lines do not match the index anymore, for example after changing the format of the header
+    List<String> otherLines = createLines(100);
+    assertReplayedLikeNewLines(otherLines, null, null, LogLevel.VERBOSE);
+    assertThat(myFilterModel.getLineIndex().size()).isEqualTo(otherLines.size());
+  }
+
+  @NotNull
+  private static List<String> createLines(int count) {
+    List<String> lines = new ArrayList<>();
+    LogLevel[] levels = {LogLevel.DEBUG, LogLevel.INFO, LogLevel.WARN, LogLevel.ERROR};
+    for (int i = 0; lines.size() < count; i++) {
+      String header = String.format("2018-01-23 12:34:56.%03d 1234-%d/? %c/Tag%d: ", i % 1000, 5678 + i % 3,
+                                    levels[i % levels.length].getPriorityLetter(), i % 5);
+      lines.add(header + "message " + i);
+      for (int j = 1; j < i % 4; j++) {
+        lines.add("+ line " + j);
+      }
+      if (i % 50 == 0) {
+        lines.add("--- NOT A LOGCAT LINE ---");
+      }
+    }
+    return lines.subList(0, count);
+  }
+
+  private void assertReplayedLikeNewLines(@NotNull List<String> lines,
+                                          @Nullable Pattern customPattern,
+                                          @Nullable AndroidLogcatFilter configuredFilter,
+                                          @NotNull LogLevel minimumLevel) {
+    TestFilterModel newModel = new TestFilterModel();
+    for (TestFilterModel model : new TestFilterModel[]{newModel, myFilterModel}) {
+      model.updateCustomPattern(customPattern);
+      model.updateLogcatFilter(configuredFilter);
+      model.setMinimumLevel(minimumLevel);
+      model.processingStarted();
+    }
+
+    for (String line : lines) {
+      LogFilterModel.MyProcessingResult expected = newModel.processLine(line);
+      LogFilterModel.MyProcessingResult result = myFilterModel.processLine(line);
+      assertThat(result.isApplicable()).isEqualTo(expected.isApplicable());
+      assertThat(result.getKey()).isEqualTo(expected.getKey());
+      assertThat(result.getMessagePrefix()).isEqualTo(expected.getMessagePrefix());
+    }
+  }
+
   private static class TestFilterModel extends AndroidLogFilterModel {
     @NotNull private LogLevel myMinimumLevel = LogLevel.VERBOSE; // Allow all messages by default
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LogcatHeaderParserTest {
+  private IDevice myDevice;
+  private LogcatHeaderParser myParser;
+
+  @Before
+  public void setUp() {
+    myDevice = AndroidLogcatReceiverTest.createMockDevice();
+    myParser = new LogcatHeaderParser();
+  }
+
+  @Test
+  public void parseEpochHeader() {
+    LogCatHeader header = myParser.parse("[ 1534635551.439 1493:1595 W/EDMNativeHelper     ]", myDevice);
+
+    assertThat(header).isNotNull();
+    assertThat(header.getTimestampInstant()).isEqualTo(Instant.ofEpochMilli(1534635551439L));
+    assertThat(header.getPid()).isEqualTo(1493);
+    assertThat(header.getTid()).isEqualTo(1595);
+    assertThat(header.getAppName()).isEqualTo("dummy.client.name");
+    assertThat(header.getLogLevel()).isEqualTo(LogLevel.WARN);
+    assertThat(header.getTag()).isEqualTo("EDMNativeHelper");
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void parseLongHeader() {
+    LogCatHeader header = myParser.parse("[ 08-18 16:39:11.760  1493: 1595 D/Tag With Spaces ]", myDevice);
+
+    assertThat(header).isNotNull();
+    assertThat(header.getTimestamp().toString()).isEqualTo("08-18 16:39:11.760");
+    assertThat(header.getPid()).isEqualTo(1493);
+    assertThat(header.getTid()).isEqualTo(1595);
+    assertThat(header.getLogLevel()).isEqualTo(LogLevel.DEBUG);
+    assertThat(header.getTag()).isEqualTo("Tag With Spaces");
+  }
+
+  @Test
+  public void parseFatalHeader() {
+    LogCatHeader header = myParser.parse("[ 1534643988.771 11698:11811 F/AndroidRuntime ]", myDevice);
+
+    assertThat(header).isNotNull();
+    assertThat(header.getLogLevel()).isEqualTo(LogLevel.ASSERT);
+    assertThat(header.getAppName()).isEqualTo("com.android.chattylogger");
+  }
+
+  @Test
+  public void messageLinesAreNotHeaders() {
+    assertThat(myParser.parse("First Line1", myDevice)).isNull();
+    assertThat(myParser.parse("[ 1534635551.439 1493:1595 W/", myDevice)).isNull();
+    assertThat(myParser.parse("[ this is not a header ]", myDevice)).isNull();
+    assertThat(myParser.parse("[ 1534635551.439 1493:1595 X/Tag ]", myDevice)).isNull();
+    assertThat(myParser.parse("[ 1534635551.439 1493:1595 W/ ]", myDevice)).isNull();
+  }
+
+  @Test
+  public void tagsAreInterned() {
+    LogCatHeader header1 = myParser.parse("[ 1534635551.439 1493:1595 W/DummyTag ]", myDevice);
+    LogCatHeader header2 = myParser.parse("[ 1534635551.440 1493:1595 I/DummyTag ]", myDevice);
+
+    assertThat(header1).isNotNull();
+    assertThat(header2).isNotNull();
+    assertThat(header2).isNotSameAs(header1);
+    assertThat(header2.getTag()).isSameAs(header1.getTag());
+  }
+
+  @Test
+  public void sameHeaderIsReused() {
+    LogCatHeader header1 = myParser.parse("[ 1534635551.439 1493:1595 W/DummyTag ]", myDevice);
+    LogCatHeader header2 = myParser.parse("[ 1534635551.439 1493:1595 W/DummyTag     ]", myDevice);
+    LogCatHeader header3 = myParser.parse("[ 1534635551.439 1493:1596 W/DummyTag ]", myDevice);
+
+    assertThat(header2).isSameAs(header1);
+    assertThat(header3).isNotSameAs(header1);
+  }
+
+  @Test
+  public void receiverPerformance() {
+    String[] lines = new String[30_000];
+    for (int i = 0; i < lines.length; i += 3) {
+      lines[i] = String.format("[ %d.%03d 1493:%d %c/Tag%d     ]", 1534635551 + i / 1000, i % 1000, 1595 + i % 7, "VDIWE".charAt(i % 5), i % 40);
+      lines[i + 1] = "Message line " + i;
+      lines[i + 2] = "";
+    }
+    AtomicInteger count = new AtomicInteger();
+    AndroidLogcatService.LogcatListener listener = new AndroidLogcatService.LogcatListener() {
+      @Override
+      public void onLogLineReceived(@NotNull LogCatMessage line) {
+        count.incrementAndGet();
+      }
+    };
+
+    PlatformTestUtil.startPerformanceTest("Parsing logcat output", 1000, () -> {
+      AndroidLogcatReceiver receiver = new AndroidLogcatReceiver(myDevice, listener);
+      for (int i = 0; i < 10; i++) {
+        for (String line : lines) {
+          receiver.processNewLine(line);
+        }
+      }
+    }).attempts(2).assertTiming();
+    assertThat(count.get() % 10_000).isEqualTo(0);
+  }
+}
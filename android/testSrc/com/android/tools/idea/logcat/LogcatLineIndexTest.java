@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LogcatLineIndexTest {
+  private static final LogCatHeader HEADER =
+    new LogCatHeader(LogLevel.WARN, 1493, 1595, "dummy.client.name", "DummyFirst", Instant.ofEpochSecond(1534635551, 439_000_000));
+
+  private static void add(@NotNull LogcatLineIndex index, @NotNull String line, @NotNull String text) {
+    index.add(line, HEADER, text, false, true, true, null, null);
+  }
+
+  @Test
+  public void textIsReturnedFromItsLine() {
+    LogcatLineIndex index = new LogcatLineIndex(Long.MAX_VALUE);
+    add(index, "W/DummyFirst: message", "message");
+    add(index, "W/DummyFirst: other", "not the end of the line");
+    index.add("not logcat", null, null, false, false, false, null, null);
+
+    assertThat(index.getText(0)).isEqualTo("message");
+    assertThat(index.getText(1)).isEqualTo("not the end of the line");
+    assertThat(index.getText(2)).isNull();
+  }
+
+  @Test
+  public void replayIsTrackedAcrossRemovedLines() {
+    LogcatLineIndex index = new LogcatLineIndex(Long.MAX_VALUE);
+    for (int i = 0; i < 10; i++) {
+      add(index, "line " + i, "line " + i);
+    }
+
+    index.startReplay();
+    assertThat(index.find("line 3")).isEqualTo(0);
+    assertThat(index.find("line 4")).isEqualTo(1);
+    assertThat(index.size()).isEqualTo(7);
+
+    // A different line discards the rest of the index
+    assertThat(index.find("other")).isEqualTo(-1);
+    assertThat(index.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void replayStartsWhereTheConsoleIsExpectedToStart() {
+    // Each line is 6 characters long, and more than 10 lines are kept since only whole chunks are removed
+    LogcatLineIndex index = new LogcatLineIndex(60);
+    for (int i = 0; i < 20; i++) {
+      add(index, "line " + i % 2, "line " + i % 2);
+    }
+    assertThat(index.size()).isEqualTo(20);
+
+    // The console only kept the last 10 lines, the same line appears earlier in the index
+    index.startReplay();
+    assertThat(index.find("line 0")).isEqualTo(0);
+    assertThat(index.size()).isEqualTo(10);
+    for (int i = 1; i < 10; i++) {
+      assertThat(index.find("line " + i % 2)).isEqualTo(i);
+    }
+  }
+}
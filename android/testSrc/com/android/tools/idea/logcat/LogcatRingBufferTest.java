@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LogcatRingBufferTest {
+  private static final LogCatHeader HEADER =
+    new LogCatHeader(LogLevel.WARN, 1493, 1595, "dummy.client.name", "DummyFirst", Instant.ofEpochSecond(1534635551, 439_000_000));
+
+  @NotNull
+  private static List<LogCatMessage> getMessages(@NotNull LogcatRingBuffer buffer) {
+    List<LogCatMessage> messages = new ArrayList<>();
+    buffer.forEach(messages::add);
+    return messages;
+  }
+
+  @Test
+  public void messagesAreReplayedInOrder() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(Integer.MAX_VALUE);
+    LogCatHeader header2 = new LogCatHeader(LogLevel.ERROR, 11698, 11698, "com.android.chattylogger", "Tag", Instant.ofEpochSecond(5));
+    buffer.add(new LogCatMessage(HEADER, "First Line1"));
+    buffer.add(new LogCatMessage(HEADER, "First Line2 \u00e9\u4e2d\ud83d\ude00"));
+    buffer.add(new LogCatMessage(header2, ""));
+
+    List<LogCatMessage> messages = getMessages(buffer);
+    assertThat(messages).hasSize(3);
+    assertThat(messages.get(0).toString()).isEqualTo(new LogCatMessage(HEADER, "First Line1").toString());
+    assertThat(messages.get(1).getMessage()).isEqualTo("First Line2 \u00e9\u4e2d\ud83d\ude00");
+    assertThat(messages.get(2).toString()).isEqualTo(new LogCatMessage(header2, "").toString());
+    assertThat(messages.get(2).getHeader().getAppName()).isEqualTo("com.android.chattylogger");
+
+    // The lines of the same message share the header
+    assertThat(messages.get(1).getHeader()).isSameAs(messages.get(0).getHeader());
+    assertThat(messages.get(2).getHeader()).isNotSameAs(messages.get(0).getHeader());
+  }
+
+  @Test
+  public void oldestMessagesAreDropped() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(100);
+    for (int i = 0; i < 1000; i++) {
+      buffer.add(new LogCatMessage(HEADER, String.format("Line %03d", i)));
+    }
+
+    // Each line is 8 bytes long
+    List<LogCatMessage> messages = getMessages(buffer);
+    assertThat(buffer.size()).isEqualTo(12);
+    assertThat(messages).hasSize(12);
+    for (int i = 0; i < messages.size(); i++) {
+      assertThat(messages.get(i).getMessage()).isEqualTo(String.format("Line %03d", 988 + i));
+    }
+  }
+
+  @Test
+  public void messagesWrappingAroundTheEndAreReplayed() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(20 * 1024);
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      builder.append((char)('a' + i % 26));
+    }
+    String text = builder.toString();
+    for (int i = 0; i < 100; i++) {
+      buffer.add(new LogCatMessage(HEADER, i + text));
+    }
+
+    List<LogCatMessage> messages = getMessages(buffer);
+    assertThat(messages).hasSize(20);
+    for (int i = 0; i < messages.size(); i++) {
+      assertThat(messages.get(i).getMessage()).isEqualTo((80 + i) + text);
+    }
+  }
+
+  @Test
+  public void bufferGrowsWhenUnbounded() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(Integer.MAX_VALUE);
+    for (int i = 0; i < 10_000; i++) {
+      buffer.add(new LogCatMessage(HEADER, "Line " + i));
+    }
+
+    List<LogCatMessage> messages = getMessages(buffer);
+    assertThat(messages).hasSize(10_000);
+    assertThat(messages.get(0).getMessage()).isEqualTo("Line 0");
+    assertThat(messages.get(9_999).getMessage()).isEqualTo("Line 9999");
+  }
+
+  @Test
+  public void maximumSizeIsCapped() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(Integer.MAX_VALUE);
+    String text = new String(new char[1024 * 1024]).replace('\0', 'a');
+    for (int i = 0; i < LogcatRingBuffer.MAX_BYTES / text.length() + 10; i++) {
+      buffer.add(new LogCatMessage(HEADER, text));
+    }
+
+    assertThat(buffer.size()).isEqualTo(LogcatRingBuffer.MAX_BYTES / text.length());
+  }
+
+  @Test
+  public void unusedStringsAreDropped() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(1000);
+    for (int i = 0; i < 10 * LogcatRingBuffer.MAX_STRINGS; i++) {
+      LogCatHeader header = new LogCatHeader(LogLevel.INFO, 123, 456, "com.android.sample", "Tag" + i, HEADER.getTimestampInstant());
+      buffer.add(new LogCatMessage(header, "Line " + i));
+    }
+
+    assertThat(buffer.getStringCount()).isAtMost(LogcatRingBuffer.MAX_STRINGS);
+    List<LogCatMessage> messages = getMessages(buffer);
+    for (LogCatMessage message : messages) {
+      assertThat(message.getHeader().getTag()).isEqualTo("Tag" + message.getMessage().substring("Line ".length()));
+      assertThat(message.getHeader().getAppName()).isEqualTo("com.android.sample");
+    }
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void timestampsWithoutEpochAreKept() {
+    LogcatRingBuffer buffer = new LogcatRingBuffer(Integer.MAX_VALUE);
+    LogCatHeader header =
+      new LogCatHeader(LogLevel.INFO, 123, 456, "com.android.sample", "SampleTag", LogCatTimestamp.fromString("02-06 14:16:28.555"));
+    buffer.add(new LogCatMessage(HEADER, "Epoch"));
+    buffer.add(new LogCatMessage(header, "No epoch"));
+
+    List<LogCatMessage> messages = getMessages(buffer);
+    assertThat(messages.get(0).getHeader().getTimestampInstant()).isEqualTo(HEADER.getTimestampInstant());
+    assertThat(messages.get(1).getHeader().getTimestamp()).isSameAs(header.getTimestamp());
+    assertThat(messages.get(1).toString()).isEqualTo(new LogCatMessage(header, "No epoch").toString());
+  }
+}
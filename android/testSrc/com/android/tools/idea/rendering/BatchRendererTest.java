@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.tools.idea.configurations.Configuration;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.intellij.lang.annotations.Language;
+import org.jetbrains.android.AndroidTestCase;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BatchRendererTest extends AndroidTestCase {
+  @Language("XML")
+  private static final String LAYOUT = "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                                       "    android:layout_height=\"match_parent\"\n" +
+                                       "    android:layout_width=\"match_parent\"\n" +
+                                       "    android:orientation=\"vertical\">\n" +
+                                       "    <LinearLayout\n" +
+                                       "        android:layout_width=\"50dp\"\n" +
+                                       "        android:layout_height=\"50dp\"\n" +
+                                       "        android:background=\"#F00\"/>\n" +
+                                       "</LinearLayout>";
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    RenderTestUtil.beforeRenderTestCase();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      RenderTestUtil.afterRenderTestCase();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testBatchRender() throws Exception {
+    VirtualFile layout1 = myFixture.addFileToProject("res/layout/layout1.xml", LAYOUT).getVirtualFile();
+    VirtualFile layout2 = myFixture.addFileToProject("res/layout/layout2.xml", LAYOUT).getVirtualFile();
+    Configuration nexus4 = RenderTestUtil.getConfiguration(myModule, layout1, "Nexus 4");
+    Configuration nexus5 = Configuration.copy(RenderTestUtil.getConfiguration(myModule, layout1, "Nexus 5"));
+    File outputDir = FileUtil.createTempDirectory("batchRender", null);
+
+    AtomicReference<List<BatchRenderer.Metrics>> metricsReference = new AtomicReference<>();
+    AtomicReference<Exception> exceptionReference = new AtomicReference<>();
+    // Batch renders can not run on the UI thread
+    Thread thread = new Thread(() -> {
+      try {
+        metricsReference.set(new BatchRenderer(myFacet)
+                               .disableSecurityManager()
+                               .render(ImmutableList.of(layout1, layout2),
+                                       ImmutableMap.of("nexus4", nexus4, "nexus5", nexus5),
+                                       outputDir,
+                                       new EmptyProgressIndicator()));
+      }
+      catch (Exception e) {
+        exceptionReference.set(e);
+      }
+    }, "batch render test");
+    thread.start();
+    thread.join();
+
+    assertNull(exceptionReference.get());
+    List<BatchRenderer.Metrics> metrics = metricsReference.get();
+    assertEquals(4, metrics.size());
+    for (BatchRenderer.Metrics metric : metrics) {
+      assertTrue(metric.toString(), metric.success);
+      assertTrue(metric.prepareMs >= 0);
+      assertTrue(metric.inflateMs >= 0);
+      assertTrue(metric.renderMs >= 0);
+      assertNotNull(metric.imageFile);
+      assertTrue(metric.imageFile.isFile());
+    }
+    // Requests are grouped by configuration
+    assertEquals("nexus4", metrics.get(0).configurationName);
+    assertEquals("nexus4", metrics.get(1).configurationName);
+    assertEquals("nexus5", metrics.get(2).configurationName);
+
+    List<String> csv = Files.readAllLines(new File(outputDir, BatchRenderer.METRICS_FILE_NAME).toPath());
+    assertEquals(5, csv.size());
+    assertTrue(csv.get(0).startsWith("layout,configuration"));
+  }
+
+  public void testCancelWithFullPipeline() throws Exception {
+    ImmutableList.Builder<VirtualFile> layouts = ImmutableList.builder();
+    for (int i = 0; i < 6; i++) {
+      layouts.add(myFixture.addFileToProject("res/layout/layout" + i + ".xml", LAYOUT).getVirtualFile());
+    }
+    Configuration configuration = RenderTestUtil.getConfiguration(myModule, layouts.build().get(0), "Nexus 4");
+
+    // Cancel once the first render has completed, when the producer is blocked on a full pipeline
+    EmptyProgressIndicator indicator = new EmptyProgressIndicator() {
+      @Override
+      public void setFraction(double fraction) {
+        if (fraction > 0) {
+          cancel();
+        }
+      }
+    };
+    AtomicReference<Throwable> exceptionReference = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try {
+        new BatchRenderer(myFacet)
+          .disableSecurityManager()
+          .render(layouts.build(), ImmutableMap.of("nexus4", configuration), null, indicator);
+      }
+      catch (Throwable e) {
+        exceptionReference.set(e);
+      }
+    }, "batch render test");
+    thread.start();
+    thread.join(TimeUnit.SECONDS.toMillis(30));
+
+    assertFalse("The batch render did not stop after cancellation", thread.isAlive());
+    assertInstanceOf(exceptionReference.get(), ProcessCanceledException.class);
+  }
+}
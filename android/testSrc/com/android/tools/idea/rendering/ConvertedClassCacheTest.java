@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class ConvertedClassCacheTest extends TestCase {
+  private File myCacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDir = FileUtil.createTempDirectory("convertedClassCache", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myCacheDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  @NotNull
+  private static Function<byte[], byte[]> countingConverter(@NotNull AtomicInteger count) {
+    return data -> {
+      count.incrementAndGet();
+      byte[] converted = data.clone();
+      converted[0]++;
+      return converted;
+    };
+  }
+
+  public void testConvertOnce() {
+    ConvertedClassCache cache = new ConvertedClassCache(null, "1", 1024, 1024);
+    AtomicInteger conversions = new AtomicInteger();
+    byte[] converted = cache.getConvertedClass(new byte[]{1, 2, 3}, countingConverter(conversions));
+    assertEquals(2, converted[0]);
+    assertSame(converted, cache.getConvertedClass(new byte[]{1, 2, 3}, countingConverter(conversions)));
+    assertEquals(1, conversions.get());
+
+    cache.getConvertedClass(new byte[]{1, 2, 4}, countingConverter(conversions));
+    assertEquals(2, conversions.get());
+    assertEquals(6, cache.getBytesInUse());
+  }
+
+  public void testMaxSize() {
+    ConvertedClassCache cache = new ConvertedClassCache(null, "1", 10, 1024);
+    AtomicInteger conversions = new AtomicInteger();
+    cache.getConvertedClass(new byte[]{1, 0, 0, 0, 0, 0}, countingConverter(conversions));
+    cache.getConvertedClass(new byte[]{2, 0, 0, 0, 0, 0}, countingConverter(conversions));
+    assertEquals(6, cache.getBytesInUse());
+
+    // The first class was evicted so it needs to be converted again
+    cache.getConvertedClass(new byte[]{1, 0, 0, 0, 0, 0}, countingConverter(conversions));
+    assertEquals(3, conversions.get());
+  }
+
+  public void testFileStamps() {
+    ConvertedClassCache cache = new ConvertedClassCache(null, "1", 1024, 1024);
+    AtomicInteger conversions = new AtomicInteger();
+    String path = "/project/build/intermediates/classes/debug/p1/p2/CustomView.class";
+    assertNull(cache.getConvertedClassFile(path, 10, 3));
+
+    byte[] converted = cache.getConvertedClassFile(path, 10, 3, new byte[]{1, 2, 3}, countingConverter(conversions));
+    assertSame(converted, cache.getConvertedClassFile(path, 10, 3));
+    // Modified file
+    assertNull(cache.getConvertedClassFile(path, 11, 3));
+    assertNull(cache.getConvertedClassFile(path, 10, 3));
+
+    cache.getConvertedClassFile(path, 10, 3, new byte[]{1, 2, 3}, countingConverter(conversions));
+    cache.invalidateFiles();
+    assertNull(cache.getConvertedClassFile(path, 10, 3));
+    assertEquals(1, conversions.get());
+  }
+
+  public void testPersistence() {
+    AtomicInteger conversions = new AtomicInteger();
+    ConvertedClassCache cache = new ConvertedClassCache(myCacheDir, "1", 1024, 1024);
+    byte[] converted = cache.getConvertedClass(new byte[]{1, 2, 3}, countingConverter(conversions));
+    cache.save();
+
+    ConvertedClassCache newCache = new ConvertedClassCache(myCacheDir, "1", 1024, 1024);
+    assertTrue(Arrays.equals(converted, newCache.getConvertedClass(new byte[]{1, 2, 3}, countingConverter(conversions))));
+    assertEquals(1, conversions.get());
+  }
+
+  public void testVersionChangeClearsDiskCache() {
+    AtomicInteger conversions = new AtomicInteger();
+    ConvertedClassCache cache = new ConvertedClassCache(myCacheDir, "1", 1024, 1024);
+    cache.getConvertedClass(new byte[]{1, 2, 3}, countingConverter(conversions));
+    cache.save();
+    File[] oldDirectories = myCacheDir.listFiles();
+    assertNotNull(oldDirectories);
+    assertEquals(1, oldDirectories.length);
+
+    // A new converter or layoutlib version does not reuse the old classes, and deletes them on the first save
+    ConvertedClassCache newCache = new ConvertedClassCache(myCacheDir, "2", 1024, 1024);
+    newCache.getConvertedClass(new byte[]{1, 2, 3}, countingConverter(conversions));
+    assertEquals(2, conversions.get());
+    newCache.save();
+    assertFalse(oldDirectories[0].exists());
+    File[] directories = myCacheDir.listFiles();
+    assertNotNull(directories);
+    assertEquals(1, directories.length);
+  }
+
+  public void testDiskEviction() throws Exception {
+    AtomicInteger conversions = new AtomicInteger();
+    // Room for three 4 byte classes on disk
+    ConvertedClassCache cache = new ConvertedClassCache(myCacheDir, "1", 1024, 12);
+    cache.getConvertedClass(new byte[]{1, 0, 0, 0}, countingConverter(conversions));
+    cache.getConvertedClass(new byte[]{2, 0, 0, 0}, countingConverter(conversions));
+    cache.getConvertedClass(new byte[]{3, 0, 0, 0}, countingConverter(conversions));
+    cache.save();
+    File[] files = myCacheDir.listFiles()[0].listFiles();
+    assertNotNull(files);
+    assertEquals(3, files.length);
+    // Make the existing classes older than the new ones
+    for (File file : files) {
+      assertTrue(file.setLastModified(file.lastModified() - 10000));
+    }
+    File first = new File(files[0].getParentFile(), ConvertedClassCache.hash(new byte[]{1, 0, 0, 0}));
+    assertTrue(first.setLastModified(first.lastModified() - 10000));
+
+    cache.getConvertedClass(new byte[]{4, 0, 0, 0}, countingConverter(conversions));
+    cache.save();
+
+    // The least recently used classes are deleted until the cache is back to 75% of its maximum size
+    assertFalse(first.exists());
+    File[] remaining = first.getParentFile().listFiles();
+    assertNotNull(remaining);
+    assertEquals(2, remaining.length);
+  }
+}
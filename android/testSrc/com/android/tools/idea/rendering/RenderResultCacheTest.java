@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.ide.common.rendering.api.Result;
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.tools.idea.rendering.imagepool.ImagePool;
+import com.android.tools.idea.rendering.imagepool.ImagePoolFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class RenderResultCacheTest extends AndroidTestCase {
+  private ImagePool myImagePool;
+  private PsiFile myFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myImagePool = ImagePoolFactory.createImagePool();
+    myFile = myFixture.addFileToProject("res/layout/layout.xml", "<LinearLayout/>");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myImagePool.dispose();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  @NotNull
+  private RenderResult createResult(int w, int h, @NotNull Result result) {
+    return createResult(w, h, result, ImmutableList.of());
+  }
+
+  @NotNull
+  private RenderResult createResult(int w, int h, @NotNull Result result, @NotNull ImmutableList<ViewInfo> rootViews) {
+    ImagePool.Image image = myImagePool.create(w, h, BufferedImage.TYPE_INT_ARGB);
+    image.paint(g -> {
+      g.setColor(Color.RED);
+      g.fillRect(0, 0, w, h);
+    });
+    return new RenderResult(myFile, myModule, new RenderLogger(null, myModule), null, result, rootViews, ImmutableList.of(),
+                            image, ImmutableMap.of(), ImmutableMap.of());
+  }
+
+  @NotNull
+  private static RenderResultCache.Key createKey(long signature) {
+    return new RenderResultCache.Key("layout.xml", signature, "device", "Portrait", "", "@style/Theme", "android-28", 1, 1, "");
+  }
+
+  public void testCacheHit() {
+    RenderResultCache cache = new RenderResultCache(myImagePool);
+    assertNull(cache.get(createKey(1)));
+
+    RenderResult result = createResult(50, 50, Result.Status.SUCCESS.createResult());
+    cache.put(createKey(1), result);
+    // The cache keeps its own copy so the original can be disposed
+    result.dispose();
+
+    RenderResult cached = cache.get(createKey(1));
+    assertNotNull(cached);
+    assertTrue(cached.hasImage());
+    assertEquals(50, cached.getRenderedImage().getWidth());
+    BufferedImage copy = cached.getRenderedImage().getCopy();
+    assertNotNull(copy);
+    assertEquals(Color.RED.getRGB(), copy.getRGB(25, 25));
+    assertNull(cached.getRenderTask());
+
+    // Disposing the returned result does not affect the cached one
+    cached.dispose();
+    RenderResult cachedAgain = cache.get(createKey(1));
+    assertNotNull(cachedAgain);
+    assertTrue(cachedAgain.hasImage());
+
+    assertNull(cache.get(createKey(2)));
+    cache.dispose();
+  }
+
+  public void testViewHierarchyIsDetached() {
+    RenderResultCache cache = new RenderResultCache(myImagePool);
+    Object rootCookie = new Object();
+    Object childCookie = new Object();
+    ViewInfo child = new ViewInfo("Button", childCookie, 10, 10, 40, 20, new Object(), null);
+    child.setExtendedInfo(12, 1, 2, 3, 4);
+    child.setChildren(ImmutableList.of());
+    ViewInfo root = new ViewInfo("LinearLayout", rootCookie, 0, 0, 50, 50, new Object(), null);
+    root.setChildren(ImmutableList.of(child));
+    RenderResult result = createResult(50, 50, Result.Status.SUCCESS.createResult(), ImmutableList.of(root));
+    cache.put(createKey(1), result);
+    result.dispose();
+
+    // The bounds and cookies are kept but not the view objects, that belong to a session that might be disposed
+    RenderResult cached = cache.get(createKey(1));
+    assertNotNull(cached);
+    assertTrue(cached.hasImage());
+    assertEquals(1, cached.getRootViews().size());
+    ViewInfo cachedRoot = cached.getRootViews().get(0);
+    assertNotSame(root, cachedRoot);
+    assertEquals("LinearLayout", cachedRoot.getClassName());
+    assertSame(rootCookie, cachedRoot.getCookie());
+    assertNull(cachedRoot.getViewObject());
+    assertEquals(1, cachedRoot.getChildren().size());
+    ViewInfo cachedChild = cachedRoot.getChildren().get(0);
+    assertSame(childCookie, cachedChild.getCookie());
+    assertNull(cachedChild.getViewObject());
+    assertEquals(new Rectangle(10, 10, 30, 10), new Rectangle(cachedChild.getLeft(), cachedChild.getTop(),
+                                                              cachedChild.getRight() - cachedChild.getLeft(),
+                                                              cachedChild.getBottom() - cachedChild.getTop()));
+    assertEquals(12, cachedChild.getBaseLine());
+    assertEquals(4, cachedChild.getBottomMargin());
+    assertTrue(cached.getSystemRootViews().isEmpty());
+    cache.dispose();
+  }
+
+  public void testErrorsAreNotCached() {
+    RenderResultCache cache = new RenderResultCache(myImagePool);
+    cache.put(createKey(1), createResult(50, 50, Result.Status.ERROR_UNKNOWN.createResult()));
+    assertNull(cache.get(createKey(1)));
+    assertEquals(0, cache.size());
+    cache.dispose();
+  }
+
+  public void testMemoryBound() {
+    // Room for two 50x50 images
+    RenderResultCache cache = new RenderResultCache(myImagePool, 2 * 50 * 50 * 4);
+    cache.put(createKey(1), createResult(50, 50, Result.Status.SUCCESS.createResult()));
+    cache.put(createKey(2), createResult(50, 50, Result.Status.SUCCESS.createResult()));
+    // Access 1 so 2 becomes the least recently used
+    assertNotNull(cache.get(createKey(1)));
+    cache.put(createKey(3), createResult(50, 50, Result.Status.SUCCESS.createResult()));
+
+    assertEquals(2, cache.size());
+    assertEquals(2 * 50 * 50 * 4, cache.getBytesInUse());
+    assertNotNull(cache.get(createKey(1)));
+    assertNull(cache.get(createKey(2)));
+    assertNotNull(cache.get(createKey(3)));
+
+    // Images larger than the cache are never stored
+    cache.put(createKey(4), createResult(100, 100, Result.Status.SUCCESS.createResult()));
+    assertNull(cache.get(createKey(4)));
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytesInUse());
+    cache.dispose();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.parsers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.android.SdkConstants.*;
+
+public class TagSnapshotDiffTest extends TestCase {
+  @NotNull
+  private static AttributeSnapshot attribute(@NotNull String name, @NotNull String value) {
+    return new AttributeSnapshot(ANDROID_URI, ANDROID_NS_NAME, name, value);
+  }
+
+  @NotNull
+  private static TagSnapshot tag(@NotNull String name, @NotNull List<AttributeSnapshot> attributes, @NotNull TagSnapshot... children) {
+    return TagSnapshot.createSyntheticTag(null, name, null, null, Lists.newArrayList(attributes), ImmutableList.copyOf(children));
+  }
+
+  @NotNull
+  private static TagSnapshot createLayout(@NotNull String buttonWidth, @NotNull String textViewAlpha) {
+    return tag("LinearLayout", ImmutableList.of(attribute(ATTR_ORIENTATION, VALUE_VERTICAL)),
+               tag("Button", ImmutableList.of(attribute(ATTR_LAYOUT_WIDTH, buttonWidth))),
+               tag("TextView", ImmutableList.of(attribute("alpha", textViewAlpha))));
+  }
+
+  public void testSameTree() {
+    List<TagSnapshotDiff.AttributeChange> changes =
+      TagSnapshotDiff.diffAttributes(createLayout(VALUE_WRAP_CONTENT, "1"), createLayout(VALUE_WRAP_CONTENT, "1"));
+    assertNotNull(changes);
+    assertTrue(changes.isEmpty());
+  }
+
+  public void testModifiedAttributes() {
+    TagSnapshot before = createLayout(VALUE_WRAP_CONTENT, "1");
+    TagSnapshot after = createLayout(VALUE_MATCH_PARENT, "0.5");
+    List<TagSnapshotDiff.AttributeChange> changes = TagSnapshotDiff.diffAttributes(before, after);
+    assertNotNull(changes);
+    assertEquals(2, changes.size());
+
+    TagSnapshotDiff.AttributeChange widthChange = changes.get(0);
+    assertSame(before.children.get(0), widthChange.before);
+    assertSame(after.children.get(0), widthChange.after);
+    assertEquals(ATTR_LAYOUT_WIDTH, widthChange.name);
+    assertEquals(ANDROID_URI, widthChange.namespace);
+    assertEquals(VALUE_MATCH_PARENT, widthChange.value);
+
+    TagSnapshotDiff.AttributeChange alphaChange = changes.get(1);
+    assertSame(after.children.get(1), alphaChange.after);
+    assertEquals("alpha", alphaChange.name);
+    assertEquals("0.5", alphaChange.value);
+  }
+
+  public void testAddedAndRemovedAttributes() {
+    TagSnapshot before = tag("Button", ImmutableList.of(attribute(ATTR_LAYOUT_WIDTH, VALUE_WRAP_CONTENT)));
+    TagSnapshot after = tag("Button", ImmutableList.of(attribute(ATTR_LAYOUT_HEIGHT, VALUE_WRAP_CONTENT)));
+    List<TagSnapshotDiff.AttributeChange> changes = TagSnapshotDiff.diffAttributes(before, after);
+    assertNotNull(changes);
+    assertEquals(2, changes.size());
+    assertEquals(ATTR_LAYOUT_WIDTH, changes.get(0).name);
+    assertNull(changes.get(0).value);
+    assertEquals(ATTR_LAYOUT_HEIGHT, changes.get(1).name);
+    assertEquals(VALUE_WRAP_CONTENT, changes.get(1).value);
+  }
+
+  public void testStructuralChanges() {
+    TagSnapshot before = createLayout(VALUE_WRAP_CONTENT, "1");
+    TagSnapshot removedChild = tag("LinearLayout", ImmutableList.of(attribute(ATTR_ORIENTATION, VALUE_VERTICAL)),
+                                   tag("Button", ImmutableList.of(attribute(ATTR_LAYOUT_WIDTH, VALUE_WRAP_CONTENT))));
+    assertNull(TagSnapshotDiff.diffAttributes(before, removedChild));
+
+    TagSnapshot renamedChild = tag("LinearLayout", ImmutableList.of(attribute(ATTR_ORIENTATION, VALUE_VERTICAL)),
+                                   tag("ImageButton", ImmutableList.of(attribute(ATTR_LAYOUT_WIDTH, VALUE_WRAP_CONTENT))),
+                                   tag("TextView", ImmutableList.of(attribute("alpha", "1"))));
+    assertNull(TagSnapshotDiff.diffAttributes(before, renamedChild));
+
+    TagSnapshot withAaptAttrs = createLayout(VALUE_WRAP_CONTENT, "1");
+    withAaptAttrs.hasDeclaredAaptAttrs = true;
+    assertNull(TagSnapshotDiff.diffAttributes(before, withAaptAttrs));
+  }
+
+  public void testTreeSignature() {
+    assertEquals(createLayout(VALUE_WRAP_CONTENT, "1").getTreeSignature(), createLayout(VALUE_WRAP_CONTENT, "1").getTreeSignature());
+    assertFalse(createLayout(VALUE_WRAP_CONTENT, "1").getTreeSignature() == createLayout(VALUE_WRAP_CONTENT, "0").getTreeSignature());
+    assertFalse(createLayout(VALUE_WRAP_CONTENT, "1").getTreeSignature() ==
+                tag("LinearLayout", Collections.singletonList(attribute(ATTR_ORIENTATION, VALUE_VERTICAL))).getTreeSignature());
+  }
+}
@@ -21,6 +21,7 @@ import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
 import junit.framework.TestCase;
 import org.easymock.EasyMock;
 import org.jetbrains.annotations.NotNull;
@@ -28,7 +29,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
 @SuppressWarnings("StaticMethodReferencedViaSubclass")
 public class InstalledApkCacheTest extends TestCase {
@@ -148,6 +151,46 @@ public class InstalledApkCacheTest extends TestCase {
     assertNull(getLastUpdateTime(myDevice1, "xyz"));
   }
 
+  public void testConcurrentDeploys() throws Exception {
+    InstalledApkCache service = new InstalledApkCache() {
+      @Override
+      protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd, long timeout, @NotNull TimeUnit timeUnit) {
+        // Every package is installed
+        return "Package [" + StringUtil.substringAfter(cmd, "dumpsys package ") + "]";
+      }
+    };
+    int packageCount = 500;
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> deploys = new ArrayList<>();
+      for (IDevice device : new IDevice[]{myDevice1, myDevice2}) {
+        deploys.add(executor.submit(() -> {
+          start.await();
+          for (int i = 0; i < packageCount; i++) {
+            String pkgName = myPkgName + i;
+            assertFalse(service.isInstalled(device, myFile, pkgName, null));
+            service.setInstalled(device, myFile, pkgName);
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> deploy : deploys) {
+        deploy.get(30, TimeUnit.SECONDS);
+      }
+
+      for (int i = 0; i < packageCount; i++) {
+        assertTrue(service.isInstalled(myDevice1, myFile, myPkgName + i, null));
+        assertTrue(service.isInstalled(myDevice2, myFile, myPkgName + i, null));
+      }
+    }
+    finally {
+      executor.shutdownNow();
+      Disposer.dispose(service);
+    }
+  }
+
   @Nullable
   private String getLastUpdateTime(IDevice device, String pkgName) {
     InstalledApkCache.InstallState state = myService.getInstallState(device, pkgName);
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import com.android.ddmlib.IDevice;
+import com.android.sdklib.AndroidVersion;
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.idea.run.tasks.DebugConnectorTask;
+import com.android.tools.idea.run.tasks.LaunchTask;
+import com.android.tools.idea.run.tasks.LaunchTasksProvider;
+import com.android.tools.idea.run.util.LaunchStatus;
+import com.android.tools.idea.stats.RunStats;
+import com.google.common.collect.ImmutableList;
+import com.intellij.execution.process.NopProcessHandler;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.Key;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.util.TimeoutUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.*;
+
+public class LaunchTaskRunnerTest extends LightPlatformTestCase {
+  private IDevice myDevice1;
+  private IDevice myDevice2;
+  private ProcessHandler myProcessHandler;
+  private RunStats myStats;
+  private final StringBuffer myOutput = new StringBuffer();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    StudioFlags.RUNDEBUG_PARALLEL_DEVICE_LAUNCH_ENABLED.override(true);
+    myDevice1 = createDevice("device1");
+    myDevice2 = createDevice("device2");
+    myStats = mock(RunStats.class);
+    myProcessHandler = new NopProcessHandler();
+    myProcessHandler.addProcessListener(new ProcessAdapter() {
+      @Override
+      public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
+        myOutput.append(event.getText());
+      }
+    });
+    myProcessHandler.startNotify();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      StudioFlags.RUNDEBUG_PARALLEL_DEVICE_LAUNCH_ENABLED.clearOverride();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testOutputIsPrefixedWithDevice() {
+    AtomicInteger performed = new AtomicInteger();
+    run(new EmptyProgressIndicator(),
+        createTask("Installing APK", (device, launchStatus) -> {
+          performed.incrementAndGet();
+          return true;
+        }),
+        createTask("Launching activity", (device, launchStatus) -> {
+          performed.incrementAndGet();
+          return true;
+        }));
+
+    assertThat(performed.get()).isEqualTo(4);
+    String output = myOutput.toString();
+    assertThat(output).contains("[device1] Installing APK\n");
+    assertThat(output).contains("[device1] Launching activity\n");
+    assertThat(output).contains("[device2] Installing APK\n");
+    assertThat(output).contains("[device2] Launching activity\n");
+    assertThat(output).contains("[device1] Launch tasks completed in ");
+    assertThat(output).contains("[device2] Launch tasks completed in ");
+    assertThat(myProcessHandler.isProcessTerminated() || myProcessHandler.isProcessTerminating()).isFalse();
+
+    // Both devices are counted in the stats
+    verify(myStats, times(2)).beginWaitForDevice();
+    verify(myStats).endWaitForDevice(myDevice1);
+    verify(myStats).endWaitForDevice(myDevice2);
+  }
+
+  public void testFailureStopsOtherDevices() {
+    AtomicInteger launched = new AtomicInteger();
+    run(new EmptyProgressIndicator(),
+        createTask("Installing APK", (device, launchStatus) -> {
+          if (device == myDevice1) {
+            return false;
+          }
+          // The other device finishes this task once the launch was terminated because of the failure
+          waitUntil(launchStatus::isLaunchTerminated);
+          return true;
+        }),
+        createTask("Launching activity", (device, launchStatus) -> {
+          launched.incrementAndGet();
+          return true;
+        }));
+
+    assertThat(launched.get()).isEqualTo(0);
+    assertThat(myOutput.toString()).contains("Error while Installing APK\n");
+    assertThat(myProcessHandler.isProcessTerminated() || myProcessHandler.isProcessTerminating()).isTrue();
+  }
+
+  public void testCancellationStopsAllDevices() {
+    ProgressIndicator indicator = new EmptyProgressIndicator();
+    AtomicInteger launched = new AtomicInteger();
+    run(indicator,
+        createTask("Installing APK", (device, launchStatus) -> {
+          if (device == myDevice1) {
+            indicator.cancel();
+          }
+          else {
+            waitUntil(indicator::isCanceled);
+          }
+          return true;
+        }),
+        createTask("Launching activity", (device, launchStatus) -> {
+          launched.incrementAndGet();
+          return true;
+        }));
+
+    assertThat(launched.get()).isEqualTo(0);
+    assertThat(myOutput.toString()).contains("User cancelled launch\n");
+  }
+
+  private void run(@NotNull ProgressIndicator indicator, @NotNull LaunchTask... tasks) {
+    LaunchTaskRunner runner = new LaunchTaskRunner(getProject(),
+                                                   "app",
+                                                   mock(LaunchInfo.class),
+                                                   myProcessHandler,
+                                                   DeviceFutures.forDevices(ImmutableList.of(myDevice1, myDevice2)),
+                                                   new FakeLaunchTasksProvider(ImmutableList.copyOf(tasks)),
+                                                   myStats);
+    runner.run(indicator);
+  }
+
+  @NotNull
+  private static IDevice createDevice(@NotNull String serialNumber) {
+    IDevice device = mock(IDevice.class);
+    when(device.getSerialNumber()).thenReturn(serialNumber);
+    when(device.getVersion()).thenReturn(new AndroidVersion(26, null));
+    return device;
+  }
+
+  @NotNull
+  private static LaunchTask createTask(@NotNull String description, @NotNull BiPredicate<IDevice, LaunchStatus> action) {
+    return new LaunchTask() {
+      @NotNull
+      @Override
+      public String getDescription() {
+        return description;
+      }
+
+      @Override
+      public int getDuration() {
+        return 1;
+      }
+
+      @Override
+      public boolean perform(@NotNull IDevice device, @NotNull LaunchStatus launchStatus, @NotNull ConsolePrinter printer) {
+        printer.stdout(description);
+        return action.test(device, launchStatus);
+      }
+
+      @NotNull
+      @Override
+      public String getId() {
+        return "FAKE_TASK";
+      }
+    };
+  }
+
+  private static void waitUntil(@NotNull BooleanSupplier condition) {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (!condition.getAsBoolean()) {
+      assertTrue("Timed out waiting for the other device", System.currentTimeMillis() < deadline);
+      TimeoutUtil.sleep(10);
+    }
+  }
+
+  private static final class FakeLaunchTasksProvider implements LaunchTasksProvider {
+    @NotNull private final List<LaunchTask> myTasks;
+
+    private FakeLaunchTasksProvider(@NotNull List<LaunchTask> tasks) {
+      myTasks = tasks;
+    }
+
+    @NotNull
+    @Override
+    public List<LaunchTask> getTasks(@NotNull IDevice device, @NotNull LaunchStatus launchStatus, @NotNull ConsolePrinter consolePrinter) {
+      return myTasks;
+    }
+
+    @Nullable
+    @Override
+    public DebugConnectorTask getConnectDebuggerTask(@NotNull LaunchStatus launchStatus, @Nullable AndroidVersion version) {
+      return null;
+    }
+
+    @Override
+    public boolean createsNewProcess() {
+      return false;
+    }
+
+    @Override
+    public boolean monitorRemoteProcess() {
+      return false;
+    }
+  }
+}
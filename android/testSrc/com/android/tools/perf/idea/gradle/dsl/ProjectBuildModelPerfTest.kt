@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.perf.idea.gradle.dsl
+
+import com.android.tools.idea.gradle.dsl.api.ProjectBuildModel
+import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.INTEGER_TYPE
+import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.INTEGER
+import com.android.tools.idea.gradle.dsl.api.ext.PropertyType.REGULAR
+import com.android.tools.idea.gradle.dsl.model.GradleFileModelTestCase
+import com.intellij.testFramework.PlatformTestUtil
+import org.junit.Test
+import java.io.File
+
+/**
+ * Performance tests for parsing the build files of large projects with [ProjectBuildModel].
+ */
+class ProjectBuildModelPerfTest : GradleFileModelTestCase() {
+  @Test
+  fun testParseAllModuleBuildFiles() {
+    val moduleCount = 300
+    writeToBuildFile("""ext {
+                          compileSdk = 28
+                          supportLibVersion = "28.0.0"
+                        }""".trimIndent())
+    writeToNewProjectFile("versions.gradle", """ext {
+                                                  junitVersion = "4.12"
+                                                }""".trimIndent())
+    for (i in 0 until moduleCount) {
+      writeToNewProjectFile("module$i/build.gradle", """apply plugin: 'com.android.library'
+                                                       apply from: "../versions.gradle"
+
+                                                       android {
+                                                         compileSdkVersion compileSdk
+                                                         defaultConfig {
+                                                           minSdkVersion 21
+                                                           versionName "1.$i"
+                                                         }
+                                                       }
+
+                                                       dependencies {
+                                                         implementation "com.android.support:appcompat-v7:${'$'}supportLibVersion"
+                                                         implementation project(':module${(i + 1) % moduleCount}')
+                                                         testImplementation "junit:junit:${'$'}junitVersion"
+                                                       }""".trimIndent())
+    }
+    writeToSettingsFile((0 until moduleCount).joinToString(prefix = "include ") { "':module$it'" })
+
+    PlatformTestUtil.startPerformanceTest("Parsing the build files of $moduleCount modules", 20_000) {
+      val pbm = ProjectBuildModel.get(myProject)
+      pbm.parseAllModuleBuildFiles()
+      val buildModel = pbm.getModuleBuildModel(File(myProjectBasePath, "module${moduleCount - 1}"))!!
+      verifyPropertyModel(buildModel.android().compileSdkVersion(), INTEGER_TYPE, 28, INTEGER, REGULAR, 1, "compileSdkVersion")
+    }.attempts(2).assertTiming()
+  }
+}
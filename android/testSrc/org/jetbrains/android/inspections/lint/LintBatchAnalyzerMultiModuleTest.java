@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.analytics.AnalyticsSettings;
+import com.android.tools.analytics.AnalyticsSettingsData;
+import com.android.tools.lint.checks.HardcodedValuesDetector;
+import com.android.tools.lint.checks.UnusedResourceDetector;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.Scope;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.TestFixtureBuilder;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.*;
+
+import static com.android.builder.model.AndroidProject.PROJECT_TYPE_APP;
+import static com.android.builder.model.AndroidProject.PROJECT_TYPE_LIBRARY;
+import static com.google.common.truth.Truth.assertThat;
+import static com.intellij.openapi.vfs.VfsUtilCore.virtualToIoFile;
+
+public class LintBatchAnalyzerMultiModuleTest extends AndroidTestCase {
+  private static final String HARDCODED_TEXT_LAYOUT =
+    "<TextView xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+    "    android:layout_width=\"wrap_content\"\n" +
+    "    android:layout_height=\"wrap_content\"\n" +
+    "    android:text=\"Hello\" />\n";
+
+  private Map<Issue, Map<File, List<ProblemData>>> myProblemMap;
+  private Module myLibModule;
+  private Module myOtherModule;
+
+  @Override
+  protected void configureAdditionalModules(@NotNull TestFixtureBuilder<IdeaProjectTestFixture> projectBuilder,
+                                            @NotNull List<MyAdditionalModuleData> modules) {
+    addModuleWithAndroidFacet(projectBuilder, modules, "lib", PROJECT_TYPE_LIBRARY);
+    addModuleWithAndroidFacet(projectBuilder, modules, "other", PROJECT_TYPE_APP, false);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    AnalyticsSettingsData analyticsSettings = new AnalyticsSettingsData();
+    analyticsSettings.setOptedIn(false);
+    AnalyticsSettings.setInstanceForTest(analyticsSettings);
+    myLibModule = getAdditionalModuleByName("lib");
+    myOtherModule = getAdditionalModuleByName("other");
+    assertNotNull(myLibModule);
+    assertNotNull(myOtherModule);
+  }
+
+  public void testLibraryProblemsAreReportedOnce() {
+    PsiFile layout = myFixture.addFileToProject(getAdditionalModulePath("lib") + "/res/layout/lib_hello.xml", HARDCODED_TEXT_LAYOUT);
+
+    analyze(ImmutableSet.of(HardcodedValuesDetector.ISSUE));
+    assertThat(getProblems(HardcodedValuesDetector.ISSUE, layout)).hasSize(1);
+  }
+
+  public void testLibraryResourcesUsedByAppAreNotUnused() {
+    PsiFile strings = myFixture.addFileToProject(getAdditionalModulePath("lib") + "/res/values/lib_strings.xml",
+                                                 "<resources>\n" +
+                                                 "    <string name=\"lib_greeting\">Hello</string>\n" +
+                                                 "</resources>\n");
+    myFixture.addFileToProject("res/layout/app_hello.xml",
+                               "<TextView xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                               "    android:layout_width=\"wrap_content\"\n" +
+                               "    android:layout_height=\"wrap_content\"\n" +
+                               "    android:text=\"@string/lib_greeting\" />\n");
+
+    analyze(ImmutableSet.of(UnusedResourceDetector.ISSUE));
+    assertThat(getProblems(UnusedResourceDetector.ISSUE, strings)).isEmpty();
+  }
+
+  public void testIndependentModulesAreAnalyzedSeparately() {
+    myFixture.addFileToProject(getAdditionalModulePath("lib") + "/res/layout/lib_hello.xml", HARDCODED_TEXT_LAYOUT);
+    PsiFile otherLayout =
+      myFixture.addFileToProject(getAdditionalModulePath("other") + "/res/layout/other_hello.xml", HARDCODED_TEXT_LAYOUT);
+    Set<Issue> issues = ImmutableSet.of(HardcodedValuesDetector.ISSUE);
+
+    assertThat(analyze(issues)).containsExactly(myModule, myLibModule, myOtherModule);
+    assertThat(analyze(issues)).isEmpty();
+
+    // Only the group of the changed module is analyzed again
+    myFixture.saveText(otherLayout.getVirtualFile(), HARDCODED_TEXT_LAYOUT.replace("\"Hello\"", "\"@android:string/ok\""));
+    assertThat(analyze(issues)).containsExactly(myOtherModule);
+    assertThat(getProblems(HardcodedValuesDetector.ISSUE, otherLayout)).isEmpty();
+  }
+
+  @NotNull
+  private List<Module> analyze(@NotNull Set<Issue> issues) {
+    myProblemMap = new HashMap<>();
+    LintBatchAnalyzer analyzer = new LintBatchAnalyzer(getProject(), new AnalysisScope(getProject()), issues, Scope.ALL);
+    return analyzer.analyze(ImmutableList.of(myModule, myLibModule, myOtherModule), myProblemMap, null);
+  }
+
+  @NotNull
+  private List<ProblemData> getProblems(@NotNull Issue issue, @NotNull PsiFile file) {
+    Map<File, List<ProblemData>> problems = myProblemMap.getOrDefault(issue, Collections.emptyMap());
+    return problems.getOrDefault(virtualToIoFile(file.getVirtualFile()), Collections.emptyList());
+  }
+}
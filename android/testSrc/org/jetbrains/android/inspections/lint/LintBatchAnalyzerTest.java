@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.inspections.lint;
+
+import com.android.tools.analytics.AnalyticsSettings;
+import com.android.tools.analytics.AnalyticsSettingsData;
+import com.android.tools.lint.checks.HardcodedValuesDetector;
+import com.android.tools.lint.checks.TextViewDetector;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.Scope;
+import com.google.common.collect.ImmutableSet;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.*;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LintBatchAnalyzerTest extends AndroidTestCase {
+  private static final String HARDCODED_TEXT_LAYOUT =
+    "<TextView xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+    "    android:layout_width=\"wrap_content\"\n" +
+    "    android:layout_height=\"wrap_content\"\n" +
+    "    android:text=\"Hello\" />\n";
+
+  private Map<Issue, Map<File, List<ProblemData>>> myProblemMap;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    AnalyticsSettingsData analyticsSettings = new AnalyticsSettingsData();
+    analyticsSettings.setOptedIn(false);
+    AnalyticsSettings.setInstanceForTest(analyticsSettings);
+  }
+
+  public void testUnchangedModuleIsNotAnalyzedAgain() {
+    myFixture.addFileToProject("res/layout/hello.xml", HARDCODED_TEXT_LAYOUT);
+    Set<Issue> issues = ImmutableSet.of(HardcodedValuesDetector.ISSUE);
+
+    assertThat(analyze(issues)).containsExactly(myModule);
+    assertThat(getProblemCount(HardcodedValuesDetector.ISSUE)).isEqualTo(1);
+
+    // The previous results are reported without running lint
+    assertThat(analyze(issues)).isEmpty();
+    assertThat(getProblemCount(HardcodedValuesDetector.ISSUE)).isEqualTo(1);
+  }
+
+  public void testChangedFileInvalidatesResults() {
+    PsiFile layout = myFixture.addFileToProject("res/layout/hello.xml", HARDCODED_TEXT_LAYOUT);
+    Set<Issue> issues = ImmutableSet.of(HardcodedValuesDetector.ISSUE);
+
+    assertThat(analyze(issues)).containsExactly(myModule);
+    assertThat(getProblemCount(HardcodedValuesDetector.ISSUE)).isEqualTo(1);
+
+    // Unsaved changes are taken into account too
+    Document document = PsiDocumentManager.getInstance(getProject()).getDocument(layout);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      document.setText(HARDCODED_TEXT_LAYOUT.replace("\"Hello\"", "\"@android:string/ok\""));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+
+    assertThat(analyze(issues)).containsExactly(myModule);
+    assertThat(getProblemCount(HardcodedValuesDetector.ISSUE)).isEqualTo(0);
+  }
+
+  public void testChangedIssuesInvalidateResults() {
+    myFixture.addFileToProject("res/layout/hello.xml", HARDCODED_TEXT_LAYOUT);
+
+    assertThat(analyze(ImmutableSet.of(HardcodedValuesDetector.ISSUE))).containsExactly(myModule);
+    assertThat(analyze(ImmutableSet.of(HardcodedValuesDetector.ISSUE, TextViewDetector.SELECTABLE))).containsExactly(myModule);
+    assertThat(analyze(ImmutableSet.of(HardcodedValuesDetector.ISSUE, TextViewDetector.SELECTABLE))).isEmpty();
+  }
+
+  @NotNull
+  private List<Module> analyze(@NotNull Set<Issue> issues) {
+    myProblemMap = new HashMap<>();
+    LintBatchAnalyzer analyzer = new LintBatchAnalyzer(getProject(), new AnalysisScope(myModule), issues, Scope.ALL);
+    return analyzer.analyze(Collections.singletonList(myModule), myProblemMap, null);
+  }
+
+  private int getProblemCount(@NotNull Issue issue) {
+    Map<File, List<ProblemData>> problems = myProblemMap.get(issue);
+    return problems == null ? 0 : problems.values().stream().mapToInt(List::size).sum();
+  }
+}
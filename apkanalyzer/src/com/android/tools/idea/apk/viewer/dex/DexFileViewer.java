@@ -29,7 +29,6 @@ import com.android.tools.proguard.ProguardSeedsMap;
 import com.android.tools.proguard.ProguardUsagesMap;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
-import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.*;
 import com.intellij.icons.AllIcons;
 import com.intellij.notification.NotificationGroup;
@@ -83,6 +82,7 @@ public class DexFileViewer implements ApkFileEditorComponent {
   @Nullable private ProguardMappings myProguardMappings;
   private boolean myDeobfuscateNames;
   private ListenableFuture<DexReferences> myDexReferences;
+  @NotNull private final DexFilesLoader myDexFilesLoader;
 
   @NotNull public static final NotificationGroup LOGGING_NOTIFICATION = NotificationGroup.logOnlyGroup("APK Analyzer (Info)");
   @NotNull public static final NotificationGroup BALLOON_NOTIFICATION = NotificationGroup.balloonGroup("APK Analyzer (Important)");
@@ -91,6 +91,7 @@ public class DexFileViewer implements ApkFileEditorComponent {
     myDexFiles = dexFiles;
     myProject = project;
     myApkFolder = apkFolder;
+    myDexFilesLoader = new DexFilesLoader(dexFiles);
 
     //noinspection Convert2Lambda // we need a new instance of this disposable every time, not just a lambda method
     //noinspection AnonymousInnerClassMayBeStatic
@@ -99,6 +100,7 @@ public class DexFileViewer implements ApkFileEditorComponent {
       public void dispose() {
       }
     };
+    Disposer.register(myDisposable, myDexFilesLoader);
 
     myLoadingPanel = new JBLoadingPanel(new BorderLayout(), myDisposable);
     myLoadingPanel.startLoading();
@@ -277,13 +279,7 @@ public class DexFileViewer implements ApkFileEditorComponent {
 
   public void initDex() {
     ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = pooledThreadExecutor.submit(() -> {
-      Map<Path, DexBackedDexFile> dexFiles = Maps.newHashMapWithExpectedSize(myDexFiles.length);
-      for (int i = 0; i < myDexFiles.length; i++) {
-        dexFiles.put(myDexFiles[i], DexFiles.getDexFile(myDexFiles[i]));
-      }
-      return dexFiles;
-    });
+    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = myDexFilesLoader.load(pooledThreadExecutor);
 
     ListenableFuture<DexPackageNode> treeNodeFuture =
       Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexPackageNode>() {
@@ -381,6 +377,7 @@ public class DexFileViewer implements ApkFileEditorComponent {
   @Override
   public void dispose() {
     Disposer.dispose(myDisposable);
+    myDexReferences = null;
   }
 
   @Nullable
@@ -394,20 +391,15 @@ public class DexFileViewer implements ApkFileEditorComponent {
 
   @Nullable
   ListenableFuture<DexReferences> getDexReferences() {
-    if (myDexReferences == null) {
+    // The references are computed again if loading the dex files failed
+    if (myDexReferences == null || DexFilesLoader.hasFailed(myDexReferences)) {
       ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-      ListenableFuture<DexBackedDexFile[]> dexFileFuture = pooledThreadExecutor.submit(() -> {
-        DexBackedDexFile[] files = new DexBackedDexFile[myDexFiles.length];
-        for (int i = 0; i < files.length; i++) {
-          files[i] = DexFiles.getDexFile(myDexFiles[i]);
-        }
-        return files;
-      });
-      myDexReferences = Futures.transform(dexFileFuture, new Function<DexBackedDexFile[], DexReferences>() {
+      ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = myDexFilesLoader.load(pooledThreadExecutor);
+      myDexReferences = Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexReferences>() {
         @Override
-        public DexReferences apply(@Nullable DexBackedDexFile[] inputs) {
-          assert inputs != null;
-          return new DexReferences(inputs);
+        public DexReferences apply(@Nullable Map<Path, DexBackedDexFile> input) {
+          assert input != null;
+          return new DexReferences(input.values().toArray(new DexBackedDexFile[0]));
         }
       }, pooledThreadExecutor);
     }
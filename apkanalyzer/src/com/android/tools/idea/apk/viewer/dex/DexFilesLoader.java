@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.tools.apk.analyzer.dex.DexFiles;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.Disposable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the dex files of a {@link DexFileViewer} concurrently. The requests made while the dex files are being loaded share the same load,
+ * so the tree, the stats and the references built at the same time only load them once.
+ * <p>
+ * The loaded dex files, which hold the contents of the whole files, are not kept by this loader: they are released once the tree, the
+ * stats and the references are built from them, and they are loaded again the next time they are needed (e.g. for new proguard mappings).
+ */
+final class DexFilesLoader implements Disposable {
+  @NotNull private final Path[] myDexFiles;
+  @Nullable private ListenableFuture<Map<Path, DexBackedDexFile>> myLoadingDexFiles;
+  private boolean myDisposed;
+
+  DexFilesLoader(@NotNull Path[] dexFiles) {
+    myDexFiles = dexFiles;
+  }
+
+  /**
+   * Returns the loaded dex files, joining the load in progress if there is one. The resulting map iterates over the dex files in the
+   * order in which they were given to this loader.
+   */
+  @NotNull
+  synchronized ListenableFuture<Map<Path, DexBackedDexFile>> load(@NotNull ListeningExecutorService executor) {
+    if (myDisposed) {
+      return Futures.immediateCancelledFuture();
+    }
+    if (myLoadingDexFiles != null) {
+      return myLoadingDexFiles;
+    }
+
+    ListenableFuture<Map<Path, DexBackedDexFile>> loadingDexFiles = startLoading(executor);
+    myLoadingDexFiles = loadingDexFiles;
+    // Once done, successfully or not, the dex files are only kept by the callers still using them. This runs right away if the dex
+    // files are already loaded.
+    loadingDexFiles.addListener(() -> {
+      synchronized (this) {
+        if (myLoadingDexFiles == loadingDexFiles) {
+          myLoadingDexFiles = null;
+        }
+      }
+    }, MoreExecutors.directExecutor());
+    return loadingDexFiles;
+  }
+
+  @NotNull
+  private ListenableFuture<Map<Path, DexBackedDexFile>> startLoading(@NotNull ListeningExecutorService executor) {
+    List<ListenableFuture<DexBackedDexFile>> futures = new ArrayList<>(myDexFiles.length);
+    for (Path dexFile : myDexFiles) {
+      futures.add(executor.submit(() -> DexFiles.getDexFile(dexFile)));
+    }
+    return Futures.transform(Futures.allAsList(futures), input -> {
+      assert input != null;
+      Map<Path, DexBackedDexFile> dexFiles = Maps.newLinkedHashMapWithExpectedSize(myDexFiles.length);
+      for (int i = 0; i < myDexFiles.length; i++) {
+        dexFiles.put(myDexFiles[i], input.get(i));
+      }
+      return dexFiles;
+    }, executor);
+  }
+
+  @VisibleForTesting
+  synchronized boolean isLoading() {
+    return myLoadingDexFiles != null;
+  }
+
+  /**
+   * Stops loading the dex files
+   */
+  @Override
+  public synchronized void dispose() {
+    myDisposed = true;
+    if (myLoadingDexFiles != null) {
+      myLoadingDexFiles.cancel(true);
+      myLoadingDexFiles = null;
+    }
+  }
+
+  /**
+   * Returns true if the given future completed with a failure or was cancelled
+   */
+  static boolean hasFailed(@NotNull Future<?> future) {
+    if (!future.isDone()) {
+      return false;
+    }
+    try {
+      // The future is done, so this does not block
+      future.get();
+      return false;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    catch (ExecutionException | CancellationException e) {
+      return true;
+    }
+  }
+}
@@ -33,6 +33,7 @@ import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.ColoredTreeCellRenderer;
 import com.intellij.ui.LoadingNode;
+import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.ui.TreeSpeedSearch;
 import com.intellij.ui.treeStructure.Tree;
 import com.intellij.util.Function;
@@ -53,6 +54,9 @@ public class ApkDiffPanel {
 
   private static final ListeningExecutorService ourExecutorService = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
   private ListenableFuture<DefaultMutableTreeNode> myFbfTreeStructureFuture;
+  private ListenableFuture<DefaultMutableTreeNode> myTreeStructureFuture;
+  // Incremented on the EDT each time a tree is requested, so that the trees computed for the previous requests are not shown
+  private int myTreeRequest;
 
   private JPanel myContainer;
   private JComponent myColumnTreePane;
@@ -85,6 +89,7 @@ public class ApkDiffPanel {
   }
 
   private void constructFbfTree(){
+    int request = ++myTreeRequest;
     if (myFbfTreeStructureFuture == null) {
       myFbfTreeStructureFuture = ourExecutorService.submit(() -> {
         try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
@@ -97,7 +102,9 @@ public class ApkDiffPanel {
     FutureCallBackAdapter<DefaultMutableTreeNode> setRootNode = new FutureCallBackAdapter<DefaultMutableTreeNode>() {
       @Override
       public void onSuccess(DefaultMutableTreeNode result) {
-        setRootNode(result);
+        if (request == myTreeRequest) {
+          setRootNode(result);
+        }
         myCalculateFileByFileCheckBox.setEnabled(true);
       }
     };
@@ -105,23 +112,49 @@ public class ApkDiffPanel {
   }
 
   private void constructDiffTree(){
+    int request = ++myTreeRequest;
     // construct the main tree
-    ListenableFuture<DefaultMutableTreeNode> treeStructureFuture = ourExecutorService.submit(() -> {
-      try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
-           ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
-        return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
-      }
-    });
+    if (myTreeStructureFuture == null) {
+      myTreeStructureFuture = ourExecutorService.submit(() -> {
+        try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
+             ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
+          return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
+        }
+      });
+
+      // Comparing the central directories is much faster than the complete diff, show it until the complete diff is available
+      ListenableFuture<DefaultMutableTreeNode> previewFuture = ZipEntryDiffTree.create(VfsUtilCore.virtualToIoFile(myOldApk).toPath(),
+                                                                                       VfsUtilCore.virtualToIoFile(myNewApk).toPath(),
+                                                                                       ourExecutorService);
+      Futures.addCallback(previewFuture, new FutureCallBackAdapter<DefaultMutableTreeNode>() {
+        @Override
+        public void onSuccess(DefaultMutableTreeNode result) {
+          if (request == myTreeRequest && !myTreeStructureFuture.isDone()) {
+            setPreviewRootNode(result);
+          }
+        }
+      }, EdtExecutor.INSTANCE);
+    }
+    ListenableFuture<DefaultMutableTreeNode> treeStructureFuture = myTreeStructureFuture;
     FutureCallBackAdapter<DefaultMutableTreeNode> setRootNode = new FutureCallBackAdapter<DefaultMutableTreeNode>() {
       @Override
       public void onSuccess(DefaultMutableTreeNode result) {
-        setRootNode(result);
+        if (request == myTreeRequest) {
+          setRootNode(result);
+        }
         myCalculateFileByFileCheckBox.setEnabled(true);
       }
     };
     Futures.addCallback(treeStructureFuture, setRootNode, EdtExecutor.INSTANCE);
   }
 
+  private void setPreviewRootNode(@NotNull DefaultMutableTreeNode root) {
+    myTreeModel = new DefaultTreeModel(root);
+    myTree.setRootVisible(true);
+    myTree.setModel(myTreeModel);
+    myTree.expandPath(new TreePath(root));
+  }
+
   private void createUIComponents() {
     myTreeModel = new DefaultTreeModel(new LoadingNode());
     myTree = new Tree(myTreeModel);
@@ -134,7 +167,8 @@ public class ApkDiffPanel {
       public String convert(TreePath path) {
         ApkEntry e = ApkEntry.fromNode(path.getLastPathComponent());
         if (e == null) {
-          return null;
+          ZipEntryDiffTree.Entry previewEntry = ZipEntryDiffTree.Entry.fromNode(path.getLastPathComponent());
+          return previewEntry != null ? previewEntry.getPath() : null;
         }
 
         return e.getPath().toString();
@@ -153,17 +187,17 @@ public class ApkDiffPanel {
                    .setName("Old Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkDiffEntry::getOldSize)))
+                   .setRenderer(new SizeRenderer(ApkDiffEntry::getOldSize, ZipEntryDiffTree.Entry::getOldSize)))
       .addColumn(new ColumnTreeBuilder.ColumnBuilder()
                    .setName("New Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkDiffEntry::getNewSize)))
+                   .setRenderer(new SizeRenderer(ApkDiffEntry::getNewSize, ZipEntryDiffTree.Entry::getNewSize)))
       .addColumn(new ColumnTreeBuilder.ColumnBuilder()
                    .setName("Diff Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkEntry::getSize)));
+                   .setRenderer(new SizeRenderer(ApkEntry::getSize, ZipEntryDiffTree.Entry::getSize)));
     myColumnTreePane = builder.build();
   }
 
@@ -192,9 +226,15 @@ public class ApkDiffPanel {
   // Duplicated from ApkViewPanel.SizeRenderer until the diff entries are unified into the ArchiveEntry data class.
   public static class SizeRenderer extends ColoredTreeCellRenderer {
     private Function<ApkEntry, Long> mySizeMapper;
+    private Function<ZipEntryDiffTree.Entry, Long> myPreviewSizeMapper;
 
     public SizeRenderer(Function<ApkEntry, Long> sizeMapper) {
+      this(sizeMapper, null);
+    }
+
+    SizeRenderer(Function<ApkEntry, Long> sizeMapper, Function<ZipEntryDiffTree.Entry, Long> previewSizeMapper) {
       mySizeMapper = sizeMapper;
+      myPreviewSizeMapper = previewSizeMapper;
       setTextAlign(SwingConstants.RIGHT);
     }
 
@@ -206,6 +246,14 @@ public class ApkDiffPanel {
                                       boolean leaf,
                                       int row,
                                       boolean hasFocus) {
+      ZipEntryDiffTree.Entry previewEntry = ZipEntryDiffTree.Entry.fromNode(value);
+      if (previewEntry != null) {
+        if (myPreviewSizeMapper != null) {
+          append(getHumanizedSize(myPreviewSizeMapper.fun(previewEntry)));
+        }
+        return;
+      }
+
       ApkEntry entry = ApkEntry.fromNode(value);
       ApkEntry root = ApkEntry.fromNode(tree.getModel().getRoot());
 
@@ -229,6 +277,13 @@ public class ApkDiffPanel {
                                       boolean leaf,
                                       int row,
                                       boolean hasFocus) {
+      ZipEntryDiffTree.Entry previewEntry = ZipEntryDiffTree.Entry.fromNode(value);
+      if (previewEntry != null) {
+        append(previewEntry.getName(),
+               previewEntry.isUnchanged() ? SimpleTextAttributes.GRAYED_ATTRIBUTES : SimpleTextAttributes.REGULAR_ATTRIBUTES);
+        return;
+      }
+
       ApkEntry entry = ApkEntry.fromNode(value);
       ApkEntry root = ApkEntry.fromNode(tree.getModel().getRoot());
 
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Builds a first version of the diff tree of two APKs from their central directories only, without extracting anything, so that it can
+ * be shown while the complete diff (which also looks into the nested archives) is being computed.
+ * <p>
+ * The sizes are the uncompressed sizes of the entries, like in the complete diff tree. Entries with the same CRC and size in both APKs
+ * are marked as unchanged without looking at their contents.
+ */
+final class ZipEntryDiffTree {
+  private ZipEntryDiffTree() {
+  }
+
+  /**
+   * The user object of the nodes of the tree
+   */
+  static final class Entry {
+    @NotNull private final String myName;
+    @NotNull private final String myPath;
+    private long myOldSize;
+    private long myNewSize;
+    private boolean myUnchanged = true;
+
+    private Entry(@NotNull String name, @NotNull String path) {
+      myName = name;
+      myPath = path;
+    }
+
+    @NotNull
+    String getName() {
+      return myName;
+    }
+
+    @NotNull
+    String getPath() {
+      return myPath;
+    }
+
+    long getOldSize() {
+      return myOldSize;
+    }
+
+    long getNewSize() {
+      return myNewSize;
+    }
+
+    long getSize() {
+      return myNewSize - myOldSize;
+    }
+
+    boolean isUnchanged() {
+      return myUnchanged;
+    }
+
+    @Nullable
+    static Entry fromNode(@Nullable Object node) {
+      if (!(node instanceof DefaultMutableTreeNode)) {
+        return null;
+      }
+      Object userObject = ((DefaultMutableTreeNode)node).getUserObject();
+      return userObject instanceof Entry ? (Entry)userObject : null;
+    }
+  }
+
+  /**
+   * Reads the central directories of both APKs concurrently and returns the root of their diff tree
+   */
+  @NotNull
+  static ListenableFuture<DefaultMutableTreeNode> create(@NotNull Path oldApk,
+                                                         @NotNull Path newApk,
+                                                         @NotNull ListeningExecutorService executor) {
+    ListenableFuture<Map<String, ZipEntry>> oldEntries = executor.submit(() -> readEntries(oldApk));
+    ListenableFuture<Map<String, ZipEntry>> newEntries = executor.submit(() -> readEntries(newApk));
+    return Futures.transform(Futures.allAsList(oldEntries, newEntries), entries -> {
+      assert entries != null;
+      return createTree(newApk.getFileName().toString(), entries.get(0), entries.get(1));
+    }, executor);
+  }
+
+  @NotNull
+  private static Map<String, ZipEntry> readEntries(@NotNull Path apk) throws IOException {
+    Map<String, ZipEntry> entries = new HashMap<>();
+    try (ZipFile zipFile = new ZipFile(apk.toFile())) {
+      Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+      while (enumeration.hasMoreElements()) {
+        ZipEntry entry = enumeration.nextElement();
+        if (!entry.isDirectory()) {
+          entries.put(entry.getName(), entry);
+        }
+      }
+    }
+    return entries;
+  }
+
+  @NotNull
+  static DefaultMutableTreeNode createTree(@NotNull String rootName,
+                                           @NotNull Map<String, ZipEntry> oldEntries,
+                                           @NotNull Map<String, ZipEntry> newEntries) {
+    DefaultMutableTreeNode root = new DefaultMutableTreeNode(new Entry(rootName, "/"));
+    Map<String, DefaultMutableTreeNode> directories = new HashMap<>();
+    directories.put("", root);
+
+    Set<String> names = new HashSet<>(oldEntries.keySet());
+    names.addAll(newEntries.keySet());
+    for (String name : names) {
+      ZipEntry oldEntry = oldEntries.get(name);
+      ZipEntry newEntry = newEntries.get(name);
+      long oldSize = getUncompressedSize(oldEntry);
+      long newSize = getUncompressedSize(newEntry);
+      boolean unchanged = oldEntry != null && newEntry != null &&
+                          oldEntry.getCrc() == newEntry.getCrc() &&
+                          oldEntry.getSize() == newEntry.getSize();
+
+      int separator = name.lastIndexOf('/');
+      DefaultMutableTreeNode parent = getDirectory(directories, separator < 0 ? "" : name.substring(0, separator));
+      Entry entry = new Entry(name.substring(separator + 1), "/" + name);
+      parent.add(new DefaultMutableTreeNode(entry));
+
+      // Propagate the sizes up to the root
+      for (Object path : parent.getUserObjectPath()) {
+        Entry directory = (Entry)path;
+        directory.myOldSize += oldSize;
+        directory.myNewSize += newSize;
+        directory.myUnchanged &= unchanged;
+      }
+      entry.myOldSize = oldSize;
+      entry.myNewSize = newSize;
+      entry.myUnchanged = unchanged;
+    }
+
+    sort(root);
+    return root;
+  }
+
+  private static long getUncompressedSize(@Nullable ZipEntry entry) {
+    // The size is -1 when it is unknown
+    return entry != null ? Math.max(entry.getSize(), 0) : 0;
+  }
+
+  @NotNull
+  private static DefaultMutableTreeNode getDirectory(@NotNull Map<String, DefaultMutableTreeNode> directories, @NotNull String path) {
+    DefaultMutableTreeNode node = directories.get(path);
+    if (node == null) {
+      int separator = path.lastIndexOf('/');
+      DefaultMutableTreeNode parent = getDirectory(directories, separator < 0 ? "" : path.substring(0, separator));
+      node = new DefaultMutableTreeNode(new Entry(path.substring(separator + 1), "/" + path + "/"));
+      parent.add(node);
+      directories.put(path, node);
+    }
+    return node;
+  }
+
+  /**
+   * Sorts the children of each node with the largest differences first, like the complete diff tree
+   */
+  private static void sort(@NotNull DefaultMutableTreeNode node) {
+    int count = node.getChildCount();
+    if (count == 0) {
+      return;
+    }
+    List<DefaultMutableTreeNode> children = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      children.add((DefaultMutableTreeNode)node.getChildAt(i));
+    }
+    children.sort(Comparator.comparingLong((DefaultMutableTreeNode child) -> Math.abs(((Entry)child.getUserObject()).getSize()))
+                    .reversed());
+    node.removeAllChildren();
+    for (DefaultMutableTreeNode child : children) {
+      sort(child);
+      node.add(child);
+    }
+  }
+}
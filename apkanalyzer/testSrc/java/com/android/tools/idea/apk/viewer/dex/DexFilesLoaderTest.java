@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import com.android.testutils.TestResources;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.jetbrains.annotations.NotNull;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.*;
+
+public class DexFilesLoaderTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private final ListeningExecutorService myExecutor = MoreExecutors.newDirectExecutorService();
+
+  @Test
+  public void loadInProgressIsShared() throws Exception {
+    Path dexFile = myTemporaryFolder.getRoot().toPath().resolve("classes.dex");
+    extractDexFile(dexFile);
+    DexFilesLoader loader = new DexFilesLoader(new Path[]{dexFile});
+    ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+    CountDownLatch latch = new CountDownLatch(1);
+    try {
+      // Keep the executor busy until both loads are requested
+      executor.submit(() -> {
+        latch.await();
+        return null;
+      });
+      ListenableFuture<Map<Path, DexBackedDexFile>> dexFiles = loader.load(executor);
+      assertSame(dexFiles, loader.load(executor));
+      assertTrue(loader.isLoading());
+
+      latch.countDown();
+      assertNotNull(dexFiles.get().get(dexFile));
+    }
+    finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void loadedDexFilesAreNotKept() throws Exception {
+    Path dexFile = myTemporaryFolder.getRoot().toPath().resolve("classes.dex");
+    extractDexFile(dexFile);
+    DexFilesLoader loader = new DexFilesLoader(new Path[]{dexFile});
+
+    ListenableFuture<Map<Path, DexBackedDexFile>> dexFiles = loader.load(myExecutor);
+    assertNotNull(dexFiles.get().get(dexFile));
+    assertFalse(loader.isLoading());
+
+    // They are loaded again when needed
+    ListenableFuture<Map<Path, DexBackedDexFile>> reloadedDexFiles = loader.load(myExecutor);
+    assertNotSame(dexFiles, reloadedDexFiles);
+    assertNotNull(reloadedDexFiles.get().get(dexFile));
+  }
+
+  @Test
+  public void failedLoadIsRetried() throws Exception {
+    Path dexFile = myTemporaryFolder.getRoot().toPath().resolve("classes.dex");
+    DexFilesLoader loader = new DexFilesLoader(new Path[]{dexFile});
+
+    // The file does not exist yet
+    ListenableFuture<Map<Path, DexBackedDexFile>> failedDexFiles = loader.load(myExecutor);
+    assertTrue(DexFilesLoader.hasFailed(failedDexFiles));
+    assertFalse(loader.isLoading());
+
+    extractDexFile(dexFile);
+    ListenableFuture<Map<Path, DexBackedDexFile>> dexFiles = loader.load(myExecutor);
+    assertNotSame(failedDexFiles, dexFiles);
+    assertNotNull(dexFiles.get().get(dexFile));
+  }
+
+  @Test
+  public void loadIsCancelledOnDispose() throws Exception {
+    Path dexFile = myTemporaryFolder.getRoot().toPath().resolve("classes.dex");
+    extractDexFile(dexFile);
+    DexFilesLoader loader = new DexFilesLoader(new Path[]{dexFile});
+    ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+    CountDownLatch latch = new CountDownLatch(1);
+    try {
+      executor.submit(() -> {
+        latch.await();
+        return null;
+      });
+      ListenableFuture<Map<Path, DexBackedDexFile>> dexFiles = loader.load(executor);
+
+      loader.dispose();
+      assertTrue(dexFiles.isCancelled());
+      assertFalse(loader.isLoading());
+      assertTrue(loader.load(myExecutor).isCancelled());
+      assertFalse(loader.isLoading());
+    }
+    finally {
+      latch.countDown();
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+  }
+
+  private static void extractDexFile(@NotNull Path destination) throws Exception {
+    try (ZipFile apk = new ZipFile(TestResources.getFile("/test.apk"))) {
+      ZipEntry entry = apk.getEntry("classes.dex");
+      assertNotNull(entry);
+      try (InputStream inputStream = apk.getInputStream(entry)) {
+        Files.copy(inputStream, destination);
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ZipEntryDiffTreeTest {
+  @Test
+  public void sizesArePropagatedToDirectories() {
+    Map<String, ZipEntry> oldEntries = new HashMap<>();
+    addEntry(oldEntries, "classes.dex", 1, 1000);
+    addEntry(oldEntries, "res/layout/main.xml", 2, 100);
+    addEntry(oldEntries, "res/drawable/removed.png", 3, 50);
+
+    Map<String, ZipEntry> newEntries = new HashMap<>();
+    addEntry(newEntries, "classes.dex", 4, 1200);
+    addEntry(newEntries, "res/layout/main.xml", 2, 100);
+    addEntry(newEntries, "res/layout/added.xml", 5, 30);
+
+    DefaultMutableTreeNode root = ZipEntryDiffTree.createTree("new.apk", oldEntries, newEntries);
+
+    ZipEntryDiffTree.Entry rootEntry = ZipEntryDiffTree.Entry.fromNode(root);
+    assertThat(rootEntry).isNotNull();
+    assertThat(rootEntry.getOldSize()).isEqualTo(1150);
+    assertThat(rootEntry.getNewSize()).isEqualTo(1330);
+    assertThat(rootEntry.isUnchanged()).isFalse();
+
+    // The largest difference comes first
+    assertThat(getEntry(root, 0).getName()).isEqualTo("classes.dex");
+    assertThat(getEntry(root, 0).getSize()).isEqualTo(200);
+
+    DefaultMutableTreeNode res = (DefaultMutableTreeNode)root.getChildAt(1);
+    assertThat(getEntry(root, 1).getPath()).isEqualTo("/res/");
+    assertThat(getEntry(root, 1).getSize()).isEqualTo(-20);
+
+    DefaultMutableTreeNode layout = findChild(res, "layout");
+    assertThat(ZipEntryDiffTree.Entry.fromNode(layout).getSize()).isEqualTo(30);
+    ZipEntryDiffTree.Entry main = ZipEntryDiffTree.Entry.fromNode(findChild(layout, "main.xml"));
+    assertThat(main.isUnchanged()).isTrue();
+    assertThat(main.getSize()).isEqualTo(0);
+
+    ZipEntryDiffTree.Entry removed = ZipEntryDiffTree.Entry.fromNode(findChild(findChild(res, "drawable"), "removed.png"));
+    assertThat(removed.getOldSize()).isEqualTo(50);
+    assertThat(removed.getNewSize()).isEqualTo(0);
+    assertThat(removed.isUnchanged()).isFalse();
+  }
+
+  private static void addEntry(@NotNull Map<String, ZipEntry> entries, @NotNull String name, long crc, long size) {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setCrc(crc);
+    entry.setSize(size);
+    // The compressed sizes are not used, since the complete diff tree shows the uncompressed sizes
+    entry.setCompressedSize(size / 2);
+    entries.put(name, entry);
+  }
+
+  @NotNull
+  private static ZipEntryDiffTree.Entry getEntry(@NotNull DefaultMutableTreeNode node, int index) {
+    ZipEntryDiffTree.Entry entry = ZipEntryDiffTree.Entry.fromNode(node.getChildAt(index));
+    assertThat(entry).isNotNull();
+    return entry;
+  }
+
+  @NotNull
+  private static DefaultMutableTreeNode findChild(@NotNull DefaultMutableTreeNode node, @NotNull String name) {
+    for (int i = 0; i < node.getChildCount(); i++) {
+      if (getEntry(node, i).getName().equals(name)) {
+        return (DefaultMutableTreeNode)node.getChildAt(i);
+      }
+    }
+    throw new AssertionError("No child named " + name);
+  }
+}
@@ -55,6 +55,7 @@ import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.ui.JBUI;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.event.InputEvent;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -81,6 +82,8 @@ public class Scene implements SelectionListener, Disposable {
 
   @SwingCoordinate
   private static final int DRAG_THRESHOLD = JBUI.scale(10);
+  /** Extra area repainted around the components when the hovered component changes, to include their targets */
+  @AndroidDpCoordinate private static final int HOVER_REPAINT_MARGIN = 20;
 
   private final DesignSurface myDesignSurface;
   private final SceneManager mySceneManager;
@@ -451,13 +454,28 @@ public class Scene implements SelectionListener, Disposable {
    * @param y
    */
   public void mouseHover(@NotNull SceneContext transform, @AndroidDpCoordinate int x, @AndroidDpCoordinate int y) {
+    mouseHover(transform, x, y, false);
+  }
+
+  /**
+   * Supports hover
+   *
+   * @param x
+   * @param y
+   * @param isDragging true if a mouse button is pressed. While dragging, targets can draw at the mouse position so the whole surface
+   *                   is repainted. Otherwise, only the regions affected by the hover changes are repainted.
+   */
+  private void mouseHover(@NotNull SceneContext transform, @AndroidDpCoordinate int x, @AndroidDpCoordinate int y, boolean isDragging) {
     myLastMouseX = x;
     myLastMouseY = y;
     if (myRoot != null) {
       myHoverListener.find(transform, myRoot, x, y);
       mySnapListener.find(transform, myRoot, x, y);
     }
-    repaint();
+    if (isDragging) {
+      repaint();
+    }
+    boolean targetsChanged = false;
     Target closestTarget = myHoverListener.getClosestTarget();
     String tooltip = null;
     if (myOverTarget != closestTarget) {
@@ -471,6 +489,7 @@ public class Scene implements SelectionListener, Disposable {
         myOverTarget = closestTarget;
         needsRebuildList();
       }
+      targetsChanged = true;
     }
     if (closestTarget != null) {
       tooltip = closestTarget.getToolTipText();
@@ -486,12 +505,14 @@ public class Scene implements SelectionListener, Disposable {
           mySnapTarget = closestTarget;
           needsRebuildList();
         }
+        targetsChanged = true;
       }
     }
     SceneComponent closestComponent = myHoverListener.getClosestComponent();
     if (closestComponent != null && tooltip == null) {
       tooltip = closestComponent.getNlComponent().getTooltipText();
     }
+    SceneComponent previousComponent = myCurrentComponent;
     if (myCurrentComponent != closestComponent) {
       if (myCurrentComponent != null) {
         myCurrentComponent.setDrawState(SceneComponent.DrawState.NORMAL);
@@ -503,10 +524,55 @@ public class Scene implements SelectionListener, Disposable {
       }
       needsRebuildList();
     }
+    if (!isDragging) {
+      if (targetsChanged) {
+        // Targets can draw anywhere (connections for example)
+        repaint();
+      }
+      else if (previousComponent != myCurrentComponent) {
+        repaintComponents(transform, previousComponent, myCurrentComponent);
+      }
+    }
     transform.setToolTip(tooltip);
     setCursor(transform, x, y);
   }
 
+  /**
+   * Repaints the region covered by the given components. The parent of each component is included since the parent decorator
+   * can draw the connections of its children, which depend on the draw state of the children.
+   */
+  private void repaintComponents(@NotNull SceneContext transform, @Nullable SceneComponent... components) {
+    DesignSurface surface = transform.getSurface();
+    if (surface == null) {
+      repaint();
+      return;
+    }
+
+    Rectangle dirtyRegion = null;
+    @AndroidDpCoordinate Rectangle rect = new Rectangle();
+    for (SceneComponent component : components) {
+      if (component == null) {
+        continue;
+      }
+      SceneComponent parent = component.getParent();
+      (parent != null ? parent : component).fillRect(rect);
+      rect.grow(HOVER_REPAINT_MARGIN, HOVER_REPAINT_MARGIN);
+      @SwingCoordinate Rectangle swingRect = new Rectangle(transform.getSwingXDip(rect.x),
+                                                           transform.getSwingYDip(rect.y),
+                                                           transform.getSwingDimensionDip(rect.width),
+                                                           transform.getSwingDimensionDip(rect.height));
+      if (dirtyRegion == null) {
+        dirtyRegion = swingRect;
+      }
+      else {
+        dirtyRegion.add(swingRect);
+      }
+    }
+    if (dirtyRegion != null) {
+      surface.repaintRegion(dirtyRegion);
+    }
+  }
+
   private void setCursor(@NotNull SceneContext transform, @AndroidDpCoordinate int x, @AndroidDpCoordinate int y) {
     myMouseCursor = Cursor.getDefaultCursor();
     if (myCurrentComponent != null && myCurrentComponent.isDragging()) {
@@ -662,7 +728,7 @@ public class Scene implements SelectionListener, Disposable {
       }
       myHitListener.skipTarget(null);
     }
-    mouseHover(transform, x, y);
+    mouseHover(transform, x, y, true);
     checkRequestLayoutStatus();
   }
 
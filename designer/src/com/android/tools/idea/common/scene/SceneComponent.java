@@ -21,6 +21,7 @@ import com.android.tools.idea.common.model.Coordinates;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.common.scene.decorator.SceneDecorator;
 import com.android.tools.idea.common.scene.draw.DisplayList;
+import com.android.tools.idea.common.scene.draw.DisplayListFragment;
 import com.android.tools.idea.common.scene.target.*;
 import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.uibuilder.api.ViewGroupHandler;
@@ -95,6 +96,9 @@ public class SceneComponent {
 
   @Nullable private Notch.Provider myNotchProvider = null;
 
+  /** Cached draw commands of this component, see {@link SceneDecorator#buildListComponent} */
+  @Nullable private DisplayListFragment myDisplayListFragment = null;
+
   @AndroidDpCoordinate
   public int getCenterX() {
     return myCurrentLeft + (myCurrentRight - myCurrentLeft) / 2;
@@ -595,6 +599,15 @@ public class SceneComponent {
     return myDecorator;
   }
 
+  @Nullable
+  public DisplayListFragment getDisplayListFragment() {
+    return myDisplayListFragment;
+  }
+
+  public void setDisplayListFragment(@Nullable DisplayListFragment fragment) {
+    myDisplayListFragment = fragment;
+  }
+
   @Nullable
   public Notch.Provider getNotchProvider() {
     return myNotchProvider;
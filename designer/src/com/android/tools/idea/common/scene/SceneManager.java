@@ -198,6 +198,8 @@ abstract public class SceneManager implements Disposable {
   protected final void updateFromComponent(@NotNull SceneComponent component, @NotNull Set<SceneComponent> seenComponents) {
     seenComponents.add(component);
 
+    // The component might be drawn differently after a render (resolved text, baseline...) so rebuild its draw commands
+    component.setDisplayListFragment(null);
     updateFromComponent(component);
 
     for (SceneComponent child : component.getChildren()) {
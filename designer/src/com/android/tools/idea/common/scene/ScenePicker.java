@@ -32,6 +32,18 @@ public class ScenePicker {
   private Object[] mObjects = new Object[INITAL_OBJECT_STORE];
   HitElementListener mHitElementListener;
 
+  // Spatial index: the bounding rect of every object is added to the buckets of the grid cells it overlaps.
+  // Cells are hashed into a fixed number of buckets so the index does not depend on the size of the scene.
+  private final static int CELL_SHIFT = 5; // 32x32 cells
+  private final static int BUCKET_BITS = 8;
+  private final static int BUCKET_COUNT = 1 << BUCKET_BITS;
+  private final static int MAX_CELLS_PER_OBJECT = 16;
+  private int[][] mBuckets = new int[BUCKET_COUNT][];
+  private int[] mBucketSizes = new int[BUCKET_COUNT];
+  // Objects too large to be added to the grid, they are tested for every search
+  private int[] mLargeObjects = new int[INITAL_OBJECT_STORE];
+  private int mLargeObjectCount = 0;
+
   private int mObjectCount = 0;
   private final static int OBJECT_LINE = 0;
   private final static int OBJECT_POINT = 1;
@@ -60,17 +72,75 @@ public class ScenePicker {
    * @param y location y
    */
   public void find(int x, int y) {
-    for (int i = 0; i < mObjectCount; i++) {
-      int p = i * 4;
-      int x1 = mRect[p++];
-      int y1 = mRect[p++];
-      int x2 = mRect[p++];
-      int y2 = mRect[p];
-      if (inRect(x, y, x1, y1, x2, y2)) {
-        SelectionEngine selector = myEngines[mTypes[i]];
-        if (selector.inRange(i, x, y)) {
-          mHitElementListener.over(mObjects[i], selector.distance());
+    int bucket = bucket(x >> CELL_SHIFT, y >> CELL_SHIFT);
+    int[] candidates = mBuckets[bucket];
+    int candidateCount = mBucketSizes[bucket];
+
+    // Merge the candidates from the grid and the large objects so the listener is notified in the order the objects were added
+    int i = 0;
+    int j = 0;
+    while (i < candidateCount || j < mLargeObjectCount) {
+      int object;
+      if (j == mLargeObjectCount || (i < candidateCount && candidates[i] < mLargeObjects[j])) {
+        object = candidates[i++];
+      }
+      else {
+        object = mLargeObjects[j++];
+      }
+      find(object, x, y);
+    }
+  }
+
+  private void find(int object, int x, int y) {
+    int p = object * 4;
+    int x1 = mRect[p++];
+    int y1 = mRect[p++];
+    int x2 = mRect[p++];
+    int y2 = mRect[p];
+    if (inRect(x, y, x1, y1, x2, y2)) {
+      SelectionEngine selector = myEngines[mTypes[object]];
+      if (selector.inRange(object, x, y)) {
+        mHitElementListener.over(mObjects[object], selector.distance());
+      }
+    }
+  }
+
+  private static int bucket(int cellX, int cellY) {
+    return (cellX * 0x9E3779B1 + cellY * 0x85EBCA77) >>> (32 - BUCKET_BITS);
+  }
+
+  /**
+   * Adds the object to the buckets of all the cells overlapped by its bounding rect
+   */
+  private void addToIndex(int object, int x1, int y1, int x2, int y2) {
+    int cellX1 = x1 >> CELL_SHIFT;
+    int cellY1 = y1 >> CELL_SHIFT;
+    int cellX2 = x2 >> CELL_SHIFT;
+    int cellY2 = y2 >> CELL_SHIFT;
+    if (cellX2 < cellX1 || cellY2 < cellY1 || (long)(cellX2 - cellX1 + 1) * (cellY2 - cellY1 + 1) > MAX_CELLS_PER_OBJECT) {
+      if (mLargeObjectCount == mLargeObjects.length) {
+        mLargeObjects = Arrays.copyOf(mLargeObjects, mLargeObjects.length * 2);
+      }
+      mLargeObjects[mLargeObjectCount++] = object;
+      return;
+    }
+
+    for (int cellY = cellY1; cellY <= cellY2; cellY++) {
+      for (int cellX = cellX1; cellX <= cellX2; cellX++) {
+        int bucket = bucket(cellX, cellY);
+        int size = mBucketSizes[bucket];
+        int[] objects = mBuckets[bucket];
+        if (size > 0 && objects[size - 1] == object) {
+          continue; // Another cell of this object is in the same bucket
+        }
+        if (objects == null) {
+          objects = mBuckets[bucket] = new int[8];
+        }
+        else if (size == objects.length) {
+          objects = mBuckets[bucket] = Arrays.copyOf(objects, size * 2);
         }
+        objects[size] = object;
+        mBucketSizes[bucket] = size + 1;
       }
     }
   }
@@ -114,6 +184,8 @@ public class ScenePicker {
   public void reset() {
     mObjectCount = 0;
     mObjectDataUsed = 0;
+    mLargeObjectCount = 0;
+    Arrays.fill(mBucketSizes, 0);
     Arrays.fill(mObjects, null);// delete references
   }
 
@@ -224,6 +296,7 @@ public class ScenePicker {
       mRect[off++] = y1;
       mRect[off++] = x2;
       mRect[off] = y2;
+      addToIndex(mObjectCount, x1, y1, x2, y2);
     }
 
     boolean inRange(int object, int x, int y) {
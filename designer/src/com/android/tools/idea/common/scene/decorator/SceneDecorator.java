@@ -18,6 +18,7 @@ package com.android.tools.idea.common.scene.decorator;
 import com.android.tools.idea.common.scene.SceneComponent;
 import com.android.tools.idea.common.scene.SceneContext;
 import com.android.tools.idea.common.scene.draw.DisplayList;
+import com.android.tools.idea.common.scene.draw.DisplayListFragment;
 import com.android.tools.idea.common.scene.draw.DrawComponentBackground;
 import com.android.tools.idea.common.scene.draw.DrawComponentFrame;
 import com.android.tools.idea.common.surface.SceneLayer;
@@ -67,13 +68,44 @@ public class SceneDecorator {
     buildListChildren(list, time, sceneContext, component);
   }
 
+  /**
+   * Adds the background, content and frame of the component.
+   * <p>
+   * When {@link #canCacheDisplayListFragment()} is true, the commands are kept in a {@link DisplayListFragment} in the component and
+   * reused while the component does not change, so rebuilding the display list after a hover or selection change only rebuilds the
+   * commands of the components affected by the change.
+   */
   public void buildListComponent(@NotNull DisplayList list,
                                  long time,
                                  @NotNull SceneContext sceneContext,
                                  @NotNull SceneComponent component) {
-    addBackground(list, sceneContext, component);
-    addContent(list, time, sceneContext, component);
-    addFrame(list, sceneContext, component);
+    if (!canCacheDisplayListFragment() || component.isDragging()) {
+      component.setDisplayListFragment(null);
+      addBackground(list, sceneContext, component);
+      addContent(list, time, sceneContext, component);
+      addFrame(list, sceneContext, component);
+      return;
+    }
+
+    DisplayListFragment fragment = component.getDisplayListFragment();
+    if (fragment == null || !fragment.isValid(time, sceneContext, component)) {
+      DisplayList fragmentList = new DisplayList();
+      addBackground(fragmentList, sceneContext, component);
+      addContent(fragmentList, time, sceneContext, component);
+      addFrame(fragmentList, sceneContext, component);
+      fragment = DisplayListFragment.create(time, sceneContext, component, fragmentList.getCommands());
+      component.setDisplayListFragment(fragment);
+    }
+    fragment.addTo(list);
+  }
+
+  /**
+   * Returns whether the commands built by {@link #buildListComponent} only depend on the component bounds, draw state and attributes
+   * and the {@link SceneContext} transform, so they can be cached between display lists. Decorators drawing content that can change
+   * without any of those changing (for example content loaded asynchronously) must return false.
+   */
+  protected boolean canCacheDisplayListFragment() {
+    return true;
   }
 
   protected void addContent(@NotNull DisplayList list,
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.scene.draw;
+
+import com.android.tools.adtui.common.SwingCoordinate;
+import com.android.tools.idea.common.model.AndroidDpCoordinate;
+import com.android.tools.idea.common.scene.SceneComponent;
+import com.android.tools.idea.common.scene.SceneContext;
+import com.android.tools.idea.uibuilder.handlers.constraint.drawing.ColorSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link DrawCommand}s built for a single {@link SceneComponent} (background, content and frame) together with the state
+ * of the component used to build them. The commands can be added again to the following display lists as long as that state
+ * does not change, so only the components that changed need to be rebuilt.
+ */
+public final class DisplayListFragment {
+  @AndroidDpCoordinate private final Rectangle myRect = new Rectangle();
+  @AndroidDpCoordinate private final Rectangle myDrawRect = new Rectangle();
+  @SwingCoordinate private final int mySwingOriginX;
+  @SwingCoordinate private final int mySwingOriginY;
+  private final double myScale;
+  private final ColorSet myColorSet;
+  private final boolean myShowOnlySelection;
+  private final SceneComponent.DrawState myDrawState;
+  private final boolean myIsSelected;
+  private final boolean myIsToolLocked;
+  private final long myModelVersion;
+  private final List<DrawCommand> myCommands;
+
+  private DisplayListFragment(long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component,
+                              @NotNull List<DrawCommand> commands) {
+    component.fillRect(myRect);
+    component.fillDrawRect(time, myDrawRect);
+    mySwingOriginX = sceneContext.getSwingXDip(0);
+    mySwingOriginY = sceneContext.getSwingYDip(0);
+    myScale = sceneContext.getScale();
+    myColorSet = sceneContext.getColorSet();
+    myShowOnlySelection = sceneContext.showOnlySelection();
+    myDrawState = component.getDrawState();
+    myIsSelected = component.isSelected();
+    myIsToolLocked = component.isToolLocked();
+    myModelVersion = component.getNlComponent().getModel().getModificationCount();
+    myCommands = new ArrayList<>(commands);
+  }
+
+  /**
+   * Creates a new fragment for the given commands, built for the current state of the component
+   */
+  @NotNull
+  public static DisplayListFragment create(long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component,
+                                           @NotNull List<DrawCommand> commands) {
+    return new DisplayListFragment(time, sceneContext, component, commands);
+  }
+
+  /**
+   * Returns true if the commands of this fragment are still valid for the current state of the component
+   */
+  @SuppressWarnings("FloatingPointEquality")  // The scale is compared to detect any change, like in Display
+  public boolean isValid(long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+    return myDrawState == component.getDrawState() &&
+           myIsSelected == component.isSelected() &&
+           myIsToolLocked == component.isToolLocked() &&
+           myScale == sceneContext.getScale() &&
+           myColorSet == sceneContext.getColorSet() &&
+           myShowOnlySelection == sceneContext.showOnlySelection() &&
+           mySwingOriginX == sceneContext.getSwingXDip(0) &&
+           mySwingOriginY == sceneContext.getSwingYDip(0) &&
+           myModelVersion == component.getNlComponent().getModel().getModificationCount() &&
+           myRect.equals(component.fillRect(null)) &&
+           myDrawRect.equals(component.fillDrawRect(time, null));
+  }
+
+  public void addTo(@NotNull DisplayList list) {
+    for (DrawCommand command : myCommands) {
+      list.add(command);
+    }
+  }
+}
@@ -69,6 +69,7 @@ import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.components.Magnificator;
 import com.intellij.util.Alarm;
 import com.intellij.util.ui.AsyncProcessIcon;
+import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
 import com.intellij.util.ui.update.MergingUpdateQueue;
 import java.awt.AWTEvent;
@@ -78,6 +79,7 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.AdjustmentEvent;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
@@ -89,6 +91,7 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import javax.annotation.concurrent.GuardedBy;
 import javax.swing.JComponent;
 import javax.swing.JLayeredPane;
 import javax.swing.JPanel;
@@ -109,6 +112,7 @@ import org.jetbrains.annotations.Nullable;
  */
 public abstract class DesignSurface extends EditorDesignSurface implements Disposable, DataProvider {
   private static final Integer LAYER_PROGRESS = JLayeredPane.POPUP_LAYER + 100;
+  @SwingCoordinate private static final int SCENE_VIEW_REPAINT_MARGIN = JBUI.scale(20);
 
   private final Project myProject;
 
@@ -491,18 +495,76 @@ public abstract class DesignSurface extends EditorDesignSurface implements Dispo
     return myGlassPane;
   }
 
-  private Timer myRepaintTimer = new Timer(15, (actionEvent) -> { repaint(); });
+  private Timer myRepaintTimer = new Timer(15, (actionEvent) -> { repaintDirtyRegion(); });
+  /** Protects the pending repaint state since repaints can be requested from any thread */
+  private final Object myRepaintLock = new Object();
+  /** Region waiting to be repainted by {@link #myRepaintTimer}, in the coordinates of the {@link SceneView}s */
+  @GuardedBy("myRepaintLock")
+  @SwingCoordinate private final Rectangle myDirtyRegion = new Rectangle();
+  @GuardedBy("myRepaintLock")
+  private boolean myNeedsFullRepaint;
 
   /**
    * Call this to generate repaints
    */
   public void needsRepaint() {
-     if (!myRepaintTimer.isRunning()) {
+    synchronized (myRepaintLock) {
+      myNeedsFullRepaint = true;
+    }
+    startRepaintTimer();
+  }
+
+  /**
+   * Call this to generate a repaint of the given {@link SceneView} only. Requests received before the repaint happens are merged.
+   */
+  public void needsRepaint(@NotNull SceneView sceneView) {
+    Dimension size = sceneView.getSize(null);
+    Rectangle region = new Rectangle(sceneView.getX(), sceneView.getY(), size.width, size.height);
+    // Decorations (anchors, resize handles...) can be drawn slightly outside of the view
+    region.grow(SCENE_VIEW_REPAINT_MARGIN, SCENE_VIEW_REPAINT_MARGIN);
+    synchronized (myRepaintLock) {
+      if (myDirtyRegion.isEmpty()) {
+        myDirtyRegion.setBounds(region);
+      }
+      else {
+        myDirtyRegion.add(region);
+      }
+    }
+    startRepaintTimer();
+  }
+
+  private void startRepaintTimer() {
+    if (!myRepaintTimer.isRunning()) {
       myRepaintTimer.setRepeats(false);
       myRepaintTimer.start();
     }
   }
 
+  private void repaintDirtyRegion() {
+    boolean needsFullRepaint;
+    Rectangle dirtyRegion;
+    synchronized (myRepaintLock) {
+      needsFullRepaint = myNeedsFullRepaint;
+      dirtyRegion = new Rectangle(myDirtyRegion);
+      myNeedsFullRepaint = false;
+      myDirtyRegion.setBounds(0, 0, 0, 0);
+    }
+
+    if (needsFullRepaint) {
+      repaint();
+    }
+    else if (!dirtyRegion.isEmpty()) {
+      repaintRegion(dirtyRegion);
+    }
+  }
+
+  /**
+   * Repaints the given region of the surface. The region is in the coordinates of the {@link SceneView}s.
+   */
+  public void repaintRegion(@SwingCoordinate @NotNull Rectangle region) {
+    myLayeredPane.repaint(region);
+  }
+
   @Override
   protected void paintChildren(Graphics graphics) {
     super.paintChildren(graphics);
@@ -32,6 +32,7 @@ import com.android.tools.idea.common.scene.SceneManager;
 import com.android.tools.idea.common.scene.TemporarySceneComponent;
 import com.android.tools.idea.common.scene.decorator.SceneDecoratorFactory;
 import com.android.tools.idea.common.surface.SceneView;
+import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.naveditor.model.ActionType;
 import com.android.tools.idea.naveditor.model.NavComponentHelperKt;
 import com.android.tools.idea.naveditor.model.NavCoordinate;
@@ -49,8 +50,10 @@ import com.android.tools.idea.rendering.RenderSettings;
 import com.android.tools.idea.rendering.parsers.TagSnapshot;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.undo.BasicUndoableAction;
 import com.intellij.openapi.command.undo.UndoManager;
+import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
@@ -58,6 +61,7 @@ import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -104,6 +108,9 @@ public class NavSceneManager extends SceneManager {
 
   private SceneDecoratorFactory myDecoratorFactory;
 
+  /** The navigation whose destination thumbnails were last prefetched */
+  @Nullable private NlComponent myPrefetchedNavigation;
+
   public NavSceneManager(@NotNull NlModel model, @NotNull NavDesignSurface surface, @NotNull RenderSettings settings) {
     super(model, surface, settings);
     createSceneView();
@@ -410,10 +417,56 @@ public class NavSceneManager extends SceneManager {
     if (wasEmpty) {
       getDesignSurface().zoomToFit();
     }
+    NlComponent navigation = getDesignSurface().getCurrentNavigation();
+    if (root != null && navigation != myPrefetchedNavigation && !ApplicationManager.getApplication().isUnitTestMode()) {
+      myPrefetchedNavigation = navigation;
+      prefetchThumbnails(root);
+    }
 
     return CompletableFuture.completedFuture(null);
   }
 
+  /**
+   * Starts rendering the thumbnails of the destinations of the current navigation in the background, starting with the ones closest
+   * to the center of the visible area, so that they are ready by the time they are drawn.
+   */
+  private void prefetchThumbnails(@NotNull SceneComponent root) {
+    NavDesignSurface surface = getDesignSurface();
+    Configuration configuration = surface.getConfiguration();
+    SceneView view = surface.getCurrentSceneView();
+    if (configuration == null || view == null) {
+      return;
+    }
+
+    @SwingCoordinate Point scrollPosition = surface.getScrollPosition();
+    @SwingCoordinate Dimension extentSize = surface.getExtentSize();
+    @NavCoordinate int centerX = Coordinates.getAndroidXDip(view, scrollPosition.x + extentSize.width / 2);
+    @NavCoordinate int centerY = Coordinates.getAndroidYDip(view, scrollPosition.y + extentSize.height / 2);
+
+    List<SceneComponent> destinations = new ArrayList<>(root.getChildren());
+    destinations.sort(Comparator.comparingLong(destination -> {
+      long dx = destination.getDrawX() + destination.getDrawWidth() / 2 - centerX;
+      long dy = destination.getDrawY() + destination.getDrawHeight() / 2 - centerY;
+      return dx * dx + dy * dy;
+    }));
+
+    List<XmlFile> layoutFiles = new ArrayList<>();
+    for (SceneComponent destination : destinations) {
+      NlComponent component = destination.getNlComponent();
+      String layout = NavComponentHelperKt.getLayout(component);
+      if (layout == null) {
+        continue;
+      }
+      XmlFile layoutFile = ThumbnailManagerKt.resolveLayoutFile(component, layout, configuration);
+      if (layoutFile != null && !layoutFiles.contains(layoutFile)) {
+        layoutFiles.add(layoutFile);
+      }
+    }
+    if (!layoutFiles.isEmpty()) {
+      ThumbnailManager.getInstance(getModel().getFacet()).prefetchThumbnails(layoutFiles, configuration);
+    }
+  }
+
   private void layoutAll(@NotNull SceneComponent root) {
     List<SceneComponent> destinations = new ArrayList<>();
 
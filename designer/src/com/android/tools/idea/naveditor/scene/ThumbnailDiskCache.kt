@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.naveditor.scene
+
+import com.android.annotations.VisibleForTesting
+import com.google.common.hash.Hashing
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.util.io.FileUtil
+import java.awt.image.BufferedImage
+import java.io.File
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import javax.imageio.ImageIO
+
+private const val CACHE_DIRECTORY = "nav_thumbnails"
+private const val CACHE_VERSION = 1
+private val DEFAULT_MAX_BYTES = java.lang.Long.getLong("nav.thumbnail.cache.bytes", 64L * 1024 * 1024)
+
+/**
+ * Stores the full size renders of the nav editor thumbnails on disk, so they are not lost when the in-memory soft references are
+ * cleared.
+ *
+ * The images are indexed by a key built from everything the render depends on, see [createKey]. When the cache grows over its
+ * maximum size, the least recently used images are deleted.
+ */
+class ThumbnailDiskCache @VisibleForTesting constructor(private val cacheRootDir: File, private val maxBytes: Long) {
+  private val cacheDir = File(cacheRootDir, "v$CACHE_VERSION")
+  private val lock = Any()
+
+  fun get(key: String): BufferedImage? {
+    val file = File(cacheDir, "$key.png")
+    if (!file.isFile) {
+      return null
+    }
+    return try {
+      val image = ImageIO.read(file)
+      // Used to find the least recently used images when the cache is full
+      file.setLastModified(System.currentTimeMillis())
+      image
+    }
+    catch (e: IOException) {
+      LOG.debug(e)
+      null
+    }
+  }
+
+  fun put(key: String, image: BufferedImage) {
+    synchronized(lock) {
+      if (!cacheDir.isDirectory && !cacheDir.mkdirs()) {
+        return
+      }
+      val file = File(cacheDir, "$key.png")
+      try {
+        // Write to a temporary file first so other IDE instances never read a partially written image
+        val tmp = FileUtil.createTempFile(cacheDir, key, ".tmp", true, false)
+        if (!ImageIO.write(image, "png", tmp)) {
+          FileUtil.delete(tmp)
+          return
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      }
+      catch (e: IOException) {
+        LOG.debug("Unable to save thumbnail", e)
+        return
+      }
+      pruneImages()
+    }
+  }
+
+  /**
+   * Deletes the images saved by other versions of the cache and, if the cache is over its maximum size, the least recently used images.
+   */
+  fun prune() {
+    synchronized(lock) {
+      cacheRootDir.listFiles()?.filter { it != cacheDir }?.forEach { FileUtil.delete(it) }
+      pruneImages()
+    }
+  }
+
+  private fun pruneImages() {
+    val files = cacheDir.listFiles { file -> file.name.endsWith(".png") } ?: return
+    var totalBytes = files.map { it.length() }.sum()
+    if (totalBytes <= maxBytes) {
+      return
+    }
+    // Leave some room so we do not prune again on the next write
+    for (file in files.sortedBy { it.lastModified() }) {
+      if (totalBytes <= maxBytes * 3 / 4) {
+        break
+      }
+      val length = file.length()
+      if (FileUtil.delete(file)) {
+        totalBytes -= length
+      }
+    }
+  }
+
+  companion object {
+    private val LOG = Logger.getInstance(ThumbnailDiskCache::class.java)
+    private val instance by lazy {
+      ThumbnailDiskCache(File(PathManager.getSystemPath(), CACHE_DIRECTORY), DEFAULT_MAX_BYTES).also {
+        ApplicationManager.getApplication().executeOnPooledThread { it.prune() }
+      }
+    }
+
+    @JvmStatic
+    fun getInstance(): ThumbnailDiskCache = instance
+
+    /**
+     * Creates the key of a thumbnail from the contents of the layout, the configuration used to render it and the fingerprint of the
+     * project resources and build outputs.
+     */
+    @JvmStatic
+    fun createKey(layoutText: String, configurationKey: String, renderVersion: String): String {
+      return Hashing.murmur3_128().newHasher()
+        .putString(layoutText, StandardCharsets.UTF_8)
+        .putString(configurationKey, StandardCharsets.UTF_8)
+        .putString(renderVersion, StandardCharsets.UTF_8)
+        .hash()
+        .toString()
+    }
+  }
+}
@@ -16,32 +16,57 @@
 package com.android.tools.idea.naveditor.scene
 
 import com.android.annotations.VisibleForTesting
+import com.android.resources.ResourceType
+import com.android.resources.ResourceUrl
 import com.android.tools.adtui.ImageUtils
+import com.android.tools.idea.AndroidPsiUtils
+import com.android.tools.idea.common.model.NlComponent
 import com.android.tools.idea.configurations.Configuration
 import com.android.tools.idea.rendering.RenderResult
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
 import com.android.tools.idea.res.LocalResourceRepository
+import com.android.tools.idea.res.ResourceNotificationManager
 import com.android.tools.idea.res.ResourceRepositoryManager
+import com.android.tools.idea.res.resolve
 import com.google.common.collect.HashBasedTable
+import com.google.common.hash.Hashing
 import com.google.common.util.concurrent.ListenableFuture
 import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.roots.OrderEnumerator
 import com.intellij.openapi.util.Key
+import com.intellij.openapi.vfs.VfsUtil
+import com.intellij.openapi.vfs.VfsUtilCore
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.xml.XmlFile
 import com.intellij.reference.SoftReference
 import com.intellij.util.ui.UIUtil
 import org.jetbrains.android.facet.AndroidFacet
 import org.jetbrains.android.facet.AndroidFacetScopedService
+import org.jetbrains.android.facet.ResourceFolderManager
+import org.jetbrains.android.util.AndroidUtils
 import java.awt.Dimension
 import java.awt.image.BufferedImage
+import java.io.File
+import java.nio.charset.StandardCharsets
 import java.util.HashMap
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Future
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import javax.annotation.concurrent.GuardedBy
 
 private val KEY = Key.create<ThumbnailManager>(ThumbnailManager::class.java.name)
 
+/**
+ * Version of everything a thumbnail depends on besides the layout file and the configuration: the resources, including unsaved
+ * edits of included layouts, and the project builds and syncs, which update the custom view classes.
+ */
+private data class RenderVersion(val resources: Long, val project: Long)
+
 data class RefinableImage(val image: BufferedImage? = null, val refined: CompletableFuture<RefinableImage>? = null) {
   val lastCompleted
     get() = generateSequence(this) { if (it.refined?.isDone == true) it.refined.get() else null }.last()
@@ -50,23 +75,61 @@ data class RefinableImage(val image: BufferedImage? = null, val refined: Complet
     get() = generateSequence(this) { it.refined?.get() }.last().image
 }
 
+/**
+ * Returns the layout file referenced by the tools:layout attribute value [layout] of a destination, or null if it can't be resolved.
+ */
+fun resolveLayoutFile(component: NlComponent, layout: String, configuration: Configuration): XmlFile? {
+  val resourceUrl = ResourceUrl.parse(layout) ?: return null
+  if (resourceUrl.type != ResourceType.LAYOUT) {
+    return null
+  }
+  val resourceResolver = configuration.resourceResolver
+  val resourceValue = ApplicationManager.getApplication().runReadAction<String> {
+    resourceResolver?.resolve(resourceUrl, component.tag)?.value
+  } ?: return null
+
+  val file = File(resourceValue)
+  if (!file.exists()) {
+    return null
+  }
+  val virtualFile = VfsUtil.findFileByIoFile(file, false) ?: return null
+  return AndroidPsiUtils.getPsiFileSafely(component.model.project, virtualFile) as? XmlFile
+}
+
 /**
  * Creates and caches preview images of screens in the nav editor.
+ *
+ * The full size renders are kept in memory as soft references and, if [myDiskCache] is not null, also saved to disk so they can be
+ * reloaded when the soft references are cleared.
  */
-open class ThumbnailManager protected constructor(facet: AndroidFacet) : AndroidFacetScopedService(facet) {
+open class ThumbnailManager protected constructor(facet: AndroidFacet, private val myDiskCache: ThumbnailDiskCache?)
+  : AndroidFacetScopedService(facet) {
+
+  protected constructor(facet: AndroidFacet)
+    : this(facet, if (ApplicationManager.getApplication().isUnitTestMode) null else ThumbnailDiskCache.getInstance())
 
   private val myImages = HashBasedTable.create<VirtualFile, Configuration, SoftReference<BufferedImage>?>()
   private val myScaledImages = HashBasedTable.create<VirtualFile, Configuration, MutableMap<Dimension, SoftReference<BufferedImage>?>?>()
-  private val myRenderVersions = HashBasedTable.create<VirtualFile, Configuration, Long>()
+  private val myRenderVersions = HashBasedTable.create<VirtualFile, Configuration, RenderVersion>()
   private val myRenderModStamps = HashBasedTable.create<VirtualFile, Configuration, Long>()
   private val myResourceRepository: LocalResourceRepository = ResourceRepositoryManager.getAppResources(facet)
 
   @GuardedBy("disposalLock")
   private val myPendingFutures = HashMap<VirtualFile, CompletableFuture<RefinableImage>>()
 
+  @GuardedBy("disposalLock")
+  private val myPendingRenders = HashBasedTable.create<VirtualFile, Configuration, CompletableFuture<BufferedImage?>>()
+
   @GuardedBy("disposalLock")
   private var myDisposed: Boolean = false
 
+  private val myPrefetchGeneration = AtomicInteger()
+
+  @GuardedBy("myFingerprintLock")
+  private var myFingerprint: Pair<RenderVersion, String>? = null
+
+  private val myFingerprintLock = Any()
+
   private val disposalLock = Any()
 
   override fun onDispose() {
@@ -75,6 +138,7 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
       myDisposed = true
       futures = myPendingFutures.values.toTypedArray()
       myPendingFutures.clear()
+      myPendingRenders.clear()
     }
     try {
       CompletableFuture.allOf(*futures).get(5, TimeUnit.SECONDS)
@@ -98,7 +162,7 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
     }
     val cached = cachedByDimension[dimensions]?.get()
     return if (cached != null &&
-               myRenderVersions.get(file, configuration) == myResourceRepository.modificationCount &&
+               myRenderVersions.get(file, configuration) == getRenderVersion() &&
                myRenderModStamps.get(file, configuration) == file.timeStamp) {
       RefinableImage(cached)
     }
@@ -172,12 +236,17 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
     val file = xmlFile.virtualFile
     val fullSize = myImages[file, configuration]?.get()
     return if (fullSize != null &&
-               myRenderVersions.get(file, configuration) == myResourceRepository.modificationCount &&
+               myRenderVersions.get(file, configuration) == getRenderVersion() &&
                myRenderModStamps.get(file, configuration) == file.timeStamp) {
       CompletableFuture.completedFuture(fullSize)
     }
     else {
       val result = CompletableFuture<BufferedImage?>()
+      synchronized(disposalLock) {
+        // Share the render with any other request for the same file, e.g. a prefetch
+        myPendingRenders[file, configuration]?.let { return it }
+        myPendingRenders.put(file, configuration, result)
+      }
       // TODO we run in a separate thread because task.render() currently isn't asynchronous
       // if inflate() (which is itself synchronous) hasn't already been called.
       ApplicationManager.getApplication().executeOnPooledThread {
@@ -188,11 +257,42 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
         catch (t: Throwable) {
           result.completeExceptionally(t)
         }
+        finally {
+          synchronized(disposalLock) {
+            myPendingRenders.remove(file, configuration)
+          }
+        }
       }
       result
     }
   }
 
+  /**
+   * Renders the given layouts in the background, one at a time and in the given order, so the thumbnails are available by the time
+   * the destinations are drawn. A new call replaces the layouts still pending from the previous one.
+   */
+  fun prefetchThumbnails(xmlFiles: List<XmlFile>, configuration: Configuration): Future<*> {
+    val generation = myPrefetchGeneration.incrementAndGet()
+    return ApplicationManager.getApplication().executeOnPooledThread {
+      for (xmlFile in xmlFiles) {
+        synchronized(disposalLock) {
+          if (myDisposed) {
+            return@executeOnPooledThread
+          }
+        }
+        if (myPrefetchGeneration.get() != generation) {
+          return@executeOnPooledThread
+        }
+        try {
+          getFullImage(configuration, xmlFile).get()
+        }
+        catch (e: Exception) {
+          LOG.debug("Unable to prefetch thumbnail", e)
+        }
+      }
+    }
+  }
+
   private fun previewScaleImage(image: BufferedImage, dimensions: Dimension): BufferedImage {
     val scaled = UIUtil.createImage(dimensions.width, dimensions.height, BufferedImage.TYPE_INT_ARGB)
     scaled.graphics.drawImage(image, 0, 0, dimensions.width, dimensions.height, null)
@@ -219,23 +319,100 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
   }
 
   private fun getImage(xmlFile: XmlFile, file: VirtualFile, configuration: Configuration): BufferedImage? {
-    val renderService = RenderService.getInstance(module.project)
-    val task = createTask(facet, xmlFile, configuration, renderService)
-    var renderResult: ListenableFuture<RenderResult>? = null
-    if (task != null) {
-      renderResult = task.render()
-    }
-    var image: BufferedImage? = null
-    if (renderResult != null) {
+    val renderVersion = getRenderVersion()
+    val modStamp = file.timeStamp
+    val diskCacheKey = myDiskCache?.let { getDiskCacheKey(xmlFile, configuration, renderVersion) }
+    var image = diskCacheKey?.let { myDiskCache?.get(it) }
+    if (image == null) {
+      val renderService = RenderService.getInstance(module.project)
+      val task = createTask(facet, xmlFile, configuration, renderService)
+      var renderResult: ListenableFuture<RenderResult>? = null
+      if (task != null) {
+        renderResult = task.render()
+      }
+      if (renderResult == null) {
+        return null
+      }
       // This should also be done in a listener if task.render() were actually async.
       image = renderResult.get().renderedImage.copy
-      myImages.put(file, configuration, SoftReference<BufferedImage>(image))
-      myRenderVersions.put(file, configuration, myResourceRepository.modificationCount)
-      myRenderModStamps.put(file, configuration, file.timeStamp)
+      if (image != null && diskCacheKey != null) {
+        myDiskCache?.put(diskCacheKey, image)
+      }
     }
+    myImages.put(file, configuration, SoftReference<BufferedImage>(image))
+    myRenderVersions.put(file, configuration, renderVersion)
+    myRenderModStamps.put(file, configuration, modStamp)
     return image
   }
 
+  private fun getDiskCacheKey(xmlFile: XmlFile, configuration: Configuration, renderVersion: RenderVersion): String? {
+    val layoutText = ReadAction.compute<String?, RuntimeException> { if (xmlFile.isValid) xmlFile.text else null } ?: return null
+    val configurationKey = listOf(configuration.device?.id,
+                                  configuration.fullConfig.qualifierString,
+                                  configuration.theme,
+                                  configuration.target?.hashString()).joinToString("|")
+    return ThumbnailDiskCache.createKey(layoutText, configurationKey, getFingerprint(renderVersion))
+  }
+
+  /**
+   * Returns a fingerprint of the resources and classes the thumbnails depend on that, unlike [RenderVersion], is the same across IDE
+   * sessions. It is only recomputed when the [RenderVersion] changes.
+   */
+  private fun getFingerprint(renderVersion: RenderVersion): String {
+    synchronized(myFingerprintLock) {
+      myFingerprint?.let { (version, fingerprint) -> if (version == renderVersion) return fingerprint }
+    }
+    val fingerprint = ReadAction.compute<String, RuntimeException> { computeFingerprint() }
+    synchronized(myFingerprintLock) {
+      myFingerprint = renderVersion to fingerprint
+    }
+    return fingerprint
+  }
+
+  /**
+   * Hashes the paths, sizes and time stamps of the resource files of this module and its Android dependencies, the text of the ones
+   * with unsaved changes, and the class roots of the module, which are updated by the builds and syncs.
+   */
+  private fun computeFingerprint(): String {
+    val hasher = Hashing.murmur3_128().newHasher()
+    val resourceDirs = (listOf(facet) + AndroidUtils.getAllAndroidDependencies(module, false))
+      .flatMap { ResourceFolderManager.getInstance(it).folders }
+      .filter { it.isValid }
+      .distinct()
+    for (resourceDir in resourceDirs) {
+      VfsUtilCore.iterateChildrenRecursively(resourceDir, null) { file ->
+        hasher.putString(file.path, StandardCharsets.UTF_8).putLong(file.timeStamp).putLong(file.length)
+        true
+      }
+    }
+
+    val documentManager = FileDocumentManager.getInstance()
+    for (document in documentManager.unsavedDocuments) {
+      val file = documentManager.getFile(document) ?: continue
+      if (resourceDirs.any { VfsUtilCore.isAncestor(it, file, false) }) {
+        hasher.putString(file.path, StandardCharsets.UTF_8).putString(document.immutableCharSequence, StandardCharsets.UTF_8)
+      }
+    }
+
+    for (root in OrderEnumerator.orderEntries(module).recursively().withoutSdk().classes().roots) {
+      // Jars are identified by their local file, directories by all the files they contain
+      val localRoot = VfsUtilCore.getVirtualFileForJar(root)
+      if (localRoot != null) {
+        hasher.putString(localRoot.path, StandardCharsets.UTF_8).putLong(localRoot.timeStamp).putLong(localRoot.length)
+      }
+      else if (root.isInLocalFileSystem) {
+        VfsUtilCore.iterateChildrenRecursively(root, null) { file ->
+          hasher.putString(file.path, StandardCharsets.UTF_8).putLong(file.timeStamp).putLong(file.length)
+          true
+        }
+      }
+    }
+    return hasher.hash().toString()
+  }
+
+  private fun getRenderVersion() =
+    RenderVersion(myResourceRepository.modificationCount, ResourceNotificationManager.getInstance(module.project).modificationCount)
+
   protected open fun createTask(facet: AndroidFacet,
                                 file: XmlFile,
                                 configuration: Configuration,
@@ -250,6 +427,8 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
   override fun onServiceDisposal(facet: AndroidFacet) {}
 
   companion object {
+    private val LOG = Logger.getInstance(ThumbnailManager::class.java)
+
     @JvmStatic
     fun getInstance(facet: AndroidFacet): ThumbnailManager {
       var manager = facet.getUserData(KEY)
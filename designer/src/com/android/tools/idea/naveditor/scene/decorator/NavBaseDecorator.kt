@@ -31,6 +31,9 @@ val HIGHLIGHTED_FRAME_THICKNESS = JBUI.scale(2f)
 
 
 abstract class NavBaseDecorator : SceneDecorator() {
+  // Destination thumbnails are rendered asynchronously so the content can change at any time
+  override fun canCacheDisplayListFragment() = false
+
   override fun addFrame(list: DisplayList, sceneContext: SceneContext, component: SceneComponent) {
   }
 
@@ -16,10 +16,7 @@
 package com.android.tools.idea.naveditor.scene.decorator
 
 import com.android.SdkConstants
-import com.android.resources.ResourceType
-import com.android.resources.ResourceUrl
 import com.android.tools.adtui.common.SwingCoordinate
-import com.android.tools.idea.AndroidPsiUtils
 import com.android.tools.idea.common.scene.SceneComponent
 import com.android.tools.idea.common.scene.SceneContext
 import com.android.tools.idea.common.scene.draw.DisplayList
@@ -32,16 +29,12 @@ import com.android.tools.idea.naveditor.scene.NavColorSet.PLACEHOLDER_BACKGROUND
 import com.android.tools.idea.naveditor.scene.NavColorSet.PLACEHOLDER_BORDER_COLOR
 import com.android.tools.idea.naveditor.scene.RefinableImage
 import com.android.tools.idea.naveditor.scene.ThumbnailManager
+import com.android.tools.idea.naveditor.scene.resolveLayoutFile
 import com.android.tools.idea.naveditor.scene.draw.DrawNavScreen
-import com.android.tools.idea.res.resolve
-import com.intellij.openapi.application.ApplicationManager
-import com.intellij.openapi.vfs.VfsUtil
-import com.intellij.psi.xml.XmlFile
 import java.awt.BasicStroke
 import java.awt.Dimension
 import java.awt.geom.Point2D
 import java.awt.geom.Rectangle2D
-import java.io.File
 
 /**
  * [NavScreenDecorator] Base class for navigation decorators.
@@ -106,22 +99,7 @@ abstract class NavScreenDecorator : NavBaseDecorator() {
     val configuration = surface.configuration ?: return empty
     val facet = surface.model?.facet ?: return empty
 
-    val resourceUrl = ResourceUrl.parse(layout) ?: return empty
-    if (resourceUrl.type != ResourceType.LAYOUT) {
-      return empty
-    }
-    val resourceResolver = configuration.resourceResolver
-    val resourceValue = ApplicationManager.getApplication().runReadAction<String> {
-      resourceResolver?.resolve(resourceUrl, component.nlComponent.tag)?.value
-    } ?: return empty
-
-    val file = File(resourceValue)
-    if (!file.exists()) {
-      return empty
-    }
-    val virtualFile = VfsUtil.findFileByIoFile(file, false) ?: return empty
-
-    val psiFile = AndroidPsiUtils.getPsiFileSafely(surface.project, virtualFile) as? XmlFile ?: return empty
+    val psiFile = resolveLayoutFile(component.nlComponent, layout, configuration) ?: return empty
     val manager = ThumbnailManager.getInstance(facet)
     return manager.getThumbnail(psiFile, configuration, dimensions)
   }
@@ -16,6 +16,9 @@
 package com.android.tools.idea.uibuilder.layout3d;
 
 import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This is a collection of code to rasterize code
@@ -267,9 +270,23 @@ public class Rasterize {
                                               float tx1, float ty1,
                                               float tx2, float ty2,
                                               float tx3, float ty3,
-                                              int[] texture, int tWidth, int tHeight, double[] matrix)
+                                              int[] texture, int tWidth, int tHeight, double[] matrix) {
+    render_perspectiveAffine(zbuff, rgb, w, h, fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3, tx1, ty1, tx2, ty2, tx3, ty3,
+                             texture, tWidth, tHeight, matrix, 0, 0, w, h);
+  }
 
-  {
+  /**
+   * Render a myTexture including use of zbuffer, only touching the pixels inside the given clip rectangle
+   */
+  public static void render_perspectiveAffine(float[] zbuff, int[] rgb, int w, int h,
+                                              float fx1, float fy1, float fz1,
+                                              float fx2, float fy2, float fz2,
+                                              float fx3, float fy3, float fz3,
+                                              float tx1, float ty1,
+                                              float tx2, float ty2,
+                                              float tx3, float ty3,
+                                              int[] texture, int tWidth, int tHeight, double[] matrix,
+                                              int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
     if (((fx1 - fx2) * (fy3 - fy2) - (fy1 - fy2) * (fx3 - fx2)) < 0) {
       float tmpx = fx1;
       float tmpy = fy1;
@@ -376,17 +393,17 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipMinY) {
+      miny = clipMinY;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipMinX) {
+      minx = clipMinX;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipMaxX) {
+      maxx = clipMaxX;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipMaxY) {
+      maxy = clipMaxY;
     }
     int off = miny * w;
 
@@ -822,15 +839,24 @@ public class Rasterize {
   }
 
   /**
-   * Render a myTexture including use of zbuffer
+   * Render a flat shaded triangle including use of zbuffer
    */
   public static void flat(float[] zbuff, int[] rgb, int w, int h,
                           float fx1, float fy1, float fz1,
                           float fx2, float fy2, float fz2,
                           float fx3, float fy3, float fz3,
-                          int color)
+                          int color) {
+    flat(zbuff, rgb, w, h, fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3, color, 0, 0, w, h);
+  }
 
-  {
+  /**
+   * Render a flat shaded triangle including use of zbuffer, only touching the pixels inside the given clip rectangle
+   */
+  public static void flat(float[] zbuff, int[] rgb, int w, int h,
+                          float fx1, float fy1, float fz1,
+                          float fx2, float fy2, float fz2,
+                          float fx3, float fy3, float fz3,
+                          int color, int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
     if (((fx1 - fx2) * (fy3 - fy2) - (fy1 - fy2) * (fx3 - fx2)) < 0) {
       float tmpx = fx1;
       float tmpy = fy1;
@@ -908,17 +934,17 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipMinY) {
+      miny = clipMinY;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipMinX) {
+      minx = clipMinX;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipMaxX) {
+      maxx = clipMaxX;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipMaxY) {
+      maxy = clipMaxY;
     }
     int off = miny * w;
 
@@ -1273,30 +1299,53 @@ public class Rasterize {
   public static void toZBuff(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture,
                              int tWidth, int tHeight, double[] matrix) {
     for (int i = 0; i < tri.myIndex.length; i += 3) {
-      int p1 = tri.myIndex[i];
-      int p2 = tri.myIndex[i + 1];
-      int p3 = tri.myIndex[i + 2];
-      int type = tri.mySurfaceType[i / 3];
-      if (type == 1) {
-        render_perspectiveAffine(zbuff, rgb, w, h,
-                                 tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
-                                 tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
-                                 tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
-                                 tri.myTexture_uv[p1], tri.myTexture_uv[p1 + 1],
-                                 tri.myTexture_uv[p2], tri.myTexture_uv[p2 + 1],
-                                 tri.myTexture_uv[p3], tri.myTexture_uv[p3 + 1],
-                                 texture, tWidth, tHeight, matrix
-        );
-      }
-      else {
-        flat(zbuff, rgb, w, h,
-             tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
-             tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
-             tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+      texturedTriangle(zbuff, rgb, w, h, tri, i, texture, tWidth, tHeight, matrix, 0, 0, w, h);
+    }
+  }
 
-             (type == 0) ? BLUE : GRAY
-        );
+  /**
+   * Same as {@link #toZBuff(float[], int[], int, int, TriData, int[], int, int, double[])} but the image is split in tiles of
+   * {@link #TILE_SIZE} pixels that are rasterized in parallel. The triangles are drawn in the same order inside each tile so the
+   * result is the same as the single threaded version.
+   */
+  public static void toZBuffTiled(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture,
+                                  int tWidth, int tHeight, double[] matrix) {
+    renderTiled(w, h, tri, (tile, clipMinX, clipMinY, clipMaxX, clipMaxY) -> {
+      for (int t = 0; t < tile.size; t++) {
+        texturedTriangle(zbuff, rgb, w, h, tri, tile.triangles[t], texture, tWidth, tHeight, matrix,
+                         clipMinX, clipMinY, clipMaxX, clipMaxY);
       }
+    });
+  }
+
+  private static void texturedTriangle(float[] zbuff, int[] rgb, int w, int h, TriData tri, int i, int[] texture,
+                                       int tWidth, int tHeight, double[] matrix,
+                                       int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+    int p1 = tri.myIndex[i];
+    int p2 = tri.myIndex[i + 1];
+    int p3 = tri.myIndex[i + 2];
+    int type = tri.mySurfaceType[i / 3];
+    if (type == 1) {
+      render_perspectiveAffine(zbuff, rgb, w, h,
+                               tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
+                               tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
+                               tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+                               tri.myTexture_uv[p1], tri.myTexture_uv[p1 + 1],
+                               tri.myTexture_uv[p2], tri.myTexture_uv[p2 + 1],
+                               tri.myTexture_uv[p3], tri.myTexture_uv[p3 + 1],
+                               texture, tWidth, tHeight, matrix,
+                               clipMinX, clipMinY, clipMaxX, clipMaxY
+      );
+    }
+    else {
+      flat(zbuff, rgb, w, h,
+           tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
+           tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
+           tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+
+           (type == 0) ? BLUE : GRAY,
+           clipMinX, clipMinY, clipMaxX, clipMaxY
+      );
     }
   }
 
@@ -1311,18 +1360,147 @@ public class Rasterize {
    */
   public static void simple(float[] zbuff, int[] rgb, int w, int h, TriData tri) {
 
+    for (int i = 0; i < tri.myIndex.length; i += 3) {
+      flatTriangle(zbuff, rgb, w, h, tri, i, 0, 0, w, h);
+    }
+  }
+
+  /**
+   * Same as {@link #simple(float[], int[], int, int, TriData)} but the tiles of the image are rasterized in parallel
+   */
+  public static void simpleTiled(float[] zbuff, int[] rgb, int w, int h, TriData tri) {
+    renderTiled(w, h, tri, (tile, clipMinX, clipMinY, clipMaxX, clipMaxY) -> {
+      for (int t = 0; t < tile.size; t++) {
+        flatTriangle(zbuff, rgb, w, h, tri, tile.triangles[t], clipMinX, clipMinY, clipMaxX, clipMaxY);
+      }
+    });
+  }
+
+  private static void flatTriangle(float[] zbuff, int[] rgb, int w, int h, TriData tri, int i,
+                                   int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+    int p1 = tri.myIndex[i];
+    int p2 = tri.myIndex[i + 1];
+    int p3 = tri.myIndex[i + 2];
+    int type = (tri.mySurfaceType != null) ? tri.mySurfaceType[i / 3] : 0;
+    flat(zbuff, rgb, w, h,
+         tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
+         tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
+         tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+
+         (type == 0) ? BLUE : GRAY,
+         clipMinX, clipMinY, clipMaxX, clipMaxY
+    );
+  }
+
+  /**
+   * Tiled rasterization support code
+   */
+  public static final int TILE_SIZE = 64;
+  private static final int TILE_SHIFT = 6;
+
+  /**
+   * Triangles overlapping one tile, stored as offsets in {@link TriData#myIndex} in drawing order
+   */
+  static class Tile {
+    int[] triangles = new int[16];
+    int size;
+
+    void add(int triangle) {
+      if (size == triangles.length) {
+        triangles = Arrays.copyOf(triangles, size * 2);
+      }
+      triangles[size++] = triangle;
+    }
+  }
+
+  interface TileRasterizer {
+    void rasterize(Tile tile, int clipMinX, int clipMinY, int clipMaxX, int clipMaxY);
+  }
+
+  /**
+   * Bins every triangle into the tiles overlapped by its bounding box
+   */
+  static Tile[] binTriangles(int w, int h, TriData tri) {
+    int tilesX = (w + TILE_SIZE - 1) >> TILE_SHIFT;
+    int tilesY = (h + TILE_SIZE - 1) >> TILE_SHIFT;
+    Tile[] tiles = new Tile[tilesX * tilesY];
+    float[] vert = tri.myVert;
     for (int i = 0; i < tri.myIndex.length; i += 3) {
       int p1 = tri.myIndex[i];
       int p2 = tri.myIndex[i + 1];
       int p3 = tri.myIndex[i + 2];
-      int type = (tri.mySurfaceType != null) ? tri.mySurfaceType[i / 3] : 0;
-      flat(zbuff, rgb, w, h,
-           tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
-           tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
-           tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+      float minX = Math.min(vert[p1], Math.min(vert[p2], vert[p3]));
+      float maxX = Math.max(vert[p1], Math.max(vert[p2], vert[p3]));
+      float minY = Math.min(vert[p1 + 1], Math.min(vert[p2 + 1], vert[p3 + 1]));
+      float maxY = Math.max(vert[p1 + 1], Math.max(vert[p2 + 1], vert[p3 + 1]));
+      if (maxX < 0 || maxY < 0 || minX >= w || minY >= h || Float.isNaN(minX + maxX + minY + maxY)) {
+        continue;
+      }
+      // The rasterizer rounds the coordinates so the box is grown by one pixel to be conservative
+      int tileMinX = Math.max(0, (int)minX - 1) >> TILE_SHIFT;
+      int tileMinY = Math.max(0, (int)minY - 1) >> TILE_SHIFT;
+      int tileMaxX = Math.min(w - 1, (int)maxX + 1) >> TILE_SHIFT;
+      int tileMaxY = Math.min(h - 1, (int)maxY + 1) >> TILE_SHIFT;
+      for (int ty = tileMinY; ty <= tileMaxY; ty++) {
+        for (int tx = tileMinX; tx <= tileMaxX; tx++) {
+          int index = tx + ty * tilesX;
+          if (tiles[index] == null) {
+            tiles[index] = new Tile();
+          }
+          tiles[index].add(i);
+        }
+      }
+    }
+    return tiles;
+  }
 
-           (type == 0) ? BLUE : GRAY
-      );
+  private static void renderTiled(int w, int h, TriData tri, TileRasterizer rasterizer) {
+    int tilesX = (w + TILE_SIZE - 1) >> TILE_SHIFT;
+    Tile[] tiles = binTriangles(w, h, tri);
+    // Each tile only writes its own pixels so the tiles can be rasterized concurrently on the shared buffers
+    ForkJoinPool.commonPool().invoke(new RasterizeTilesAction(tiles, 0, tiles.length, tilesX, w, h, rasterizer));
+  }
+
+  private static class RasterizeTilesAction extends RecursiveAction {
+    /** Number of tiles below which the work is not split further */
+    private static final int THRESHOLD = 4;
+
+    private final Tile[] myTiles;
+    private final int myStart;
+    private final int myEnd;
+    private final int myTilesX;
+    private final int myWidth;
+    private final int myHeight;
+    private final TileRasterizer myRasterizer;
+
+    RasterizeTilesAction(Tile[] tiles, int start, int end, int tilesX, int w, int h, TileRasterizer rasterizer) {
+      myTiles = tiles;
+      myStart = start;
+      myEnd = end;
+      myTilesX = tilesX;
+      myWidth = w;
+      myHeight = h;
+      myRasterizer = rasterizer;
+    }
+
+    @Override
+    protected void compute() {
+      if (myEnd - myStart > THRESHOLD) {
+        int middle = (myStart + myEnd) >>> 1;
+        invokeAll(new RasterizeTilesAction(myTiles, myStart, middle, myTilesX, myWidth, myHeight, myRasterizer),
+                  new RasterizeTilesAction(myTiles, middle, myEnd, myTilesX, myWidth, myHeight, myRasterizer));
+        return;
+      }
+      for (int i = myStart; i < myEnd; i++) {
+        Tile tile = myTiles[i];
+        if (tile == null) {
+          continue;
+        }
+        int clipMinX = (i % myTilesX) << TILE_SHIFT;
+        int clipMinY = (i / myTilesX) << TILE_SHIFT;
+        myRasterizer.rasterize(tile, clipMinX, clipMinY,
+                               Math.min(clipMinX + TILE_SIZE, myWidth), Math.min(clipMinY + TILE_SIZE, myHeight));
+      }
     }
   }
 
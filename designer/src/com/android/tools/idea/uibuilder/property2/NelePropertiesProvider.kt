@@ -20,9 +20,11 @@ import com.android.ide.common.rendering.api.AttributeFormat
 import com.android.ide.common.rendering.api.ResourceNamespace
 import com.android.ide.common.rendering.api.ResourceReference
 import com.android.tools.idea.common.model.NlComponent
+import com.android.tools.idea.common.model.NlLayoutType
 import com.android.tools.idea.common.property2.api.PropertiesTable
 import com.android.tools.idea.lint.LintIdeClient
 import com.android.tools.idea.model.AndroidModuleInfo
+import com.android.tools.idea.res.ResourceRepositoryManager
 import com.android.tools.idea.uibuilder.model.hasNlComponentInfo
 import com.android.tools.idea.uibuilder.model.viewInfo
 import com.android.tools.idea.uibuilder.property2.support.TypeResolver
@@ -62,6 +64,10 @@ import java.util.*
 class NelePropertiesProvider(private val model: NelePropertiesModel) {
   private val descriptorProvider = AndroidDomElementDescriptorProvider()
   private val emptyTable = ImmutableTable.of<String, String, NelePropertyItem>()
+  private val attributeTableLock = Any()
+  // Guarded by attributeTableLock:
+  private var attributeTableGeneration: AttributeTableGeneration? = null
+  private val attributeTables = HashMap<AttributeTableKey, Table<String, String, NeleAttribute>>()
 
   fun getProperties(components: List<NlComponent>): PropertiesTable<NelePropertyItem> {
     assert(!EventQueue.isDispatchThread() || ApplicationManager.getApplication().isUnitTestMode)
@@ -85,94 +91,138 @@ class NelePropertiesProvider(private val model: NelePropertiesModel) {
     }
 
     val project = model.facet.module.project
-    val apiLookup = LintIdeClient.getApiLookup(project)
     val minApi = AndroidModuleInfo.getInstance(model.facet).minSdkVersion.featureLevel
 
     val localAttrDefs = localResourceManager.attributeDefinitions
     val systemAttrDefs = frameworkResourceManager.attributeDefinitions
 
-    var combinedProperties: Table<String, String, NelePropertyItem>? = null
+    val resourcesModificationCount = ResourceRepositoryManager.getAppResources(model.facet).modificationCount
+    val javaModificationCount = PsiManager.getInstance(project).modificationTracker.javaStructureModificationTracker.modificationCount
+    val generation = AttributeTableGeneration(localAttrDefs, systemAttrDefs, resourcesModificationCount, javaModificationCount, minApi)
 
+    val tables = ArrayList<Table<String, String, NeleAttribute>>(components.size)
     for (component in components) {
       val tag = component.tag
       if (!tag.isValid) {
         return emptyTable
       }
+      tables.add(getAttributeTable(component, tag, generation) ?: return emptyTable)
+    }
 
-      val elementDescriptor = descriptorProvider.getDescriptor(tag) ?: return emptyTable
+    val attributes = intersect(tables)
 
-      val descriptors = elementDescriptor.getAttributesDescriptors(tag)
-      val properties = HashBasedTable.create<String, String, NelePropertyItem>(3, descriptors.size)
+    // Never include the ID attribute when looking at multiple components:
+    if (components.size > 1) {
+      attributes.remove(ANDROID_URI, ATTR_ID)
+    }
 
-      for (desc in descriptors) {
-        val name = desc.name
-        val namespaceUri = getNamespace(desc, tag)
-        // Exclude the framework attributes that were added after the current min API level.
-        if (NS_RESOURCES == namespaceUri && apiLookup != null &&
-            apiLookup.getFieldVersion("android/R\$attr", name) > minApi) {
-          continue
-        }
-        val attrDefs = if (NS_RESOURCES == namespaceUri) systemAttrDefs else localAttrDefs
-        val namespace = ResourceNamespace.fromNamespaceUri(namespaceUri)
-        val attrDef = namespace?.let { attrDefs?.getAttrDefinition(ResourceReference.attr(it, name)) }
-        val property = createProperty(namespaceUri, name, attrDef, components)
-        properties.put(namespaceUri, name, property)
+    // The following properties are deprecated in the support library and can be ignored by tools:
+    attributes.remove(AUTO_URI, ATTR_PADDING_START)
+    attributes.remove(AUTO_URI, ATTR_PADDING_END)
+    attributes.remove(AUTO_URI, ATTR_THEME)
+
+    val properties = HashBasedTable.create<String, String, NelePropertyItem>(3, attributes.size())
+    for (attribute in attributes.values()) {
+      properties.put(attribute.namespace, attribute.name,
+                     createProperty(attribute.namespace, attribute.name, attribute.definition, components))
+    }
+    return properties
+  }
+
+  /**
+   * Returns the attributes available for the given component.
+   *
+   * The attributes only depend on the tag, its parent and the view classes they declare or inflate, so they are cached for each
+   * such combination
+   * until the resources, the Java classes or the min API level changes.
+   */
+  private fun getAttributeTable(component: NlComponent,
+                                tag: XmlTag,
+                                generation: AttributeTableGeneration): Table<String, String, NeleAttribute>? {
+    val key = AttributeTableKey.create(component, tag)
+    synchronized(attributeTableLock) {
+      if (attributeTableGeneration != generation) {
+        attributeTables.clear()
+        attributeTableGeneration = generation
       }
+      attributeTables[key]?.let { return it }
+    }
 
-      val tagClass = elementDescriptor.declaration as? PsiClass
-      val className = tagClass?.qualifiedName
-      if (className != null && component.hasNlComponentInfo) {
-        val viewClassName = component.viewInfo?.className
-        if (viewClassName != className && viewClassName != null) {
-          addAttributesFromInflatedStyleable(properties, localAttrDefs, tagClass, viewClassName, components)
-        }
+    val table = computeAttributeTable(component, tag, generation) ?: return null
+    synchronized(attributeTableLock) {
+      if (attributeTableGeneration == generation) {
+        attributeTables[key] = table
       }
+    }
+    return table
+  }
 
-      // Exception: Always prefer ATTR_SRC_COMPAT over ATTR_SRC:
-      if (properties.contains(AUTO_URI, ATTR_SRC_COMPAT)) {
-        properties.remove(ANDROID_URI, ATTR_SRC)
-        properties.remove(AUTO_URI, ATTR_SRC)
+  private fun computeAttributeTable(component: NlComponent,
+                                    tag: XmlTag,
+                                    generation: AttributeTableGeneration): Table<String, String, NeleAttribute>? {
+    val apiLookup = LintIdeClient.getApiLookup(model.facet.module.project)
+    val localAttrDefs = generation.localAttrDefs
+    val systemAttrDefs = generation.systemAttrDefs
+    val elementDescriptor = descriptorProvider.getDescriptor(tag) ?: return null
+
+    val descriptors = elementDescriptor.getAttributesDescriptors(tag)
+    val attributes = HashBasedTable.create<String, String, NeleAttribute>(3, descriptors.size)
+
+    for (desc in descriptors) {
+      val name = desc.name
+      val namespaceUri = getNamespace(desc, tag)
+      // Exclude the framework attributes that were added after the current min API level.
+      if (NS_RESOURCES == namespaceUri && apiLookup != null &&
+          apiLookup.getFieldVersion("android/R\$attr", name) > generation.minApi) {
+        continue
       }
+      val attrDefs = if (NS_RESOURCES == namespaceUri) systemAttrDefs else localAttrDefs
+      val namespace = ResourceNamespace.fromNamespaceUri(namespaceUri)
+      val attrDef = namespace?.let { attrDefs?.getAttrDefinition(ResourceReference.attr(it, name)) }
+      attributes.put(namespaceUri, name, NeleAttribute(namespaceUri, name, attrDef))
+    }
 
-      // Exceptions:
-      if (tag.name == AUTO_COMPLETE_TEXT_VIEW) {
-        // An AutoCompleteTextView has a popup that is created at runtime.
-        // Properties for this popup can be added to the AutoCompleteTextView tag.
-        val attr = systemAttrDefs?.getAttrDefByName(ATTR_POPUP_BACKGROUND)
-        val property = createProperty(ANDROID_URI, ATTR_POPUP_BACKGROUND, attr, components)
-        properties.put(ANDROID_URI, ATTR_POPUP_BACKGROUND, property)
+    val tagClass = elementDescriptor.declaration as? PsiClass
+    val className = tagClass?.qualifiedName
+    if (className != null && component.hasNlComponentInfo) {
+      val viewClassName = component.viewInfo?.className
+      if (viewClassName != className && viewClassName != null) {
+        addAttributesFromInflatedStyleable(attributes, localAttrDefs, tagClass, viewClassName)
       }
+    }
 
-      combinedProperties = combine(properties, combinedProperties)
+    // Exception: Always prefer ATTR_SRC_COMPAT over ATTR_SRC:
+    if (attributes.contains(AUTO_URI, ATTR_SRC_COMPAT)) {
+      attributes.remove(ANDROID_URI, ATTR_SRC)
+      attributes.remove(AUTO_URI, ATTR_SRC)
     }
 
-    // The following properties are deprecated in the support library and can be ignored by tools:
-    combinedProperties?.let {
-      it.remove(AUTO_URI, ATTR_PADDING_START)
-      it.remove(AUTO_URI, ATTR_PADDING_END)
-      it.remove(AUTO_URI, ATTR_THEME)
+    // Exceptions:
+    if (tag.name == AUTO_COMPLETE_TEXT_VIEW) {
+      // An AutoCompleteTextView has a popup that is created at runtime.
+      // Properties for this popup can be added to the AutoCompleteTextView tag.
+      val attr = systemAttrDefs?.getAttrDefByName(ATTR_POPUP_BACKGROUND)
+      attributes.put(ANDROID_URI, ATTR_POPUP_BACKGROUND, NeleAttribute(ANDROID_URI, ATTR_POPUP_BACKGROUND, attr))
     }
 
-    return combinedProperties ?: emptyTable
+    return ImmutableTable.copyOf(attributes)
   }
 
-  private fun addAttributesFromInflatedStyleable(properties: Table<String, String, NelePropertyItem>,
+  private fun addAttributesFromInflatedStyleable(attributes: Table<String, String, NeleAttribute>,
                                                  localAttrDefs: AttributeDefinitions,
                                                  xmlClass: PsiClass,
-                                                 inflatedClassName: String,
-                                                 components: List<NlComponent>) {
+                                                 inflatedClassName: String) {
     var inflatedClass = ClassUtil.findPsiClass(PsiManager.getInstance(xmlClass.project), inflatedClassName)
     while (inflatedClass != null && inflatedClass != xmlClass) {
       val styleable = inflatedClass.name?.let { localAttrDefs.getStyleableByName(it) }
       if (styleable != null) {
         for (attrDef in styleable.attributes) {
-          if (properties.contains(NS_RESOURCES, attrDef.name)) {
+          if (attributes.contains(NS_RESOURCES, attrDef.name)) {
             // If the corresponding framework attribute is supported, prefer the framework attribute.
             continue
           }
           val namePair = getPropertyName(attrDef)
-          val property = createProperty(namePair.first, namePair.second, attrDef, components)
-          properties.put(property.namespace, property.name, property)
+          attributes.put(namePair.first, namePair.second, NeleAttribute(namePair.first, namePair.second, attrDef))
         }
       }
 
@@ -206,27 +256,57 @@ class NelePropertiesProvider(private val model: NelePropertiesModel) {
   }
 
   // When components of different type are selected: e.g. a ImageButton and a TextView,
-  // we just show the attributes those components have in common.
-  private fun combine(properties: Table<String, String, NelePropertyItem>,
-                      combinedProperties: Table<String, String, NelePropertyItem>?): Table<String, String, NelePropertyItem> {
-    if (combinedProperties == null) {
-      return properties
-    }
-    val namespaces = ArrayList(combinedProperties.rowKeySet())
-    val propertiesToRemove = ArrayList<String>()
-    for (namespace in namespaces) {
-      propertiesToRemove.clear()
-      for ((name, item) in combinedProperties.row(namespace)) {
-        if (item != properties.get(namespace, name)) {
-          propertiesToRemove.add(name)
-        }
+  // we just show the attributes those components have in common with the same definition.
+  private fun intersect(tables: List<Table<String, String, NeleAttribute>>): Table<String, String, NeleAttribute> {
+    val combined = HashBasedTable.create(tables.first())
+    for (table in tables.subList(1, tables.size)) {
+      combined.cellSet().removeIf {
+        val other = table.get(it.rowKey, it.columnKey)
+        other == null || other.definition != it.value.definition
       }
-      for (propertyName in propertiesToRemove) {
-        combinedProperties.remove(namespace, propertyName)
+    }
+    return combined
+  }
+
+  /**
+   * The definition of an attribute available for a tag
+   */
+  private class NeleAttribute(val namespace: String, val name: String, val definition: AttributeDefinition?)
+
+  /**
+   * The state the cached attribute tables were computed from. All the tables are discarded when any of this changes.
+   */
+  private data class AttributeTableGeneration(val localAttrDefs: AttributeDefinitions,
+                                              val systemAttrDefs: AttributeDefinitions?,
+                                              val resourcesModificationCount: Long,
+                                              val javaStructureModificationCount: Long,
+                                              val minApi: Int)
+
+  /**
+   * The parts of a component that determine which attributes are available for it.
+   */
+  private data class AttributeTableKey(val layoutType: NlLayoutType,
+                                       val tagName: String,
+                                       val tagClass: String?,
+                                       val mergeParentTag: String?,
+                                       val isRoot: Boolean,
+                                       val parentTagName: String?,
+                                       val parentTagClass: String?,
+                                       val inflatedClassName: String?) {
+    companion object {
+      fun create(component: NlComponent, tag: XmlTag): AttributeTableKey {
+        val parent = tag.parentTag
+        val parentTagName = if (parent?.name == VIEW_MERGE) parent.getAttributeValue(ATTR_PARENT_TAG, TOOLS_URI) else parent?.name
+        // A <view> tag declares its view class in the class attribute
+        return AttributeTableKey(component.model.type,
+                                 tag.name,
+                                 tag.getAttributeValue(ATTR_CLASS),
+                                 if (tag.name == VIEW_MERGE) tag.getAttributeValue(ATTR_PARENT_TAG, TOOLS_URI) else null,
+                                 parent == null,
+                                 parentTagName,
+                                 parent?.getAttributeValue(ATTR_CLASS),
+                                 if (component.hasNlComponentInfo) component.viewInfo?.className else null)
       }
     }
-    // Never include the ID attribute when looking at multiple components:
-    combinedProperties.remove(ANDROID_URI, ATTR_ID)
-    return combinedProperties
   }
 }
@@ -46,12 +46,15 @@ import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationListener;
 import com.android.tools.idea.rendering.Locale;
 import com.android.tools.idea.rendering.RenderResult;
+import com.android.tools.idea.rendering.RenderResultCache;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.rendering.RenderSettings;
 import com.android.tools.idea.rendering.RenderTask;
 import com.android.tools.idea.rendering.parsers.LayoutPullParsers;
 import com.android.tools.idea.rendering.parsers.TagSnapshot;
+import com.android.tools.idea.rendering.parsers.TagSnapshotDiff;
 import com.android.tools.idea.res.ResourceNotificationManager;
+import com.android.tools.idea.res.ResourceRepositoryManager;
 import com.android.tools.idea.uibuilder.api.ViewEditor;
 import com.android.tools.idea.uibuilder.api.ViewGroupHandler;
 import com.android.tools.idea.uibuilder.api.ViewHandler;
@@ -74,6 +77,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.util.ProgressIndicatorBase;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.xml.XmlFile;
@@ -133,6 +137,24 @@ public class LayoutlibSceneManager extends SceneManager {
   // since RenderTask is able to handle those safely.
   private final Object myRenderingTaskLock = new Object();
   private ResourceNotificationManager.ResourceVersion myRenderedVersion;
+  /**
+   * Snapshot of the layout when it was last inflated. Used to detect changes that can be applied to the current render session
+   * without inflating the layout again.
+   */
+  @GuardedBy("myRenderingTaskLock")
+  private TagSnapshot myInflatedSnapshot;
+  @GuardedBy("myRenderingTaskLock")
+  private long myInflatedConfigurationModificationCount;
+  @GuardedBy("myRenderingTaskLock")
+  private long myInflatedResourcesModificationCount;
+  @GuardedBy("myRenderingTaskLock")
+  private long myInflatedProjectModificationCount;
+  /**
+   * True when the current render session contains changes that are not reflected in the XML snapshot it was inflated from, like live
+   * updates during a drag or attributes applied incrementally by {@link LiveAttributeUpdater}. Those renders are not stored in the
+   * {@link RenderResultCache}.
+   */
+  private volatile boolean myHasUnsettledChanges;
   // Protects all read/write accesses to the myRenderResult reference
   private final ReentrantReadWriteLock myRenderResultLock = new ReentrantReadWriteLock();
   @GuardedBy("myRenderResultLock")
@@ -488,6 +510,7 @@ public class LayoutlibSceneManager extends SceneManager {
       We only need to render if we are not in Blueprint mode. If we are in blueprint mode only, we only need a layout.
        */
       boolean needsRender = (surface.getSceneMode() != SceneMode.BLUEPRINT_ONLY);
+      myHasUnsettledChanges = true;
       if (needsRender) {
         requestLayoutAndRender(animate);
       }
@@ -901,10 +924,201 @@ public class LayoutlibSceneManager extends SceneManager {
    * {@link ModelListener#modelDerivedDataChanged(NlModel)}.
    */
   protected void updateModel() {
-    inflate(true);
+    TagSnapshot snapshot = createRootTagSnapshot();
+    if (!updateModelIncrementally(snapshot) && !restoreCachedRenderResult(snapshot)) {
+      inflate(true);
+      updateInflatedSnapshot(snapshot);
+    }
     getModel().notifyListenersModelUpdateComplete();
   }
 
+  /**
+   * Returns a new {@link TagSnapshot} of the current contents of the layout file or null if the file is not available.
+   */
+  @Nullable
+  private TagSnapshot createRootTagSnapshot() {
+    NlModel model = getModel();
+    if (model.getFacet().isDisposed()) {
+      return null;
+    }
+    XmlTag rootTag = getRootTag(model);
+    if (rootTag == null) {
+      return null;
+    }
+    return ApplicationManager.getApplication().runReadAction(
+      (Computable<TagSnapshot>)() -> rootTag.isValid() ? TagSnapshot.createTagSnapshot(rootTag, null) : null);
+  }
+
+  /**
+   * Records the given snapshot as the one used for the current {@link RenderTask} inflation.
+   */
+  private void updateInflatedSnapshot(@Nullable TagSnapshot snapshot) {
+    NlModel model = getModel();
+    if (model.getFacet().isDisposed()) {
+      return;
+    }
+    long resourcesModificationCount = ResourceRepositoryManager.getAppResources(model.getFacet()).getModificationCount();
+    long projectModificationCount = ResourceNotificationManager.getInstance(model.getProject()).getModificationCount();
+    myHasUnsettledChanges = false;
+    synchronized (myRenderingTaskLock) {
+      myInflatedSnapshot = myRenderTask != null ? snapshot : null;
+      myInflatedConfigurationModificationCount = model.getConfiguration().getModificationCount();
+      myInflatedResourcesModificationCount = resourcesModificationCount;
+      myInflatedProjectModificationCount = projectModificationCount;
+    }
+  }
+
+  /**
+   * Tries to update the current render session with the changes made to the layout since it was last inflated. This is only possible
+   * when the configuration, resources and project outputs (builds, syncs) have not changed and the changes only modify attributes
+   * supported by {@link LiveAttributeUpdater}. Changes that affect the size of the views will trigger a new measure pass of the
+   * existing view hierarchy.
+   *
+   * @return true if the render session was updated and a new inflate is not needed
+   */
+  private boolean updateModelIncrementally(@Nullable TagSnapshot snapshot) {
+    if (snapshot == null) {
+      return false;
+    }
+
+    NlModel model = getModel();
+    long resourcesModificationCount = ResourceRepositoryManager.getAppResources(model.getFacet()).getModificationCount();
+    long projectModificationCount = ResourceNotificationManager.getInstance(model.getProject()).getModificationCount();
+    synchronized (myRenderingTaskLock) {
+      if (myRenderTask == null ||
+          myInflatedSnapshot == null ||
+          myInflatedConfigurationModificationCount != model.getConfiguration().getModificationCount() ||
+          myInflatedResourcesModificationCount != resourcesModificationCount ||
+          myInflatedProjectModificationCount != projectModificationCount) {
+        return false;
+      }
+
+      List<TagSnapshotDiff.AttributeChange> changes = TagSnapshotDiff.diffAttributes(myInflatedSnapshot, snapshot);
+      if (changes == null) {
+        // The structure of the layout has changed
+        return false;
+      }
+
+      LiveAttributeUpdater.Result result = LiveAttributeUpdater.apply(model, changes);
+      if (result == LiveAttributeUpdater.Result.NOT_APPLIED) {
+        return false;
+      }
+
+      myInflatedSnapshot = snapshot;
+      myHasUnsettledChanges = true;
+      if (result == LiveAttributeUpdater.Result.APPLIED_NEEDS_LAYOUT) {
+        // The measure pass will run in the render thread before the next render
+        myRenderTask.layout();
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns the {@link RenderResultCache.Key} that identifies the given snapshot of the model or null if the
+   * current state can not be cached.
+   */
+  @Nullable
+  private RenderResultCache.Key createRenderResultCacheKey(@Nullable TagSnapshot snapshot) {
+    if (myElapsedFrameTimeMs != -1 || myHasUnsettledChanges || snapshot == null) {
+      // Animated renders depend on the frame time and live renders on state that is not in the snapshot, do not cache them
+      return null;
+    }
+
+    NlModel model = getModel();
+
+    RenderSettings settings = myRenderSettings;
+    String renderOptions = settings.getQuality() + ":" +
+                           settings.getShowDecorations() + ":" +
+                           getDesignSurface().getAdaptiveIconShape().getPathDescription();
+    return RenderResultCache.Key.create(model.getVirtualFile().getPath(),
+                                        snapshot,
+                                        model.getConfiguration(),
+                                        ResourceRepositoryManager.getAppResources(model.getFacet()).getModificationCount(),
+                                        ResourceNotificationManager.getInstance(model.getProject()).getModificationCount(),
+                                        renderOptions);
+  }
+
+  /**
+   * If the model has already been rendered in the state of the given snapshot, this method restores the cached image and view
+   * hierarchy and returns true. In that case, the layout does not need to be inflated nor rendered again.
+   * <p/>
+   * The current {@link RenderTask} is kept only if it was inflated from the same state; otherwise it is disposed so the next change
+   * that is not in the cache inflates the layout again.
+   */
+  private boolean restoreCachedRenderResult(@Nullable TagSnapshot snapshot) {
+    RenderResultCache.Key key = createRenderResultCacheKey(snapshot);
+    if (key == null) {
+      return false;
+    }
+
+    RenderResult cachedResult = RenderService.getInstance(getModel().getProject()).getRenderResultCache().get(key);
+    if (cachedResult == null) {
+      return false;
+    }
+    if (!hasValidCookies(getRootViews(cachedResult))) {
+      // The file has been reloaded since the result was cached, the cookies do not reference the current tags
+      cachedResult.dispose();
+      return false;
+    }
+
+    NlModel model = getModel();
+    long resourcesModificationCount = ResourceRepositoryManager.getAppResources(model.getFacet()).getModificationCount();
+    long projectModificationCount = ResourceNotificationManager.getInstance(model.getProject()).getModificationCount();
+    synchronized (myRenderingTaskLock) {
+      boolean isRenderTaskUpToDate = myRenderTask != null &&
+                                     myInflatedSnapshot != null &&
+                                     myInflatedSnapshot.getTreeSignature() == snapshot.getTreeSignature() &&
+                                     myInflatedConfigurationModificationCount == model.getConfiguration().getModificationCount() &&
+                                     myInflatedResourcesModificationCount == resourcesModificationCount &&
+                                     myInflatedProjectModificationCount == projectModificationCount;
+      if (!isRenderTaskUpToDate) {
+        if (myRenderTask != null && !myRenderTask.isDisposed()) {
+          myRenderTask.dispose();
+        }
+        myRenderTask = null;
+        myInflatedSnapshot = null;
+      }
+      myRenderedVersion = ResourceNotificationManager.getInstance(model.getProject())
+        .getCurrentVersion(model.getFacet(), model.getFile(), model.getConfiguration());
+    }
+
+    updateHierarchy(cachedResult);
+    myRenderResultLock.writeLock().lock();
+    try {
+      updateCachedRenderResult(cachedResult);
+    }
+    finally {
+      myRenderResultLock.writeLock().unlock();
+    }
+    UIUtil.invokeLaterIfNeeded(() -> {
+      if (!Disposer.isDisposed(this)) {
+        update();
+      }
+    });
+    return true;
+  }
+
+  /**
+   * Returns whether all the {@link TagSnapshot} cookies of the given views still reference valid tags.
+   */
+  private static boolean hasValidCookies(@NotNull List<ViewInfo> views) {
+    for (ViewInfo view : views) {
+      Object cookie = view.getCookie();
+      if (cookie instanceof TagSnapshot) {
+        XmlTag tag = ((TagSnapshot)cookie).tag;
+        if (tag != null && !tag.isValid()) {
+          return false;
+        }
+      }
+      if (!hasValidCookies(view.getChildren())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Renders the current model synchronously. Once the render is complete, the render callbacks will be called.
    * <p/>
@@ -956,7 +1170,18 @@ public class LayoutlibSceneManager extends SceneManager {
 
     getModel().resetLastChange();
     long renderStartTimeMs = System.currentTimeMillis();
+    TagSnapshot snapshot = createRootTagSnapshot();
+    if (restoreCachedRenderResult(snapshot)) {
+      // The model is in a state that was already rendered
+      fireRenderListeners();
+      return;
+    }
+    RenderResultCache.Key cacheKey = createRenderResultCacheKey(snapshot);
+
     boolean inflated = inflate(false);
+    if (inflated) {
+      updateInflatedSnapshot(snapshot);
+    }
     long elapsedFrameTimeMs = myElapsedFrameTimeMs;
 
     Future<RenderResult> futureResult;
@@ -976,6 +1201,9 @@ public class LayoutlibSceneManager extends SceneManager {
     if (result != null && !inflated) {
       updateHierarchy(result);
     }
+    if (cacheKey != null && result != null && !myHasUnsettledChanges) {
+      RenderService.getInstance(getModel().getProject()).getRenderResultCache().put(cacheKey, result);
+    }
     myRenderResultLock.writeLock().lock();
     try {
       updateCachedRenderResult(result);
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_LAYOUT_RESOURCE_PREFIX;
+import static com.android.SdkConstants.ATTR_VISIBILITY;
+import static com.android.SdkConstants.PREFIX_RESOURCE_REF;
+import static com.android.SdkConstants.PREFIX_THEME_REF;
+
+import android.view.View;
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.tools.idea.common.model.NlComponent;
+import com.android.tools.idea.common.model.NlModel;
+import com.android.tools.idea.rendering.RenderService;
+import com.android.tools.idea.rendering.parsers.TagSnapshot;
+import com.android.tools.idea.rendering.parsers.TagSnapshotDiff.AttributeChange;
+import com.android.tools.idea.uibuilder.model.LayoutParamsManager;
+import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Applies attribute only changes directly to the {@link View}s of an existing layoutlib session so the layout does not need to be
+ * inflated again. This is used by {@link LayoutlibSceneManager} when a single attribute is modified, for example from the properties
+ * panel.
+ * <p>
+ * Only a small set of attributes is supported: the layout params, the visibility and the view transformations. Any other change
+ * requires a full inflate.
+ */
+class LiveAttributeUpdater {
+  enum Result {
+    /** The changes could not be applied, a full inflate is needed */
+    NOT_APPLIED,
+    /** The changes were applied and the layout does not need to be measured again */
+    APPLIED,
+    /** The changes were applied but they affect the size or position of the views so a new measure pass is needed */
+    APPLIED_NEEDS_LAYOUT
+  }
+
+  /**
+   * Attributes that only affect how a view is drawn. These can be applied without measuring the layout again.
+   */
+  private static final Map<String, BiConsumer<View, Float>> DRAW_ONLY_ATTRIBUTES = ImmutableMap.<String, BiConsumer<View, Float>>builder()
+    .put("alpha", View::setAlpha)
+    .put("rotation", View::setRotation)
+    .put("rotationX", View::setRotationX)
+    .put("rotationY", View::setRotationY)
+    .put("scaleX", View::setScaleX)
+    .put("scaleY", View::setScaleY)
+    .build();
+
+  private static final Map<String, Float> DRAW_ONLY_DEFAULTS = ImmutableMap.<String, Float>builder()
+    .put("alpha", 1f)
+    .put("rotation", 0f)
+    .put("rotationX", 0f)
+    .put("rotationY", 0f)
+    .put("scaleX", 1f)
+    .put("scaleY", 1f)
+    .build();
+
+  private LiveAttributeUpdater() {
+  }
+
+  private static boolean isReference(@Nullable String value) {
+    return value != null && (value.startsWith(PREFIX_RESOURCE_REF) || value.startsWith(PREFIX_THEME_REF));
+  }
+
+  private static int parseVisibility(@Nullable String value) {
+    if (value == null || "visible".equals(value)) {
+      return View.VISIBLE;
+    }
+    if ("invisible".equals(value)) {
+      return View.INVISIBLE;
+    }
+    if ("gone".equals(value)) {
+      return View.GONE;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns whether the given change can be applied to a live view.
+   */
+  private static boolean isSupported(@NotNull AttributeChange change) {
+    if (!ANDROID_URI.equals(change.namespace)) {
+      return false;
+    }
+    if (change.name.startsWith(ATTR_LAYOUT_RESOURCE_PREFIX)) {
+      // References are resolved by LayoutParamsManager
+      return true;
+    }
+    if (isReference(change.value)) {
+      return false;
+    }
+    if (ATTR_VISIBILITY.equals(change.name)) {
+      return parseVisibility(change.value) != -1;
+    }
+    if (DRAW_ONLY_ATTRIBUTES.containsKey(change.name)) {
+      return change.value == null || parseFloat(change.value) != null;
+    }
+    return false;
+  }
+
+  @Nullable
+  private static Float parseFloat(@NotNull String value) {
+    try {
+      return Float.parseFloat(value);
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Tries to apply the given changes to the views of the current render session of the model. If any of the changes is not supported,
+   * no change is applied and {@link Result#NOT_APPLIED} is returned. An empty list of changes is also {@link Result#NOT_APPLIED} since
+   * the model update was caused by something other than an attribute edit.
+   * When the changes are applied, the {@link TagSnapshot}s used as view cookies are also updated so they match the new attribute values.
+   */
+  @NotNull
+  static Result apply(@NotNull NlModel model, @NotNull List<AttributeChange> changes) {
+    if (changes.isEmpty()) {
+      return Result.NOT_APPLIED;
+    }
+
+    List<ViewInfo> viewInfos = new ArrayList<>(changes.size());
+    for (AttributeChange change : changes) {
+      if (!isSupported(change) || change.before.tag == null) {
+        return Result.NOT_APPLIED;
+      }
+      NlComponent component = model.findViewByTag(change.before.tag);
+      ViewInfo viewInfo = component != null ? NlComponentHelperKt.getViewInfo(component) : null;
+      if (viewInfo == null || !(viewInfo.getViewObject() instanceof View)) {
+        return Result.NOT_APPLIED;
+      }
+      if (change.name.startsWith(ATTR_LAYOUT_RESOURCE_PREFIX) && viewInfo.getLayoutParamsObject() == null) {
+        return Result.NOT_APPLIED;
+      }
+      viewInfos.add(viewInfo);
+    }
+
+    try {
+      Result result = RenderService.runRenderAction(() -> {
+        boolean needsLayout = false;
+        for (int i = 0, n = changes.size(); i < n; i++) {
+          AttributeChange change = changes.get(i);
+          ViewInfo viewInfo = viewInfos.get(i);
+          View view = (View)viewInfo.getViewObject();
+
+          if (change.name.startsWith(ATTR_LAYOUT_RESOURCE_PREFIX)) {
+            if (!LayoutParamsManager.setAttribute(viewInfo.getLayoutParamsObject(),
+                                                  StringUtil.trimStart(change.name, ATTR_LAYOUT_RESOURCE_PREFIX), change.value, model)) {
+              return Result.NOT_APPLIED;
+            }
+            // Setting the layout params again requests a layout of the view and its ancestors
+            view.setLayoutParams(view.getLayoutParams());
+            needsLayout = true;
+          }
+          else if (ATTR_VISIBILITY.equals(change.name)) {
+            int visibility = parseVisibility(change.value);
+            needsLayout |= visibility == View.GONE || view.getVisibility() == View.GONE;
+            view.setVisibility(visibility);
+          }
+          else {
+            Float value = change.value != null ? parseFloat(change.value) : DRAW_ONLY_DEFAULTS.get(change.name);
+            DRAW_ONLY_ATTRIBUTES.get(change.name).accept(view, value);
+          }
+        }
+        return needsLayout ? Result.APPLIED_NEEDS_LAYOUT : Result.APPLIED;
+      });
+
+      if (result != Result.NOT_APPLIED) {
+        for (int i = 0, n = changes.size(); i < n; i++) {
+          AttributeChange change = changes.get(i);
+          Object cookie = viewInfos.get(i).getCookie();
+          if (cookie instanceof TagSnapshot) {
+            ((TagSnapshot)cookie).setAttribute(change.name, change.namespace, change.prefix, change.value);
+          }
+        }
+      }
+      return result;
+    }
+    catch (Exception e) {
+      Logger.getInstance(LiveAttributeUpdater.class).debug("Unable to apply live attribute changes", e);
+      return Result.NOT_APPLIED;
+    }
+  }
+}
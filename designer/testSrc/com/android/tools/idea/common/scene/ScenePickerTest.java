@@ -15,10 +15,14 @@
  */
 package com.android.tools.idea.common.scene;
 
+import com.google.common.collect.ImmutableList;
+import com.intellij.testFramework.PlatformTestUtil;
 import junit.framework.TestCase;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Test ScenePicker
@@ -378,4 +382,73 @@ public class ScenePickerTest extends TestCase {
       scenePicker.find((int)x, (int)y);
     }
   }
+
+  /**
+   * Adds a scene similar to a large ConstraintLayout: a root, a grid of widgets with anchors and connections between them.
+   */
+  private static void addLargeScene(ScenePicker scenePicker, int columns, int rows) {
+    scenePicker.addRect("root", 0, 0, 0, columns * 50, rows * 50);
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        int x = column * 50 + 5;
+        int y = row * 50 + 5;
+        String name = column + "," + row;
+        scenePicker.addRect(name, 0, x, y, x + 40, y + 40);
+        scenePicker.addCircle(name + " left", 2, x, y + 20, 3);
+        scenePicker.addCircle(name + " right", 2, x + 40, y + 20, 3);
+        if (column > 0) {
+          scenePicker.addCurveTo(name + " connection", 3, x, y + 20, x - 5, y + 20, x - 10, y + 20, x - 10, y + 20, 1);
+        }
+      }
+    }
+  }
+
+  public void testLargeScene() {
+    ScenePicker scenePicker = new ScenePicker();
+    scenePicker.reset();
+    addLargeScene(scenePicker, 40, 40);
+    // Connection spanning the whole scene
+    scenePicker.addLine("line", 0, 0, 1000, 2000, 1000, 0);
+
+    List<Object> found = new ArrayList<>();
+    scenePicker.setSelectListener((obj, dist) -> found.add(obj));
+
+    scenePicker.find(130, 130);
+    assertEquals(ImmutableList.of("root", "2,2"), found);
+
+    found.clear();
+    scenePicker.find(105, 125);
+    assertEquals(ImmutableList.of("root", "2,2", "2,2 left", "2,2 connection"), found);
+
+    found.clear();
+    scenePicker.find(1500, 1000);
+    assertEquals(ImmutableList.of("root", "line"), found);
+
+    found.clear();
+    scenePicker.find(2500, 2500);
+    assertTrue(found.isEmpty());
+
+    scenePicker.reset();
+    found.clear();
+    scenePicker.addRect("new", 0, 120, 120, 140, 140);
+    scenePicker.find(130, 130);
+    assertEquals(ImmutableList.of("new"), found);
+  }
+
+  public void testHoverPerformance() {
+    ScenePicker scenePicker = new ScenePicker();
+    int[] hits = new int[1];
+    scenePicker.setSelectListener((obj, dist) -> hits[0]++);
+    // Similar to what SceneHitListener does on every mouse move
+    PlatformTestUtil.startPerformanceTest("ScenePicker hover on a large scene", 2000, () -> {
+      for (int i = 0; i < 200; i++) {
+        scenePicker.reset();
+        addLargeScene(scenePicker, 20, 30);
+        for (int j = 0; j < 10; j++) {
+          scenePicker.find((i * 7 + j * 31) % 1000, (i * 13 + j * 17) % 1500);
+        }
+      }
+    }).attempts(2).assertTiming();
+    assertTrue(hits[0] > 0);
+  }
 }
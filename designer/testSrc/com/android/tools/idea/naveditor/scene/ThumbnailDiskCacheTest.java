@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.naveditor.scene;
+
+import com.intellij.openapi.util.io.FileUtil;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link ThumbnailDiskCache}
+ */
+public class ThumbnailDiskCacheTest extends TestCase {
+  private File myCacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDir = FileUtil.createTempDirectory("navThumbnails", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myCacheDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  private static BufferedImage createImage(int color) {
+    BufferedImage image = new BufferedImage(50, 80, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        image.setRGB(x, y, color + x * y);
+      }
+    }
+    return image;
+  }
+
+  public void testKey() {
+    String key = ThumbnailDiskCache.createKey("<LinearLayout/>", "pixel|port|AppTheme", "resources");
+    assertEquals(key, ThumbnailDiskCache.createKey("<LinearLayout/>", "pixel|port|AppTheme", "resources"));
+    assertFalse(key.equals(ThumbnailDiskCache.createKey("<FrameLayout/>", "pixel|port|AppTheme", "resources")));
+    assertFalse(key.equals(ThumbnailDiskCache.createKey("<LinearLayout/>", "pixel|land|AppTheme", "resources")));
+    assertFalse(key.equals(ThumbnailDiskCache.createKey("<LinearLayout/>", "pixel|port|AppTheme", "modified resources")));
+  }
+
+  public void testPutAndGet() {
+    ThumbnailDiskCache cache = new ThumbnailDiskCache(myCacheDir, 1024 * 1024);
+    assertNull(cache.get("key1"));
+
+    BufferedImage image = createImage(0xFF102030);
+    cache.put("key1", image);
+
+    // Another instance, e.g. after restarting the IDE, finds the image
+    BufferedImage cached = new ThumbnailDiskCache(myCacheDir, 1024 * 1024).get("key1");
+    assertNotNull(cached);
+    assertEquals(image.getWidth(), cached.getWidth());
+    assertEquals(image.getHeight(), cached.getHeight());
+    assertEquals(image.getRGB(10, 20), cached.getRGB(10, 20));
+    assertNull(cache.get("key2"));
+  }
+
+  public void testPruneKeepsCurrentImages() {
+    File oldVersionDir = new File(myCacheDir, "v0");
+    assertTrue(oldVersionDir.mkdirs());
+    ThumbnailDiskCache cache = new ThumbnailDiskCache(myCacheDir, 1024 * 1024);
+    cache.put("key1", createImage(0xFF102030));
+
+    // Pruning, as done when the IDE starts, only deletes the images of other cache versions
+    cache.prune();
+    assertFalse(oldVersionDir.exists());
+    assertNotNull(cache.get("key1"));
+  }
+
+  public void testPrune() {
+    ThumbnailDiskCache cache = new ThumbnailDiskCache(myCacheDir, 1);
+    cache.put("key1", createImage(0xFF102030));
+    // The cache is always over its maximum size, so the images are removed as soon as they are saved
+    assertNull(cache.get("key1"));
+  }
+}
@@ -21,16 +21,20 @@ import com.android.tools.adtui.imagediff.ImageDiffUtil;
 import com.android.tools.idea.common.model.NlModel;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.naveditor.NavTestCase;
+import com.android.tools.idea.project.AndroidProjectBuildNotifications;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.rendering.RenderTask;
 import com.android.tools.idea.rendering.RenderTestUtil;
+import com.android.tools.idea.res.ResourceNotificationManager;
 import com.android.tools.idea.res.ResourceRepositoryManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.impl.VirtualFileSystemEntry;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
+import com.intellij.util.ui.UIUtil;
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -165,6 +169,116 @@ public class ThumbnailManagerTest extends NavTestCase {
     assertEquals(1, renderCount.get());
   }
 
+  public void testDiskCache() throws Exception {
+    File cacheDir = FileUtil.createTempDirectory("navThumbnails", null);
+    try {
+      ThumbnailDiskCache diskCache = new ThumbnailDiskCache(cacheDir, 1024 * 1024 * 1024);
+      VirtualFile file = myFixture.findFileInTempDir("res/layout/activity_main.xml");
+      XmlFile psiFile = (XmlFile)PsiManager.getInstance(getProject()).findFile(file);
+      NlModel model = NlModel.create(getMyRootDisposable(), myFacet, psiFile.getVirtualFile());
+
+      AtomicInteger renderCount = new AtomicInteger();
+      BufferedImage image = createCountingManager(diskCache, renderCount)
+        .getThumbnail(psiFile, model.getConfiguration(), new Dimension(100, 200)).getTerminalImage();
+      assertEquals(1, renderCount.get());
+
+      // A new manager, e.g. after the facet is re-created, loads the image from disk instead of rendering again
+      BufferedImage cached = createCountingManager(diskCache, renderCount)
+        .getThumbnail(psiFile, model.getConfiguration(), new Dimension(100, 200)).getTerminalImage();
+      assertEquals(1, renderCount.get());
+      ImageDiffUtil.assertImageSimilar("thumbnail.png", image, cached, 0);
+    }
+    finally {
+      FileUtil.delete(cacheDir);
+    }
+  }
+
+  public void testDiskCacheNotInvalidatedByBuildWithoutChanges() throws Exception {
+    File cacheDir = FileUtil.createTempDirectory("navThumbnails", null);
+    ResourceNotificationManager notificationManager = ResourceNotificationManager.getInstance(getProject());
+    ResourceNotificationManager.ResourceChangeListener listener = reason -> {};
+    // Builds are only tracked while there are listeners
+    notificationManager.addListener(listener, myFacet, null, null);
+    try {
+      ThumbnailDiskCache diskCache = new ThumbnailDiskCache(cacheDir, 1024 * 1024 * 1024);
+      VirtualFile file = myFixture.findFileInTempDir("res/layout/activity_main.xml");
+      XmlFile psiFile = (XmlFile)PsiManager.getInstance(getProject()).findFile(file);
+      NlModel model = NlModel.create(getMyRootDisposable(), myFacet, psiFile.getVirtualFile());
+
+      AtomicInteger renderCount = new AtomicInteger();
+      createCountingManager(diskCache, renderCount)
+        .getThumbnail(psiFile, model.getConfiguration(), new Dimension(100, 200)).getTerminalImage();
+      assertEquals(1, renderCount.get());
+
+      // The build did not change the resources nor the classes, like a build in a new IDE session, so the saved image is used
+      AndroidProjectBuildNotifications.getInstance(getProject()).notifyBuildComplete(new AndroidProjectBuildNotifications.BuildContext() {});
+      UIUtil.dispatchAllInvocationEvents();
+      createCountingManager(diskCache, renderCount)
+        .getThumbnail(psiFile, model.getConfiguration(), new Dimension(100, 200)).getTerminalImage();
+      assertEquals(1, renderCount.get());
+    }
+    finally {
+      notificationManager.removeListener(listener, myFacet, null, null);
+      FileUtil.delete(cacheDir);
+    }
+  }
+
+  public void testDiskCacheInvalidatedByResourceChange() throws Exception {
+    File cacheDir = FileUtil.createTempDirectory("navThumbnails", null);
+    try {
+      ThumbnailDiskCache diskCache = new ThumbnailDiskCache(cacheDir, 1024 * 1024 * 1024);
+      VirtualFile file = myFixture.findFileInTempDir("res/layout/activity_main.xml");
+      XmlFile psiFile = (XmlFile)PsiManager.getInstance(getProject()).findFile(file);
+      NlModel model = NlModel.create(getMyRootDisposable(), myFacet, psiFile.getVirtualFile());
+
+      AtomicInteger renderCount = new AtomicInteger();
+      createCountingManager(diskCache, renderCount)
+        .getThumbnail(psiFile, model.getConfiguration(), new Dimension(100, 200)).getTerminalImage();
+      assertEquals(1, renderCount.get());
+
+      // The new resources might be used by the layout so the saved image can not be used
+      myFixture.addFileToProject("res/values/thumbnail_colors.xml", "<resources><color name=\"thumbnail\">#ff0000</color></resources>");
+      createCountingManager(diskCache, renderCount)
+        .getThumbnail(psiFile, model.getConfiguration(), new Dimension(100, 200)).getTerminalImage();
+      assertEquals(2, renderCount.get());
+    }
+    finally {
+      FileUtil.delete(cacheDir);
+    }
+  }
+
+  public void testPrefetch() throws Exception {
+    AtomicInteger renderCount = new AtomicInteger();
+    ThumbnailManager manager = createCountingManager(null, renderCount);
+    VirtualFile file = myFixture.findFileInTempDir("res/layout/activity_main.xml");
+    XmlFile psiFile = (XmlFile)PsiManager.getInstance(getProject()).findFile(file);
+    NlModel model = NlModel.create(getMyRootDisposable(), myFacet, psiFile.getVirtualFile());
+
+    manager.prefetchThumbnails(Collections.singletonList(psiFile), model.getConfiguration()).get();
+    assertEquals(1, renderCount.get());
+
+    // The thumbnail is scaled from the prefetched render
+    assertNotNull(manager.getThumbnail(psiFile, model.getConfiguration(), new Dimension(100, 200)).getTerminalImage());
+    assertEquals(1, renderCount.get());
+  }
+
+  @NotNull
+  private ThumbnailManager createCountingManager(@Nullable ThumbnailDiskCache diskCache, @NotNull AtomicInteger renderCount) {
+    ThumbnailManager manager = new ThumbnailManager(myFacet, diskCache) {
+      @Nullable
+      @Override
+      protected RenderTask createTask(@NotNull AndroidFacet facet,
+                                      @NotNull XmlFile file,
+                                      @NotNull Configuration configuration,
+                                      @NotNull RenderService renderService) {
+        renderCount.incrementAndGet();
+        return ReadAction.compute(() -> RenderTestUtil.createRenderTask(facet, file.getVirtualFile(), configuration));
+      }
+    };
+    Disposer.register(getProject(), manager);
+    return manager;
+  }
+
   private static final float MAX_PERCENT_DIFFERENT = 1f;
 
   public void testGeneratedImage() throws Exception {
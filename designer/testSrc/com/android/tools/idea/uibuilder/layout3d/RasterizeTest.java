@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+public class RasterizeTest extends TestCase {
+  private static final int WIDTH = 1200;
+  private static final int HEIGHT = 900;
+
+  /**
+   * Builds a layout similar to a real screen: a toolbar, a list with nested rows and a bottom bar
+   */
+  private static Layout createLayout(int rows) {
+    BufferedImage img = new BufferedImage(1080, 1920, BufferedImage.TYPE_INT_ARGB);
+    int[] data = ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
+    for (int i = 0; i < data.length; i++) {
+      data[i] = 0xFF000000 | (i * 31);
+    }
+    Layout.View root = new Layout.View(0, 0, 1080, 1920);
+    root.addChild(new Layout.View(0, 0, 1080, 200).addChild(new Layout.View(40, 50, 600, 100)));
+    Layout.View list = new Layout.View(0, 200, 1080, 1520);
+    float rowHeight = 1520f / rows;
+    for (int i = 0; i < rows; i++) {
+      float y = 200 + i * rowHeight;
+      list.addChild(new Layout.View(0, y, 1080, rowHeight)
+                      .addChild(new Layout.View(20, y + 10, rowHeight - 20, rowHeight - 20),
+                                new Layout.View(rowHeight + 20, y + 10, 700, rowHeight / 2 - 10)
+                                  .addChild(new Layout.View(rowHeight + 30, y + 15, 300, rowHeight / 4)),
+                                new Layout.View(rowHeight + 20, y + rowHeight / 2, 500, rowHeight / 2 - 10)));
+    }
+    root.addChild(list, new Layout.View(0, 1720, 1080, 200));
+    return new Layout(img, root);
+  }
+
+  private static TriData transform(TriData tri, int x, int y) {
+    ViewMatrix viewMatrix = new ViewMatrix();
+    viewMatrix.look(ViewMatrix.UP_AT, tri, WIDTH, HEIGHT);
+    viewMatrix.setScreenWidth(1920);
+    viewMatrix.setScreenDim(WIDTH, HEIGHT);
+    viewMatrix.calcMatrix();
+    viewMatrix.trackBallDown(WIDTH / 2, HEIGHT / 2);
+    viewMatrix.trackBallMove(x, y);
+    TriData transformed = new TriData(tri);
+    tri.transform(viewMatrix.invers(), transformed);
+    return transformed;
+  }
+
+  public void testTiledMatchesSerial() {
+    Layout layout = createLayout(12);
+    for (int angle = 0; angle < 4; angle++) {
+      TriData transformed = transform(layout, WIDTH / 2 + angle * 90, HEIGHT / 2 + angle * 40);
+
+      float[] zbuff = new float[WIDTH * HEIGHT];
+      int[] rgb = new int[WIDTH * HEIGHT];
+      Arrays.fill(zbuff, Float.MAX_VALUE);
+      Rasterize.toZBuff(zbuff, rgb, WIDTH, HEIGHT, transformed,
+                        layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, null);
+
+      float[] tiledZbuff = new float[WIDTH * HEIGHT];
+      int[] tiledRgb = new int[WIDTH * HEIGHT];
+      Arrays.fill(tiledZbuff, Float.MAX_VALUE);
+      Rasterize.toZBuffTiled(tiledZbuff, tiledRgb, WIDTH, HEIGHT, transformed,
+                             layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, null);
+
+      assertTrue(Arrays.equals(zbuff, tiledZbuff));
+      assertTrue(Arrays.equals(rgb, tiledRgb));
+
+      Arrays.fill(zbuff, Float.MAX_VALUE);
+      Arrays.fill(tiledZbuff, Float.MAX_VALUE);
+      Rasterize.simple(zbuff, rgb, WIDTH, HEIGHT, transformed);
+      Rasterize.simpleTiled(tiledZbuff, tiledRgb, WIDTH, HEIGHT, transformed);
+      assertTrue(Arrays.equals(zbuff, tiledZbuff));
+      assertTrue(Arrays.equals(rgb, tiledRgb));
+    }
+  }
+
+  public void testBinning() {
+    TriData tri = new TriData();
+    tri.myVert = new float[]{
+      10, 10, 0,
+      100, 10, 0,
+      10, 100, 0,
+      -50, -50, 0,
+      -10, -50, 0,
+      -50, -10, 0,
+    };
+    tri.myIndex = new int[]{0, 3, 6, 9, 12, 15};
+    Rasterize.Tile[] tiles = Rasterize.binTriangles(200, 130, tri);
+    assertEquals(4 * 3, tiles.length);
+    // The first triangle covers the 2x2 tiles in the top left corner, the second one is outside of the image
+    for (int i = 0; i < tiles.length; i++) {
+      boolean covered = i == 0 || i == 1 || i == 4 || i == 5;
+      if (covered) {
+        assertEquals(1, tiles[i].size);
+        assertEquals(0, tiles[i].triangles[0]);
+      }
+      else {
+        assertNull(tiles[i]);
+      }
+    }
+  }
+
+  public void testTiledPerformance() {
+    Layout layout = createLayout(60);
+    TriData[] frames = new TriData[10];
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = transform(layout, WIDTH / 2 + i * 30, HEIGHT / 2 + i * 10);
+    }
+    float[] zbuff = new float[WIDTH * HEIGHT];
+    int[] rgb = new int[WIDTH * HEIGHT];
+    PlatformTestUtil.startPerformanceTest("Tiled rasterization of a rotating layout", 3000, () -> {
+      for (TriData frame : frames) {
+        Arrays.fill(zbuff, Float.MAX_VALUE);
+        Arrays.fill(rgb, 0xFF000000);
+        Rasterize.toZBuffTiled(zbuff, rgb, WIDTH, HEIGHT, frame,
+                               layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, null);
+      }
+    }).attempts(2).assertTiming();
+  }
+}
@@ -121,6 +121,55 @@ class NelePropertiesProviderTest : PropertyTestCase() {
     assertThat(legend.tooltipForName).isEqualTo("legend")
   }
 
+  fun testMultipleComponentsHaveCommonAttributes() {
+    val provider = createProvider()
+    val properties = provider.getProperties(createComponents(component(TEXT_VIEW), component(IMAGE_VIEW)))
+    assertThat(properties.getByNamespace(ANDROID_URI).keys).containsAllOf(ATTR_PADDING, ATTR_VISIBILITY)
+    assertThat(properties.getByNamespace(ANDROID_URI).keys).containsAllIn(linearLayoutAttrs)
+    assertThat(properties.doesNotContain(ANDROID_URI, ATTR_ID)).isTrue()
+    assertThat(properties.doesNotContain(ANDROID_URI, ATTR_TEXT)).isTrue()
+    assertThat(properties.doesNotContain(ANDROID_URI, ATTR_SRC)).isTrue()
+  }
+
+  fun testCachedAttributesAreReused() {
+    val provider = createProvider()
+    val components = createComponents(component(TEXT_VIEW), component(TEXT_VIEW))
+    val first = provider.getProperties(components.subList(0, 1))
+    val second = provider.getProperties(components.subList(1, 2))
+    assertThat(second.getByNamespace(ANDROID_URI).keys).containsExactlyElementsIn(first.getByNamespace(ANDROID_URI).keys)
+    assertThat(second[ANDROID_URI, ATTR_TEXT].components).containsExactly(components[1])
+
+    val both = provider.getProperties(components)
+    assertThat(both.contains(ANDROID_URI, ATTR_TEXT)).isTrue()
+    assertThat(both.doesNotContain(ANDROID_URI, ATTR_ID)).isTrue()
+    assertThat(both[ANDROID_URI, ATTR_TEXT].components).containsExactlyElementsIn(components)
+  }
+
+  fun testViewTagsWithDifferentClassesAreNotShared() {
+    setUpCustomView()
+    val provider = createProvider()
+    val components = createComponents(component(VIEW_TAG).withAttribute(ATTR_CLASS, "com.example.PieChart"),
+                                      component(VIEW_TAG).withAttribute(ATTR_CLASS, TEXT_VIEW))
+    val pieChart = provider.getProperties(components.subList(0, 1))
+    val textView = provider.getProperties(components.subList(1, 2))
+    assertThat(pieChart.contains(AUTO_URI, ATTR_LEGEND)).isTrue()
+    assertThat(textView.doesNotContain(AUTO_URI, ATTR_LEGEND)).isTrue()
+  }
+
+  fun testAttributesWithDifferentDefinitionsAreNotCommon() {
+    setUpCustomView()
+    val provider = createProvider()
+    val components = createComponents(component(CUSTOM_TAG), component(TEXT_VIEW))
+    val pieChart = provider.getProperties(components.subList(0, 1))
+    val textView = provider.getProperties(components.subList(1, 2))
+    val both = provider.getProperties(components)
+    for (property in both.values) {
+      assertThat(property.definition).isSameAs(pieChart[property.namespace, property.name].definition)
+      assertThat(property.definition).isSameAs(textView[property.namespace, property.name].definition)
+    }
+    assertThat(both.contains(ANDROID_URI, ATTR_VISIBILITY)).isTrue()
+  }
+
   private fun setUpAppCompat() {
     MockAppCompat.setUp(this, myFacet, myFixture)
   }
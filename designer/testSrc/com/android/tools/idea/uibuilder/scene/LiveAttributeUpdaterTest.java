@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import android.view.View;
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.tools.idea.common.SyncNlModel;
+import com.android.tools.idea.common.model.NlComponent;
+import com.android.tools.idea.project.AndroidProjectBuildNotifications;
+import com.android.tools.idea.rendering.parsers.TagSnapshot;
+import com.android.tools.idea.rendering.parsers.TagSnapshotDiff;
+import com.android.tools.idea.res.ResourceNotificationManager;
+import com.android.tools.idea.uibuilder.LayoutTestCase;
+import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.android.SdkConstants.*;
+
+public class LiveAttributeUpdaterTest extends LayoutTestCase {
+  private SyncNlModel myModel;
+  private SyncLayoutlibSceneManager myManager;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myModel = model("live.xml",
+                    component(FRAME_LAYOUT)
+                      .withBounds(0, 0, 1000, 1000)
+                      .matchParentWidth()
+                      .matchParentHeight()
+                      .children(
+                        component(TEXT_VIEW)
+                          .withBounds(0, 0, 200, 100)
+                          .id("@+id/text")
+                          .wrapContentWidth()
+                          .wrapContentHeight()
+                      )).build();
+    // Avoid rendering any other components (nav bar and similar) so we do not have dependencies on the Material theme
+    myModel.getConfiguration().setTheme("android:Theme.NoTitleBar.Fullscreen");
+    myManager = (SyncLayoutlibSceneManager)myModel.getSurface().getSceneManager();
+  }
+
+  @NotNull
+  private Object getTextViewObject() {
+    NlComponent component = myModel.find("text");
+    assertNotNull(component);
+    ViewInfo viewInfo = NlComponentHelperKt.getViewInfo(component);
+    assertNotNull(viewInfo);
+    assertNotNull(viewInfo.getViewObject());
+    return viewInfo.getViewObject();
+  }
+
+  private void setTextViewAttribute(@NotNull String name, @NotNull String value) {
+    NlComponent component = myModel.find("text");
+    assertNotNull(component);
+    XmlTag tag = component.getTag();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> tag.setAttribute(name, ANDROID_URI, value));
+  }
+
+  public void testEmptyChangesAreNotApplied() {
+    assertEquals(LiveAttributeUpdater.Result.NOT_APPLIED, LiveAttributeUpdater.apply(myModel, Collections.emptyList()));
+  }
+
+  public void testUnsupportedChangesAreNotApplied() {
+    XmlTag rootTag = myModel.getFile().getRootTag();
+    assertNotNull(rootTag);
+    TagSnapshot before = ReadAction.compute(() -> TagSnapshot.createTagSnapshot(rootTag, null));
+    setTextViewAttribute(ATTR_TEXT, "Hello");
+    TagSnapshot after = ReadAction.compute(() -> TagSnapshot.createTagSnapshot(rootTag, null));
+
+    List<TagSnapshotDiff.AttributeChange> changes = TagSnapshotDiff.diffAttributes(before, after);
+    assertNotNull(changes);
+    assertEquals(1, changes.size());
+    assertEquals(LiveAttributeUpdater.Result.NOT_APPLIED, LiveAttributeUpdater.apply(myModel, changes));
+  }
+
+  public void testAttributeChangeIsAppliedIncrementally() {
+    myManager.updateModel();
+    myManager.requestRender();
+    Object viewObject = getTextViewObject();
+
+    setTextViewAttribute("alpha", "0.5");
+    myManager.updateModel();
+
+    // The existing view was updated instead of inflating the layout again
+    assertSame(viewObject, getTextViewObject());
+    assertEquals(0.5f, ((View)viewObject).getAlpha());
+  }
+
+  public void testUnsupportedAttributeChangeInflates() {
+    myManager.updateModel();
+    myManager.requestRender();
+    Object viewObject = getTextViewObject();
+
+    setTextViewAttribute(ATTR_TEXT, "Hello");
+    myManager.updateModel();
+
+    assertNotSame(viewObject, getTextViewObject());
+  }
+
+  public void testUpdateWithoutChangesInflates() {
+    myManager.updateModel();
+    myManager.requestRender();
+    Object viewObject = getTextViewObject();
+
+    // Something other than the XML triggered the update, the layout must be inflated again
+    myManager.updateModel();
+
+    assertNotSame(viewObject, getTextViewObject());
+  }
+
+  public void testBuildWithoutXmlChangesInflates() {
+    ResourceNotificationManager notificationManager = ResourceNotificationManager.getInstance(getProject());
+    ResourceNotificationManager.ResourceChangeListener listener = reason -> {};
+    // Builds are only tracked while there are listeners
+    notificationManager.addListener(listener, myFacet, null, null);
+    try {
+      myManager.updateModel();
+      myManager.requestRender();
+      Object viewObject = getTextViewObject();
+
+      long modificationCount = notificationManager.getModificationCount();
+      AndroidProjectBuildNotifications.getInstance(getProject()).notifyBuildComplete(new AndroidProjectBuildNotifications.BuildContext() {});
+      UIUtil.dispatchAllInvocationEvents();
+      assertTrue(notificationManager.getModificationCount() > modificationCount);
+
+      // Even a supported attribute change needs a new inflate since the classes might have changed
+      setTextViewAttribute("alpha", "0.5");
+      myManager.updateModel();
+
+      assertNotSame(viewObject, getTextViewObject());
+    }
+    finally {
+      notificationManager.removeListener(listener, myFacet, null, null);
+    }
+  }
+}
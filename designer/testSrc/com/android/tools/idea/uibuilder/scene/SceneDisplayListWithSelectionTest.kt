@@ -149,4 +149,27 @@ UNClip
 
     TestCase.assertEquals(simpleList, myInteraction.displayList.serialize())
   }
+
+  fun testDisplayListFragmentsReused() {
+    myScene.select(listOf())
+    myInteraction.repaint()
+    val noSelectionList = myInteraction.displayList.serialize()
+
+    val button = myScene.getSceneComponent(myScreen.findById("@id/button")!!.component)!!
+    val button2 = myScene.getSceneComponent(myScreen.findById("@id/button2")!!.component)!!
+    val buttonFragment = button.displayListFragment
+    val button2Fragment = button2.displayListFragment
+    TestCase.assertNotNull(buttonFragment)
+    TestCase.assertNotNull(button2Fragment)
+
+    // Only the commands of the component whose state changed are rebuilt
+    myScene.select(listOf(button))
+    myInteraction.repaint()
+    TestCase.assertNotSame(buttonFragment, button.displayListFragment)
+    TestCase.assertSame(button2Fragment, button2.displayListFragment)
+
+    myScene.select(listOf())
+    myInteraction.repaint()
+    TestCase.assertEquals(noSelectionList, myInteraction.displayList.serialize())
+  }
 }
@@ -255,9 +255,24 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
                                @NotNull String builderName,
                                @NotNull String srcTargetName,
                                @Nullable JpsModule module) throws IOException {
+    final DexCommand command = createDexCommand(platform, outFilePath, compileTargets, context, project, builderName, module);
+    return command != null && runDex(command, compileTargets, context, outputConsumer, builderName, srcTargetName, null);
+  }
+
+  /**
+   * Builds the command line running dx on the given targets, or reports an error and returns null
+   */
+  @Nullable
+  static DexCommand createDexCommand(@NotNull AndroidPlatform platform,
+                                     @NotNull String outFilePath,
+                                     @NotNull String[] compileTargets,
+                                     @NotNull CompileContext context,
+                                     @NotNull JpsProject project,
+                                     @NotNull String builderName,
+                                     @Nullable JpsModule module) {
     BuildToolInfo buildToolInfo = platform.getTarget().getBuildToolInfo();
     if (buildToolInfo == null) {
-      return false;
+      return null;
     }
 
     final String dxJarPath = FileUtil.toSystemDependentName(buildToolInfo.getPath(BuildToolInfo.PathId.DX_JAR));
@@ -267,7 +282,7 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
     if (testingManager == null && !dxJar.isFile()) {
       context.processMessage(
         new CompilerMessage(builderName, BuildMessage.Kind.ERROR, AndroidJpsBundle.message("android.jps.cannot.find.file", dxJarPath)));
-      return false;
+      return null;
     }
 
     boolean multiDex = false;
@@ -327,23 +342,39 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
     classPath.add(ClasspathBootstrap.getResourcePath(AndroidDxRunner.class));
     classPath.add(ClasspathBootstrap.getResourcePath(FileUtilRt.class));
 
-    final File outFile = new File(outFilePath);
-    if (outFile.exists() && !outFile.isDirectory() && !outFile.delete()) {
-      context.processMessage(new CompilerMessage(builderName, BuildMessage.Kind.WARNING,
-                                                 AndroidJpsBundle.message("android.jps.cannot.delete.file", outFilePath)));
-    }
     final String javaExecutable = getJavaExecutable(platform, context, builderName);
 
     if (javaExecutable == null) {
-      return false;
+      return null;
     }
     final List<String> commandLine = ExternalProcessUtil
       .buildJavaCommandLine(javaExecutable, AndroidDxRunner.class.getName(),
                             Collections.<String>emptyList(), classPath, vmOptions, programParamList);
+    return new DexCommand(commandLine, outFilePath, multiDex, buildToolInfo.getRevision().toString());
+  }
 
+  /**
+   * Runs dx with the given command line. If {@code processes} is not null, the dx process is registered there while it runs, so that
+   * it can be destroyed when the build is cancelled.
+   */
+  static boolean runDex(@NotNull DexCommand command,
+                        @NotNull String[] compileTargets,
+                        @NotNull CompileContext context,
+                        @NotNull BuildOutputConsumer outputConsumer,
+                        @NotNull String builderName,
+                        @NotNull String srcTargetName,
+                        @Nullable DexProcesses processes) throws IOException {
+    final String outFilePath = command.getOutFilePath();
+    final List<String> commandLine = command.getCommandLine();
+    final File outFile = new File(outFilePath);
+    if (outFile.exists() && !outFile.isDirectory() && !outFile.delete()) {
+      context.processMessage(new CompilerMessage(builderName, BuildMessage.Kind.WARNING,
+                                                 AndroidJpsBundle.message("android.jps.cannot.delete.file", outFilePath)));
+    }
     LOG.info(AndroidCommonUtils.command2string(commandLine));
 
     final String[] commands = ArrayUtil.toStringArray(commandLine);
+    final AndroidBuildTestingManager testingManager = AndroidBuildTestingManager.getTestingManager();
     final Process process;
 
     if (testingManager != null) {
@@ -353,12 +384,23 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
     else {
       process = Runtime.getRuntime().exec(commands);
     }
+    if (processes != null && !processes.add(process)) {
+      return false;
+    }
     final HashMap<AndroidCompilerMessageKind, List<String>> messages = new HashMap<AndroidCompilerMessageKind, List<String>>(3);
     messages.put(AndroidCompilerMessageKind.ERROR, new ArrayList<String>());
     messages.put(AndroidCompilerMessageKind.WARNING, new ArrayList<String>());
     messages.put(AndroidCompilerMessageKind.INFORMATION, new ArrayList<String>());
 
-    AndroidCommonUtils.handleDexCompilationResult(process, StringUtil.join(commandLine, " "), outFilePath, messages, multiDex);
+    try {
+      AndroidCommonUtils.handleDexCompilationResult(process, StringUtil.join(commandLine, " "), outFilePath, messages,
+                                                    command.isMultiDex());
+    }
+    finally {
+      if (processes != null) {
+        processes.remove(process);
+      }
+    }
 
     AndroidJpsUtil.addMessages(context, messages, builderName, srcTargetName);
     final boolean success = messages.get(AndroidCompilerMessageKind.ERROR).isEmpty();
@@ -384,11 +426,80 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
           });
         }
       }
-      outputConsumer.registerOutputFile(outFile, srcFiles);
+      // Pre-dexing runs several dx processes at the same time
+      synchronized (outputConsumer) {
+        outputConsumer.registerOutputFile(outFile, srcFiles);
+      }
     }
     return success;
   }
 
+  /**
+   * A dx command line and the output it produces
+   */
+  static class DexCommand {
+    private final List<String> myCommandLine;
+    private final String myOutFilePath;
+    private final boolean myMultiDex;
+    private final String myBuildToolsRevision;
+
+    DexCommand(@NotNull List<String> commandLine, @NotNull String outFilePath, boolean multiDex, @NotNull String buildToolsRevision) {
+      myCommandLine = commandLine;
+      myOutFilePath = outFilePath;
+      myMultiDex = multiDex;
+      myBuildToolsRevision = buildToolsRevision;
+    }
+
+    @NotNull
+    List<String> getCommandLine() {
+      return myCommandLine;
+    }
+
+    @NotNull
+    String getOutFilePath() {
+      return myOutFilePath;
+    }
+
+    boolean isMultiDex() {
+      return myMultiDex;
+    }
+
+    @NotNull
+    String getBuildToolsRevision() {
+      return myBuildToolsRevision;
+    }
+  }
+
+  /**
+   * The dx processes running at the same time for one build. Once they are destroyed, processes added later are destroyed right away.
+   */
+  static class DexProcesses {
+    private final Set<Process> myProcesses = new HashSet<Process>();
+    private boolean myDestroyed;
+
+    synchronized boolean add(@NotNull Process process) {
+      if (myDestroyed) {
+        process.destroy();
+        return false;
+      }
+      myProcesses.add(process);
+      return true;
+    }
+
+    synchronized void remove(@NotNull Process process) {
+      myProcesses.remove(process);
+    }
+
+    synchronized void destroyAll() {
+      myDestroyed = true;
+
+      for (Process process : myProcesses) {
+        process.destroy();
+      }
+      myProcesses.clear();
+    }
+  }
+
   @Nullable
   private static String getJavaExecutable(@NotNull AndroidPlatform platform, @NotNull CompileContext context, @NotNull String builderName) {
     final JpsSdk<JpsSimpleElement<JpsAndroidSdkProperties>> sdk = platform.getSdk();
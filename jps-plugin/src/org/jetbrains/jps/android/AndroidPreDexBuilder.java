@@ -4,10 +4,14 @@ import com.android.tools.idea.jps.AndroidTargetBuilder;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.util.Processor;
 import org.jetbrains.android.util.AndroidBuildTestingManager;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 import org.jetbrains.jps.android.builder.AndroidPreDexBuildTarget;
 import org.jetbrains.jps.builders.BuildOutputConsumer;
 import org.jetbrains.jps.builders.DirtyFilesHolder;
@@ -22,10 +26,15 @@ import org.jetbrains.jps.model.JpsProject;
 import org.jetbrains.jps.model.module.JpsModule;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * @author Eugene.Kudelevsky
@@ -33,6 +42,13 @@ import java.util.List;
 public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuildTarget.MyRootDescriptor, AndroidPreDexBuildTarget> {
 
   @NonNls private static final String BUILDER_NAME = "Android Pre Dex";
+  @NonNls private static final String CONTENT_HASH_FILE_EXTENSION = ".sha1";
+  @NonNls private static final String CACHE_DIRECTORY_NAME = ".cache";
+
+  // Each dx process may use a lot of memory (-Xmx1024M by default), so only a few of them run at the same time
+  private static final int MAX_DEX_WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+  private static volatile boolean ourCacheAndParallelismEnabledInTests;
 
   protected AndroidPreDexBuilder() {
     super(Collections.singletonList(AndroidPreDexBuildTarget.MyTargetType.INSTANCE));
@@ -93,6 +109,7 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
     }
     if (!filesToPreDex.isEmpty()) {
       final File outputDir = target.getOutputFile(context);
+      final List<Pair<File, File>> filesToRunDex = new ArrayList<Pair<File, File>>();
 
       for (Pair<File, String> pair : filesToPreDex) {
         context.checkCanceled();
@@ -121,16 +138,207 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
         if (AndroidJpsUtil.createDirIfNotExist(outputFile.getParentFile(), context, BUILDER_NAME) == null) {
           return false;
         }
+        filesToRunDex.add(Pair.create(srcFile, outputFile));
+      }
+      return runDexInParallel(platform, filesToRunDex, outputDir, project, outputConsumer, context);
+    }
+    return true;
+  }
 
-        if (!AndroidDexBuilder.runDex(platform, outputFile.getPath(), new String[]{srcFilePath}, context,
-          project, outputConsumer, BUILDER_NAME, srcFile.getName(), null)) {
-          return false;
+  /**
+   * Pre-dexes each jar in its own dx process, with several processes running at the same time.
+   * <p>
+   * The result of each dx run is also kept in a cache directory with a hash of the jar it was created from, of the dx command line and of
+   * the build tools revision, and it is reused instead of running dx again when none of them changed, e.g. when a library module was
+   * packaged again without any change. The build logs checked by most tests must not depend on the cache or on the order in which the
+   * processes complete, so neither is used in tests unless {@link #setCacheAndParallelismEnabledInTests} enables them.
+   */
+  private static boolean runDexInParallel(@NotNull final AndroidPlatform platform,
+                                          @NotNull List<Pair<File, File>> filesToRunDex,
+                                          @NotNull final File outputDir,
+                                          @NotNull final JpsProject project,
+                                          @NotNull final BuildOutputConsumer outputConsumer,
+                                          @NotNull final CompileContext context) throws IOException, ProjectBuildException {
+    final boolean testing = AndroidBuildTestingManager.getTestingManager() != null;
+    final File cacheDir = !testing || ourCacheAndParallelismEnabledInTests ? new File(outputDir, CACHE_DIRECTORY_NAME) : null;
+    final int workerCount = !testing ? MAX_DEX_WORKERS : ourCacheAndParallelismEnabledInTests ? Math.max(2, MAX_DEX_WORKERS) : 1;
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.min(workerCount, filesToRunDex.size()));
+    final AndroidDexBuilder.DexProcesses processes = new AndroidDexBuilder.DexProcesses();
+    final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+    try {
+      for (final Pair<File, File> pair : filesToRunDex) {
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            context.checkCanceled();
+            final File outputFile = pair.getSecond();
+            final String relativePath = FileUtil.getRelativePath(outputDir, outputFile);
+            final File cachedFile = cacheDir != null && relativePath != null ? new File(cacheDir, relativePath) : null;
+            return preDex(platform, pair.getFirst(), outputFile, cachedFile, project, outputConsumer, context, processes);
+          }
+        }));
+      }
+      boolean success = true;
+
+      for (Future<Boolean> result : results) {
+        success &= waitForResult(result, context);
+      }
+      if (success && cacheDir != null) {
+        pruneCache(cacheDir, outputDir);
+      }
+      return success;
+    }
+    finally {
+      // Does nothing if all the jars were pre-dexed, otherwise the build was cancelled or failed and the remaining dx runs are stopped
+      for (Future<Boolean> result : results) {
+        result.cancel(true);
+      }
+      executor.shutdownNow();
+      processes.destroyAll();
+    }
+  }
+
+  private static boolean waitForResult(@NotNull Future<Boolean> result, @NotNull CompileContext context)
+    throws IOException, ProjectBuildException {
+    while (true) {
+      // Checks for cancellation while dx runs, since the workers only check it before starting dx
+      context.checkCanceled();
+      try {
+        return result.get(100, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        throw new ProjectBuildException(e);
+      }
+      catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof ProjectBuildException) {
+          throw (ProjectBuildException)cause;
         }
+        if (cause instanceof IOException) {
+          throw (IOException)cause;
+        }
+        throw new ProjectBuildException(cause);
       }
     }
+  }
+
+  private static boolean preDex(@NotNull AndroidPlatform platform,
+                                @NotNull File srcFile,
+                                @NotNull File outputFile,
+                                @Nullable File cachedFile,
+                                @NotNull JpsProject project,
+                                @NotNull BuildOutputConsumer outputConsumer,
+                                @NotNull CompileContext context,
+                                @NotNull AndroidDexBuilder.DexProcesses processes) throws IOException {
+    final String[] compileTargets = {srcFile.getAbsolutePath()};
+    final AndroidDexBuilder.DexCommand command =
+      AndroidDexBuilder.createDexCommand(platform, outputFile.getPath(), compileTargets, context, project, BUILDER_NAME, null);
+
+    if (command == null) {
+      return false;
+    }
+    if (cachedFile == null) {
+      return AndroidDexBuilder.runDex(command, compileTargets, context, outputConsumer, BUILDER_NAME, srcFile.getName(), processes);
+    }
+    final File hashFile = new File(cachedFile.getPath() + CONTENT_HASH_FILE_EXTENSION);
+    final String cacheKey = computeCacheKey(srcFile, command);
+
+    if (cachedFile.isFile() && hashFile.isFile() && cacheKey.equals(FileUtil.loadFile(hashFile))) {
+      FileUtil.copy(cachedFile, outputFile);
+      synchronized (outputConsumer) {
+        outputConsumer.registerOutputFile(outputFile, Collections.singletonList(srcFile.getPath()));
+      }
+      return true;
+    }
+    FileUtil.delete(hashFile);
+
+    if (!AndroidDexBuilder.runDex(command, compileTargets, context, outputConsumer, BUILDER_NAME, srcFile.getName(), processes)) {
+      return false;
+    }
+    FileUtil.copy(outputFile, cachedFile);
+    FileUtil.writeToFile(hashFile, cacheKey);
     return true;
   }
 
+  /**
+   * Hashes everything the output of dx depends on: the build tools revision, the command line (including the dx options and the VM
+   * options) and the content of the jar.
+   */
+  @NotNull
+  private static String computeCacheKey(@NotNull File file, @NotNull AndroidDexBuilder.DexCommand command) throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+    digest.update(command.getBuildToolsRevision().getBytes(CharsetToolkit.UTF8_CHARSET));
+    digest.update((byte)0);
+    digest.update(StringUtil.join(command.getCommandLine(), "\n").getBytes(CharsetToolkit.UTF8_CHARSET));
+    digest.update((byte)0);
+
+    final InputStream input = new FileInputStream(file);
+    try {
+      final byte[] buffer = new byte[64 * 1024];
+      int count;
+
+      while ((count = input.read(buffer)) > 0) {
+        digest.update(buffer, 0, count);
+      }
+    }
+    finally {
+      input.close();
+    }
+    return StringUtil.toHexString(digest.digest());
+  }
+
+  /**
+   * Deletes the cached files which are not pre-dexed outputs anymore, e.g. because the jar was removed from the project, together with
+   * their hashes.
+   */
+  static void pruneCache(@NotNull File cacheDir, @NotNull File outputDir) {
+    final List<File> cacheFiles = new ArrayList<File>();
+    FileUtil.processFilesRecursively(cacheDir, new Processor<File>() {
+      @Override
+      public boolean process(File file) {
+        if (file.isFile()) {
+          cacheFiles.add(file);
+        }
+        return true;
+      }
+    });
+
+    for (File file : cacheFiles) {
+      final String relativePath = FileUtil.getRelativePath(cacheDir, file);
+      if (relativePath == null) {
+        continue;
+      }
+      if (relativePath.endsWith(CONTENT_HASH_FILE_EXTENSION)) {
+        final String cachedPath = StringUtil.trimEnd(file.getPath(), CONTENT_HASH_FILE_EXTENSION);
+        if (!new File(cachedPath).isFile()) {
+          FileUtil.delete(file);
+        }
+      }
+      else if (!new File(outputDir, relativePath).isFile()) {
+        FileUtil.delete(file);
+        FileUtil.delete(new File(file.getPath() + CONTENT_HASH_FILE_EXTENSION));
+      }
+    }
+  }
+
+  /**
+   * Lets tests check the build logs with the cache and the parallel dx runs, which are disabled in tests by default. At least two dx
+   * processes run at the same time then, even on machines with few processors.
+   */
+  @TestOnly
+  static void setCacheAndParallelismEnabledInTests(boolean enabled) {
+    ourCacheAndParallelismEnabledInTests = enabled;
+  }
+
   public static boolean canBePreDexed(@NotNull File file) {
     return "jar".equals(FileUtilRt.getExtension(file.getName()));
   }
@@ -50,6 +50,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -1241,6 +1243,101 @@ public class AndroidBuilderTest extends JpsBuildTestCase {
     checkBuildLog(executor, "expected_log_4");
   }
 
+  public void testPreDexingCache() throws Exception {
+    final MyExecutor executor = new MyExecutor("com.example.simple");
+
+    final JpsSdk<JpsSimpleElement<JpsAndroidSdkProperties>> androidSdk = addJdkAndAndroidSdk();
+    addPathPatterns(executor, androidSdk);
+    final JpsModule appModule = addAndroidModule("app", new String[]{"src"}, "app", "app", androidSdk, "preDexing").getFirst();
+    final JpsModule libModule = addAndroidModule("lib2", new String[]{"src"}, "lib", "lib2", androidSdk, "preDexing").getFirst();
+    final JpsModule libModule1 = addAndroidModule("lib1", new String[]{"src"}, "lib1", "lib1", androidSdk, "preDexing").getFirst();
+
+    final JpsAndroidModuleExtension libExtension = AndroidJpsUtil.getExtension(libModule);
+    assert libExtension != null;
+    ((JpsAndroidModuleExtensionImpl)libExtension).getProperties().PROJECT_TYPE = PROJECT_TYPE_LIBRARY;
+
+    final JpsAndroidModuleExtension libExtension1 = AndroidJpsUtil.getExtension(libModule1);
+    assert libExtension1 != null;
+    ((JpsAndroidModuleExtensionImpl)libExtension1).getProperties().PROJECT_TYPE = PROJECT_TYPE_LIBRARY;
+
+    appModule.getDependenciesList().addModuleDependency(libModule);
+    libModule.getDependenciesList().addModuleDependency(libModule1);
+
+    final File externalJar = new File(getProjectPath("app/libs/external_jar.jar"));
+    final JpsLibrary lib = appModule.addModuleLibrary("ext_lib", JpsJavaLibraryType.INSTANCE);
+    lib.addRoot(externalJar, JpsOrderRootType.COMPILED);
+    appModule.getDependenciesList().addLibraryDependency(lib);
+
+    AndroidPreDexBuilder.setCacheAndParallelismEnabledInTests(true);
+    try {
+      // The three jars are pre-dexed by parallel dx processes, and each entry of the log is still complete
+      rebuildAndroidProject();
+      assertEquals(new TreeSet<String>(Arrays.asList("$DATA_STORAGE_ROOT$/android/intermediate_artifacts/lib1/classes.jar",
+                                                     "$DATA_STORAGE_ROOT$/android/intermediate_artifacts/lib2/classes.jar",
+                                                     "$PROJECT_DIR$/root/app/libs/external_jar.jar")),
+                   getPreDexedFiles(executor.getLog()));
+
+      // The jar is dirty but has the same content, so the cached result is used
+      executor.clear();
+      assertTrue(externalJar.setLastModified(externalJar.lastModified() + 10000));
+      buildAndroidProject().assertSuccessful();
+      assertEquals(Collections.<String>emptySet(), getPreDexedFiles(executor.getLog()));
+      final File preDexedJar = new File(myDataStorageRoot, "android/intermediate_artifacts/pre_dexed_libs/external_jar.jar");
+      assertEquals("classes_dex_content", FileUtil.loadFile(preDexedJar));
+
+      executor.clear();
+      final ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(externalJar)));
+      try {
+        MyExecutor.appendEntry(zos, "com/jar/Changed.txt", "changed".getBytes());
+      }
+      finally {
+        zos.close();
+      }
+      buildAndroidProject().assertSuccessful();
+      assertEquals(Collections.singleton("$PROJECT_DIR$/root/app/libs/external_jar.jar"), getPreDexedFiles(executor.getLog()));
+    }
+    finally {
+      AndroidPreDexBuilder.setCacheAndParallelismEnabledInTests(false);
+    }
+  }
+
+  public void testPreDexingCacheIsPruned() throws Exception {
+    final File outputDir = new File(getOrCreateProjectDir(), "pre_dexed_libs");
+    final File cacheDir = new File(outputDir, ".cache");
+    createTextFile(outputDir.getPath() + "/lib1/classes.jar", "classes_dex_content");
+    createTextFile(cacheDir.getPath() + "/lib1/classes.jar", "classes_dex_content");
+    createTextFile(cacheDir.getPath() + "/lib1/classes.jar.sha1", "hash");
+    createTextFile(cacheDir.getPath() + "/removed.jar", "classes_dex_content");
+    createTextFile(cacheDir.getPath() + "/removed.jar.sha1", "hash");
+    createTextFile(cacheDir.getPath() + "/orphan.jar.sha1", "hash");
+
+    AndroidPreDexBuilder.pruneCache(cacheDir, outputDir);
+
+    assertTrue(new File(cacheDir, "lib1/classes.jar").isFile());
+    assertTrue(new File(cacheDir, "lib1/classes.jar.sha1").isFile());
+    assertFalse(new File(cacheDir, "removed.jar").exists());
+    assertFalse(new File(cacheDir, "removed.jar.sha1").exists());
+    assertFalse(new File(cacheDir, "orphan.jar.sha1").exists());
+  }
+
+  /**
+   * Returns the files pre-dexed by the dx runs in the given log
+   */
+  private static Set<String> getPreDexedFiles(String log) {
+    final Set<String> result = new TreeSet<String>();
+
+    for (String entry : log.split(AndroidBuildTestingCommandExecutor.ENTRY_HEADER)) {
+      final String[] lines = entry.trim().split("\n");
+      final int idx = ArrayUtilRt.find(lines, "org.jetbrains.android.compiler.tools.AndroidDxRunner");
+
+      // The output path follows the path of dx.jar, and the pre-dexed jar comes before --exclude
+      if (idx >= 0 && lines[idx + 2].contains("/pre_dexed_libs/")) {
+        result.add(lines[lines.length - 2]);
+      }
+    }
+    return result;
+  }
+
   private void checkMakeUpToDate(MyExecutor executor) {
     executor.clear();
     buildAndroidProject().assertUpToDate();